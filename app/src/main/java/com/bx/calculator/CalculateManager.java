@@ -2,81 +2,120 @@ package com.bx.calculator;
 
 import android.os.Handler;
 import android.os.Looper;
-import android.os.Message;
 import android.os.Process;
 
 import com.bx.calculator.calc.CExpression;
 import com.bx.calculator.calc.CParams;
 import com.bx.calculator.calc.CResult;
+import com.bx.calculator.calc.CResultCache;
 import com.bx.calculator.calc.CUnit;
-import com.bx.calculator.calc.Calculate;
-import com.bx.calculator.calc.exception.VariableException;
-import com.bx.calculator.calc.exception.OutOfRangeException;
-import com.bx.calculator.calc.exception.SyntaxException;
-import com.bx.calculator.calc.exception.UndefinedException;
+import com.bx.calculator.calc.CancellationToken;
+import com.bx.calculator.calc.exception.CancelledException;
 import com.bx.calculator.calc.math.AngleUnit;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import ch.obermuhlner.math.big.BigComplex;
 
+/**
+ * <p>Calculates inputs in the background and performs the actions of their results on the main thread.</p>
+ * <p>Calculations are {@link Job}s which wait in a queue ordered by {@link Priority}, and are calculated by a pool
+ * with a thread for each core. A job which is submitted while the same input and parameters are waiting or
+ * calculating is shared, so it is only calculated once and every subscriber receives the result. A job with a
+ * coalescing key supersedes the older job with the same key, eg. a preview of the previous input, which is
+ * cancelled.</p>
+ */
 public final class CalculateManager {
 
     private static final String TAG = "CalculateManager";
 
-    private static final int CALCULATE_STARTED = 1;
-    private static final int CALCULATE_COMPLETE = 2;
+    /**
+     * Order in which waiting jobs start. Jobs with the same priority start in the order they were submitted. A job
+     * that is calculating is not stopped by a job with a higher priority.
+     */
+    public enum Priority {
+        /**
+         * A result the user asked for, eg. the equals button.
+         */
+        INTERACTIVE,
+        /**
+         * A result shown while the user types or looks, eg. a preview or the points of a graph.
+         */
+        PREVIEW,
+        /**
+         * Many results that are not shown immediately, eg. a table or an export.
+         */
+        BULK
+    }
+
+    /**
+     * Delay in milliseconds after the last input before a preview is calculated.
+     */
+    private static final long PREVIEW_DELAY = 150;
+    /**
+     * Time in milliseconds after which a calculation is stopped with a {@link CancelledException}.
+     */
+    private static final long CALCULATE_TIMEOUT = 30000;
+    /**
+     * Time in milliseconds after which a preview is stopped, so a slow input does not hold a thread.
+     */
+    private static final long PREVIEW_TIMEOUT = 2000;
+    /**
+     * Time in seconds after which an idle thread of the pool is stopped.
+     */
+    private static final long KEEP_ALIVE = 30;
+    /**
+     * Coalescing key of previews, so only the newest input is calculated.
+     */
+    private static final Object PREVIEW_KEY = new Object();
 
     private static final CalculateManager instance = new CalculateManager();
 
-    private final ExecutorService executor;
+    private final ThreadPoolExecutor executor;
     private final Handler handler;
-    private CalculateTask currentTask;
+    private final CResultCache cache = new CResultCache();
+    /**
+     * Jobs that are waiting or calculating, by input and parameters.
+     */
+    private final Map<JobKey, Job> activeJobs = new HashMap<>();
+    /**
+     * The newest job of each coalescing key, which is waiting or calculating.
+     */
+    private final Map<Object, Job> coalescedJobs = new HashMap<>();
+    /**
+     * The newest preview, which is waiting for the delay or calculating. Older previews are not delivered.
+     */
+    private PreviewTask currentPreview;
     private CParams params;
+    /**
+     * Order of submission, so jobs with the same priority start first in first out.
+     */
+    private long sequence;
+
+    // metrics, indexed by Priority.ordinal()
+    private final int[] waitingCounts = new int[Priority.values().length];
+    private final long[] startedCounts = new long[Priority.values().length];
+    private final long[] totalWaitNanos = new long[Priority.values().length];
+    private final long[] maxWaitNanos = new long[Priority.values().length];
 
     private CalculateManager() {
-        executor = Executors.newSingleThreadExecutor();
-        handler = new Handler(Looper.getMainLooper()) {
-            @Override
-            public void handleMessage(Message msg) {
-                final CalculateTask task = (CalculateTask) msg.obj;
-                switch (msg.what) {
-                    case CALCULATE_STARTED:
-                        if (task.onStarted != null) {
-                            task.onStarted.run();
-                        }
-                        break;
-                    case CALCULATE_COMPLETE:
-                        try {
-                            final CResult result = task.future.get();
-                            if (task.onComplete != null) {
-                                task.onComplete.accept(result);
-                            }
-                        } catch (ExecutionException e) {
-                            if (task.onException != null && e.getCause() instanceof Exception) {
-                                task.onException.accept((Exception) e.getCause());
-                            }
-                        } catch (Exception e) {
-                            if (task.onException != null) {
-                                task.onException.accept(e);
-                            }
-                        }
-                        break;
-                    default:
-                        super.handleMessage(msg);
-                }
-            }
-        };
+        final int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+        handler = new Handler(Looper.getMainLooper());
     }
 
     public static CalculateManager getInstance() {
@@ -91,6 +130,14 @@ public final class CalculateManager {
         return params;
     }
 
+    /**
+     * @return Cache of the results of the calculations.
+     */
+    @NonNull
+    public CResultCache getCache() {
+        return cache;
+    }
+
     /**
      * @param params Parameters for calculation. Set to {@code null} for default.
      */
@@ -102,7 +149,7 @@ public final class CalculateManager {
 
     public void setParamsAngleUnit(AngleUnit angleUnit) {
         synchronized (this) {
-            this.params = new CParams(angleUnit, getParams().getVariableMap());
+            this.params = new CParams(angleUnit, getParams().getVariableMap(), getParams().getPrecision());
         }
     }
 
@@ -111,58 +158,265 @@ public final class CalculateManager {
             final CParams oldParams = getParams();
             final Map<CUnit, BigComplex> oldVariables = new HashMap<>(oldParams.getVariableMap());
             oldVariables.put(CUnit.ANS, answer);
-            this.params = new CParams(oldParams.getAngleUnit(), oldVariables);
+            this.params = new CParams(oldParams.getAngleUnit(), oldVariables, oldParams.getPrecision());
         }
     }
 
     public void setParamsVariables(@Nullable Map<CUnit, BigComplex> variables) {
         synchronized (this) {
-            this.params = new CParams(getParams().getAngleUnit(), variables);
+            this.params = new CParams(getParams().getAngleUnit(), variables, getParams().getPrecision());
         }
     }
 
     /**
-     * Calculates a result if no other calculation is executing, then handle result afterwards.
+     * @param precision Significant figures of every operation, see {@link CParams#getPrecision()}.
+     * @throws IllegalArgumentException {@code precision} is not positive.
+     */
+    public void setParamsPrecision(int precision) throws IllegalArgumentException {
+        synchronized (this) {
+            this.params = getParams().withPrecision(precision);
+        }
+    }
+
+    /**
+     * Calculates a result with {@link Priority#INTERACTIVE}, then handle result afterwards. Results are stored in the
+     * {@link #getCache()}, so calculating the same input again (eg. from the history) returns immediately. A
+     * calculation that takes longer than {@link #CALCULATE_TIMEOUT} is stopped with a {@link CancelledException}.
      *
      * @param input Sequence to calculate.
      * @param params Parameters for this calculation.
+     * @param onStarted Action to perform on main thread when the calculation starts.
      * @param onComplete Action to perform on main thread after calculation complete.
      * @param onException Action to perform on main thread if an exception is thrown during calculation.
-     * @return true if begin calculation, false if another calculation is already executing.
+     * @return The job of the calculation, which may be shared with an identical calculation.
      * @throws NullPointerException {@code input} or a {@link CUnit} is {@code null}.
      */
-    public synchronized boolean calculate(@NonNull CUnit[] input, @NonNull CParams params, @Nullable Runnable onStarted,
-                                          @Nullable Consumer<CResult> onComplete, @Nullable Consumer<Exception> onException)
+    @NonNull
+    public Job calculate(@NonNull CUnit[] input, @NonNull CParams params, @Nullable Runnable onStarted,
+                         @Nullable Consumer<CResult> onComplete, @Nullable Consumer<Exception> onException)
             throws NullPointerException {
-        if (currentTask != null && !currentTask.isDone()) {
+        return submit(input, params, Priority.INTERACTIVE, null).subscribe(onStarted, onComplete, onException);
+    }
+
+    @NonNull
+    public Job calculate(@NonNull CUnit[] input, @Nullable Runnable onStarted, @Nullable Consumer<CResult> onComplete,
+                         @Nullable Consumer<Exception> onException) throws NullPointerException {
+        return calculate(input, getParams(), onStarted, onComplete, onException);
+    }
+
+    /**
+     * <p>Adds a calculation to the queue. Subscribe to the returned job to receive the result.</p>
+     * <p>If the same input and parameters are waiting or calculating, that job is returned instead, and if it is
+     * waiting its priority is raised to {@code priority}. If {@code key} is not {@code null}, the older job with the
+     * same key is cancelled unless another request shares it.</p>
+     *
+     * @param input Sequence to calculate.
+     * @param params Parameters for this calculation.
+     * @param priority Priority of the calculation, which also sets its timeout.
+     * @param key Coalescing key, eg. an object for each graph, or {@code null} if the job is never superseded.
+     * @return The job of the calculation.
+     * @throws NullPointerException {@code input}, a {@link CUnit}, {@code params} or {@code priority} is {@code null}.
+     */
+    @NonNull
+    public synchronized Job submit(@NonNull CUnit[] input, @NonNull CParams params, @NonNull Priority priority,
+                                   @Nullable Object key) throws NullPointerException {
+        final JobKey jobKey = new JobKey(input, params);
+        Objects.requireNonNull(priority);
+        Job job = activeJobs.get(jobKey);
+        if (job != null && (job.state == Job.WAITING || job.priority.compareTo(priority) <= 0)) {
+            if (job.state == Job.WAITING && priority.compareTo(job.priority) < 0) {
+                // raise the priority, the queue orders a job when it is added
+                executor.remove(job);
+                waitingCounts[job.priority.ordinal()]--;
+                waitingCounts[priority.ordinal()]++;
+                job.priority = priority;
+                executor.execute(job);
+            }
+            if (job.key != null && !job.key.equals(key)) {
+                // shared by another request, so it is no longer superseded
+                coalescedJobs.remove(job.key);
+                job.key = null;
+            }
+        } else {
+            job = new Job(this, jobKey, priority, sequence++);
+            activeJobs.put(jobKey, job);
+            waitingCounts[priority.ordinal()]++;
+            executor.execute(job);
+        }
+        if (key != null && job.key == null) {
+            final Job superseded = coalescedJobs.put(key, job);
+            if (superseded != null && superseded != job) {
+                cancel(superseded);
+            }
+            job.key = key;
+        }
+        return job;
+    }
+
+    /**
+     * <p>Calculates a tentative result of an input that is being typed, with {@link Priority#PREVIEW}. The calculation
+     * starts after a short delay, so typing quickly only calculates the last input, and does not wait for or stop
+     * {@link #calculate(CUnit[], CParams, Runnable, Consumer, Consumer)}.</p>
+     * <p>A newer preview cancels this one, so the actions are only performed for the newest input and results are
+     * never delivered out of order. The actions are performed on the main thread.</p>
+     *
+     * @param input Sequence to calculate.
+     * @param onPreview Action to perform with the result.
+     * @param onException Action to perform if an exception is thrown during calculation, eg. the input is incomplete.
+     * @throws NullPointerException {@code input} or a {@link CUnit} is {@code null}.
+     */
+    public synchronized void preview(@NonNull CUnit[] input, @NonNull Consumer<CResult> onPreview,
+                                     @Nullable Consumer<Exception> onException) throws NullPointerException {
+        cancelPreview();
+        currentPreview = new PreviewTask(input, getParams(), onPreview, onException);
+        handler.postDelayed(currentPreview.start, PREVIEW_DELAY);
+    }
+
+    /**
+     * Cancels the current preview, its actions will not be performed.
+     */
+    public synchronized void cancelPreview() {
+        if (currentPreview != null) {
+            handler.removeCallbacks(currentPreview.start);
+            currentPreview = null;
+            // the job is cancelled when a newer preview supersedes it or it is not needed
+            final Job job = coalescedJobs.get(PREVIEW_KEY);
+            if (job != null) {
+                cancel(job);
+            }
+        }
+    }
+
+    /**
+     * Submits a preview after the delay, if it is still the newest. Called on the main thread.
+     */
+    private synchronized void startPreview(@NonNull PreviewTask task) {
+        if (task != currentPreview) {
+            return;
+        }
+        submit(task.input, task.params, Priority.PREVIEW, PREVIEW_KEY).subscribe(null,
+                result -> deliverPreview(task, result, null), exception -> deliverPreview(task, null, exception));
+    }
+
+    /**
+     * Performs the actions of a preview if it is still the newest. Called on the main thread.
+     */
+    private void deliverPreview(@NonNull PreviewTask task, @Nullable CResult result, @Nullable Exception exception) {
+        synchronized (this) {
+            if (task != currentPreview) {
+                return;
+            }
+            currentPreview = null;
+        }
+        if (result != null) {
+            task.onPreview.accept(result);
+        } else if (task.onException != null) {
+            task.onException.accept(exception);
+        }
+    }
+
+    /**
+     * Cancels a job. A waiting job is removed from the queue and completes immediately, a calculating job stops at the
+     * next check of its {@link CancellationToken}.
+     */
+    private synchronized void cancel(@NonNull Job job) {
+        if (job.state == Job.WAITING) {
+            // if a thread already took the job from the queue, it does not start it
+            executor.remove(job);
+            waitingCounts[job.priority.ordinal()]--;
+            finish(job, null, new CancelledException());
+        } else if (job.state == Job.CALCULATING) {
+            job.token.cancel();
+        }
+    }
+
+    /**
+     * Marks a job as started, records its wait time and tells the subscribers. Called on the calculating thread.
+     *
+     * @return false if the job was already started or cancelled.
+     */
+    private synchronized boolean start(@NonNull Job job) {
+        if (job.state != Job.WAITING) {
             return false;
         }
-        currentTask = new CalculateTask(input, params, onStarted, onComplete, onException);
-        currentTask.future = executor.submit(currentTask.callable);
+        job.state = Job.CALCULATING;
+        final long timeout = job.priority == Priority.PREVIEW ? PREVIEW_TIMEOUT : CALCULATE_TIMEOUT;
+        job.token = CancellationToken.withTimeout(timeout, TimeUnit.MILLISECONDS);
+        final int index = job.priority.ordinal();
+        final long wait = System.nanoTime() - job.submitTime;
+        waitingCounts[index]--;
+        startedCounts[index]++;
+        totalWaitNanos[index] += wait;
+        maxWaitNanos[index] = Math.max(maxWaitNanos[index], wait);
+        for (Subscriber subscriber: job.subscribers) {
+            handler.post(subscriber::start);
+        }
         return true;
     }
 
-    public synchronized boolean calculate(@NonNull CUnit[] input, @Nullable Runnable onStarted, @Nullable Consumer<CResult> onComplete,
-                             @Nullable Consumer<Exception> onException) throws NullPointerException {
-        return calculate(input, getParams(), onStarted, onComplete, onException);
+    /**
+     * Completes a job and posts its result to the subscribers.
+     */
+    private synchronized void finish(@NonNull Job job, @Nullable CResult result, @Nullable Exception exception) {
+        job.state = Job.DONE;
+        job.result = result;
+        job.exception = exception;
+        activeJobs.remove(job.jobKey, job);
+        if (job.key != null) {
+            coalescedJobs.remove(job.key, job);
+        }
+        for (Subscriber subscriber: job.subscribers) {
+            handler.post(() -> subscriber.complete(job));
+        }
+        job.subscribers.clear();
     }
 
+    // -------- METRICS ------------------------------------------------------------------------------------------------
+
     /**
-     * Handles sending {@link Message}s to the {@link Handler} based on the given state
-     *
-     * @param state One of {@link #CALCULATE_STARTED} or {@link #CALCULATE_COMPLETE}.
-     */
-    private void handleState(int state) {
-        switch (state) {
-            case CALCULATE_COMPLETE:
-                synchronized (this) {
-                    handler.obtainMessage(state, currentTask).sendToTarget();
-                    currentTask = null;
-                }
-                break;
-            default:        // CALCULATE_STARTED
-                handler.obtainMessage(state, currentTask).sendToTarget();
+     * @return Number of jobs waiting to start.
+     */
+    public synchronized int getQueueDepth() {
+        int depth = 0;
+        for (int count: waitingCounts) {
+            depth += count;
         }
+        return depth;
+    }
+
+    /**
+     * @param priority Priority of the jobs.
+     * @return Number of jobs with {@code priority} waiting to start.
+     */
+    public synchronized int getQueueDepth(@NonNull Priority priority) {
+        return waitingCounts[priority.ordinal()];
+    }
+
+    /**
+     * @param priority Priority of the jobs.
+     * @return Number of jobs with {@code priority} that started calculating.
+     */
+    public synchronized long getStartedCount(@NonNull Priority priority) {
+        return startedCounts[priority.ordinal()];
+    }
+
+    /**
+     * @param priority Priority of the jobs.
+     * @param unit Unit of the result.
+     * @return Average time between submitting and starting the jobs with {@code priority}, or 0 if none started.
+     */
+    public synchronized long getAverageWaitTime(@NonNull Priority priority, @NonNull TimeUnit unit) {
+        final int index = priority.ordinal();
+        return startedCounts[index] == 0 ? 0 : unit.convert(totalWaitNanos[index] / startedCounts[index], TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param priority Priority of the jobs.
+     * @param unit Unit of the result.
+     * @return Longest time between submitting and starting a job with {@code priority}.
+     */
+    public synchronized long getMaxWaitTime(@NonNull Priority priority, @NonNull TimeUnit unit) {
+        return unit.convert(maxWaitNanos[priority.ordinal()], TimeUnit.NANOSECONDS);
     }
 
 //    /**
@@ -173,73 +427,204 @@ public final class CalculateManager {
 //    }
 
     /**
-     * Contains a callable and the action to execute after result is calculated.
+     * A calculation in the queue of the {@link CalculateManager}, which may be shared by several requests. The
+     * actions of the subscribers are performed on the main thread.
      */
-    private static class CalculateTask {
+    public static final class Job implements Runnable, Comparable<Job> {
 
-        final CalculateManager manager;
-        final Callable<CResult> callable;
+        private static final int WAITING = 0;
+        private static final int CALCULATING = 1;
+        private static final int DONE = 2;
+
+        private final CalculateManager manager;
+        private final JobKey jobKey;
+        private final long sequence;
+        private final long submitTime = System.nanoTime();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        // guarded by manager
+        private Priority priority;
+        private Object key;
+        private int state = WAITING;
+        private CancellationToken token;
+        private CResult result;
+        private Exception exception;
+
+        private Job(@NonNull CalculateManager manager, @NonNull JobKey jobKey, @NonNull Priority priority, long sequence) {
+            this.manager = manager;
+            this.jobKey = jobKey;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
 
-        final CUnit[] input;
-        final CParams params;
-        final Runnable onStarted;
-        final Consumer<CResult> onComplete;
-        final Consumer<Exception> onException;
         /**
-         * The future from the submit method of the executorService, set immediately after submitted.
+         * Adds actions to perform with the result. If the job is done, they are performed immediately (on the main
+         * thread), except {@code onStarted}.
+         *
+         * @param onStarted Action to perform when the calculation starts, or {@code null}.
+         * @param onComplete Action to perform with the result, or {@code null}.
+         * @param onException Action to perform if an exception is thrown during calculation, or {@code null}.
+         * @return This job.
          */
-        Future<CResult> future;
+        @NonNull
+        public Job subscribe(@Nullable Runnable onStarted, @Nullable Consumer<CResult> onComplete,
+                             @Nullable Consumer<Exception> onException) {
+            final Subscriber subscriber = new Subscriber(onStarted, onComplete, onException);
+            synchronized (manager) {
+                if (state != DONE) {
+                    subscribers.add(subscriber);
+                    if (state == CALCULATING) {
+                        manager.handler.post(subscriber::start);
+                    }
+                    return this;
+                }
+            }
+            manager.handler.post(() -> subscriber.complete(this));
+            return this;
+        }
 
-        CalculateTask(@NonNull CUnit[] input, @NonNull CParams params, @Nullable Runnable onStarted,
-                      @Nullable Consumer<CResult> onComplete, @Nullable Consumer<Exception> onException)
-                throws NullPointerException {
-            for (CUnit u: Objects.requireNonNull(input)) {
-                Objects.requireNonNull(u);
+        /**
+         * Cancels the calculation for all of its subscribers, which receive a {@link CancelledException}.
+         */
+        public void cancel() {
+            manager.cancel(this);
+        }
+
+        /**
+         * @return true if the result or exception is known.
+         */
+        public boolean isDone() {
+            synchronized (manager) {
+                return state == DONE;
             }
-            manager = CalculateManager.getInstance();
-            callable = new CalculateCallable(this);
-            this.input = input;
-            this.params = params;
+        }
+
+        @NonNull
+        public Priority getPriority() {
+            synchronized (manager) {
+                return priority;
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!manager.start(this)) {
+                return;
+            }
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            CResult result = null;
+            Exception exception = null;
+            try {
+                result = manager.cache.calculate(jobKey.expression, jobKey.params, token);
+            } catch (Exception e) {
+                exception = e;
+            } catch (Throwable e) {
+                // e.g. StackOverflowError, the job must still finish so it is not shared forever
+                exception = new ExecutionException(e);
+            }
+            manager.finish(this, result, exception);
+        }
+
+        /**
+         * Orders by priority, then by submission. Only used by the queue of the executor.
+         */
+        @Override
+        public int compareTo(@NonNull Job o) {
+            final int compare = priority.compareTo(o.priority);
+            return compare != 0 ? compare : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /**
+     * The actions of a request for a {@link Job}.
+     */
+    private static final class Subscriber {
+
+        final Runnable onStarted;
+        final Consumer<CResult> onComplete;
+        final Consumer<Exception> onException;
+
+        Subscriber(@Nullable Runnable onStarted, @Nullable Consumer<CResult> onComplete,
+                   @Nullable Consumer<Exception> onException) {
             this.onStarted = onStarted;
             this.onComplete = onComplete;
             this.onException = onException;
         }
 
-        void handleState(int state) {
-            manager.handleState(state);
+        void start() {
+            if (onStarted != null) {
+                onStarted.run();
+            }
         }
 
-        boolean isDone() {
-            return future == null || future.isDone();
+        void complete(@NonNull Job job) {
+            if (job.result != null) {
+                if (onComplete != null) {
+                    onComplete.accept(job.result);
+                }
+            } else if (onException != null) {
+                onException.accept(job.exception);
+            }
         }
     }
 
-    private static class CalculateCallable implements Callable<CResult> {
+    /**
+     * An input and parameters, so identical calculations are shared.
+     */
+    private static final class JobKey {
 
-        final CalculateTask task;
+        final CExpression expression;
+        final CParams params;
 
-        CalculateCallable(@NonNull CalculateTask task) {
-            this.task = task;
+        JobKey(@NonNull CUnit[] input, @NonNull CParams params) throws NullPointerException {
+            for (CUnit u: Objects.requireNonNull(input)) {
+                Objects.requireNonNull(u);
+            }
+            this.expression = new CExpression(Arrays.copyOf(input, input.length));
+            this.params = Objects.requireNonNull(params);
         }
 
         @Override
-        public CResult call() throws InterruptedException,
-                VariableException, UndefinedException, SyntaxException, OutOfRangeException {
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-            task.handleState(CALCULATE_STARTED);
-            try {
-                if (Thread.interrupted()) {
-                    throw new InterruptedException();
-                }
-                final CResult result = Calculate.calculate(new CExpression(task.input), task.params);
-                if (Thread.interrupted()) {
-                    throw new InterruptedException();
-                }
-                return result;
-            } finally {
-                // exceptions are thrown after state is handled
-                task.handleState(CALCULATE_COMPLETE);
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof JobKey) {
+                final JobKey that = (JobKey) obj;
+                return expression.equals(that.expression) && params.equals(that.params);
             }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * expression.hashCode() + params.hashCode();
+        }
+    }
+
+    /**
+     * An input to preview and the actions to perform with its result.
+     */
+    private static class PreviewTask {
+
+        final CUnit[] input;
+        final CParams params;
+        final Consumer<CResult> onPreview;
+        final Consumer<Exception> onException;
+        /**
+         * Submits the calculation after the delay.
+         */
+        final Runnable start;
+
+        PreviewTask(@NonNull CUnit[] input, @NonNull CParams params, @NonNull Consumer<CResult> onPreview,
+                    @Nullable Consumer<Exception> onException) throws NullPointerException {
+            for (CUnit u: Objects.requireNonNull(input)) {
+                Objects.requireNonNull(u);
+            }
+            this.input = Arrays.copyOf(input, input.length);
+            this.params = params;
+            this.onPreview = Objects.requireNonNull(onPreview);
+            this.onException = onException;
+            this.start = () -> CalculateManager.getInstance().startPreview(this);
         }
     }
 }
@@ -44,6 +44,7 @@ public class CalculatorDisplayFragment extends Fragment implements HistoryAdapte
     private TextView infoView;
     private ProgressBar progressBar;
     private EditText inputView;
+    private TextView previewView;
     private RecyclerView historyView;
     private HistoryAdapter historyViewAdapter;
 
@@ -64,6 +65,13 @@ public class CalculatorDisplayFragment extends Fragment implements HistoryAdapte
             progressBar.setVisibility(View.INVISIBLE);
         }
     };
+    private final Observer<BigComplex> previewObserver = preview -> {
+        if (preview == null) {
+            previewView.setText(null);
+        } else {
+            previewView.setText(new SpannableStringBuilder("= ").append(CFormat.toConditionalString(preview, getContext())));
+        }
+    };
     private final Observer<CUnit[]> inputObserver = input -> inputView.setText(CFormat.toDisplayString(input));
 
     @Override
@@ -75,6 +83,7 @@ public class CalculatorDisplayFragment extends Fragment implements HistoryAdapte
         model.getHistoryNewToOld().observe(this, historyObserver);
         model.getIsCalculating().observe(this, calculatingObserver);
         model.getInput().observe(this, inputObserver);
+        model.getPreview().observe(this, previewObserver);
     }
 
     @Override
@@ -88,6 +97,7 @@ public class CalculatorDisplayFragment extends Fragment implements HistoryAdapte
         infoView = view.findViewById(R.id.info_text_view);
         progressBar = view.findViewById(R.id.calculate_progress_bar);
         inputView = view.findViewById(R.id.input_edit_text);
+        previewView = view.findViewById(R.id.preview_text_view);
         historyView = view.findViewById(R.id.history_recycler_view);
         historyViewAdapter = new HistoryAdapter(this);
 
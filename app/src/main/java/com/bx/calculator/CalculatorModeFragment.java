@@ -1,31 +1,56 @@
 package com.bx.calculator;
 
+import com.bx.calculator.calc.CExpression;
 import com.bx.calculator.calc.CFormat;
 import com.bx.calculator.calc.CResult;
 import com.bx.calculator.calc.CUnit;
+import com.bx.calculator.calc.Calculate;
+import com.bx.calculator.calc.CancellationToken;
+import com.bx.calculator.calc.GraphSampler;
+import com.bx.calculator.calc.SweepTable;
+import com.bx.calculator.calc.exception.CancelledException;
 import com.bx.calculator.calc.exception.OutOfRangeException;
 import com.bx.calculator.calc.exception.SyntaxException;
 import com.bx.calculator.calc.exception.VariableException;
 import com.bx.calculator.calc.exception.UndefinedException;
+import com.bx.calculator.ui.GraphView;
+import com.bx.calculator.ui.TableAdapter;
+import com.bx.calculator.ui.TableDataSource;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import android.content.Context;
+import android.content.Intent;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.EditText;
+import android.widget.Spinner;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProviders;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
 import androidx.preference.PreferenceManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.snackbar.Snackbar;
 
@@ -36,17 +61,51 @@ import com.google.android.material.snackbar.Snackbar;
 public class CalculatorModeFragment extends Fragment implements CalculatorMode {
 
     public enum Mode {
-        BASIC, SCIENTIFIC
+        BASIC, SCIENTIFIC, GRAPHING, TABLE
     }
 
     private static final String TAG = "CalculatorModeFragment";
     private static final String ARG_MODE = "calculator_mode_fragment_mode";
+    /**
+     * Maximum time in milliseconds to export a table.
+     */
+    private static final long EXPORT_TIMEOUT = 60000;
 
     private Mode mode;
 
     private MainViewModel model;
     private CalculatorDisplayFragment output;
     private InputFragment input;
+    /**
+     * Graph of the input in {@link Mode#GRAPHING}, otherwise {@code null}.
+     */
+    private GraphView graphView;
+    /**
+     * Rows of the table of the input in {@link Mode#TABLE}, otherwise {@code null}.
+     */
+    private TableAdapter tableAdapter;
+    private Spinner tableVariable;
+    private EditText tableStart;
+    private EditText tableStep;
+    private EditText tableRows;
+    /**
+     * Table of the input, or {@code null} if the input or the range is invalid.
+     */
+    private SweepTable table;
+    private LiveData<PagedList<SweepTable.Row>> tablePages;
+    /**
+     * The newest calculation of the equals button until its actions are performed, so the same input is not added to
+     * the history twice.
+     */
+    private CalculateManager.Job calculation;
+    /**
+     * The input of {@link #calculation}.
+     */
+    private CUnit[] calculationInput;
+    /**
+     * Previews every new input, whether it is typed, cleared or chosen from the history.
+     */
+    private final Observer<CUnit[]> inputObserver = this::preview;
 
     /**
      * Create a new instance with {@link #newInstance(Mode)}.
@@ -80,6 +139,11 @@ public class CalculatorModeFragment extends Fragment implements CalculatorMode {
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        if (mode == Mode.GRAPHING) {
+            return inflater.inflate(R.layout.fragment_graphing_mode, container, false);
+        } else if (mode == Mode.TABLE) {
+            return inflater.inflate(R.layout.fragment_table_mode, container, false);
+        }
         return inflater.inflate(R.layout.fragment_calculator_mode, container, false);
     }
 
@@ -95,9 +159,18 @@ public class CalculatorModeFragment extends Fragment implements CalculatorMode {
             case SCIENTIFIC:
                 setInputFragment(InputFragment.Mode.SCIENTIFIC);
                 break;
+            case GRAPHING:
+                setInputFragment(InputFragment.Mode.SCIENTIFIC);
+                graphView = getView().findViewById(R.id.graph_view);
+                break;
+            case TABLE:
+                setInputFragment(InputFragment.Mode.SCIENTIFIC);
+                setupTable();
+                break;
             default:
                 Log.wtf(TAG, "Unknown mode: " + mode);
         }
+        model.getInput().observe(getViewLifecycleOwner(), inputObserver);
     }
 
     @Override
@@ -109,19 +182,23 @@ public class CalculatorModeFragment extends Fragment implements CalculatorMode {
     @Override
     public void execute() {
         final CUnit[] input = model.getInput().getValue();
-        if (input == null || input.length == 0) {
+        if (input == null || input.length == 0 || calculation != null && Arrays.equals(input, calculationInput)) {
             return;
         }
 
+        // an edited input is calculated even if an older one is still calculating, only the newest ends calculating
+        final CUnit[] calculated = Arrays.copyOf(input, input.length);
         final Runnable onStarted = () -> model.setCalculating(true);
         final Consumer<CResult> onComplete = result -> {
-            model.setCalculating(false);
             model.addResultToHistory(result);
-            clear();
+            if (finishCalculation(calculated)) {
+                clear();
+            }
         };
         final Consumer<Exception> onException = exception -> {
-            model.setCalculating(false);
-            if (exception instanceof VariableException) {
+            if (!finishCalculation(calculated)) {
+                return;
+            } else if (exception instanceof VariableException) {
                 Snackbar.make(getView(), R.string.snackbar_error_null_answer, Snackbar.LENGTH_LONG).show();
             } else if (exception instanceof SyntaxException) {
                 Snackbar.make(getView(), R.string.snackbar_error_syntax, Snackbar.LENGTH_LONG).show();
@@ -129,12 +206,33 @@ public class CalculatorModeFragment extends Fragment implements CalculatorMode {
                 Snackbar.make(getView(), R.string.snackbar_error_undefined, Snackbar.LENGTH_LONG).show();
             } else if (exception instanceof OutOfRangeException) {
                 Snackbar.make(getView(), R.string.snackbar_error_out_of_range, Snackbar.LENGTH_LONG).show();
+            } else if (exception instanceof CancelledException) {
+                if (((CancelledException) exception).isTimedOut()) {
+                    Snackbar.make(getView(), R.string.snackbar_error_timed_out, Snackbar.LENGTH_LONG).show();
+                }
             } else {
                 Log.e(TAG, "Unknown calculation exception", exception);
                 Snackbar.make(getView(), R.string.snackbar_error_unknown, Snackbar.LENGTH_LONG).show();
             }
         };
-        CalculateManager.getInstance().calculate(input, onStarted, onComplete, onException);
+        calculationInput = calculated;
+        calculation = CalculateManager.getInstance().calculate(input, onStarted, onComplete, onException);
+    }
+
+    /**
+     * Forgets the calculation of the equals button if it is the newest.
+     *
+     * @param calculated The input of the calculation.
+     * @return true if it was the newest calculation.
+     */
+    private boolean finishCalculation(@NonNull CUnit[] calculated) {
+        if (calculated != calculationInput) {
+            return false;
+        }
+        calculation = null;
+        calculationInput = null;
+        model.setCalculating(false);
+        return true;
     }
 
     @Override
@@ -187,7 +285,7 @@ public class CalculatorModeFragment extends Fragment implements CalculatorMode {
 
     @Override
     public void changeInputMode() {
-        if (mode == Mode.SCIENTIFIC && input != null) {
+        if ((mode == Mode.SCIENTIFIC || mode == Mode.GRAPHING || mode == Mode.TABLE) && input != null) {
             if (input.getMode() == InputFragment.Mode.SCIENTIFIC) {
                 setInputFragment(InputFragment.Mode.SCIENTIFIC2);
             } else if (input.getMode() == InputFragment.Mode.SCIENTIFIC2) {
@@ -196,6 +294,172 @@ public class CalculatorModeFragment extends Fragment implements CalculatorMode {
         }
     }
 
+    /**
+     * Calculates a tentative answer of the input in the background and shows it, or hides it if the input is
+     * incomplete, and redraws the graph and the table. A newer input cancels the previous preview.
+     *
+     * @param input New input, or {@code null} if it is cleared.
+     */
+    private void preview(@Nullable CUnit[] input) {
+        graph(input);
+        table(input);
+        final CalculateManager manager = CalculateManager.getInstance();
+        if (input == null || input.length == 0) {
+            manager.cancelPreview();
+            model.setPreview(null);
+            return;
+        }
+        manager.preview(input, result -> {
+            if (model != null) {
+                model.setPreview(result.getAnswer());
+            }
+        }, exception -> {
+            if (model != null) {
+                model.setPreview(null);
+            }
+        });
+    }
+
+    /**
+     * Draws the input as a function of {@link CUnit#X} in {@link Mode#GRAPHING}, or only the axes if the input is
+     * empty or incomplete.
+     *
+     * @param input New input, or {@code null} if it is cleared.
+     */
+    private void graph(@Nullable CUnit[] input) {
+        if (graphView == null) {
+            return;
+        }
+        GraphSampler sampler = null;
+        if (input != null && input.length > 0) {
+            try {
+                sampler = new GraphSampler(Calculate.compile(new CExpression(input)),
+                        CalculateManager.getInstance().getParams(), CUnit.X);
+            } catch (ArithmeticException e) {
+                // incomplete input, eg. syntax error
+            }
+        }
+        graphView.setSampler(sampler);
+    }
+
+    /**
+     * Sets up the list and the range of the table in {@link Mode#TABLE}. Changing the range makes a new table.
+     */
+    private void setupTable() {
+        final View view = getView();
+        tableAdapter = new TableAdapter();
+        final RecyclerView tableList = view.findViewById(R.id.table_list);
+        tableList.setAdapter(tableAdapter);
+
+        final ArrayAdapter<CUnit> variables =
+                new ArrayAdapter<>(getContext(), android.R.layout.simple_spinner_item, CUnit.variables);
+        variables.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        tableVariable = view.findViewById(R.id.table_variable);
+        tableVariable.setAdapter(variables);
+        tableVariable.setSelection(CUnit.variables.indexOf(CUnit.X));
+        tableVariable.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                table(model.getInput().getValue());
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {}
+        });
+
+        final TextWatcher rangeWatcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                table(model.getInput().getValue());
+            }
+        };
+        tableStart = view.findViewById(R.id.table_start);
+        tableStep = view.findViewById(R.id.table_step);
+        tableRows = view.findViewById(R.id.table_rows);
+        tableStart.addTextChangedListener(rangeWatcher);
+        tableStep.addTextChangedListener(rangeWatcher);
+        tableRows.addTextChangedListener(rangeWatcher);
+        view.findViewById(R.id.table_export).setOnClickListener(v -> exportTable());
+    }
+
+    /**
+     * Shows the table of the input in {@link Mode#TABLE}, or an empty table if the input or the range is invalid.
+     * The rows are calculated a page at a time as the list is scrolled.
+     *
+     * @param input New input, or {@code null} if it is cleared.
+     */
+    private void table(@Nullable CUnit[] input) {
+        if (tableAdapter == null) {
+            return;
+        }
+        if (tablePages != null) {
+            tablePages.removeObservers(getViewLifecycleOwner());
+            tablePages = null;
+        }
+        table = null;
+        if (input != null && input.length > 0) {
+            try {
+                table = new SweepTable(Calculate.compile(new CExpression(input)),
+                        CalculateManager.getInstance().getParams(), (CUnit) tableVariable.getSelectedItem(),
+                        new BigDecimal(tableStart.getText().toString()), new BigDecimal(tableStep.getText().toString()),
+                        Integer.parseInt(tableRows.getText().toString()));
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                // incomplete input or range, eg. syntax error or empty step
+            }
+        }
+        if (table == null) {
+            tableAdapter.submitList(null);
+            return;
+        }
+        tablePages = new LivePagedListBuilder<>(new TableDataSource.Factory(table), TableDataSource.CONFIG).build();
+        tablePages.observe(getViewLifecycleOwner(), tableAdapter::submitList);
+    }
+
+    /**
+     * Calculates every row of the table in the background and shares it as comma separated values.
+     */
+    private void exportTable() {
+        final SweepTable table = this.table;
+        if (table == null) {
+            Snackbar.make(getView(), R.string.snackbar_error_table_range, Snackbar.LENGTH_LONG).show();
+            return;
+        }
+        final int sigfig = PreferenceManager.getDefaultSharedPreferences(getActivity()).getInt("output_sigfig", 10);
+        final View view = getView();
+        CompletableFuture.supplyAsync(() -> {
+            final StringBuilder csv = new StringBuilder();
+            try {
+                table.export(csv, sigfig, CancellationToken.withTimeout(EXPORT_TIMEOUT, TimeUnit.MILLISECONDS));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return csv.toString();
+        }).whenComplete((csv, exception) -> view.post(() -> {
+            if (!isAdded()) {
+                return;
+            }
+            if (exception != null) {
+                if (exception.getCause() instanceof CancelledException) {
+                    Snackbar.make(view, R.string.snackbar_error_timed_out, Snackbar.LENGTH_LONG).show();
+                } else {
+                    Log.e(TAG, "Table export exception", exception);
+                    Snackbar.make(view, R.string.snackbar_error_unknown, Snackbar.LENGTH_LONG).show();
+                }
+                return;
+            }
+            final Intent intent = new Intent(Intent.ACTION_SEND);
+            intent.setType("text/csv");
+            intent.putExtra(Intent.EXTRA_TEXT, csv);
+            startActivity(Intent.createChooser(intent, getString(R.string.table_export_title)));
+        }));
+    }
+
     private void setInputFragment(@NonNull InputFragment.Mode inputMode) {
         input = InputFragment.newInstance(inputMode);
         getChildFragmentManager().beginTransaction().replace(R.id.input_container, input).commit();
@@ -52,6 +52,7 @@ public class MainActivity extends AppCompatActivity
     public static final int MODE_BASIC = 0;
     public static final int MODE_SCIENTIFIC = 1;
     public static final int MODE_GRAPHING = 2;
+    public static final int MODE_TABLE = 3;
 
     private static final String PREF_CALCULATOR_MODE = "com.bx.calculator.calculator_mode";
 
@@ -96,6 +97,9 @@ public class MainActivity extends AppCompatActivity
             case MODE_GRAPHING:
                 navigationView.setCheckedItem(R.id.nav_modes_graphing);
                 break;
+            case MODE_TABLE:
+                navigationView.setCheckedItem(R.id.nav_modes_table);
+                break;
             default:
                 Log.wtf(TAG, "Unrecognised mode: " + calculatorMode);
         }
@@ -105,6 +109,9 @@ public class MainActivity extends AppCompatActivity
         // TODO if statement (or more elegant solution)
         CalculateManager.getInstance().setParamsAngleUnit(
                 AngleUnit.valueOf(PreferenceManager.getDefaultSharedPreferences(this).getString("calculator_angle_unit", "RAD")));
+        // only the displayed significant figures and guard digits are calculated
+        CalculateManager.getInstance().setParamsPrecision(CParams.precisionForSigfig(
+                PreferenceManager.getDefaultSharedPreferences(this).getInt("output_sigfig", 10)));
         PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(this);
         model.getAllVariables().observe(this, variables -> {
             final CalculateManager manager = CalculateManager.getInstance();
@@ -196,6 +203,11 @@ public class MainActivity extends AppCompatActivity
                     setCalculatorMode(MODE_GRAPHING);
                 }
                 break;
+            case R.id.nav_modes_table:
+                if (!item.isChecked()) {
+                    setCalculatorMode(MODE_TABLE);
+                }
+                break;
             case R.id.nav_settings:
                 startActivity(new Intent(this, SettingsActivity.class));
                 break;
@@ -221,6 +233,10 @@ public class MainActivity extends AppCompatActivity
                     CalculateManager.getInstance().setParamsAngleUnit(AngleUnit.valueOf(angleUnit));
                 }
                 break;
+            case "output_sigfig":
+                CalculateManager.getInstance().setParamsPrecision(
+                        CParams.precisionForSigfig(sharedPreferences.getInt(key, 10)));
+                break;
         }
     }
 
@@ -475,7 +491,7 @@ public class MainActivity extends AppCompatActivity
      * Sets the calculator mode: replace fragment, then save the new mode.
      *
      * @param mode One of {@link #MODE_BASIC}, {@link #MODE_SCIENTIFIC},
-     * {@link #MODE_GRAPHING}.
+     * {@link #MODE_GRAPHING}, {@link #MODE_TABLE}.
      */
     protected void setCalculatorMode(int mode) throws IllegalArgumentException {
         final Fragment fragment;
@@ -487,7 +503,10 @@ public class MainActivity extends AppCompatActivity
                 fragment = CalculatorModeFragment.newInstance(CalculatorModeFragment.Mode.SCIENTIFIC);
                 break;
             case MODE_GRAPHING:
-                fragment = CalculatorModeFragment.newInstance(CalculatorModeFragment.Mode.SCIENTIFIC);
+                fragment = CalculatorModeFragment.newInstance(CalculatorModeFragment.Mode.GRAPHING);
+                break;
+            case MODE_TABLE:
+                fragment = CalculatorModeFragment.newInstance(CalculatorModeFragment.Mode.TABLE);
                 break;
             default:
                 Log.wtf(TAG, "Unknown mode: " + mode);
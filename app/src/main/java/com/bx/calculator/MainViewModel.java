@@ -4,6 +4,7 @@ import android.app.Application;
 
 import com.bx.calculator.calc.CResult;
 import com.bx.calculator.calc.CUnit;
+import com.bx.calculator.calc.math.MathConstants;
 import com.bx.calculator.db.Result;
 import com.bx.calculator.db.Variable;
 
@@ -27,10 +28,16 @@ public class MainViewModel extends AndroidViewModel {
     private final Repository repository;
     private final MutableLiveData<CUnit[]> input = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isCalculating = new MutableLiveData<>();
+    /**
+     * Tentative answer of the input while it is being typed.
+     */
+    private final MutableLiveData<BigComplex> preview = new MutableLiveData<>();
     private final LiveData<BigComplex> answerLiveData;
 
     public MainViewModel(@NonNull Application application) {
         super(application);
+        // calculate π, e, ... in the background before the first calculation needs them
+        MathConstants.warmUp();
         repository = Repository.getInstance(application);
         setInput(new CUnit[] {});
         setCalculating(false);
@@ -62,6 +69,15 @@ public class MainViewModel extends AndroidViewModel {
         isCalculating.setValue(calculating);
     }
 
+    @NonNull
+    public LiveData<BigComplex> getPreview() {
+        return preview;
+    }
+
+    public void setPreview(@Nullable BigComplex preview) {
+        this.preview.setValue(preview);
+    }
+
     @NonNull
     public LiveData<BigComplex> getAnswer() {
         return answerLiveData;
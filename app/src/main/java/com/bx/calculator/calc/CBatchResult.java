@@ -0,0 +1,65 @@
+package com.bx.calculator.calc;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The outcome of one expression of {@link Calculate#calculateAll(java.util.List, CParams)}: either a {@link CResult}
+ * or the exception thrown while calculating it, eg. a
+ * {@link com.bx.calculator.calc.exception.SyntaxException}.
+ */
+public final class CBatchResult {
+
+    private final int index;
+    private final CExpression expression;
+    private final CResult result;
+    private final RuntimeException exception;
+
+    CBatchResult(int index, @NonNull CExpression expression, @Nullable CResult result,
+                 @Nullable RuntimeException exception) {
+        this.index = index;
+        this.expression = expression;
+        this.result = result;
+        this.exception = exception;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CBatchResult[index=%d, result=%s, exception=%s]", index, result, exception);
+    }
+
+    /**
+     * @return Index of the expression in the batch.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    @NonNull
+    public CExpression getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return true if the expression was calculated, false if an exception was thrown.
+     */
+    public boolean isSuccessful() {
+        return result != null;
+    }
+
+    /**
+     * @return Result of the expression, or {@code null} if an exception was thrown.
+     */
+    @Nullable
+    public CResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return Exception thrown while calculating the expression, or {@code null} if it was calculated.
+     */
+    @Nullable
+    public RuntimeException getException() {
+        return exception;
+    }
+}
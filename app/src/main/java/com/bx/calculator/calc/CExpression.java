@@ -85,6 +85,11 @@ public class CExpression implements Iterable<CUnit> {
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return expression.hashCode();
+    }
+
     public CUnit get(int index) {
         return expression.get(index);
     }
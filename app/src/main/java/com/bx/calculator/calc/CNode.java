@@ -0,0 +1,837 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.exception.OutOfRangeException;
+import com.bx.calculator.calc.exception.UndefinedException;
+import com.bx.calculator.calc.exception.VariableException;
+import com.bx.calculator.calc.math.AngleUnit;
+import com.bx.calculator.calc.math.Maffs;
+
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * A node in the immutable operation tree of a {@link CompiledExpression}. Evaluating a node evaluates its
+ * children first, then applies its own operation with {@link Calculate#calculateOperator(int, BigComplex, BigComplex, java.math.MathContext)}
+ * or {@link Calculate#calculateFunction(int, BigComplex, com.bx.calculator.calc.math.AngleUnit, java.math.MathContext)},
+ * with the precision of the {@link CParams}.
+ * <p>Nodes are equal if they have the same content, so the results of functions and operators can be reused by a
+ * {@link SubresultCache} when the same subexpression is in another expression, eg. after an edit.</p>
+ * <p>The {@link CancellationToken} of the thread is checked before every operation.</p>
+ * <p>{@link Constant}, {@link Power} and {@link Polynomial} are made by {@link COptimizer} from the tree of the
+ * {@link CParser}, they have the same results with fewer or cheaper operations.</p>
+ * <p>A node that is {@link #rational} is first evaluated exactly with {@link Rational}s, and the result is rounded
+ * once, eg. {@code 1 ÷ 3 × 3} is exactly 1. It is evaluated with {@link BigComplex}s if a value is not rational,
+ * eg. a complex variable.</p>
+ */
+abstract class CNode {
+
+    private static final CUnit[] NO_VARIABLES = new CUnit[0];
+
+    /**
+     * Content hash, calculated when the node is created.
+     */
+    private final int hash;
+    /**
+     * Variables in this node and its children.
+     */
+    final CUnit[] variables;
+    /**
+     * Whether this node and its children only add, subtract, multiply, divide and take integer powers, so
+     * {@link #evaluateRational(CParams)} can be exact.
+     */
+    final boolean rational;
+
+    CNode(int hash, @NonNull CUnit[] variables, boolean rational) {
+        this.hash = hash;
+        this.variables = variables;
+        this.rational = rational;
+    }
+
+    /**
+     * @param params Parameters of the calculation.
+     * @return Result of this node.
+     * @throws VariableException A variable in this node does not have a value in {@code params}.
+     * @throws UndefinedException Result is undefined.
+     * @throws OutOfRangeException Result is out of range.
+     * @throws com.bx.calculator.calc.exception.CancelledException The calculation is cancelled.
+     */
+    @NonNull
+    final BigComplex evaluate(@NonNull CParams params) throws VariableException, UndefinedException, OutOfRangeException {
+        return evaluate(params, null);
+    }
+
+    /**
+     * @param params Parameters of the calculation.
+     * @param cache Results of subexpressions to reuse and store, or {@code null}.
+     * @return Result of this node.
+     * @throws VariableException A variable in this node does not have a value in {@code params}.
+     * @throws UndefinedException Result is undefined.
+     * @throws OutOfRangeException Result is out of range.
+     * @throws com.bx.calculator.calc.exception.CancelledException The calculation is cancelled.
+     */
+    @NonNull
+    abstract BigComplex evaluate(@NonNull CParams params, @Nullable SubresultCache cache)
+            throws VariableException, UndefinedException, OutOfRangeException;
+
+    /**
+     * Evaluates this node with {@code double}s. The error bound of the result is stored in
+     * {@link DoubleEvaluator#error}.
+     *
+     * @param evaluator Evaluator with the parameters of the calculation.
+     * @return Result of this node, or {@link Double#NaN} if it can not be evaluated with {@code double}s.
+     */
+    abstract double evaluateDouble(@NonNull DoubleEvaluator evaluator);
+
+    /**
+     * Evaluates this node exactly. Only called if the node is {@link #rational}.
+     *
+     * @param params Parameters of the calculation.
+     * @return Exact result of this node, or {@code null} if a value is not rational, eg. a complex variable, or is
+     * too big for a {@link Rational}.
+     * @throws VariableException A variable in this node does not have a value in {@code params}.
+     * @throws UndefinedException Result is undefined, eg. a division by 0.
+     * @throws com.bx.calculator.calc.exception.CancelledException The calculation is cancelled.
+     */
+    @Nullable
+    abstract Rational evaluateRational(@NonNull CParams params) throws VariableException, UndefinedException;
+
+    /**
+     * @return The result of {@link #evaluateRational(CParams)} rounded to the precision of {@code params}, or
+     * {@code null} if this node is not {@link #rational} or the result is not rational.
+     */
+    @Nullable
+    final BigComplex evaluateExact(@NonNull CParams params) throws VariableException, UndefinedException {
+        if (!rational) {
+            return null;
+        }
+        final Rational exact = evaluateRational(params);
+        return exact == null ? null : BigComplex.valueOf(exact.toBigDecimal(params.getMathContext()));
+    }
+
+    @Override
+    public final int hashCode() {
+        return hash;
+    }
+
+    /**
+     * @return Variables of all the nodes, without duplicates.
+     */
+    @NonNull
+    private static CUnit[] variables(@NonNull CNode... nodes) {
+        Set<CUnit> variables = null;
+        for (CNode node: nodes) {
+            if (node.variables.length > 0) {
+                if (variables == null) {
+                    variables = new LinkedHashSet<>();
+                }
+                variables.addAll(Arrays.asList(node.variables));
+            }
+        }
+        return variables == null ? NO_VARIABLES : variables.toArray(NO_VARIABLES);
+    }
+
+    /**
+     * @return Whether the node is an integer, or a signed integer, which is rational as an exponent.
+     */
+    private static boolean isInteger(@NonNull CNode node) {
+        if (node instanceof Constant) {
+            node = ((Constant) node).node;
+        }
+        while (node instanceof Function && (((Function) node).function == Opcodes.MINUS
+                || ((Function) node).function == Opcodes.PLUS)) {
+            node = ((Function) node).argument;
+        }
+        return node instanceof Value && ((Value) node).exact != null && ((Value) node).exact.isInteger();
+    }
+
+    /**
+     * A number that is known when the expression is compiled, eg. digits or a constant.
+     */
+    static final class Value extends CNode {
+
+        final BigComplex value;
+        /**
+         * The value as a {@link Rational}, or {@code null} if it is complex or too big.
+         */
+        @Nullable
+        final Rational exact;
+        private final double doubleValue;
+        private final double doubleError;
+
+        Value(@NonNull BigComplex value) {
+            this(value, value.isReal() ? Rational.valueOf(value.re) : null);
+        }
+
+        private Value(@NonNull BigComplex value, @Nullable Rational exact) {
+            super(value.hashCode(), NO_VARIABLES, exact != null);
+            this.value = value;
+            this.exact = exact;
+            this.doubleValue = DoubleEvaluator.toDouble(value);
+            this.doubleError = DoubleEvaluator.conversionError(value, doubleValue);
+        }
+
+        @NonNull
+        @Override
+        BigComplex evaluate(@NonNull CParams params, @Nullable SubresultCache cache) {
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || obj instanceof Value && value.equals(((Value) obj).value);
+        }
+
+        @Override
+        double evaluateDouble(@NonNull DoubleEvaluator evaluator) {
+            return evaluator.value(doubleValue, doubleError);
+        }
+
+        @Nullable
+        @Override
+        Rational evaluateRational(@NonNull CParams params) {
+            return exact;
+        }
+    }
+
+    /**
+     * A {@link CUnit#isVariable()} which is replaced by its value in {@link CParams} when evaluated.
+     */
+    static final class Variable extends CNode {
+
+        final CUnit variable;
+
+        Variable(@NonNull CUnit variable) {
+            super(variable.hashCode(), new CUnit[] {variable}, true);
+            this.variable = variable;
+        }
+
+        @NonNull
+        @Override
+        BigComplex evaluate(@NonNull CParams params, @Nullable SubresultCache cache) throws VariableException {
+            final BigComplex value = params.getValue(variable);
+            if (value == null) {
+                throw new VariableException();
+            }
+            return value;
+        }
+
+        @Override
+        double evaluateDouble(@NonNull DoubleEvaluator evaluator) {
+            return evaluator.variable(variable);
+        }
+
+        @Nullable
+        @Override
+        Rational evaluateRational(@NonNull CParams params) throws VariableException {
+            final BigComplex value = params.getValue(variable);
+            if (value == null) {
+                throw new VariableException();
+            }
+            return value.isReal() ? Rational.valueOf(value.re) : null;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || obj instanceof Variable && variable.equals(((Variable) obj).variable);
+        }
+    }
+
+    /**
+     * A {@link CUnit#isPreFunction()}, {@link CUnit#isPostFunction()} or a sign applied to one argument.
+     */
+    static final class Function extends CNode {
+
+        /**
+         * Code from {@link Opcodes}.
+         */
+        final int function;
+        final CNode argument;
+
+        Function(int function, @NonNull CNode argument) {
+            super(31 * function + argument.hashCode(), argument.variables,
+                    argument.rational && isRational(function));
+            this.function = function;
+            this.argument = argument;
+        }
+
+        /**
+         * @return Whether the function of a rational argument is rational.
+         */
+        private static boolean isRational(int function) {
+            switch (function) {
+                case Opcodes.PLUS:
+                case Opcodes.MINUS:
+                case Opcodes.ABS:
+                case Opcodes.CONJ:
+                case Opcodes.SQUARED:
+                case Opcodes.CUBED:
+                case Opcodes.INVERSE:
+                case Opcodes.PERCENT:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @NonNull
+        @Override
+        BigComplex evaluate(@NonNull CParams params, @Nullable SubresultCache cache)
+                throws VariableException, UndefinedException, OutOfRangeException {
+            final BigComplex cached = cache == null ? null : cache.get(this, params);
+            if (cached != null) {
+                return cached;
+            }
+            BigComplex result = evaluateExact(params);
+            if (result == null) {
+                final BigComplex value = argument.evaluate(params, cache);
+                CancellationToken.checkCurrent();
+                result = Calculate.calculateFunction(function, value, params.getAngleUnit(), params.getMathContext());
+            }
+            if (cache != null) {
+                cache.put(this, params, result);
+            }
+            return result;
+        }
+
+        @Override
+        double evaluateDouble(@NonNull DoubleEvaluator evaluator) {
+            return evaluator.function(function, argument.evaluateDouble(evaluator));
+        }
+
+        @Nullable
+        @Override
+        Rational evaluateRational(@NonNull CParams params) throws VariableException, UndefinedException {
+            final Rational value = argument.evaluateRational(params);
+            if (value == null) {
+                return null;
+            }
+            CancellationToken.checkCurrent();
+            switch (function) {
+                case Opcodes.PLUS:
+                case Opcodes.CONJ:
+                    return value;
+                case Opcodes.MINUS:
+                    return value.negate();
+                case Opcodes.ABS:
+                    return value.abs();
+                case Opcodes.SQUARED:
+                    return value.pow(2);
+                case Opcodes.CUBED:
+                    return value.pow(3);
+                case Opcodes.INVERSE:
+                    return value.inverse();
+                case Opcodes.PERCENT:
+                    return value.scaleByPowerOfTen(-2);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Function) {
+                final Function that = (Function) obj;
+                return hashCode() == that.hashCode() && function == that.function && argument.equals(that.argument);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * {@link CUnit#isOperator()}s of the same precedence applied from left to right, eg. 1+2-3. Evaluated
+     * iteratively, so long expressions do not make deep trees.
+     */
+    static final class Operator extends CNode {
+
+        /**
+         * Codes from {@link Opcodes}.
+         */
+        final int[] operators;
+        final CNode[] operands;
+
+        /**
+         * @param operators Operators, applied from left to right.
+         * @param operands Operands, one more than {@code operators}.
+         * @throws IllegalArgumentException The number of operands is not one more than the number of operators.
+         */
+        Operator(@NonNull int[] operators, @NonNull CNode[] operands) throws IllegalArgumentException {
+            super(31 * Arrays.hashCode(operators) + Arrays.hashCode(operands), variables(operands),
+                    isRational(operators, operands));
+            if (operands.length != operators.length + 1) {
+                throw new IllegalArgumentException();
+            }
+            this.operators = operators;
+            this.operands = operands;
+        }
+
+        /**
+         * @return Whether every operand is rational and every operator of rationals is rational. The exponents of
+         * {@link Opcodes#POWER} and {@link Opcodes#EXP} must be integers.
+         */
+        private static boolean isRational(@NonNull int[] operators, @NonNull CNode[] operands) {
+            if (operands.length != operators.length + 1 || !operands[0].rational) {
+                return false;
+            }
+            for (int i = 0; i < operators.length; i++) {
+                final CNode operand = operands[i + 1];
+                switch (operators[i]) {
+                    case Opcodes.PLUS:
+                    case Opcodes.MINUS:
+                    case Opcodes.TIMES:
+                    case Opcodes.DIVIDE:
+                        if (!operand.rational) {
+                            return false;
+                        }
+                        break;
+                    case Opcodes.POWER:
+                    case Opcodes.EXP:
+                        if (!isInteger(operand)) {
+                            return false;
+                        }
+                        break;
+                    default:
+                        return false;
+                }
+            }
+            return true;
+        }
+
+        @NonNull
+        @Override
+        BigComplex evaluate(@NonNull CParams params, @Nullable SubresultCache cache)
+                throws VariableException, UndefinedException, OutOfRangeException {
+            final BigComplex cached = cache == null ? null : cache.get(this, params);
+            if (cached != null) {
+                return cached;
+            }
+            BigComplex result = evaluateExact(params);
+            if (result == null) {
+                result = evaluateOperations(params, cache);
+            }
+            if (cache != null) {
+                cache.put(this, params, result);
+            }
+            return result;
+        }
+
+        @NonNull
+        private BigComplex evaluateOperations(@NonNull CParams params, @Nullable SubresultCache cache)
+                throws VariableException, UndefinedException, OutOfRangeException {
+            BigComplex result = operands[0].evaluate(params, cache);
+            for (int i = 0; i < operators.length; i++) {
+                final CNode node = operands[i + 1];
+                if (operators[i] == Opcodes.DIVIDE && node instanceof Constant) {
+                    // multiply by the stored reciprocal
+                    final BigComplex reciprocal = ((Constant) node).reciprocal(params, cache);
+                    CancellationToken.checkCurrent();
+                    result = Calculate.calculateOperator(Opcodes.TIMES, result, reciprocal, params.getMathContext());
+                    continue;
+                }
+                final BigComplex operand = node.evaluate(params, cache);
+                CancellationToken.checkCurrent();
+                result = Calculate.calculateOperator(operators[i], result, operand, params.getMathContext());
+            }
+            return result;
+        }
+
+        @Override
+        double evaluateDouble(@NonNull DoubleEvaluator evaluator) {
+            double result = operands[0].evaluateDouble(evaluator);
+            for (int i = 0; i < operators.length && !Double.isNaN(result); i++) {
+                final double error = evaluator.error;
+                result = evaluator.operator(operators[i], result, error, operands[i + 1].evaluateDouble(evaluator));
+            }
+            return result;
+        }
+
+        @Nullable
+        @Override
+        Rational evaluateRational(@NonNull CParams params) throws VariableException, UndefinedException {
+            Rational result = operands[0].evaluateRational(params);
+            for (int i = 0; i < operators.length && result != null; i++) {
+                final Rational operand = operands[i + 1].evaluateRational(params);
+                if (operand == null) {
+                    return null;
+                }
+                CancellationToken.checkCurrent();
+                switch (operators[i]) {
+                    case Opcodes.PLUS:
+                        result = result.add(operand);
+                        break;
+                    case Opcodes.MINUS:
+                        result = result.subtract(operand);
+                        break;
+                    case Opcodes.TIMES:
+                        result = result.multiply(operand);
+                        break;
+                    case Opcodes.DIVIDE:
+                        result = result.divide(operand);
+                        break;
+                    case Opcodes.POWER:
+                    case Opcodes.EXP:
+                        // a bigger exponent is out of range, which is left to BigComplex
+                        final Integer exponent = operand.intValue();
+                        if (exponent == null) {
+                            return null;
+                        }
+                        result = operators[i] == Opcodes.POWER ? result.pow(exponent)
+                                : result.scaleByPowerOfTen(exponent);
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Operator) {
+                final Operator that = (Operator) obj;
+                return hashCode() == that.hashCode() && Arrays.equals(operators, that.operators)
+                        && Arrays.equals(operands, that.operands);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * <p>A subexpression without variables, eg. {@code 2π} or {@code √2}. Its result depends only on the precision
+     * and the angle unit, so the last result is stored and returned while they are the same, eg. for every point of
+     * a graph or row of a table.</p>
+     * <p>The reciprocal is also stored, so dividing by a constant is a multiplication (see {@link Operator}). It has
+     * {@link #RECIPROCAL_GUARD_DIGITS} more digits, so the rounded product is the same as the rounded quotient,
+     * eg. {@code 6 ÷ 3} is exactly {@code 2}.</p>
+     */
+    static final class Constant extends CNode {
+
+        /**
+         * Digits of the reciprocal more than the precision of the calculation.
+         */
+        static final int RECIPROCAL_GUARD_DIGITS = 16;
+
+        final CNode node;
+        private volatile Folded folded;
+        /**
+         * Result of {@link #evaluateRational(CParams)}, which does not depend on the parameters, and whether it is
+         * known to be {@code null}.
+         */
+        private volatile Rational exact;
+        private volatile boolean inexact;
+        /**
+         * Results of {@link #evaluateDouble(DoubleEvaluator)} and their errors, for each angle unit.
+         */
+        private volatile double[] doubleRad;
+        private volatile double[] doubleDeg;
+
+        Constant(@NonNull CNode node) {
+            super(31 * node.hashCode() + 1, NO_VARIABLES, node.rational);
+            this.node = node;
+        }
+
+        @NonNull
+        @Override
+        BigComplex evaluate(@NonNull CParams params, @Nullable SubresultCache cache)
+                throws UndefinedException, OutOfRangeException {
+            return fold(params, params.getPrecision(), cache).value;
+        }
+
+        /**
+         * @param precision Precision of the result, eg. more than the precision of {@code params}.
+         * @return Result with the precision.
+         */
+        @NonNull
+        BigComplex evaluate(@NonNull CParams params, int precision, @Nullable SubresultCache cache)
+                throws UndefinedException, OutOfRangeException {
+            return fold(params, precision, cache).value;
+        }
+
+        /**
+         * @return Reciprocal of the result, with {@link #RECIPROCAL_GUARD_DIGITS} more digits than the precision.
+         * @throws UndefinedException The result is 0.
+         */
+        @NonNull
+        BigComplex reciprocal(@NonNull CParams params, @Nullable SubresultCache cache)
+                throws UndefinedException, OutOfRangeException {
+            final Folded folded = fold(params, params.getPrecision(), cache);
+            BigComplex reciprocal = folded.reciprocal;
+            if (reciprocal == null) {
+                final MathContext mc = params.getMathContext();
+                reciprocal = Maffs.inverse(folded.value,
+                        new MathContext(mc.getPrecision() + RECIPROCAL_GUARD_DIGITS, mc.getRoundingMode()));
+                folded.reciprocal = reciprocal;
+            }
+            return reciprocal;
+        }
+
+        @NonNull
+        private Folded fold(@NonNull CParams params, int precision, @Nullable SubresultCache cache)
+                throws UndefinedException, OutOfRangeException {
+            Folded folded = this.folded;
+            if (folded == null || folded.angleUnit != params.getAngleUnit() || folded.precision != precision) {
+                folded = new Folded(params.getAngleUnit(), precision,
+                        node.evaluate(params.withPrecision(precision), cache));
+                this.folded = folded;
+            }
+            return folded;
+        }
+
+        @Override
+        double evaluateDouble(@NonNull DoubleEvaluator evaluator) {
+            final boolean degrees = evaluator.getAngleUnit() == AngleUnit.DEG;
+            double[] result = degrees ? doubleDeg : doubleRad;
+            if (result == null) {
+                final double value = node.evaluateDouble(evaluator);
+                result = new double[] {value, evaluator.error};
+                if (degrees) {
+                    doubleDeg = result;
+                } else {
+                    doubleRad = result;
+                }
+            }
+            return evaluator.value(result[0], result[1]);
+        }
+
+        @Nullable
+        @Override
+        Rational evaluateRational(@NonNull CParams params) throws VariableException, UndefinedException {
+            Rational exact = this.exact;
+            if (exact == null && !inexact) {
+                exact = node.evaluateRational(params);
+                this.exact = exact;
+                inexact = exact == null;
+            }
+            return exact;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || obj instanceof Constant && node.equals(((Constant) obj).node);
+        }
+
+        /**
+         * A result and the parameters it was calculated with.
+         */
+        private static final class Folded {
+
+            final AngleUnit angleUnit;
+            final int precision;
+            final BigComplex value;
+            volatile BigComplex reciprocal;
+
+            Folded(@NonNull AngleUnit angleUnit, int precision, @NonNull BigComplex value) {
+                this.angleUnit = angleUnit;
+                this.precision = precision;
+                this.value = value;
+            }
+        }
+    }
+
+    /**
+     * A power with a small integer exponent, eg. {@code X^2} or {@code X³}, calculated by multiplication with
+     * {@link Maffs#pow(BigComplex, int, MathContext)} instead of logarithms.
+     */
+    static final class Power extends CNode {
+
+        final CNode base;
+        final int exponent;
+
+        Power(@NonNull CNode base, int exponent) {
+            super(31 * (31 * Opcodes.POWER + exponent) + base.hashCode(), base.variables, base.rational);
+            this.base = base;
+            this.exponent = exponent;
+        }
+
+        @NonNull
+        @Override
+        BigComplex evaluate(@NonNull CParams params, @Nullable SubresultCache cache)
+                throws VariableException, UndefinedException, OutOfRangeException {
+            final BigComplex cached = cache == null ? null : cache.get(this, params);
+            if (cached != null) {
+                return cached;
+            }
+            BigComplex result = evaluateExact(params);
+            if (result == null) {
+                final BigComplex value = base.evaluate(params, cache);
+                CancellationToken.checkCurrent();
+                final MathContext mc = params.getMathContext();
+                result = Calculate.requireInRange(Maffs.round(Maffs.pow(value, exponent, mc), mc));
+            }
+            if (cache != null) {
+                cache.put(this, params, result);
+            }
+            return result;
+        }
+
+        @Override
+        double evaluateDouble(@NonNull DoubleEvaluator evaluator) {
+            return evaluator.power(base.evaluateDouble(evaluator), exponent);
+        }
+
+        @Nullable
+        @Override
+        Rational evaluateRational(@NonNull CParams params) throws VariableException, UndefinedException {
+            final Rational value = base.evaluateRational(params);
+            if (value == null) {
+                return null;
+            }
+            CancellationToken.checkCurrent();
+            return value.pow(exponent);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Power) {
+                final Power that = (Power) obj;
+                return exponent == that.exponent && base.equals(that.base);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A polynomial of one variable, eg. {@code 3X^2 - 2X + 1}, calculated with Horner's method:
+     * {@code (3X - 2)X + 1}. The coefficients are {@link Constant}s. The coefficients and the steps have
+     * {@link #GUARD_DIGITS} more digits and the result is rounded once, so it is the same as the sum of the terms,
+     * eg. {@code X^2 ÷ 3 - X^2 ÷ 3} is exactly 0.
+     */
+    static final class Polynomial extends CNode {
+
+        /**
+         * Digits of the coefficients and the steps more than the precision of the calculation.
+         */
+        static final int GUARD_DIGITS = 16;
+
+        final CUnit variable;
+        /**
+         * Coefficient of each power of the variable from 0 to the degree, {@code null} if there is no term. The last
+         * is not {@code null}.
+         */
+        final Constant[] coefficients;
+
+        Polynomial(@NonNull CUnit variable, @NonNull Constant[] coefficients) {
+            super(31 * variable.hashCode() + Arrays.hashCode(coefficients), new CUnit[] {variable},
+                    isRational(coefficients));
+            this.variable = variable;
+            this.coefficients = coefficients;
+        }
+
+        private static boolean isRational(@NonNull Constant[] coefficients) {
+            for (Constant coefficient: coefficients) {
+                if (coefficient != null && !coefficient.rational) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @NonNull
+        @Override
+        BigComplex evaluate(@NonNull CParams params, @Nullable SubresultCache cache)
+                throws VariableException, UndefinedException, OutOfRangeException {
+            final BigComplex cached = cache == null ? null : cache.get(this, params);
+            if (cached != null) {
+                return cached;
+            }
+            BigComplex result = evaluateExact(params);
+            if (result == null) {
+                result = evaluateHorner(params, cache);
+            }
+            if (cache != null) {
+                cache.put(this, params, result);
+            }
+            return result;
+        }
+
+        @NonNull
+        private BigComplex evaluateHorner(@NonNull CParams params, @Nullable SubresultCache cache)
+                throws VariableException, UndefinedException, OutOfRangeException {
+            final BigComplex x = params.getValue(variable);
+            if (x == null) {
+                throw new VariableException();
+            }
+            final MathContext mc = params.getMathContext();
+            // the terms of each degree are summed before a power is calculated, so X^degree is checked like the
+            // terms it replaces, eg. X² - X² is out of range if X² is
+            Calculate.requireInRange(Maffs.round(Maffs.pow(x, coefficients.length - 1, mc), mc));
+            final int precision = mc.getPrecision() + GUARD_DIGITS;
+            final MathContext guarded = new MathContext(precision, mc.getRoundingMode());
+            BigComplex result = coefficients[coefficients.length - 1].evaluate(params, precision, cache);
+            for (int i = coefficients.length - 2; i >= 0; i--) {
+                CancellationToken.checkCurrent();
+                result = Calculate.calculateOperator(Opcodes.TIMES, result, x, guarded);
+                if (coefficients[i] != null) {
+                    final BigComplex coefficient = coefficients[i].evaluate(params, precision, cache);
+                    result = Calculate.calculateOperator(Opcodes.PLUS, result, coefficient, guarded);
+                }
+            }
+            return Calculate.requireInRange(Maffs.round(result, mc));
+        }
+
+        @Override
+        double evaluateDouble(@NonNull DoubleEvaluator evaluator) {
+            final double x = evaluator.variable(variable);
+            final double ex = evaluator.error;
+            double result = coefficients[coefficients.length - 1].evaluateDouble(evaluator);
+            for (int i = coefficients.length - 2; i >= 0 && !Double.isNaN(result); i--) {
+                result = evaluator.operator(Opcodes.TIMES, result, evaluator.error, evaluator.value(x, ex));
+                if (coefficients[i] != null) {
+                    final double error = evaluator.error;
+                    result = evaluator.operator(Opcodes.PLUS, result, error, coefficients[i].evaluateDouble(evaluator));
+                }
+            }
+            return result;
+        }
+
+        @Nullable
+        @Override
+        Rational evaluateRational(@NonNull CParams params) throws VariableException, UndefinedException {
+            final BigComplex value = params.getValue(variable);
+            if (value == null) {
+                throw new VariableException();
+            } else if (!value.isReal()) {
+                return null;
+            }
+            final Rational x = Rational.valueOf(value.re);
+            Rational result = coefficients[coefficients.length - 1].evaluateRational(params);
+            for (int i = coefficients.length - 2; i >= 0 && x != null && result != null; i--) {
+                CancellationToken.checkCurrent();
+                result = result.multiply(x);
+                if (coefficients[i] != null && result != null) {
+                    final Rational coefficient = coefficients[i].evaluateRational(params);
+                    result = coefficient == null ? null : result.add(coefficient);
+                }
+            }
+            return x == null ? null : result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Polynomial) {
+                final Polynomial that = (Polynomial) obj;
+                return hashCode() == that.hashCode() && variable.equals(that.variable)
+                        && Arrays.equals(coefficients, that.coefficients);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.bx.calculator.calc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * <p>Rewrites the {@link CNode} tree of the {@link CParser} into a tree with the same results that is faster to
+ * evaluate many times, eg. for graphs and tables. Called from {@link Calculate#compile(CExpression)}.</p>
+ * <ul>
+ *     <li>Subexpressions without variables become {@link CNode.Constant}s, which store their result. Their value
+ *     depends on the precision of the {@link CParams}, so they are folded when they are first evaluated.</li>
+ *     <li>Powers with a small integer exponent, {@link CUnit#SQUARED} and {@link CUnit#CUBED} become
+ *     {@link CNode.Power}s, which multiply.</li>
+ *     <li>Dividing by a number or a constant multiplies by its stored reciprocal.</li>
+ *     <li>Sums of terms {@code c X^n} of one variable become {@link CNode.Polynomial}s, which are evaluated with
+ *     Horner's method.</li>
+ * </ul>
+ */
+final class COptimizer {
+
+    /**
+     * Largest magnitude of an exponent of a {@link CNode.Power}.
+     */
+    private static final int MAX_POWER = 16;
+    /**
+     * Largest degree of a {@link CNode.Polynomial}.
+     */
+    private static final int MAX_DEGREE = 64;
+
+    /**
+     * @param node Tree of the parser.
+     * @return Tree with the same results.
+     */
+    @NonNull
+    static CNode optimize(@NonNull CNode node) {
+        if (node instanceof CNode.Value || node instanceof CNode.Variable) {
+            return node;
+        }
+        if (node.variables.length == 0) {
+            return new CNode.Constant(node);
+        }
+        if (node instanceof CNode.Function) {
+            final CNode.Function function = (CNode.Function) node;
+            final CNode argument = optimize(function.argument);
+            if (function.function == Opcodes.SQUARED) {
+                return new CNode.Power(argument, 2);
+            } else if (function.function == Opcodes.CUBED) {
+                return new CNode.Power(argument, 3);
+            }
+            return argument == function.argument ? function : new CNode.Function(function.function, argument);
+        }
+        if (node instanceof CNode.Operator) {
+            return optimizeOperator((CNode.Operator) node);
+        }
+        return node;
+    }
+
+    @NonNull
+    private static CNode optimizeOperator(@NonNull CNode.Operator operator) {
+        final int[] operators = operator.operators;
+        final CNode[] operands = new CNode[operator.operands.length];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = optimize(operator.operands[i]);
+        }
+        switch (operators[0]) {
+            case Opcodes.POWER:
+                return optimizePowers(operators, operator.operands, operands);
+            case Opcodes.TIMES:
+            case Opcodes.DIVIDE:
+                for (int i = 0; i < operators.length; i++) {
+                    if (operators[i] == Opcodes.DIVIDE && operands[i + 1] instanceof CNode.Value) {
+                        operands[i + 1] = new CNode.Constant(operands[i + 1]);
+                    }
+                }
+                break;
+            case Opcodes.PLUS:
+            case Opcodes.MINUS:
+                final CNode polynomial = polynomial(operators, operands);
+                if (polynomial != null) {
+                    return polynomial;
+                }
+                break;
+            default:
+                break;
+        }
+        return new CNode.Operator(operators, operands);
+    }
+
+    /**
+     * A chain of powers, applied from left to right. Powers with a small integer exponent are
+     * {@link CNode.Power}s.
+     *
+     * @param operators {@link Opcodes#POWER}s.
+     * @param parsed Operands of the parser.
+     * @param operands Optimized operands.
+     */
+    @NonNull
+    private static CNode optimizePowers(@NonNull int[] operators, @NonNull CNode[] parsed, @NonNull CNode[] operands) {
+        boolean small = false;
+        for (int i = 1; i < parsed.length && !small; i++) {
+            small = smallExponent(parsed[i]) != 0;
+        }
+        if (!small) {
+            return new CNode.Operator(operators, operands);
+        }
+        CNode result = operands[0];
+        for (int i = 1; i < operands.length; i++) {
+            final int exponent = smallExponent(parsed[i]);
+            result = exponent != 0 ? new CNode.Power(result, exponent)
+                    : new CNode.Operator(new int[] {Opcodes.POWER}, new CNode[] {result, operands[i]});
+        }
+        return result;
+    }
+
+    /**
+     * @param node Exponent from the parser, a number or a negative number.
+     * @return The exponent if it is an integer from {@code -MAX_POWER} to {@link #MAX_POWER} other than 0,
+     * otherwise 0.
+     */
+    private static int smallExponent(@NonNull CNode node) {
+        boolean negative = false;
+        if (node instanceof CNode.Function && ((CNode.Function) node).function == Opcodes.MINUS) {
+            negative = true;
+            node = ((CNode.Function) node).argument;
+        }
+        if (!(node instanceof CNode.Value)) {
+            return 0;
+        }
+        final BigComplex value = ((CNode.Value) node).value;
+        if (!value.isReal() || value.re.abs().compareTo(BigDecimal.valueOf(MAX_POWER)) > 0) {
+            return 0;
+        }
+        final BigDecimal stripped = value.re.stripTrailingZeros();
+        if (stripped.scale() > 0) {
+            return 0;
+        }
+        final int exponent = stripped.intValue();
+        return negative ? -exponent : exponent;
+    }
+
+    // -------- POLYNOMIALS --------------------------------------------------------------------------------------------------
+
+    /**
+     * @param operators {@link Opcodes#PLUS} and {@link Opcodes#MINUS}.
+     * @param terms Optimized terms.
+     * @return Polynomial of the sum, or {@code null} if it is not a polynomial of one variable with degree 2 or more.
+     */
+    @Nullable
+    private static CNode polynomial(@NonNull int[] operators, @NonNull CNode[] terms) {
+        final Monomial[] monomials = new Monomial[terms.length];
+        CUnit variable = null;
+        int degree = 0;
+        for (int i = 0; i < terms.length; i++) {
+            final Monomial monomial = new Monomial();
+            monomial.negative = i > 0 && operators[i - 1] == Opcodes.MINUS;
+            if (!monomial.add(terms[i], Opcodes.TIMES)) {
+                return null;
+            }
+            if (monomial.variable != null) {
+                if (variable != null && !variable.equals(monomial.variable)) {
+                    return null;
+                }
+                variable = monomial.variable;
+            }
+            degree = Math.max(degree, monomial.degree);
+            monomials[i] = monomial;
+        }
+        if (variable == null || degree < 2 || degree > MAX_DEGREE) {
+            return null;
+        }
+        // sum the coefficients of each degree
+        final Sum[] sums = new Sum[degree + 1];
+        for (Monomial monomial: monomials) {
+            if (sums[monomial.degree] == null) {
+                sums[monomial.degree] = new Sum();
+            }
+            sums[monomial.degree].add(monomial.negative, monomial.coefficient());
+        }
+        final CNode.Constant[] coefficients = new CNode.Constant[degree + 1];
+        for (int i = 0; i <= degree; i++) {
+            if (sums[i] != null) {
+                coefficients[i] = new CNode.Constant(sums[i].toNode());
+            }
+        }
+        return new CNode.Polynomial(variable, coefficients);
+    }
+
+    /**
+     * A term {@code c X^n}: the constant factors of {@code c} with their operators, the variable and the degree.
+     */
+    private static final class Monomial {
+
+        final List<CNode> factors = new ArrayList<>();
+        final List<Integer> operators = new ArrayList<>();
+        CUnit variable;
+        int degree;
+        boolean negative;
+
+        /**
+         * Multiplies or divides this term by a node.
+         *
+         * @param node Optimized node.
+         * @param operator {@link Opcodes#TIMES} or {@link Opcodes#DIVIDE}.
+         * @return false if the node is not a monomial.
+         */
+        boolean add(@NonNull CNode node, int operator) {
+            if (node.variables.length == 0) {
+                factors.add(node);
+                operators.add(operator);
+                return true;
+            }
+            if (operator != Opcodes.TIMES) {     // dividing by a variable
+                return false;
+            }
+            if (node instanceof CNode.Variable) {
+                return addPower(((CNode.Variable) node).variable, 1);
+            } else if (node instanceof CNode.Power) {
+                final CNode.Power power = (CNode.Power) node;
+                return power.base instanceof CNode.Variable && power.exponent > 0
+                        && addPower(((CNode.Variable) power.base).variable, power.exponent);
+            } else if (node instanceof CNode.Function && ((CNode.Function) node).function == Opcodes.MINUS) {
+                negative = !negative;
+                return add(((CNode.Function) node).argument, Opcodes.TIMES);
+            } else if (node instanceof CNode.Operator) {
+                final CNode.Operator product = (CNode.Operator) node;
+                if (!Opcodes.isTimesOrDivide(product.operators[0])) {
+                    return false;
+                }
+                if (!add(product.operands[0], Opcodes.TIMES)) {
+                    return false;
+                }
+                for (int i = 0; i < product.operators.length; i++) {
+                    if (!add(product.operands[i + 1], product.operators[i])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private boolean addPower(@NonNull CUnit variable, int exponent) {
+            if (this.variable != null && !this.variable.equals(variable)) {
+                return false;
+            }
+            this.variable = variable;
+            degree += exponent;
+            return true;
+        }
+
+        /**
+         * @return Product of the constant factors, 1 if there are none.
+         */
+        @NonNull
+        CNode coefficient() {
+            if (factors.size() == 1 && operators.get(0) == Opcodes.TIMES) {
+                return factors.get(0);
+            }
+            final List<CNode> operands = new ArrayList<>();
+            final int[] codes;
+            if (!factors.isEmpty() && operators.get(0) == Opcodes.TIMES) {
+                operands.addAll(factors);
+                codes = new int[factors.size() - 1];
+                for (int i = 1; i < factors.size(); i++) {
+                    codes[i - 1] = operators.get(i);
+                }
+            } else {
+                operands.add(new CNode.Value(BigComplex.ONE));
+                operands.addAll(factors);
+                codes = new int[factors.size()];
+                for (int i = 0; i < factors.size(); i++) {
+                    codes[i] = operators.get(i);
+                }
+            }
+            return operands.size() == 1 ? operands.get(0)
+                    : new CNode.Operator(codes, operands.toArray(new CNode[0]));
+        }
+    }
+
+    /**
+     * Coefficients of the terms with the same degree, added or subtracted.
+     */
+    private static final class Sum {
+
+        final List<CNode> operands = new ArrayList<>();
+        final List<Integer> operators = new ArrayList<>();
+
+        void add(boolean negative, @NonNull CNode coefficient) {
+            if (operands.isEmpty()) {
+                operands.add(negative ? new CNode.Function(Opcodes.MINUS, coefficient) : coefficient);
+            } else {
+                operators.add(negative ? Opcodes.MINUS : Opcodes.PLUS);
+                operands.add(coefficient);
+            }
+        }
+
+        @NonNull
+        CNode toNode() {
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            final int[] codes = new int[operators.size()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = operators.get(i);
+            }
+            return new CNode.Operator(codes, operands.toArray(new CNode[0]));
+        }
+    }
+
+    private COptimizer() {}
+}
@@ -3,10 +3,13 @@ package com.bx.calculator.calc;
 import androidx.annotation.NonNull;
 
 import com.bx.calculator.calc.math.AngleUnit;
+import com.bx.calculator.calc.math.Maffs;
 
+import java.math.MathContext;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import ch.obermuhlner.math.big.BigComplex;
@@ -16,7 +19,25 @@ import ch.obermuhlner.math.big.BigComplex;
  */
 public class CParams {
 
+    /**
+     * Default precision of calculations, the precision of {@link Maffs#MC}.
+     */
+    public static final int DEFAULT_PRECISION = Maffs.MC.getPrecision();
+    /**
+     * Smallest precision returned by {@link #precisionForSigfig(int)}.
+     */
+    public static final int MIN_PRECISION = 16;
+    /**
+     * Digits added to the displayed significant figures by {@link #precisionForSigfig(int)}, so rounding errors of
+     * the intermediate values do not change the displayed digits.
+     */
+    public static final int GUARD_DIGITS = 6;
+
     private final AngleUnit angleUnit;
+    /**
+     * Significant figures of every operation.
+     */
+    private final MathContext mathContext;
     /**
      * Map to replace a unit (variable) with a value.
      */
@@ -28,13 +49,19 @@ public class CParams {
      *
      * @param angleUnit Angle unit, {@link AngleUnit#RAD} or {@link AngleUnit#DEG}.
      * @param variables Variable and value pairs. Pairs with {@code null} keys or values are ignored.
-     * @throws IllegalArgumentException A {@link CUnit} is not a variable.
+     * @param precision Significant figures of every operation, eg. {@link #DEFAULT_PRECISION} or
+     *                  {@link #precisionForSigfig(int)}.
+     * @throws IllegalArgumentException A {@link CUnit} is not a variable, or {@code precision} is not positive.
      * @see CUnit#isVariable()
      * @see Calculate#calculate(CExpression, CParams)
      */
-    public CParams(AngleUnit angleUnit, Map<CUnit, BigComplex> variables) throws IllegalArgumentException {
+    public CParams(AngleUnit angleUnit, Map<CUnit, BigComplex> variables, int precision) throws IllegalArgumentException {
         // update equals method for adapter diff callback
+        if (precision <= 0) {
+            throw new IllegalArgumentException("precision must be positive");
+        }
         this.angleUnit = angleUnit;
+        this.mathContext = new MathContext(precision, Maffs.MC.getRoundingMode());
         if (variables != null) {
             for (Map.Entry<CUnit, BigComplex> entry: variables.entrySet()) {
                 if (entry.getKey() != null && entry.getValue() != null) {
@@ -48,6 +75,17 @@ public class CParams {
         }
     }
 
+    /**
+     * Constructor for a {@link CParams} instance with the {@link #DEFAULT_PRECISION}.
+     *
+     * @param angleUnit Angle unit, {@link AngleUnit#RAD} or {@link AngleUnit#DEG}.
+     * @param variables Variable and value pairs. Pairs with {@code null} keys or values are ignored.
+     * @throws IllegalArgumentException A {@link CUnit} is not a variable.
+     */
+    public CParams(AngleUnit angleUnit, Map<CUnit, BigComplex> variables) throws IllegalArgumentException {
+        this(angleUnit, variables, DEFAULT_PRECISION);
+    }
+
     /**
      * Constructor for a {@link CParams} instance with no variable mapping.
      *
@@ -65,10 +103,45 @@ public class CParams {
         this(AngleUnit.RAD);
     }
 
+    /**
+     * Precision needed to display a result, {@code sigfig} and {@link #GUARD_DIGITS}, but at least
+     * {@link #MIN_PRECISION}. Lower precision is much faster for functions such as sin, exp and log.
+     *
+     * @param sigfig Displayed significant figures.
+     * @return Precision for {@link #CParams(AngleUnit, Map, int)}.
+     */
+    public static int precisionForSigfig(int sigfig) {
+        return Math.max(MIN_PRECISION, sigfig + GUARD_DIGITS);
+    }
+
+    /**
+     * @return A copy of these parameters with a different precision.
+     * @throws IllegalArgumentException {@code precision} is not positive.
+     */
+    @NonNull
+    public CParams withPrecision(int precision) throws IllegalArgumentException {
+        if (precision == getPrecision()) {
+            return this;
+        }
+        return new CParams(angleUnit, variableMap, precision);
+    }
+
+    /**
+     * @return A copy of these parameters with {@code variable} mapped to {@code value}, eg. a row of a
+     * {@link SweepTable}.
+     * @throws IllegalArgumentException {@code variable} is not a variable.
+     */
+    @NonNull
+    public CParams withValue(@NonNull CUnit variable, @NonNull BigComplex value) throws IllegalArgumentException {
+        final Map<CUnit, BigComplex> variables = new HashMap<>(variableMap);
+        variables.put(variable, value);
+        return new CParams(angleUnit, variables, getPrecision());
+    }
+
     @NonNull
     @Override
     public String toString() {
-        return String.format("CParams[angleUnit=%s, variableMap=%s]", angleUnit, variableMap);
+        return String.format("CParams[angleUnit=%s, variableMap=%s, precision=%d]", angleUnit, variableMap, getPrecision());
     }
 
     @Override
@@ -78,15 +151,35 @@ public class CParams {
         }
         if (obj instanceof CParams) {
             final CParams that = (CParams) obj;
-            return angleUnit == that.angleUnit && variableMap.equals(that.variableMap);
+            return angleUnit == that.angleUnit && variableMap.equals(that.variableMap) && mathContext.equals(that.mathContext);
         }
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(angleUnit, variableMap, mathContext);
+    }
+
     public AngleUnit getAngleUnit() {
         return angleUnit;
     }
 
+    /**
+     * @return Significant figures of every operation.
+     */
+    public int getPrecision() {
+        return mathContext.getPrecision();
+    }
+
+    /**
+     * @return {@link MathContext} of every operation, with {@link #getPrecision()}.
+     */
+    @NonNull
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
     public BigComplex getValue(CUnit variable) {
         return variableMap.get(variable);
     }
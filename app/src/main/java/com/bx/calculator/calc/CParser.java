@@ -0,0 +1,255 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.exception.SyntaxException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * <p>Single pass precedence climbing parser which builds the {@link CNode} tree from the {@link CTokens} of an
+ * expression. Every token is read once and classified by its {@link Opcodes} range, so parsing is linear in the
+ * length of the expression. Called from {@link Calculate#compile(CExpression)}, which catches most syntax errors
+ * before parsing.</p>
+ * <p>Precedence, from highest to lowest:</p>
+ * <ol>
+ *     <li>Numbers, {@link CUnit#isVariable()} and brackets.</li>
+ *     <li>{@link CUnit#isPostFunction()}</li>
+ *     <li>{@link CUnit#POWER}, left to right. The right operand may be signed.</li>
+ *     <li>{@link CUnit#ROOT}, left to right. The right operand may be signed.</li>
+ *     <li>Consecutive values (multiply). A {@link CUnit#isPreFunction()} applies to the signs, pre functions and
+ *     consecutive values following it.</li>
+ *     <li>{@link CUnit#NPR}, {@link CUnit#NCR}, left to right. The right operand may be signed.</li>
+ *     <li>{@link CUnit#TIMES}, {@link CUnit#DIVIDE}, left to right. The right operand may be signed.</li>
+ *     <li>{@link CUnit#PLUS}, {@link CUnit#MINUS}, left to right. The first operand may be signed.</li>
+ * </ol>
+ */
+final class CParser {
+
+    /**
+     * Code returned by {@link #peek()} at the end of the tokens.
+     */
+    private static final int END = -1;
+
+    private final CTokens tokens;
+    private final int size;
+    private int position;
+
+    CParser(@NonNull CTokens tokens) {
+        this.tokens = tokens;
+        this.size = tokens.tokens.length;
+    }
+
+    /**
+     * @return Root of the operation tree.
+     * @throws SyntaxException syntax error
+     */
+    @NonNull
+    CNode parse() throws SyntaxException {
+        position = 0;
+        final CNode root = parseSum();
+        if (position < size) {      // unbalanced right bracket or unused token
+            throw new SyntaxException();
+        }
+        return root;
+    }
+
+    // -------- PRECEDENCE LEVELS --------------------------------------------------------------------------------------------
+
+    @NonNull
+    private CNode parseSum() {
+        final int sign = readSign();
+        final Chain chain = new Chain(signed(sign, parseProduct()));
+        while (Opcodes.isPlusOrMinus(peek())) {
+            chain.add(readSign(), parseProduct());
+        }
+        return chain.toNode();
+    }
+
+    @NonNull
+    private CNode parseProduct() {
+        final Chain chain = new Chain(parsePermutation());
+        while (Opcodes.isTimesOrDivide(peek())) {
+            final int operator = next();
+            chain.add(operator, signed(readSign(), parsePermutation()));
+        }
+        return chain.toNode();
+    }
+
+    @NonNull
+    private CNode parsePermutation() {
+        final Chain chain = new Chain(parseImplicit());
+        while (Opcodes.isPermutationOrCombination(peek())) {
+            final int operator = next();
+            chain.add(operator, signed(readSign(), parseImplicit()));
+        }
+        return chain.toNode();
+    }
+
+    /**
+     * Consecutive values and pre functions, multiplied together.
+     */
+    @NonNull
+    private CNode parseImplicit() {
+        Chain chain = null;
+        while (true) {
+            final CNode operand;
+            if (Opcodes.isPreFunction(peek())) {
+                final int function = next();
+                operand = new CNode.Function(function, parseFunctionArgument());
+            } else if (isValueStart(peek())) {
+                operand = parseRoot();
+            } else {
+                break;
+            }
+            if (chain == null) {
+                chain = new Chain(operand);
+            } else {
+                chain.add(Opcodes.TIMES, operand);
+            }
+        }
+        if (chain == null) {
+            throw new SyntaxException();
+        }
+        return chain.toNode();
+    }
+
+    /**
+     * The scope of a pre function: a sign, then either another pre function or consecutive values.
+     */
+    @NonNull
+    private CNode parseFunctionArgument() {
+        final int sign = readSign();
+        if (Opcodes.isPreFunction(peek())) {
+            final int function = next();
+            return signed(sign, new CNode.Function(function, parseFunctionArgument()));
+        }
+        if (!isValueStart(peek())) {
+            throw new SyntaxException();
+        }
+        final Chain chain = new Chain(parseRoot());
+        while (isValueStart(peek())) {
+            chain.add(Opcodes.TIMES, parseRoot());
+        }
+        return signed(sign, chain.toNode());
+    }
+
+    @NonNull
+    private CNode parseRoot() {
+        final Chain chain = new Chain(parsePower());
+        while (peek() == Opcodes.ROOT) {
+            final int operator = next();
+            chain.add(operator, signed(readSign(), parsePower()));
+        }
+        return chain.toNode();
+    }
+
+    @NonNull
+    private CNode parsePower() {
+        final Chain chain = new Chain(parsePostFunction());
+        while (peek() == Opcodes.POWER) {
+            final int operator = next();
+            chain.add(operator, signed(readSign(), parsePostFunction()));
+        }
+        return chain.toNode();
+    }
+
+    @NonNull
+    private CNode parsePostFunction() {
+        CNode node = parseValue();
+        while (Opcodes.isPostFunction(peek())) {
+            node = new CNode.Function(next(), node);
+        }
+        return node;
+    }
+
+    @NonNull
+    private CNode parseValue() {
+        if (position >= size) {
+            throw new SyntaxException();
+        }
+        final int token = tokens.tokens[position++];
+        switch (Opcodes.code(token)) {
+            case Opcodes.NUMBER:
+                return new CNode.Value(tokens.literals[Opcodes.index(token)]);
+            case Opcodes.VARIABLE:
+                return new CNode.Variable(tokens.variables[Opcodes.index(token)]);
+            case Opcodes.LEFT_BRACKET:
+                final CNode inner = parseSum();
+                if (peek() != Opcodes.RIGHT_BRACKET) {
+                    throw new SyntaxException();
+                }
+                next();
+                return inner;
+            default:
+                throw new SyntaxException();
+        }
+    }
+
+    // -------- HELPER FUNCTIONS ---------------------------------------------------------------------------------------------
+
+    /**
+     * Reads a sign, consecutive signs are already combined by {@link CTokens}.
+     *
+     * @return {@link Opcodes#PLUS} or {@link Opcodes#MINUS}, or {@link #END} if there is no sign.
+     */
+    private int readSign() {
+        return Opcodes.isPlusOrMinus(peek()) ? next() : END;
+    }
+
+    /**
+     * @return Code of the current token, or {@link #END}.
+     */
+    private int peek() {
+        return position < size ? Opcodes.code(tokens.tokens[position]) : END;
+    }
+
+    /**
+     * @return Code of the current token, then moves to the next token.
+     */
+    private int next() {
+        return Opcodes.code(tokens.tokens[position++]);
+    }
+
+    private static boolean isValueStart(int code) {
+        return code == Opcodes.NUMBER || code == Opcodes.VARIABLE || code == Opcodes.LEFT_BRACKET;
+    }
+
+    @NonNull
+    private static CNode signed(int sign, @NonNull CNode node) {
+        return sign == Opcodes.MINUS ? new CNode.Function(Opcodes.MINUS, node) : node;
+    }
+
+    /**
+     * Operators of the same precedence and their operands, read from left to right.
+     */
+    private static final class Chain {
+
+        private final List<CNode> operands = new ArrayList<>();
+        private int[] operators = new int[4];
+
+        Chain(@NonNull CNode first) {
+            operands.add(first);
+        }
+
+        void add(int operator, @NonNull CNode operand) {
+            final int count = operands.size() - 1;
+            if (count == operators.length) {
+                operators = Arrays.copyOf(operators, count * 2);
+            }
+            operators[count] = operator;
+            operands.add(operand);
+        }
+
+        @NonNull
+        CNode toNode() {
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            return new CNode.Operator(Arrays.copyOf(operators, operands.size() - 1),
+                    operands.toArray(new CNode[0]));
+        }
+    }
+}
@@ -10,18 +10,34 @@ import ch.obermuhlner.math.big.BigComplex;
 
 /**
  * A class representing the result of a calculation. Contains the input, answer and the parameters. The accuracy of the answer
- * depends on the calculation method, so it is not guaranteed to be correct.
+ * depends on the calculation method, so it is not guaranteed to be correct, unless the result has
+ * {@link #getGuaranteedDigits()}.
  */
 public class CResult {
 
+    /**
+     * {@link #getGuaranteedDigits()} of a result whose error is not known.
+     */
+    public static final int UNKNOWN_DIGITS = -1;
+    /**
+     * {@link #getGuaranteedDigits()} of a result that is exact.
+     */
+    public static final int EXACT_DIGITS = Integer.MAX_VALUE;
+
     private final CUnit[] input;
     private final BigComplex answer;
     private final CParams params;
+    private final int guaranteedDigits;
 
     CResult(CUnit[] input, BigComplex answer, CParams params) throws NullPointerException {
+        this(input, answer, params, UNKNOWN_DIGITS);
+    }
+
+    CResult(CUnit[] input, BigComplex answer, CParams params, int guaranteedDigits) throws NullPointerException {
         this.input = Arrays.copyOf(input, input.length);
         this.answer = Objects.requireNonNull(answer);
         this.params = params;
+        this.guaranteedDigits = guaranteedDigits;
     }
 
     CResult(@NonNull CUnit[] input, @NonNull BigDecimal answerRe, @NonNull BigDecimal answerIm, @NonNull CParams params) {
@@ -30,7 +46,8 @@ public class CResult {
 
     @Override
     public String toString() {
-        return String.format("CResult[input=%s, answer=%s, params=%s]", Arrays.toString(input), answer, params);
+        return String.format("CResult[input=%s, answer=%s, params=%s, guaranteedDigits=%d]", Arrays.toString(input), answer,
+                params, guaranteedDigits);
     }
 
     /**
@@ -48,4 +65,13 @@ public class CResult {
     public CParams getParams() {
         return params;
     }
+
+    /**
+     * @return Number of significant figures of the answer that are known to be correct, {@link #EXACT_DIGITS} if the
+     * answer is exact, or {@link #UNKNOWN_DIGITS} if the error of the calculation was not tracked.
+     * @see CompiledExpression#evaluateGuaranteed(CParams, int)
+     */
+    public int getGuaranteedDigits() {
+        return guaranteedDigits;
+    }
 }
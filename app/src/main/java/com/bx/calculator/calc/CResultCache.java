@@ -0,0 +1,267 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.exception.CancelledException;
+import com.bx.calculator.calc.exception.OutOfRangeException;
+import com.bx.calculator.calc.exception.SyntaxException;
+import com.bx.calculator.calc.exception.UndefinedException;
+import com.bx.calculator.calc.exception.VariableException;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * <p>A thread safe, bounded cache of the results of {@link Calculate#calculate(CExpression, CParams)}, eg. for
+ * expressions that are calculated again from the history.</p>
+ * <p>A result is stored with the expression and the parameters it uses: the angle unit, the precision and only the
+ * variables that are in the expression, so changing another variable (eg. {@link CUnit#ANS}) does not remove the
+ * result. The least recently used results are removed when the total weight (about the number of digits and units)
+ * is more than the maximum. Exceptions are not stored. Results that are not stored are calculated with a
+ * {@link SubresultCache}, so an edited expression reuses its unchanged subexpressions.</p>
+ */
+public final class CResultCache {
+
+    /**
+     * Default maximum weight, about the number of digits of the stored results and units of their expressions.
+     */
+    public static final int DEFAULT_MAX_WEIGHT = 64 * 1024;
+
+    private final int maxWeight;
+    private final SubresultCache subresults;
+    /**
+     * Results in access order, the least recently used first.
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int weight;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Constructor for a cache with the {@link #DEFAULT_MAX_WEIGHT} and a {@link SubresultCache}.
+     */
+    public CResultCache() {
+        this(DEFAULT_MAX_WEIGHT, new SubresultCache());
+    }
+
+    /**
+     * @param maxWeight Maximum total weight of the stored results.
+     * @throws IllegalArgumentException {@code maxWeight} is not positive.
+     */
+    public CResultCache(int maxWeight) throws IllegalArgumentException {
+        this(maxWeight, null);
+    }
+
+    /**
+     * @param maxWeight Maximum total weight of the stored results.
+     * @param subresults Results of subexpressions used when a result is not stored, or {@code null}.
+     * @throws IllegalArgumentException {@code maxWeight} is not positive.
+     */
+    public CResultCache(int maxWeight, @Nullable SubresultCache subresults) throws IllegalArgumentException {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive");
+        }
+        this.maxWeight = maxWeight;
+        this.subresults = subresults;
+    }
+
+    /**
+     * Returns the stored result of an expression if it was calculated with the same parameters, otherwise calculates
+     * it with {@link Calculate#calculate(CExpression, CParams)} and stores it.
+     *
+     * @param expression Expression to calculate.
+     * @param params Parameters for calculation.
+     * @return Result of calculation, with the input and parameters of the arguments.
+     * @throws NullPointerException {@code input} or a {@link CUnit} is {@code null}.
+     * @throws VariableException Sequence contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
+     * @throws UndefinedException result is undefined
+     * @throws SyntaxException syntax is wrong
+     * @throws OutOfRangeException result is out of range
+     * @see Calculate#calculate(CExpression, CParams)
+     */
+    @NonNull
+    public CResult calculate(@NonNull CExpression expression, @NonNull CParams params)
+            throws NullPointerException, VariableException, UndefinedException, SyntaxException, OutOfRangeException {
+        return calculate(expression, params, null);
+    }
+
+    /**
+     * Returns the stored result of an expression like {@link #calculate(CExpression, CParams)}, otherwise calculates
+     * it until {@code token} is cancelled or its deadline passes. Cancelled results are not stored.
+     *
+     * @param expression Expression to calculate.
+     * @param params Parameters for calculation.
+     * @param token Token that stops the calculation, or {@code null}.
+     * @return Result of calculation, with the input and parameters of the arguments.
+     * @throws NullPointerException {@code input} or a {@link CUnit} is {@code null}.
+     * @throws VariableException Sequence contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
+     * @throws UndefinedException result is undefined
+     * @throws SyntaxException syntax is wrong
+     * @throws OutOfRangeException result is out of range
+     * @throws CancelledException {@code token} is cancelled or timed out, or the thread is interrupted.
+     * @see Calculate#calculate(CExpression, CParams, SubresultCache, CancellationToken)
+     */
+    @NonNull
+    public CResult calculate(@NonNull CExpression expression, @NonNull CParams params, @Nullable CancellationToken token)
+            throws NullPointerException, VariableException, UndefinedException, SyntaxException, OutOfRangeException,
+            CancelledException {
+        final Key key = Key.of(expression, params);
+        if (key == null) {      // missing variable
+            return Calculate.calculate(expression, params, null, token);
+        }
+        final Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+        }
+        if (cached != null) {
+            return new CResult(expression.toArray(), cached.answer, params, cached.guaranteedDigits);
+        }
+        // calculate without the lock, another thread may store the same result
+        final CResult result = Calculate.calculate(expression, params, subresults, token);
+        put(key, new Entry(result.getAnswer(), result.getGuaranteedDigits(), weight(expression, result.getAnswer())));
+        return result;
+    }
+
+    private synchronized void put(@NonNull Key key, @NonNull Entry entry) {
+        if (entry.weight > maxWeight) {
+            return;
+        }
+        final Entry old = entries.put(key, entry);
+        if (old != null) {
+            weight -= old.weight;
+        }
+        weight += entry.weight;
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= iterator.next().weight;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removes all results. The hit and miss counts are not changed.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return Number of stored results.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Total weight of the stored results.
+     */
+    public synchronized int getWeight() {
+        return weight;
+    }
+
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return Results of subexpressions used when a result is not stored, or {@code null}.
+     */
+    @Nullable
+    public SubresultCache getSubresults() {
+        return subresults;
+    }
+
+    /**
+     * @return Number of calculations that returned a stored result.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Number of calculations that were not stored.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private static int weight(@NonNull CExpression expression, @NonNull BigComplex answer) {
+        return expression.size() + answer.re.precision() + answer.im.precision();
+    }
+
+    /**
+     * An expression and the parameters it uses.
+     */
+    private static final class Key {
+
+        final CExpression expression;
+        final CParams params;
+        final int hashCode;
+
+        private Key(@NonNull CExpression expression, @NonNull CParams params) {
+            this.expression = expression;
+            this.params = params;
+            this.hashCode = 31 * expression.hashCode() + params.hashCode();
+        }
+
+        /**
+         * @return Key of the expression, or {@code null} if {@code params} does not have a value for a variable.
+         */
+        static Key of(@NonNull CExpression expression, @NonNull CParams params) {
+            final Map<CUnit, BigComplex> variables = new HashMap<>();
+            for (CUnit u: expression) {
+                if (u.isVariable()) {
+                    final BigComplex value = params.getValue(u);
+                    if (value == null) {
+                        return null;
+                    }
+                    variables.put(u, value);
+                }
+            }
+            // copy the expression, it may be linked to an array
+            return new Key(new CExpression(expression.toList()),
+                    new CParams(params.getAngleUnit(), variables, params.getPrecision()));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                final Key that = (Key) obj;
+                return hashCode == that.hashCode && expression.equals(that.expression) && params.equals(that.params);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Entry {
+
+        final BigComplex answer;
+        final int guaranteedDigits;
+        final int weight;
+
+        Entry(@NonNull BigComplex answer, int guaranteedDigits, int weight) {
+            this.answer = answer;
+            this.guaranteedDigits = guaranteedDigits;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.exception.OutOfRangeException;
+import com.bx.calculator.calc.exception.SyntaxException;
+import com.bx.calculator.calc.exception.UndefinedException;
+import com.bx.calculator.calc.math.AngleUnit;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * <p>Value (immutable) class of an expression encoded as a compact stream of {@link Opcodes} tokens, with side tables
+ * of numbers and variables. Made by {@link #tokenize(CExpression)} and read by {@link CParser}.</p>
+ * <p>Compared to the input units, the tokens:</p>
+ * <ul>
+ *     <li>Have balanced brackets.</li>
+ *     <li>Do not have consecutive {@link Opcodes#PLUS} and {@link Opcodes#MINUS} tokens.</li>
+ *     <li>Combine digits and points, with {@link CUnit#EXP} and {@link CUnit#PERCENT}, into a {@link Opcodes#NUMBER}.</li>
+ *     <li>Replace constants with a {@link Opcodes#NUMBER}.</li>
+ * </ul>
+ */
+final class CTokens {
+
+    /**
+     * Tokens made with {@link Opcodes#token(int, int)}.
+     */
+    final int[] tokens;
+    final BigComplex[] literals;
+    final CUnit[] variables;
+
+    private CTokens(@NonNull int[] tokens, @NonNull BigComplex[] literals, @NonNull CUnit[] variables) {
+        this.tokens = tokens;
+        this.literals = literals;
+        this.variables = variables;
+    }
+
+    /**
+     * Encodes an expression into tokens in a single pass.
+     *
+     * @param expression Expression to encode.
+     * @return Tokens of the expression.
+     * @throws SyntaxException syntax error
+     * @throws UndefinedException a number in the expression is undefined
+     * @throws OutOfRangeException a number in the expression is out of range
+     */
+    @NonNull
+    static CTokens tokenize(@NonNull CExpression expression) throws SyntaxException, UndefinedException, OutOfRangeException {
+        final int size = expression.size();
+        final List<BigComplex> literals = new ArrayList<>();
+        final List<CUnit> variables = new ArrayList<>();
+        int[] tokens = new int[size];
+        int count = 0;
+        int bracketCount = 0;
+        int i = 0;
+        while (i < size) {
+            final CUnit u = expression.get(i);
+            final int code = u.getCode();
+            if (Opcodes.isDigitOrPoint(code)) {
+                // digits and points
+                final StringBuilder digits = new StringBuilder();
+                while (i < size && expression.get(i).isDigitOrPoint()) {
+                    digits.append(expression.get(i++).toString());
+                }
+                BigComplex number = BigComplex.valueOf(parseDigits(digits));
+                if (i < size && expression.get(i) == CUnit.EXP) {
+                    i++;
+                    // sign of exponent
+                    boolean negative = false;
+                    while (i < size && expression.get(i).isPlusOrMinus()) {
+                        negative ^= expression.get(i++) == CUnit.MINUS;
+                    }
+                    final StringBuilder exponentDigits = new StringBuilder();
+                    while (i < size && expression.get(i).isDigitOrPoint()) {
+                        exponentDigits.append(expression.get(i++).toString());
+                    }
+                    if (exponentDigits.length() == 0) {
+                        throw new SyntaxException();
+                    }
+                    final BigDecimal exponent = parseDigits(exponentDigits);
+                    number = Calculate.calculateOperator(Opcodes.EXP, number, BigComplex.valueOf(negative ? exponent.negate() : exponent), MathContext.UNLIMITED);
+                    if (i < size && (expression.get(i) == CUnit.EXP || expression.get(i) == CUnit.PERCENT)) {
+                        throw new SyntaxException();
+                    }
+                } else if (i < size && expression.get(i) == CUnit.PERCENT) {
+                    i++;
+                    number = Calculate.calculateFunction(Opcodes.PERCENT, number, AngleUnit.RAD, MathContext.UNLIMITED);
+                }
+                tokens[count++] = Opcodes.token(Opcodes.NUMBER, literals.size());
+                literals.add(number);
+                continue;
+            }
+            switch (code) {
+                case Opcodes.NUMBER:
+                    tokens[count++] = Opcodes.token(Opcodes.NUMBER, literals.size());
+                    literals.add(((CNum) u).getNum());
+                    break;
+                case Opcodes.VARIABLE:
+                    int index = variables.indexOf(u);
+                    if (index < 0) {
+                        index = variables.size();
+                        variables.add(u);
+                    }
+                    tokens[count++] = Opcodes.token(Opcodes.VARIABLE, index);
+                    break;
+                case Opcodes.PLUS:
+                case Opcodes.MINUS:
+                    // combine consecutive plus and minus
+                    if (count > 0 && Opcodes.isPlusOrMinus(Opcodes.code(tokens[count - 1]))) {
+                        tokens[count - 1] = tokens[count - 1] == code ? Opcodes.PLUS : Opcodes.MINUS;
+                    } else {
+                        tokens[count++] = code;
+                    }
+                    break;
+                case Opcodes.EXP:
+                case Opcodes.PERCENT:
+                    // must follow digits
+                    throw new SyntaxException();
+                case Opcodes.LEFT_BRACKET:
+                    bracketCount++;
+                    tokens[count++] = code;
+                    break;
+                case Opcodes.RIGHT_BRACKET:
+                    if (--bracketCount < 0) {
+                        throw new SyntaxException();
+                    }
+                    tokens[count++] = code;
+                    break;
+                default:
+                    tokens[count++] = code;
+            }
+            i++;
+        }
+        // balance brackets
+        tokens = Arrays.copyOf(tokens, count + bracketCount);
+        Arrays.fill(tokens, count, tokens.length, Opcodes.RIGHT_BRACKET);
+        return new CTokens(tokens, literals.toArray(new BigComplex[0]), variables.toArray(new CUnit[0]));
+    }
+
+    @NonNull
+    private static BigDecimal parseDigits(@NonNull CharSequence digits) throws SyntaxException {
+        try {
+            return new BigDecimal(digits.toString());
+        } catch (NumberFormatException e) {
+            throw new SyntaxException(e.getMessage());
+        }
+    }
+}
@@ -15,73 +15,75 @@ import androidx.annotation.Nullable;
 
 /**
  * Value class for a unit in a calculator input sequence.
+ * <p>The display string is only parsed as HTML when it is first shown, so calculating does not need
+ * {@link Html}, eg. in unit tests on a JVM.</p>
  */
 public class CUnit implements Serializable {
 
-    public static final CUnit ZERO = new CUnit("0");
-    public static final CUnit ONE = new CUnit("1");
-    public static final CUnit TWO = new CUnit("2");
-    public static final CUnit THREE = new CUnit("3");
-    public static final CUnit FOUR = new CUnit("4");
-    public static final CUnit FIVE = new CUnit("5");
-    public static final CUnit SIX = new CUnit("6");
-    public static final CUnit SEVEN = new CUnit("7");
-    public static final CUnit EIGHT = new CUnit("8");
-    public static final CUnit NINE = new CUnit("9");
-    public static final CUnit POINT = new CUnit(".");
-    public static final CUnit LEFT_BRACKET = new CUnit("(");
-    public static final CUnit RIGHT_BRACKET = new CUnit(")");
-
-    public static final CUnit PLUS = new CUnit("+");
-    public static final CUnit MINUS = new CUnit("−");
-    public static final CUnit TIMES = new CUnit("×");
-    public static final CUnit DIVIDE = new CUnit("÷");
-    public static final CUnit POWER = new CUnit("^");
-    public static final CUnit EXP = new CUnit("ᴇ");
-    public static final CUnit ROOT = new CUnit("<sup><small>n</sup></small>√");
-    public static final CUnit NPR = new CUnit("<b>P</b>");
-    public static final CUnit NCR = new CUnit("<b>C</b>");
-
-    public static final CUnit ABS = new CUnit("abs");
-    public static final CUnit ARG = new CUnit("arg");
-    public static final CUnit CONJ = new CUnit("conj");
-    public static final CUnit LOG = new CUnit("ln");
-    public static final CUnit LOG10 = new CUnit("log");
-    public static final CUnit LOG2 = new CUnit("log<sub><small>2</small></sub>");
-    public static final CUnit SQRT = new CUnit("√");
-    public static final CUnit SIN = new CUnit("sin");
-    public static final CUnit COS = new CUnit("cos");
-    public static final CUnit TAN = new CUnit("tan");
-    public static final CUnit CSC = new CUnit("csc");
-    public static final CUnit SEC = new CUnit("sec");
-    public static final CUnit COT = new CUnit("cot");
-    public static final CUnit ASIN = new CUnit("sin<sup><small>-1</small></sup>");
-    public static final CUnit ACOS = new CUnit("cos<sup><small>-1</small></sup>");
-    public static final CUnit ATAN = new CUnit("tan<sup><small>-1</small></sup>");
-    public static final CUnit SINH = new CUnit("sinh");
-    public static final CUnit COSH = new CUnit("cosh");
-    public static final CUnit TANH = new CUnit("tanh");
-    public static final CUnit ASINH = new CUnit("sinh<sup><small>-1</small></sup>");
-    public static final CUnit ACOSH = new CUnit("cosh<sup><small>-1</small></sup>");
-    public static final CUnit ATANH = new CUnit("tanh<sup><small>-1</small></sup>");
-
-    public static final CUnit FACTORIAL = new CUnit("!");
-    public static final CUnit PERCENT = new CUnit("%");
-    public static final CUnit SQUARED = new CUnit("<sup><small>2</small></sup>");
-    public static final CUnit CUBED = new CUnit("<sup><small>3</small></sup>");
-    public static final CUnit INVERSE = new CUnit("<sup><small>-1</small></sup>");
-
-    public static final CUnit ANS = new CUnit("Ans");
-    public static final CUnit X = new CUnit("X");
-    public static final CUnit Y = new CUnit("Y");
-    public static final CUnit Z = new CUnit("Z");
-    public static final CUnit A = new CUnit("A");
-    public static final CUnit B = new CUnit("B");
-    public static final CUnit C = new CUnit("C");
-    public static final CUnit D = new CUnit("D");
-    public static final CUnit ALPHA = new CUnit("α");
-    public static final CUnit BETA = new CUnit("β");
-    public static final CUnit GAMMA = new CUnit("γ");
+    public static final CUnit ZERO = new CUnit("0", Opcodes.ZERO);
+    public static final CUnit ONE = new CUnit("1", Opcodes.ONE);
+    public static final CUnit TWO = new CUnit("2", Opcodes.TWO);
+    public static final CUnit THREE = new CUnit("3", Opcodes.THREE);
+    public static final CUnit FOUR = new CUnit("4", Opcodes.FOUR);
+    public static final CUnit FIVE = new CUnit("5", Opcodes.FIVE);
+    public static final CUnit SIX = new CUnit("6", Opcodes.SIX);
+    public static final CUnit SEVEN = new CUnit("7", Opcodes.SEVEN);
+    public static final CUnit EIGHT = new CUnit("8", Opcodes.EIGHT);
+    public static final CUnit NINE = new CUnit("9", Opcodes.NINE);
+    public static final CUnit POINT = new CUnit(".", Opcodes.POINT);
+    public static final CUnit LEFT_BRACKET = new CUnit("(", Opcodes.LEFT_BRACKET);
+    public static final CUnit RIGHT_BRACKET = new CUnit(")", Opcodes.RIGHT_BRACKET);
+
+    public static final CUnit PLUS = new CUnit("+", Opcodes.PLUS);
+    public static final CUnit MINUS = new CUnit("−", Opcodes.MINUS);
+    public static final CUnit TIMES = new CUnit("×", Opcodes.TIMES);
+    public static final CUnit DIVIDE = new CUnit("÷", Opcodes.DIVIDE);
+    public static final CUnit POWER = new CUnit("^", Opcodes.POWER);
+    public static final CUnit EXP = new CUnit("ᴇ", Opcodes.EXP);
+    public static final CUnit ROOT = new CUnit("<sup><small>n</sup></small>√", Opcodes.ROOT);
+    public static final CUnit NPR = new CUnit("<b>P</b>", Opcodes.NPR);
+    public static final CUnit NCR = new CUnit("<b>C</b>", Opcodes.NCR);
+
+    public static final CUnit ABS = new CUnit("abs", Opcodes.ABS);
+    public static final CUnit ARG = new CUnit("arg", Opcodes.ARG);
+    public static final CUnit CONJ = new CUnit("conj", Opcodes.CONJ);
+    public static final CUnit LOG = new CUnit("ln", Opcodes.LOG);
+    public static final CUnit LOG10 = new CUnit("log", Opcodes.LOG10);
+    public static final CUnit LOG2 = new CUnit("log<sub><small>2</small></sub>", Opcodes.LOG2);
+    public static final CUnit SQRT = new CUnit("√", Opcodes.SQRT);
+    public static final CUnit SIN = new CUnit("sin", Opcodes.SIN);
+    public static final CUnit COS = new CUnit("cos", Opcodes.COS);
+    public static final CUnit TAN = new CUnit("tan", Opcodes.TAN);
+    public static final CUnit CSC = new CUnit("csc", Opcodes.CSC);
+    public static final CUnit SEC = new CUnit("sec", Opcodes.SEC);
+    public static final CUnit COT = new CUnit("cot", Opcodes.COT);
+    public static final CUnit ASIN = new CUnit("sin<sup><small>-1</small></sup>", Opcodes.ASIN);
+    public static final CUnit ACOS = new CUnit("cos<sup><small>-1</small></sup>", Opcodes.ACOS);
+    public static final CUnit ATAN = new CUnit("tan<sup><small>-1</small></sup>", Opcodes.ATAN);
+    public static final CUnit SINH = new CUnit("sinh", Opcodes.SINH);
+    public static final CUnit COSH = new CUnit("cosh", Opcodes.COSH);
+    public static final CUnit TANH = new CUnit("tanh", Opcodes.TANH);
+    public static final CUnit ASINH = new CUnit("sinh<sup><small>-1</small></sup>", Opcodes.ASINH);
+    public static final CUnit ACOSH = new CUnit("cosh<sup><small>-1</small></sup>", Opcodes.ACOSH);
+    public static final CUnit ATANH = new CUnit("tanh<sup><small>-1</small></sup>", Opcodes.ATANH);
+
+    public static final CUnit FACTORIAL = new CUnit("!", Opcodes.FACTORIAL);
+    public static final CUnit PERCENT = new CUnit("%", Opcodes.PERCENT);
+    public static final CUnit SQUARED = new CUnit("<sup><small>2</small></sup>", Opcodes.SQUARED);
+    public static final CUnit CUBED = new CUnit("<sup><small>3</small></sup>", Opcodes.CUBED);
+    public static final CUnit INVERSE = new CUnit("<sup><small>-1</small></sup>", Opcodes.INVERSE);
+
+    public static final CUnit ANS = new CUnit("Ans", Opcodes.VARIABLE);
+    public static final CUnit X = new CUnit("X", Opcodes.VARIABLE);
+    public static final CUnit Y = new CUnit("Y", Opcodes.VARIABLE);
+    public static final CUnit Z = new CUnit("Z", Opcodes.VARIABLE);
+    public static final CUnit A = new CUnit("A", Opcodes.VARIABLE);
+    public static final CUnit B = new CUnit("B", Opcodes.VARIABLE);
+    public static final CUnit C = new CUnit("C", Opcodes.VARIABLE);
+    public static final CUnit D = new CUnit("D", Opcodes.VARIABLE);
+    public static final CUnit ALPHA = new CUnit("α", Opcodes.VARIABLE);
+    public static final CUnit BETA = new CUnit("β", Opcodes.VARIABLE);
+    public static final CUnit GAMMA = new CUnit("γ", Opcodes.VARIABLE);
 
     public static final List<CUnit> variables;
     static {
@@ -131,20 +133,25 @@ public class CUnit implements Serializable {
     }
 
     private final String rawDisplay;
-    private final Spanned display;
+    /**
+     * {@link #rawDisplay} parsed as HTML, {@code null} until it is first shown.
+     */
+    private transient volatile Spanned display;
+    private final int code;
 
     /**
      * Constructor for {@link CUnit}.
      *
      * @param display string that is displayed on the screen (output)
+     * @param code operation code from {@link Opcodes}
      * @throws IllegalArgumentException {@code display} is an empty string
      */
-    protected CUnit(@NonNull String display) throws IllegalArgumentException {
-        this.rawDisplay = display;
-        this.display = Html.fromHtml(display, Html.FROM_HTML_MODE_LEGACY);
-        if (this.display.toString().isEmpty()) {
+    CUnit(@NonNull String display, int code) throws IllegalArgumentException {
+        if (display.isEmpty()) {
             throw new IllegalArgumentException("Display is empty.");
         }
+        this.rawDisplay = display;
+        this.code = code;
     }
 
     /**
@@ -154,13 +161,18 @@ public class CUnit implements Serializable {
     @Override
     public String toString() {
         return rawDisplay;
-}
+    }
 
     /**
      * @return String displayed on the screen (output).
      */
     @NonNull
     public Spanned toDisplayString() {
+        Spanned display = this.display;
+        if (display == null) {
+            display = Html.fromHtml(rawDisplay, Html.FROM_HTML_MODE_LEGACY);
+            this.display = display;
+        }
         return display;
     }
 
@@ -168,20 +180,30 @@ public class CUnit implements Serializable {
      * @return length of the string on the display
      */
     public int length() {
-        return display.length();
+        // without markup or entities the display is the same string
+        if (rawDisplay.indexOf('<') < 0 && rawDisplay.indexOf('&') < 0) {
+            return rawDisplay.length();
+        }
+        return toDisplayString().length();
+    }
+
+    /**
+     * @return Operation code from {@link Opcodes}.
+     */
+    int getCode() {
+        return code;
     }
 
     public boolean isDigit() {
-        return this == ZERO || this == ONE || this == TWO || this == THREE || this == FOUR
-                || this == FIVE || this == SIX || this == SEVEN || this == EIGHT || this == NINE;
+        return Opcodes.isDigit(code);
     }
 
     public boolean isDigitOrPoint() {
-        return isDigit() || this == POINT;
+        return Opcodes.isDigitOrPoint(code);
     }
 
     public boolean isPlusOrMinus() {
-        return this == CUnit.PLUS || this == CUnit.MINUS;
+        return Opcodes.isPlusOrMinus(code);
     }
 
     public boolean isDigitOrPlusOrMinus() {
@@ -189,27 +211,26 @@ public class CUnit implements Serializable {
     }
 
     public boolean isTimesOrDivide() {
-        return this == CUnit.TIMES || this == CUnit.DIVIDE;
+        return Opcodes.isTimesOrDivide(code);
     }
 
     public boolean isPermutationOrCombination() {
-        return this == NPR || this == NCR;
+        return Opcodes.isPermutationOrCombination(code);
     }
 
     public boolean isOperator() {
-        return this == PLUS || this == MINUS || this == TIMES || this == DIVIDE ||
-                this == POWER || this == EXP || this == ROOT || this == NPR || this == NCR;
+        return Opcodes.isOperator(code);
     }
 
     public boolean isPreFunction() {
-        return preFunctions.contains(this);
+        return Opcodes.isPreFunction(code);
     }
 
     public boolean isPostFunction() {
-        return postFunctions.contains(this);
+        return Opcodes.isPostFunction(code);
     }
 
     public boolean isVariable() {
-        return this == ANS || variables.contains(this);
+        return code == Opcodes.VARIABLE;
     }
 }
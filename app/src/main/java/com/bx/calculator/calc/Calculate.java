@@ -1,5 +1,6 @@
 package com.bx.calculator.calc;
 
+import com.bx.calculator.calc.exception.CancelledException;
 import com.bx.calculator.calc.exception.OutOfRangeException;
 import com.bx.calculator.calc.exception.VariableException;
 import com.bx.calculator.calc.exception.SyntaxException;
@@ -9,11 +10,18 @@ import com.bx.calculator.calc.exception.UndefinedException;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.ArrayList;
+import java.math.MathContext;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import ch.obermuhlner.math.big.BigComplex;
 import ch.obermuhlner.math.big.BigDecimalMath;
@@ -24,6 +32,19 @@ import ch.obermuhlner.math.big.BigDecimalMath;
 public final class Calculate {
 
     public static final int MAX_EXPONENT = 9999;
+    /**
+     * Largest integer with a factorial in range, 3249! is about 10^10000.
+     */
+    private static final int MAX_FACTORIAL = 3248;
+    /**
+     * Smallest number with a factorial out of range, x! increases for x >= 1.
+     */
+    private static final BigDecimal FACTORIAL_OUT_OF_RANGE = BigDecimal.valueOf(MAX_FACTORIAL + 1);
+    /**
+     * Smallest {@code k = min(r, n - r)} with {@code nCr} certainly out of range, {@code nCr >= 2^k}.
+     */
+    private static final int COMBINATION_OUT_OF_RANGE = (int) Math.ceil((MAX_EXPONENT + 1) / Math.log10(2));
+    private static final double LOG10_SQRT_2 = Math.log10(2) / 2;
 
     /**
      * <p>Calculates the result of a sequence.</p>
@@ -31,22 +52,11 @@ public final class Calculate {
      * <ol>
      *     <li>Check if input sequence is empty.</li>
      *     <li>Check if input sequence contains a {@link CUnit#isVariable()} and if {@code params} has a value for it.</li>
-     *     <li>Catch syntax errors early:<ol type="a">
-     *         <li>{@link CUnit#RIGHT_BRACKET} at beginning or {@link CUnit#LEFT_BRACKET} at end.</li>
-     *         <li>{@link CUnit#isOperator()} at end.</li>
-     *         <li>{@link CUnit#isOperator()} at beginning that is not {@link CUnit#PLUS} or {@link CUnit#MINUS}.</li>
-     *         <li>{@link CUnit#isPostFunction()} at beginning or {@link CUnit#isPreFunction()} at end.</li>
-     *         <li>Consecutive {@link CUnit#POINT}s.</li>
-     *         <li>Contains empty brackets '()'.</li>
-     *         <li>Non-digit or non-point before {@link CUnit#PERCENT}.</li>
-     *         <li>Non-digit or non-point before {@link CUnit#EXP}.</li>
-     *         <li>Non-digit or non plus or minus following {@link CUnit#EXP}.</li>
-     *         <li>If plus or minus following {@link CUnit#EXP}, check if the following is an integer made up of digits.</li>
-     *     </ol></li>
-     *     <li>Prepare the input using {@link #prepareSequence(CExpression, CParams)}.</li>
-     *     <li>Calculate result using {@link #calculate2(CExpression, CParams)}.</li>
-     *     <li>Round the result with {@link Maffs#round(BigComplex)}.</li>
+     *     <li>Compile the input using {@link #compile(CExpression)}.</li>
+     *     <li>Evaluate the result using {@link CompiledExpression#evaluate(CParams)}.</li>
      * </ol>
+     * To calculate the same expression many times with different parameters, compile it once and evaluate the
+     * {@link CompiledExpression} instead.
      *
      * @param expression Expression to calculate.
      * @param params Parameters for calculation.
@@ -56,13 +66,60 @@ public final class Calculate {
      * @throws UndefinedException result is undefined
      * @throws SyntaxException syntax is wrong
      * @throws OutOfRangeException result is out of range
-     * @see #prepareSequence(CExpression, CParams)
-     * @see #calculate2(CExpression, CParams)
+     * @see #compile(CExpression)
+     * @see CompiledExpression#evaluate(CParams)
      * @see #isInRange(BigComplex)
      */
     @NonNull
     public static CResult calculate(@NonNull final CExpression expression, @NonNull final CParams params)
             throws NullPointerException, VariableException, UndefinedException, SyntaxException, OutOfRangeException {
+        return calculate(expression, params, null);
+    }
+
+    /**
+     * Calculates the result of a sequence like {@link #calculate(CExpression, CParams)}, reusing the results of
+     * functions and bracketed groups that were calculated before, eg. when the expression is edited.
+     *
+     * @param expression Expression to calculate.
+     * @param params Parameters for calculation.
+     * @param cache Results of subexpressions to reuse and store, or {@code null}.
+     * @return Result of calculation.
+     * @throws NullPointerException {@code input} or a {@link CUnit} is {@code null}.
+     * @throws VariableException Sequence contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
+     * @throws UndefinedException result is undefined
+     * @throws SyntaxException syntax is wrong
+     * @throws OutOfRangeException result is out of range
+     * @see SubresultCache
+     */
+    @NonNull
+    public static CResult calculate(@NonNull final CExpression expression, @NonNull final CParams params,
+                                    @Nullable final SubresultCache cache)
+            throws NullPointerException, VariableException, UndefinedException, SyntaxException, OutOfRangeException {
+        return calculate(expression, params, cache, null);
+    }
+
+    /**
+     * Calculates the result of a sequence like {@link #calculate(CExpression, CParams, SubresultCache)}, and stops
+     * as soon as {@code token} is cancelled or its deadline passes.
+     *
+     * @param expression Expression to calculate.
+     * @param params Parameters for calculation.
+     * @param cache Results of subexpressions to reuse and store, or {@code null}.
+     * @param token Token that stops the calculation, or {@code null}.
+     * @return Result of calculation.
+     * @throws NullPointerException {@code input} or a {@link CUnit} is {@code null}.
+     * @throws VariableException Sequence contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
+     * @throws UndefinedException result is undefined
+     * @throws SyntaxException syntax is wrong
+     * @throws OutOfRangeException result is out of range
+     * @throws CancelledException {@code token} is cancelled or timed out, or the thread is interrupted.
+     * @see CancellationToken
+     */
+    @NonNull
+    public static CResult calculate(@NonNull final CExpression expression, @NonNull final CParams params,
+                                    @Nullable final SubresultCache cache, @Nullable final CancellationToken token)
+            throws NullPointerException, VariableException, UndefinedException, SyntaxException, OutOfRangeException,
+            CancelledException {
         // 1. Empty sequence
         if (expression.size() == 0) {
             throw new SyntaxException();
@@ -73,7 +130,126 @@ public final class Calculate {
                 throw new VariableException();
             }
         }
-        // 3. Syntax errors
+        // 3. Compile
+        final CompiledExpression compiled = compile(expression);
+        // 4. Evaluate
+        return compiled.evaluate(params, cache, token);
+    }
+
+    /**
+     * Calculates many expressions in parallel with the {@link ForkJoinPool#commonPool()}. An exception of an
+     * expression is stored in its {@link CBatchResult} and does not stop the others.
+     *
+     * @param expressions Expressions to calculate.
+     * @param params Parameters for every calculation.
+     * @return Results in the same order as {@code expressions}.
+     * @throws NullPointerException {@code expressions} or {@code params} is {@code null}.
+     * @see #calculateAll(List, CParams, CancellationToken, ForkJoinPool)
+     */
+    @NonNull
+    public static List<CBatchResult> calculateAll(@NonNull final List<CExpression> expressions,
+                                                  @NonNull final CParams params) throws NullPointerException {
+        return calculateAll(expressions, params, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calculates many expressions in parallel with a {@link ForkJoinPool}, like {@link #calculateAll(List, CParams)}.
+     * The expressions that have not finished when {@code token} is cancelled have a
+     * {@link CancelledException}.
+     *
+     * @param expressions Expressions to calculate.
+     * @param params Parameters for every calculation.
+     * @param token Token that stops the calculations, or {@code null}.
+     * @param pool Pool which calculates the expressions.
+     * @return Results in the same order as {@code expressions}.
+     * @throws NullPointerException {@code expressions}, {@code params} or {@code pool} is {@code null}.
+     */
+    @NonNull
+    public static List<CBatchResult> calculateAll(@NonNull final List<CExpression> expressions,
+                                                  @NonNull final CParams params, @Nullable final CancellationToken token,
+                                                  @NonNull final ForkJoinPool pool) throws NullPointerException {
+        Objects.requireNonNull(params);
+        final CExpression[] items = expressions.toArray(new CExpression[0]);
+        final CBatchResult[] results = new CBatchResult[items.length];
+        pool.invoke(new BatchTask(items, params, token, results, 0, items.length));
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * <p>Returns a lazy parallel stream of the results of many expressions, so results can be used as soon as they
+     * are calculated instead of after the whole batch, eg. with {@link Stream#forEachOrdered(java.util.function.Consumer)}
+     * to receive them in order, or {@link Stream#forEach(java.util.function.Consumer)} as they finish.</p>
+     * <p>The expressions are calculated by the {@link ForkJoinPool} of the terminal operation, which is the
+     * {@link ForkJoinPool#commonPool()} unless it is called from a task of another pool. An exception of an
+     * expression is stored in its {@link CBatchResult} and does not stop the stream.</p>
+     *
+     * @param expressions Expressions to calculate. The list is copied.
+     * @param params Parameters for every calculation.
+     * @return Stream of the results, in the same encounter order as {@code expressions}.
+     * @throws NullPointerException {@code expressions} or {@code params} is {@code null}.
+     */
+    @NonNull
+    public static Stream<CBatchResult> calculateStream(@NonNull final List<CExpression> expressions,
+                                                       @NonNull final CParams params) throws NullPointerException {
+        Objects.requireNonNull(params);
+        final CExpression[] items = expressions.toArray(new CExpression[0]);
+        return IntStream.range(0, items.length).parallel().mapToObj(i -> calculateItem(i, items[i], params, null));
+    }
+
+    /**
+     * @return Result of an expression of a batch, or the exception it throws.
+     */
+    @NonNull
+    private static CBatchResult calculateItem(int index, @NonNull CExpression expression, @NonNull CParams params,
+                                              @Nullable CancellationToken token) {
+        try {
+            return new CBatchResult(index, expression, calculate(expression, params, null, token), null);
+        } catch (RuntimeException e) {
+            return new CBatchResult(index, expression, null, e);
+        }
+    }
+
+    /**
+     * <p>Parses a sequence into a {@link CompiledExpression} that can be evaluated many times.</p>
+     * Method:
+     * <ol>
+     *     <li>Check if input sequence is empty.</li>
+     *     <li>Catch syntax errors early:<ol type="a">
+     *         <li>{@link CUnit#RIGHT_BRACKET} at beginning or {@link CUnit#LEFT_BRACKET} at end.</li>
+     *         <li>{@link CUnit#isOperator()} at end.</li>
+     *         <li>{@link CUnit#isOperator()} at beginning that is not {@link CUnit#PLUS} or {@link CUnit#MINUS}.</li>
+     *         <li>{@link CUnit#isPostFunction()} at beginning or {@link CUnit#isPreFunction()} at end.</li>
+     *         <li>Consecutive {@link CUnit#POINT}s.</li>
+     *         <li>Contains empty brackets '()'.</li>
+     *         <li>Non-digit or non-point before {@link CUnit#PERCENT}.</li>
+     *         <li>Non-digit or non-point before {@link CUnit#EXP}.</li>
+     *         <li>Non-digit or non plus or minus following {@link CUnit#EXP}.</li>
+     *         <li>If plus or minus following {@link CUnit#EXP}, check if the following is an integer made up of digits.</li>
+     *     </ol></li>
+     *     <li>Encode the input into {@link Opcodes} tokens using {@link CTokens#tokenize(CExpression)}.</li>
+     *     <li>Parse the tokens into an operation tree in a single pass using {@link CParser}.</li>
+     *     <li>Rewrite the tree with {@link COptimizer}, eg. fold constants and use Horner's method for
+     *     polynomials.</li>
+     * </ol>
+     *
+     * @param expression Expression to compile.
+     * @return Compiled expression.
+     * @throws NullPointerException {@code input} or a {@link CUnit} is {@code null}.
+     * @throws SyntaxException syntax is wrong
+     * @throws UndefinedException a number in the input is undefined, eg. a non-integer {@link CUnit#EXP}
+     * @throws OutOfRangeException a number in the input is out of range
+     * @see CTokens
+     * @see CParser
+     * @see COptimizer
+     */
+    @NonNull
+    public static CompiledExpression compile(@NonNull final CExpression expression)
+            throws NullPointerException, SyntaxException, UndefinedException, OutOfRangeException {
+        // 1. Empty sequence
+        if (expression.size() == 0) {
+            throw new SyntaxException();
+        }
+        // 2. Syntax errors
         if (expression.get(0) == CUnit.RIGHT_BRACKET || expression.get(expression.size() - 1) == CUnit.LEFT_BRACKET) {
             throw new SyntaxException();
         }
@@ -114,130 +290,429 @@ public final class Calculate {
                 }
             }
         }
-        // 4. Prepare
-        final CExpression prepared = prepareSequence(expression, params);
-        // 5. Calculate
-        final BigComplex resultNumber = requireInRange(calculate2(prepared, params));
-        // 6. Round
-        final BigComplex rounded = Maffs.round(resultNumber);
-        return new CResult(expression.toArray(), rounded, params);
+        // 3. Tokenize
+        final CTokens tokens = CTokens.tokenize(expression);
+        // 4. Parse
+        final CNode root = new CParser(tokens).parse();
+        return new CompiledExpression(expression.toArray(), root);
     }
 
+    /**
+     * @param op {@link CUnit#isOperator()}
+     * @param n1 left operand
+     * @param n2 right operand
+     * @return result of the operation, rounded with {@link Maffs#round(BigComplex)}
+     * @throws IllegalArgumentException {@code op} is not an operator
+     * @throws UndefinedException result is undefined
+     * @throws OutOfRangeException result is out of range
+     */
     @NonNull
     public static BigComplex calculateOperator(@NonNull final CUnit op, @NonNull final BigComplex n1, @NonNull final BigComplex n2)
+            throws NullPointerException, IllegalArgumentException, OutOfRangeException, UndefinedException {
+        return calculateOperator(op, n1, n2, Maffs.MC);
+    }
+
+    /**
+     * @param mc precision of the operation and of the rounding of the result
+     * @see #calculateOperator(CUnit, BigComplex, BigComplex)
+     */
+    @NonNull
+    public static BigComplex calculateOperator(@NonNull final CUnit op, @NonNull final BigComplex n1, @NonNull final BigComplex n2,
+                                               @NonNull final MathContext mc)
+            throws NullPointerException, IllegalArgumentException, OutOfRangeException, UndefinedException {
+        if (!op.isOperator()) {
+            throw new IllegalArgumentException("Unrecognized operator: " + op);
+        }
+        return calculateOperator(op.getCode(), n1, n2, mc);
+    }
+
+    /**
+     * @param op Operator code from {@link Opcodes}.
+     * @see #calculateOperator(CUnit, BigComplex, BigComplex, MathContext)
+     */
+    @NonNull
+    static BigComplex calculateOperator(final int op, @NonNull final BigComplex n1, @NonNull final BigComplex n2,
+                                        @NonNull final MathContext mc)
             throws NullPointerException, OutOfRangeException, UndefinedException {
-        final BigComplex result;
-        if (op == CUnit.PLUS) {
-            result = Maffs.add(n1, n2);
-        } else if (op == CUnit.MINUS) {
-            result = Maffs.subtract(n1, n2);
-        } else if (op == CUnit.TIMES) {
-            result = Maffs.multiply(n1, n2);
-        } else if (op == CUnit.DIVIDE) {
-            result = Maffs.divide(n1, n2);
-        } else if (op == CUnit.POWER) {
-            result = Maffs.pow(n1, n2);
-        } else if (op == CUnit.EXP) {
-            if (!n2.isReal()) {
-                throw new UndefinedException();
-            } else if (!Maffs.isInteger(n2.re)) {
-                throw new UndefinedException();
-            } else if (!BigDecimalMath.isIntValue(n2.re)) { // is integer but not int
-                throw new OutOfRangeException();
-            }
-            final int exponent = n2.re.intValueExact();
-            if (!isExponentInRange(exponent)) {         // exponent > 9999
-                throw new OutOfRangeException();
-            }
-            result = Maffs.scaleByPowerOfTen(n1, exponent);
-        } else if (op == CUnit.ROOT) {
-            result = Maffs.root(n2, n1);
-        } else if (op == CUnit.NPR) {
-            if (n1.isReal() && n2.isReal()) {
-                result = BigComplex.valueOf(Maffs.permutation(n1.re, n2.re));
-            } else {
-                throw new UndefinedException();
+        if (n1.isReal() && n2.isReal()) {
+            final BigDecimal real = calculateRealOperator(op, n1.re, n2.re, mc);
+            if (real != null) {
+                return BigComplex.valueOf(real);
             }
-        } else if (op == CUnit.NCR) {
-            if (n1.isReal() && n2.isReal()) {
-                result = BigComplex.valueOf(Maffs.combination(n1.re, n2.re));
-            } else {
-                throw new UndefinedException();
-            }
-        } else {
-            throw new IllegalArgumentException("Unrecognized operator: " + op);
         }
-        return requireInRange(Maffs.round(result));
+        final BigComplex result;
+        switch (op) {
+            case Opcodes.PLUS:
+                result = Maffs.add(n1, n2);
+                break;
+            case Opcodes.MINUS:
+                result = Maffs.subtract(n1, n2);
+                break;
+            case Opcodes.TIMES:
+                result = Maffs.multiply(n1, n2, mc);
+                break;
+            case Opcodes.DIVIDE:
+                result = Maffs.divide(n1, n2, mc);
+                break;
+            case Opcodes.POWER:
+                if (n2.isReal()) {
+                    requirePowerInRange(n1.re.abs().max(n1.im.abs()), !n1.isReal(), n2.re);
+                }
+                result = Maffs.pow(n1, n2, mc);
+                break;
+            case Opcodes.EXP:
+                if (!n2.isReal()) {
+                    throw new UndefinedException();
+                }
+                result = Maffs.scaleByPowerOfTen(n1, requireExponent(n2.re));
+                break;
+            case Opcodes.ROOT:
+                result = Maffs.root(n2, n1, mc);
+                break;
+            case Opcodes.NPR:
+                if (n1.isReal() && n2.isReal()) {
+                    requirePermutationInRange(false, n1.re, n2.re);
+                    result = BigComplex.valueOf(Maffs.permutation(n1.re, n2.re, mc));
+                } else {
+                    throw new UndefinedException();
+                }
+                break;
+            case Opcodes.NCR:
+                if (n1.isReal() && n2.isReal()) {
+                    requirePermutationInRange(true, n1.re, n2.re);
+                    result = BigComplex.valueOf(Maffs.combination(n1.re, n2.re, mc));
+                } else {
+                    throw new UndefinedException();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unrecognized operator: " + op);
+        }
+        return requireInRange(Maffs.round(result, mc));
     }
 
+    /**
+     * @param func {@link CUnit#isPreFunction()}, {@link CUnit#isPostFunction()}, {@link CUnit#PLUS} or {@link CUnit#MINUS}
+     * @param n argument
+     * @param angleUnit angle unit of trigonometric functions
+     * @return result of the function, rounded with {@link Maffs#round(BigComplex)}
+     * @throws IllegalArgumentException {@code func} is not a function
+     * @throws UndefinedException result is undefined
+     * @throws OutOfRangeException result is out of range
+     */
     @NonNull
     public static BigComplex calculateFunction(@NonNull final CUnit func, @NonNull final BigComplex n, final AngleUnit angleUnit)
+            throws NullPointerException, IllegalArgumentException, UndefinedException, OutOfRangeException {
+        return calculateFunction(func, n, angleUnit, Maffs.MC);
+    }
+
+    /**
+     * @param mc precision of the function and of the rounding of the result
+     * @see #calculateFunction(CUnit, BigComplex, AngleUnit)
+     */
+    @NonNull
+    public static BigComplex calculateFunction(@NonNull final CUnit func, @NonNull final BigComplex n, final AngleUnit angleUnit,
+                                               @NonNull final MathContext mc)
+            throws NullPointerException, IllegalArgumentException, UndefinedException, OutOfRangeException {
+        if (!func.isPreFunction() && !func.isPostFunction() && !func.isPlusOrMinus()) {
+            throw new IllegalArgumentException("Unrecognized function: " + func);
+        }
+        return calculateFunction(func.getCode(), n, angleUnit, mc);
+    }
+
+    /**
+     * @param func Function code from {@link Opcodes}.
+     * @see #calculateFunction(CUnit, BigComplex, AngleUnit, MathContext)
+     */
+    @NonNull
+    static BigComplex calculateFunction(final int func, @NonNull final BigComplex n, final AngleUnit angleUnit,
+                                        @NonNull final MathContext mc)
             throws NullPointerException, UndefinedException, OutOfRangeException {
         // TODO set boundaries for factorial, sinh etc.
+        if (n.isReal()) {
+            final BigDecimal real = calculateRealFunction(func, n.re, angleUnit, mc);
+            if (real != null) {
+                return BigComplex.valueOf(real);
+            }
+        }
         final BigComplex result;
-        if (func == CUnit.PLUS) {
-            result = n;
-        } else if (func == CUnit.MINUS) {
-            result = n.negate();
-        } else if (func == CUnit.ABS) {
-            result = BigComplex.valueOf(Maffs.abs(n));
-        } else if (func == CUnit.LOG) {
-            result = Maffs.log(n);
-        } else if (func == CUnit.LOG10) {
-            result = Maffs.log10(n);
-        } else if (func == CUnit.LOG2) {
-            result = Maffs.log2(n);
-        } else if (func == CUnit.SQRT) {
-            result = Maffs.sqrt(n);
-        } else if (func == CUnit.SIN) {
-            result = Maffs.sin(n, angleUnit);
-        } else if (func == CUnit.COS) {
-            result = Maffs.cos(n, angleUnit);
-        } else if (func == CUnit.TAN) {
-            result = Maffs.tan(n, angleUnit);
-        } else if (func == CUnit.ASIN) {
-            result = Maffs.asin(n, angleUnit);
-        } else if (func == CUnit.ACOS) {
-            result = Maffs.acos(n, angleUnit);
-        } else if (func == CUnit.ATAN) {
-            result = Maffs.atan(n, angleUnit);
-        } else if (func == CUnit.SINH) {
-            result = Maffs.sinh(n);
-        } else if (func == CUnit.COSH) {
-            result = Maffs.cosh(n);
-        } else if (func == CUnit.TANH) {
-            result = Maffs.tanh(n);
-        } else if (func == CUnit.ASINH) {
-            result = Maffs.asinh(n);
-        } else if (func == CUnit.ACOSH) {
-            result = Maffs.acosh(n);
-        } else if (func == CUnit.ATANH) {
-            result = Maffs.atanh(n);
-        } else if (func == CUnit.CSC) {
-            result = Maffs.csc(n, angleUnit);
-        } else if (func == CUnit.SEC) {
-            result = Maffs.sec(n, angleUnit);
-        } else if (func == CUnit.COT) {
-            result = Maffs.cot(n, angleUnit);
-        } else if (func == CUnit.FACTORIAL) {
-            result = Maffs.factorial(n);
-        } else if (func == CUnit.SQUARED) {
-            result = Maffs.squared(n);
-        } else if (func == CUnit.CUBED) {
-            result = Maffs.multiply(Maffs.squared(n), n);
-        } else if (func == CUnit.INVERSE) {
-            result = Maffs.inverse(n);
-        } else if (func == CUnit.PERCENT) {
-            result = Maffs.scaleByPowerOfTen(n, -2);
-        } else if (func == CUnit.ARG) {
-            final BigDecimal resultReal = angleUnit == AngleUnit.DEG ? Maffs.arg(n, AngleUnit.DEG) : Maffs.arg(n, AngleUnit.RAD);
-            result = BigComplex.valueOf(resultReal);
-        } else if (func == CUnit.CONJ) {
-            result = Maffs.conjugate(n);
-        } else {
-            throw new IllegalArgumentException("Unrecognized function: " + func);
+        switch (func) {
+            case Opcodes.PLUS:
+                result = n;
+                break;
+            case Opcodes.MINUS:
+                result = n.negate();
+                break;
+            case Opcodes.ABS:
+                result = BigComplex.valueOf(Maffs.abs(n, mc));
+                break;
+            case Opcodes.LOG:
+                result = Maffs.log(n, mc);
+                break;
+            case Opcodes.LOG10:
+                result = Maffs.log10(n, mc);
+                break;
+            case Opcodes.LOG2:
+                result = Maffs.log2(n, mc);
+                break;
+            case Opcodes.SQRT:
+                result = Maffs.sqrt(n, mc);
+                break;
+            case Opcodes.SIN:
+                result = Maffs.sin(n, angleUnit, mc);
+                break;
+            case Opcodes.COS:
+                result = Maffs.cos(n, angleUnit, mc);
+                break;
+            case Opcodes.TAN:
+                result = Maffs.tan(n, angleUnit, mc);
+                break;
+            case Opcodes.ASIN:
+                result = Maffs.asin(n, angleUnit, mc);
+                break;
+            case Opcodes.ACOS:
+                result = Maffs.acos(n, angleUnit, mc);
+                break;
+            case Opcodes.ATAN:
+                result = Maffs.atan(n, angleUnit, mc);
+                break;
+            case Opcodes.SINH:
+                result = Maffs.sinh(n, mc);
+                break;
+            case Opcodes.COSH:
+                result = Maffs.cosh(n, mc);
+                break;
+            case Opcodes.TANH:
+                result = Maffs.tanh(n, mc);
+                break;
+            case Opcodes.ASINH:
+                result = Maffs.asinh(n, mc);
+                break;
+            case Opcodes.ACOSH:
+                result = Maffs.acosh(n, mc);
+                break;
+            case Opcodes.ATANH:
+                result = Maffs.atanh(n, mc);
+                break;
+            case Opcodes.CSC:
+                result = Maffs.csc(n, angleUnit, mc);
+                break;
+            case Opcodes.SEC:
+                result = Maffs.sec(n, angleUnit, mc);
+                break;
+            case Opcodes.COT:
+                result = Maffs.cot(n, angleUnit, mc);
+                break;
+            case Opcodes.FACTORIAL:
+                if (n.re.compareTo(FACTORIAL_OUT_OF_RANGE) >= 0 && n.isReal()) {
+                    throw new OutOfRangeException();
+                }
+                result = Maffs.factorial(n, mc);
+                break;
+            case Opcodes.SQUARED:
+                result = Maffs.pow(n, 2, mc);
+                break;
+            case Opcodes.CUBED:
+                result = Maffs.pow(n, 3, mc);
+                break;
+            case Opcodes.INVERSE:
+                result = Maffs.inverse(n, mc);
+                break;
+            case Opcodes.PERCENT:
+                result = Maffs.scaleByPowerOfTen(n, -2);
+                break;
+            case Opcodes.ARG:
+                final BigDecimal resultReal = angleUnit == AngleUnit.DEG ? Maffs.arg(n, AngleUnit.DEG, mc) : Maffs.arg(n, AngleUnit.RAD, mc);
+                result = BigComplex.valueOf(resultReal);
+                break;
+            case Opcodes.CONJ:
+                result = Maffs.conjugate(n);
+                break;
+            default:
+                throw new IllegalArgumentException("Unrecognized function: " + func);
         }
-        return requireInRange(Maffs.round(result));
+        return requireInRange(Maffs.round(result, mc));
+    }
+
+    // -------- REAL NUMBERS ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Operation of real operands calculated with {@link BigDecimal}s only, so the imaginary parts are not calculated,
+     * rounded or checked. Used by {@link #calculateOperator(int, BigComplex, BigComplex, MathContext)} while the
+     * operands are real.
+     *
+     * @return Result of the operation, rounded with {@link Maffs#round(BigDecimal, MathContext)}, or {@code null} if
+     * the result may not be real, eg. a negative number to the power of 0.5.
+     * @see #calculateOperator(int, BigComplex, BigComplex, MathContext)
+     */
+    @Nullable
+    static BigDecimal calculateRealOperator(final int op, @NonNull final BigDecimal n1, @NonNull final BigDecimal n2,
+                                            @NonNull final MathContext mc)
+            throws OutOfRangeException, UndefinedException {
+        final BigDecimal result;
+        switch (op) {
+            case Opcodes.PLUS:
+                result = n1.add(n2);
+                break;
+            case Opcodes.MINUS:
+                result = n1.subtract(n2);
+                break;
+            case Opcodes.TIMES:
+                result = Maffs.multiply(n1, n2, mc);
+                break;
+            case Opcodes.DIVIDE:
+                result = Maffs.divide(n1, n2, mc);
+                break;
+            case Opcodes.POWER:
+                if (n1.signum() < 0 && !BigDecimalMath.isIntValue(n2)) {
+                    return null;
+                }
+                requirePowerInRange(n1.abs(), false, n2);
+                result = Maffs.pow(n1, n2, mc);
+                break;
+            case Opcodes.EXP:
+                result = n1.scaleByPowerOfTen(requireExponent(n2));
+                break;
+            case Opcodes.ROOT:
+                if (n2.signum() <= 0 || n1.signum() == 0) {
+                    return null;
+                }
+                result = Maffs.pow(n2, Maffs.divide(BigDecimal.ONE, n1, mc), mc);
+                break;
+            case Opcodes.NPR:
+                requirePermutationInRange(false, n1, n2);
+                result = Maffs.permutation(n1, n2, mc);
+                break;
+            case Opcodes.NCR:
+                requirePermutationInRange(true, n1, n2);
+                result = Maffs.combination(n1, n2, mc);
+                break;
+            default:
+                return null;
+        }
+        return requireInRange(Maffs.round(result, mc));
+    }
+
+    /**
+     * Function of a real argument calculated with {@link BigDecimal}s only, like
+     * {@link #calculateRealOperator(int, BigDecimal, BigDecimal, MathContext)}.
+     *
+     * @return Result of the function, rounded with {@link Maffs#round(BigDecimal, MathContext)}, or {@code null} if
+     * the result may not be real, eg. the square root of a negative number.
+     * @see #calculateFunction(int, BigComplex, AngleUnit, MathContext)
+     */
+    @Nullable
+    static BigDecimal calculateRealFunction(final int func, @NonNull final BigDecimal n, final AngleUnit angleUnit,
+                                            @NonNull final MathContext mc)
+            throws UndefinedException, OutOfRangeException {
+        final BigDecimal result;
+        switch (func) {
+            case Opcodes.PLUS:
+            case Opcodes.CONJ:
+                result = n;
+                break;
+            case Opcodes.MINUS:
+                result = n.negate();
+                break;
+            case Opcodes.ABS:
+                result = n.abs();
+                break;
+            case Opcodes.LOG:
+            case Opcodes.LOG10:
+            case Opcodes.LOG2:
+                if (n.signum() <= 0) {
+                    return null;
+                }
+                result = func == Opcodes.LOG ? BigDecimalMath.log(n, mc)
+                        : func == Opcodes.LOG10 ? BigDecimalMath.log10(n, mc) : BigDecimalMath.log2(n, mc);
+                break;
+            case Opcodes.SQRT:
+                if (n.signum() < 0) {
+                    return null;
+                }
+                result = BigDecimalMath.sqrt(n, mc);
+                break;
+            case Opcodes.SIN:
+                result = Maffs.sin(n, angleUnit, mc);
+                break;
+            case Opcodes.COS:
+                result = Maffs.cos(n, angleUnit, mc);
+                break;
+            case Opcodes.TAN:
+                result = Maffs.tan(n, angleUnit, mc);
+                break;
+            case Opcodes.CSC:
+                result = Maffs.csc(n, angleUnit, mc);
+                break;
+            case Opcodes.SEC:
+                result = Maffs.sec(n, angleUnit, mc);
+                break;
+            case Opcodes.COT:
+                result = Maffs.cot(n, angleUnit, mc);
+                break;
+            case Opcodes.ASIN:
+            case Opcodes.ACOS:
+                if (n.abs().compareTo(BigDecimal.ONE) > 0) {
+                    return null;
+                }
+                result = func == Opcodes.ASIN ? Maffs.asin(n, angleUnit, mc) : Maffs.acos(n, angleUnit, mc);
+                break;
+            case Opcodes.ATAN:
+                result = Maffs.atan(n, angleUnit, mc);
+                break;
+            case Opcodes.SINH:
+                result = Maffs.sinh(n, mc);
+                break;
+            case Opcodes.COSH:
+                result = Maffs.cosh(n, mc);
+                break;
+            case Opcodes.TANH:
+                result = Maffs.tanh(n, mc);
+                break;
+            case Opcodes.ASINH:
+                result = BigDecimalMath.asinh(n, mc);
+                break;
+            case Opcodes.ACOSH:
+                if (n.compareTo(BigDecimal.ONE) < 0) {
+                    return null;
+                }
+                result = BigDecimalMath.acosh(n, mc);
+                break;
+            case Opcodes.ATANH:
+                if (n.abs().compareTo(BigDecimal.ONE) >= 0) {
+                    return null;
+                }
+                result = BigDecimalMath.atanh(n, mc);
+                break;
+            case Opcodes.FACTORIAL:
+                if (n.compareTo(FACTORIAL_OUT_OF_RANGE) >= 0) {
+                    throw new OutOfRangeException();
+                }
+                result = Maffs.factorial(n, mc);
+                break;
+            case Opcodes.SQUARED:
+                result = Maffs.pow(n, 2, mc);
+                break;
+            case Opcodes.CUBED:
+                result = Maffs.pow(n, 3, mc);
+                break;
+            case Opcodes.INVERSE:
+                result = Maffs.divide(BigDecimal.ONE, n, mc);
+                break;
+            case Opcodes.PERCENT:
+                result = n.movePointLeft(2);
+                break;
+            case Opcodes.ARG:
+                if (n.signum() == 0) {
+                    throw new UndefinedException();
+                }
+                result = n.signum() > 0 ? BigDecimal.ZERO
+                        : angleUnit == AngleUnit.DEG ? BigDecimal.valueOf(180) : Maffs.pi(mc);
+                break;
+            default:
+                return null;
+        }
+        return requireInRange(Maffs.round(result, mc));
     }
 
     /**
@@ -304,384 +779,151 @@ public final class Calculate {
         }
     }
 
-    // -------- CALCULATE HELPER FUNCTIONS -----------------------------------------------------------------------------------
-
     /**
-     * Called from {@link #calculate(CExpression, CParams)}, prepares a sequence for calculation.
-     * The original sequence is not modified. The preparation process is:
-     * <ol>
-     *     <li>Check if input sequence is empty.</li>
-     *     <li>Balance brackets.</li>
-     *     <li>Combine {@link CUnit#PLUS} and {@link CUnit#MINUS} units.</li>
-     *     <li>Combine {@link CUnit#isDigit()} and {@link CUnit#POINT} and into number values.</li>
-     *     <li>Evaluate {@link CUnit#EXP} and {@link CUnit#PERCENT} operations/functions.</li>
-     *     <li>Replace {@link CUnit#isVariable()} with the value given in {@code params}.</li>
-     * </ol>
-     * This method makes sure the output sequence will:
-     * <ul>
-     *     <li>Not be empty.</li>
-     *     <li>Have balanced brackets.</li>
-     *     <li>Not have consecutive {@link CUnit#PLUS} and {@link CUnit#MINUS} units.</li>
-     *     <li>Not contain {@link CUnit#isDigit()} or {@link CUnit#POINT} units.</li>
-     *     <li>Not contain {@link CUnit#EXP} or {@link CUnit#PERCENT} units.</li>
-     *     <li>Not contain any constants.</li>
-     *     <li>Not contain any {@link CUnit#isVariable()}.</li>
-     * </ul>
-     *
-     * @param expression input sequence to prepare
-     * @param params Parameters of the calculation.
-     * @return prepared sequence
-     * @throws VariableException Sequence contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
-     * @throws SyntaxException Syntax error.
-     * @throws OutOfRangeException A number that is out of range was encountered.
-     * @see #calculate(CExpression, CParams)
-     * @see #isInRange(BigComplex)
+     * @param n real number to check if in range
+     * @return {@code n} if it is in range
+     * @throws OutOfRangeException if {@code n} is out of range
+     * @see #isInRange(BigDecimal)
      */
     @NonNull
-    private static CExpression prepareSequence(@NonNull CExpression expression, @NonNull CParams params)
-            throws VariableException, SyntaxException, OutOfRangeException {
-        // 1. Empty sequence
-        if (expression.size() == 0) {
-            throw new SyntaxException();
-        }
-        final List<CUnit> prepared = expression.toList();
-        // 2. balance brackets
-        int bracketCount = 0;
-        for (CUnit u: prepared) {
-            if (u == CUnit.LEFT_BRACKET) {
-                bracketCount++;
-            } else if (u == CUnit.RIGHT_BRACKET) {
-                bracketCount--;
-            }
-            if (bracketCount < 0) {
-                throw new SyntaxException();
-            }
-        }
-        for (int i = 0; i < bracketCount; i++) {
-            prepared.add(CUnit.RIGHT_BRACKET);
-        }
-        // 3. combine plus/minus
-        for (int i = 0; i < prepared.size() - 1; i++) {
-            final CUnit u1 = prepared.get(i);
-            final CUnit u2 = prepared.get(i + 1);
-            if (u1.isPlusOrMinus() && u2.isPlusOrMinus()) {
-                if (u1 == u2) {    // ++ or --
-                    prepared.set(i, CUnit.PLUS);
-                } else {                // +- or -+
-                    prepared.set(i, CUnit.MINUS);
-                }
-                prepared.remove(i + 1);
-                i--;
-            }
-        }
-        // 4. combine digits into number
-        for (int i = 0; i < prepared.size(); i++) {
-            if (prepared.get(i).isDigitOrPoint()) {
-                final StringBuilder combinedString = new StringBuilder();
-                do {
-                    combinedString.append(prepared.remove(i).toString());
-                } while (i < prepared.size() && prepared.get(i).isDigitOrPoint());
-                try {
-                    prepared.add(i, new CNum(combinedString.toString()));
-                } catch (NumberFormatException e) {
-                    throw new SyntaxException(e.getMessage());
-                }
-            }
-        }
-        // 5. EXP and PERCENT
-        for (int i = 0; i < prepared.size() - 2; i++) {
-            final CUnit u1 = prepared.get(i);
-            final CUnit u2 = prepared.get(i + 1);
-            final CUnit u3 = prepared.get(i + 2);
-            if (u2 == CUnit.EXP) {
-                if (u1 instanceof CNum && ((CNum) u1).isCombinedFromDigits()) {
-                    final BigComplex expResult;
-                    if (u3 instanceof CNum && ((CNum) u3).isCombinedFromDigits()) {     // n ^ m
-                        expResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) u3).getNum());
-                    } else if (i < prepared.size() - 3 && u3.isPlusOrMinus()
-                            && prepared.get(i + 3) instanceof CNum && ((CNum) prepared.get(i + 3)).isCombinedFromDigits()) { // n ^ +- m
-                        expResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) prepared.get(i + 3)).getSignedNum(u3));
-                        prepared.remove(i + 3);
-                    } else {
-                        throw new SyntaxException();
-                    }
-                    prepared.set(i, new CNum(expResult));
-                    prepared.remove(i + 2);
-                    prepared.remove(i + 1);
-                    i--;
-                } else {
-                    throw new SyntaxException();
-                }
-            }
+    public static BigDecimal requireInRange(@NonNull BigDecimal n) throws OutOfRangeException {
+        if (isInRange(n)) {
+            return n;
+        } else {
+            throw new OutOfRangeException();
         }
-        for (int i = 0; i < prepared.size() - 1; i++) {
-            final CUnit u1 = prepared.get(i);
-            final CUnit u2 = prepared.get(i + 1);
-            if (u2 == CUnit.PERCENT) {
-                if (u1 instanceof CNum && ((CNum) u1).isCombinedFromDigits()) {
-                    final BigComplex funcResult = calculateFunction(u2, ((CNum) u1).getNum(), AngleUnit.RAD);
-                    prepared.set(i, new CNum(funcResult));
-                    prepared.remove(i + 1);
-                    i--;
-                } else {
-                    throw new SyntaxException();
-                }
-            }
+    }
+
+    /**
+     * @param n Exponent of {@link Opcodes#EXP}.
+     * @return The exponent as an {@code int}.
+     * @throws UndefinedException {@code n} is not an integer.
+     * @throws OutOfRangeException {@code n} is out of range.
+     */
+    private static int requireExponent(@NonNull BigDecimal n) throws UndefinedException, OutOfRangeException {
+        if (!Maffs.isInteger(n)) {
+            throw new UndefinedException();
+        } else if (!BigDecimalMath.isIntValue(n)) { // is integer but not int
+            throw new OutOfRangeException();
         }
-        // 7. Variables
-        for (int i = 0; i < prepared.size(); i++) {
-            final CUnit u = prepared.get(i);
-            if (u.isVariable()) {
-                if (params.getValue(u) == null) {
-                    throw new VariableException();
-                }
-                prepared.set(i, new CNum(params.getValue(u), false));
-            }
+        final int exponent = n.intValueExact();
+        if (!isExponentInRange(exponent)) {         // exponent > 9999
+            throw new OutOfRangeException();
         }
-        return new CExpression(prepared);
+        return exponent;
     }
 
     /**
-     * <p>Called from {@link #calculate(CExpression, CParams)}. Calculates the input sequence.
-     * Assumes that the input is prepared using {@link #prepareSequence(CExpression, CParams)}.</p>
-     * <p>Evaluation order:</p>
-     * <ol>
-     *     <li>Check for empty sequence (empty if called from empty brackets).</li>
-     *     <li>Evaluate brackets (recursion)</li>
-     *     <li>{@link CUnit#isPostFunction()}</li>
-     *     <li>{@link CUnit#POWER}</li>
-     *     <li>{@link CUnit#ROOT}</li>
-     *     <li>Evaluate {@link CUnit#isPreFunction()} recursively like brackets. PreFunc, sign and consecutive {@link CNum} is within scope, scope
-     *     must end with value.</li>
-     *     <li>Consecutive {@link CNum}s (multiply).</li>
-     *     <li>Permutation, combination.</li>
-     *     <li>{@link CUnit#TIMES}, {@link CUnit#DIVIDE}</li>
-     *     <li>{@link CUnit#PLUS}, {@link CUnit#MINUS}</li>
-     *     <li>If last remaining {@link CUnit} is a {@link CNum}, return result.</li>
-     * </ol>
+     * <p>Rejects permutations and combinations that are certainly out of range, so they are not calculated. Undefined
+     * arguments are left to {@link Maffs}.</p>
+     * <p>The lower bounds of the results are {@code nPr >= r!}, {@code nPr >= (n - r + 1)^r}, and
+     * {@code nCr >= (n / k)^k >= 2^k} with {@code k = min(r, n - r)}. A result rejected by these bounds would be
+     * rejected by {@link #requireInRange(BigComplex)}, the bounds are compared with a margin for the rounding of
+     * {@code double}.</p>
      *
-     * @param input prepared sequence
-     * @param params Parameters of the calculation.
-     * @return result of calculation
-     * @throws SyntaxException syntax error
-     * @throws UndefinedException result is undefined
-     * @throws OutOfRangeException result is out of range
-     * @see #calculate(CExpression, CParams)
-     * @see #prepareSequence(CExpression, CParams)
+     * @param combination true for {@code nCr}, false for {@code nPr}.
+     * @throws OutOfRangeException The result is out of range.
      */
-    private static BigComplex calculate2(@NonNull final CExpression input, final CParams params)
-            throws SyntaxException, UndefinedException, OutOfRangeException {
-        if (input.size() == 0) {
-            throw new SyntaxException();
-        }
-        final List<CUnit> temp = new ArrayList<>(input.toList());
-        // 2. brackets
-        for (int i = 0; i < temp.size(); i++) {
-            if (temp.get(i) == CUnit.LEFT_BRACKET) {
-                // left - right brackets
-                int bracketCount = 0;
-                final List<CUnit> bracketSequence = new ArrayList<>();
-                do {
-                    if (temp.get(i) == CUnit.LEFT_BRACKET) {
-                        bracketCount++;
-                    }
-                    if (temp.get(i) == CUnit.RIGHT_BRACKET) {
-                        bracketCount--;
-                    }
-                    bracketSequence.add(temp.remove(i));
-                } while (bracketCount > 0);
-                // remove brackets at ends
-                bracketSequence.remove(0);
-                bracketSequence.remove(bracketSequence.size() - 1);
-                final BigComplex bracketResult = calculate2(new CExpression(bracketSequence), params);
-                temp.add(i, new CNum(bracketResult));
-            }
-        }
-        // 3. post func
-        if (temp.get(0).isPostFunction()) {
-            throw new SyntaxException();
-        }
-        for (int i = 0; i < temp.size() - 1; i++) {
-            final CUnit u1 = temp.get(i);
-            final CUnit u2 = temp.get(i + 1);
-            if (u2.isPostFunction()) {
-                if (u1 instanceof CNum) {
-                    final BigComplex funcResult = calculateFunction(u2, ((CNum) u1).getNum(), params.getAngleUnit());
-                    temp.set(i, new CNum(funcResult));
-                    temp.remove(i + 1);
-                    i--;
-                } else {
-                    throw new SyntaxException();
-                }
-            }
-        }
-        // 4. power
-        for (int i = 0; i < temp.size() - 2; i++) {
-            final CUnit u1 = temp.get(i);
-            final CUnit u2 = temp.get(i + 1);
-            final CUnit u3 = temp.get(i + 2);
-            if (u2 == CUnit.POWER) {
-                if (u1 instanceof CNum) {
-                    final BigComplex powResult;
-                    if (u3 instanceof CNum) {     // n ^ m
-                        powResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) u3).getNum());
-                    } else if (i < temp.size() - 3 && u3.isPlusOrMinus() && temp.get(i + 3) instanceof CNum) { // n ^ +- m
-                        powResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) temp.get(i + 3)).getSignedNum(u3));
-                        temp.remove(i + 3);
-                    } else {
-                        throw new SyntaxException();
-                    }
-                    temp.set(i, new CNum(powResult));
-                    temp.remove(i + 2);
-                    temp.remove(i + 1);
-                    i--;
-                } else {
-                    throw new SyntaxException();
-                }
-            }
+    private static void requirePermutationInRange(boolean combination, @NonNull BigDecimal n, @NonNull BigDecimal r)
+            throws OutOfRangeException {
+        if (n.signum() < 0 || r.signum() < 0 || n.compareTo(r) < 0 || !Maffs.isInteger(n) || !Maffs.isInteger(r)) {
+            return;
         }
-        // 5. nroot
-        for (int i = 0; i < temp.size() - 2; i++) {
-            final CUnit u1 = temp.get(i);
-            final CUnit u2 = temp.get(i + 1);
-            final CUnit u3 = temp.get(i + 2);
-            if (u2 == CUnit.ROOT) {
-                if (u1 instanceof CNum) {
-                    final BigComplex rootResult;
-                    if (u3 instanceof CNum) {     // n ^ m
-                        rootResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) u3).getNum());
-                    } else if (i < temp.size() - 3 && u3.isPlusOrMinus() && temp.get(i + 3) instanceof CNum) { // n ^ +- m
-                        rootResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) temp.get(i + 3)).getSignedNum(u3));
-                        temp.remove(i + 3);
-                    } else {
-                        throw new SyntaxException();
-                    }
-                    temp.set(i, new CNum(rootResult));
-                    temp.remove(i + 2);
-                    temp.remove(i + 1);
-                    i--;
-                } else {
-                    throw new SyntaxException();
-                }
-            }
-        }
-        // 6. pre func
-        for (int i = 0; i < temp.size(); i++) {
-            if (temp.get(i).isPreFunction()) {
-                final CUnit func = temp.remove(i);
-                final List<CUnit> funcSequence = new ArrayList<>();
-                // if a CNum is added to the sequence
-                boolean hasNum = false;
-                while (i < temp.size() && (temp.get(i).isPreFunction() || temp.get(i).isPlusOrMinus() || temp.get(i) instanceof CNum)) {
-                    if (hasNum && !(temp.get(i) instanceof CNum)) {
-                        break;
-                    } else {
-                        if (temp.get(i) instanceof CNum) {
-                            hasNum = true;
-                        }
-                        funcSequence.add(temp.remove(i));
-                    }
-                }
-                if (funcSequence.isEmpty() || !hasNum) {
-                    throw new SyntaxException();
-                }
-                final BigComplex funcResult = calculateFunction(func, calculate2(new CExpression(funcSequence), params), params.getAngleUnit());
-                temp.add(i, new CNum(funcResult));
-            }
-        }
-        // 7. consecutive values
-        for (int i = 0; i < temp.size() - 1; i++) {
-            final CUnit u1 = temp.get(i);
-            final CUnit u2 = temp.get(i + 1);
-            if (u1 instanceof CNum && u2 instanceof CNum) {
-                final BigComplex multiplyResult = calculateOperator(CNum.TIMES, ((CNum) u1).getNum(), ((CNum) u2).getNum());
-                temp.set(i, new CNum(multiplyResult));
-                temp.remove(i + 1);
-                i--;
+        final double log10Bound;
+        if (combination) {
+            final BigDecimal k = r.min(n.subtract(r));
+            if (k.compareTo(BigDecimal.valueOf(COMBINATION_OUT_OF_RANGE)) >= 0) {
+                throw new OutOfRangeException();
             }
-        }
-        // 8. Permutation, combination
-        for (int i = 0; i < temp.size() - 2; i++) {
-            final CUnit u1 = temp.get(i);
-            final CUnit u2 = temp.get(i + 1);
-            final CUnit u3 = temp.get(i + 2);
-            if (u2.isPermutationOrCombination()) {
-                if (u1 instanceof CNum) {
-                    final BigComplex calcResult;
-                    if (u3 instanceof CNum) {
-                        calcResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) u3).getNum());
-                    } else if (i < temp.size() - 3 && u3.isPlusOrMinus() && temp.get(i + 3) instanceof CNum) {
-                        calcResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) temp.get(i + 3)).getSignedNum(u3));
-                        temp.remove(i + 3);
-                    } else {
-                        throw new SyntaxException();
-                    }
-                    temp.set(i, new CNum(calcResult));
-                    temp.remove(i + 2);
-                    temp.remove(i + 1);
-                    i--;
-                } else {
-                    throw new SyntaxException();
-                }
+            final int intK = k.intValue();
+            log10Bound = intK == 0 ? 0 : intK * (log10(n) - Math.log10(intK));
+        } else {
+            if (r.compareTo(FACTORIAL_OUT_OF_RANGE) >= 0) {
+                throw new OutOfRangeException();
             }
+            final int intR = r.intValue();
+            log10Bound = intR == 0 ? 0 : intR * log10(n.subtract(r).add(BigDecimal.ONE));
         }
-        // 9. multiply, divide
-        for (int i = 0; i < temp.size() - 2; i++) {
-            final CUnit u1 = temp.get(i);
-            final CUnit u2 = temp.get(i + 1);
-            final CUnit u3 = temp.get(i + 2);
-            if (u2.isTimesOrDivide()) {
-                if (u1 instanceof CNum) {
-                    final BigComplex calcResult;
-                    if (u3 instanceof CNum) {     // n x m
-                        calcResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) u3).getNum());
-                    } else if (i < temp.size() - 3 && u3.isPlusOrMinus() && temp.get(i + 3) instanceof CNum) { // n x +- m
-                        calcResult = calculateOperator(u2, ((CNum) u1).getNum(), ((CNum) temp.get(i + 3)).getSignedNum(u3));
-                        temp.remove(i + 3);
-                    } else {
-                        throw new SyntaxException();
-                    }
-                    temp.set(i, new CNum(calcResult));
-                    temp.remove(i + 2);
-                    temp.remove(i + 1);
-                    i--;
-                } else {
-                    throw new SyntaxException();
-                }
-            }
+        if (log10Bound > MAX_EXPONENT + 2) {
+            throw new OutOfRangeException();
         }
-        // 10. add, subtract
-        for (int i = 0; i < temp.size() - 1; i++) {
-            final CUnit u1 = temp.get(i);
-            final CUnit u2 = temp.get(i + 1);
-            if (u1.isPlusOrMinus()) {
-                if (u2 instanceof CNum) {
-                    if (i > 0 && temp.get(i - 1) instanceof CNum) {   // 1 + 1
-                        final BigComplex calcResult = calculateOperator(u1, ((CNum) temp.get(i - 1)).getNum(), ((CNum) u2).getNum());
-                        temp.set(i - 1, new CNum(calcResult));
-                        temp.remove(i + 1);
-                        temp.remove(i);
-                        i--;
-                    } else {                                            // + 1
-                        final BigComplex calcResult = ((CNum) u2).getSignedNum(u1);
-                        temp.set(i, new CNum(calcResult));
-                        temp.remove(i + 1);
-                    }
-                } else {
-                    throw new SyntaxException();
-                }
-            }
+    }
+
+    /**
+     * <p>Rejects an integer power that is certainly out of range before it is calculated, so a huge exponent is not
+     * calculated by squaring. Other exponents are left to {@link Maffs}.</p>
+     * <p>{@code log10 |x^n| = n log10 |x|}, and {@code log10 |x|} is from the logarithm of the bigger part of
+     * {@code x} to that plus {@code log10 √2}. A power rejected by this bound would be rejected by
+     * {@link #requireInRange(BigComplex)}, the bound is compared with a margin for the rounding of
+     * {@code double}.</p>
+     *
+     * @param magnitude Magnitude of the bigger part of the base.
+     * @param complex Whether the base is not real.
+     * @param n Exponent.
+     */
+    private static void requirePowerInRange(@NonNull BigDecimal magnitude, boolean complex, @NonNull BigDecimal n)
+            throws OutOfRangeException {
+        if (magnitude.signum() == 0 || !BigDecimalMath.isIntValue(n)) {
+            return;
         }
-        if (temp.size() == 1 && temp.get(0) instanceof CNum) {
-            final BigComplex result = ((CNum) temp.get(0)).getNum();
-            return requireInRange(Maffs.round(result));
-        } else {
-            throw new SyntaxException();
+        final int exponent = n.intValueExact();
+        final double low = log10(magnitude);
+        final double high = complex ? low + LOG10_SQRT_2 : low;
+        final double min = Math.min(exponent * low, exponent * high);
+        final double max = Math.max(exponent * low, exponent * high);
+        if (min > MAX_EXPONENT + 2 || max < -MAX_EXPONENT - 2) {
+            throw new OutOfRangeException();
         }
     }
 
+    /**
+     * @return Approximate base 10 logarithm of a positive number, which may be too big for a {@code double}.
+     */
+    private static double log10(@NonNull BigDecimal n) {
+        return BigDecimalMath.exponent(n) + Math.log10(BigDecimalMath.mantissa(n).doubleValue());
+    }
 
+    private Calculate() {}
 
+    /**
+     * Calculates a range of the expressions of {@link #calculateAll(List, CParams, CancellationToken, ForkJoinPool)},
+     * split in halves until it is small.
+     */
+    private static final class BatchTask extends RecursiveAction {
 
-    private Calculate() {}
+        /**
+         * Maximum number of expressions calculated by one task.
+         */
+        private static final int THRESHOLD = 4;
+
+        private final CExpression[] expressions;
+        private final CParams params;
+        private final CancellationToken token;
+        private final CBatchResult[] results;
+        private final int from;
+        private final int to;
+
+        BatchTask(@NonNull CExpression[] expressions, @NonNull CParams params, @Nullable CancellationToken token,
+                  @NonNull CBatchResult[] results, int from, int to) {
+            this.expressions = expressions;
+            this.params = params;
+            this.token = token;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = calculateItem(i, expressions[i], params, token);
+                }
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new BatchTask(expressions, params, token, results, from, middle),
+                        new BatchTask(expressions, params, token, results, middle, to));
+            }
+        }
+    }
 }
@@ -0,0 +1,139 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.exception.CancelledException;
+
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * <p>A thread safe flag and optional deadline which stop a calculation. It is checked between the operations of an
+ * expression and inside the long loops of {@link com.bx.calculator.calc.math.Maffs} (eg. factorial), which throw a
+ * {@link CancelledException} as soon as it is cancelled, its deadline has passed or the thread is interrupted.</p>
+ * <p>The token is used by the thread that calls {@link CompiledExpression#evaluate(CParams, SubresultCache, CancellationToken)},
+ * so {@code Maffs} does not need it as an argument. Any thread can {@link #cancel()} it.</p>
+ */
+public final class CancellationToken {
+
+    /**
+     * Value of {@link #deadline} if there is none.
+     */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * Token of the calculation on each thread, or {@code null}.
+     */
+    private static final ThreadLocal<CancellationToken> current = new ThreadLocal<>();
+
+    /**
+     * Deadline from {@link System#nanoTime()}, or {@link #NO_DEADLINE}.
+     */
+    private final long deadline;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor for a token without a deadline, which only stops when it is cancelled.
+     */
+    public CancellationToken() {
+        this.deadline = NO_DEADLINE;
+    }
+
+    private CancellationToken(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @param timeout Time after which the calculation is stopped.
+     * @param unit Unit of {@code timeout}.
+     * @return A token which stops when it is cancelled or the timeout has passed from now.
+     * @throws IllegalArgumentException {@code timeout} is negative.
+     */
+    @NonNull
+    public static CancellationToken withTimeout(long timeout, @NonNull TimeUnit unit) throws IllegalArgumentException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        final long nanos = unit.toNanos(timeout);
+        final long now = System.nanoTime();
+        // the deadline can not be NO_DEADLINE or overflow
+        return new CancellationToken(nanos >= NO_DEADLINE - now ? NO_DEADLINE - 1 : now + nanos);
+    }
+
+    /**
+     * Stops the calculations that use this token. Calculations that have finished are not changed.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if the token has a deadline and it has passed.
+     */
+    public boolean isTimedOut() {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * @throws CancelledException The token is cancelled or its deadline has passed.
+     */
+    public void check() throws CancelledException {
+        if (cancelled) {
+            throw new CancelledException(false);
+        }
+        if (isTimedOut()) {
+            throw new CancelledException(true);
+        }
+    }
+
+    /**
+     * Checks the token of the calculation on this thread, and whether this thread is interrupted, eg. by
+     * {@link java.util.concurrent.Future#cancel(boolean)}. The interrupted status is not cleared. Called between
+     * operations and in long loops.
+     *
+     * @throws CancelledException The calculation on this thread is cancelled or timed out, or the thread is interrupted.
+     */
+    public static void checkCurrent() throws CancelledException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancelledException(false);
+        }
+        final CancellationToken token = current.get();
+        if (token != null) {
+            token.check();
+        }
+    }
+
+    /**
+     * Sets the token of the calculation on this thread. The previous token must be restored with {@link #restore(CancellationToken)}
+     * when the calculation finishes.
+     *
+     * @param token Token of the calculation, or {@code null} to keep the current one.
+     * @return The previous token.
+     */
+    @Nullable
+    static CancellationToken enter(@Nullable CancellationToken token) {
+        final CancellationToken previous = current.get();
+        if (token != null) {
+            current.set(token);
+        }
+        return previous;
+    }
+
+    /**
+     * @param previous Token returned by {@link #enter(CancellationToken)}.
+     */
+    static void restore(@Nullable CancellationToken previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.exception.CancelledException;
+import com.bx.calculator.calc.exception.OutOfRangeException;
+import com.bx.calculator.calc.exception.UndefinedException;
+import com.bx.calculator.calc.exception.VariableException;
+import com.bx.calculator.calc.math.Maffs;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * A value (immutable) class representing a {@link CExpression} that has been checked for syntax errors and parsed
+ * into a tree of operations. It can be evaluated many times with different {@link CParams}, eg. for graphs or
+ * tables, without parsing the input again. Create an instance with {@link Calculate#compile(CExpression)}.
+ */
+public final class CompiledExpression {
+
+    private final CUnit[] input;
+    /**
+     * Tree of the {@link CParser}, which {@link PreciseEvaluator} tracks the error of every operation of.
+     */
+    private final CNode tree;
+    /**
+     * Tree of the {@link COptimizer}.
+     */
+    private final CNode root;
+    private final Set<CUnit> variables;
+
+    /**
+     * @param input Units of the expression.
+     * @param tree Tree of the {@link CParser}.
+     */
+    CompiledExpression(@NonNull CUnit[] input, @NonNull CNode tree) {
+        this.input = Arrays.copyOf(input, input.length);
+        this.tree = Objects.requireNonNull(tree);
+        this.root = COptimizer.optimize(tree);
+        final Set<CUnit> tempVariables = new HashSet<>();
+        for (CUnit u: input) {
+            if (u.isVariable()) {
+                tempVariables.add(u);
+            }
+        }
+        this.variables = Collections.unmodifiableSet(tempVariables);
+    }
+
+    /**
+     * Calculates the result of the compiled expression with the precision of {@link CParams#getMathContext()}. The
+     * result is rounded with {@link Maffs#round(BigComplex, java.math.MathContext)}.
+     *
+     * @param params Parameters for calculation.
+     * @return Result of calculation.
+     * @throws NullPointerException {@code params} is {@code null}.
+     * @throws VariableException Expression contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
+     * @throws UndefinedException result is undefined
+     * @throws OutOfRangeException result is out of range
+     */
+    @NonNull
+    public CResult evaluate(@NonNull CParams params)
+            throws NullPointerException, VariableException, UndefinedException, OutOfRangeException {
+        return evaluate(params, null);
+    }
+
+    /**
+     * Calculates the result of the compiled expression like {@link #evaluate(CParams)}, reusing the results of
+     * functions and bracketed groups in {@code cache} and storing the new ones.
+     *
+     * @param params Parameters for calculation.
+     * @param cache Results of subexpressions, or {@code null}.
+     * @return Result of calculation.
+     * @throws NullPointerException {@code params} is {@code null}.
+     * @throws VariableException Expression contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
+     * @throws UndefinedException result is undefined
+     * @throws OutOfRangeException result is out of range
+     * @see SubresultCache
+     */
+    @NonNull
+    public CResult evaluate(@NonNull CParams params, @Nullable SubresultCache cache)
+            throws NullPointerException, VariableException, UndefinedException, OutOfRangeException {
+        return evaluate(params, cache, null);
+    }
+
+    /**
+     * Calculates the result of the compiled expression like {@link #evaluate(CParams, SubresultCache)}, and stops
+     * with a {@link CancelledException} as soon as {@code token} is cancelled or its deadline passes. The token is
+     * checked before every operation and inside long operations, eg. the factorial of a large number.
+     *
+     * @param params Parameters for calculation.
+     * @param cache Results of subexpressions, or {@code null}.
+     * @param token Token that stops the calculation, or {@code null}.
+     * @return Result of calculation.
+     * @throws NullPointerException {@code params} is {@code null}.
+     * @throws VariableException Expression contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
+     * @throws UndefinedException result is undefined
+     * @throws OutOfRangeException result is out of range
+     * @throws CancelledException {@code token} is cancelled or timed out, or the thread is interrupted.
+     * @see CancellationToken
+     */
+    @NonNull
+    public CResult evaluate(@NonNull CParams params, @Nullable SubresultCache cache, @Nullable CancellationToken token)
+            throws NullPointerException, VariableException, UndefinedException, OutOfRangeException, CancelledException {
+        for (CUnit u: variables) {
+            if (params.getValue(u) == null) {
+                throw new VariableException();
+            }
+        }
+        final CancellationToken previous = CancellationToken.enter(token);
+        try {
+            CancellationToken.checkCurrent();
+            final BigComplex resultNumber = Calculate.requireInRange(root.evaluate(params, cache));
+            return new CResult(input, Maffs.round(resultNumber, params.getMathContext()), params);
+        } finally {
+            CancellationToken.restore(previous);
+        }
+    }
+
+    /**
+     * <p>Calculates the result of the compiled expression with {@code double}s, which is much faster than
+     * {@link #evaluate(CParams)}, eg. for graphs and tables. The error of every operation is tracked, and if the
+     * result is not known to {@code sigfig} significant figures (eg. overflow, cancellation or a complex value) it is
+     * calculated again with {@link #evaluate(CParams)}.</p>
+     * <p>The result is rounded to the significant figures that are known, so it is less precise than the result of
+     * {@link #evaluate(CParams)}. Use it to display a result, not as an input to more calculations.</p>
+     *
+     * @param params Parameters for calculation.
+     * @param sigfig Significant figures of the result that must be correct, eg. the displayed significant figures.
+     * @return Result of calculation.
+     * @throws NullPointerException {@code params} is {@code null}.
+     * @throws IllegalArgumentException {@code sigfig} is not positive.
+     * @throws VariableException Expression contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
+     * @throws UndefinedException result is undefined
+     * @throws OutOfRangeException result is out of range
+     * @see #evaluate(CParams)
+     */
+    @NonNull
+    public CResult evaluateFast(@NonNull CParams params, int sigfig)
+            throws NullPointerException, IllegalArgumentException, VariableException, UndefinedException, OutOfRangeException {
+        if (sigfig <= 0) {
+            throw new IllegalArgumentException("sigfig must be positive");
+        }
+        final BigComplex resultNumber = new DoubleEvaluator(params).evaluate(root, sigfig);
+        if (resultNumber == null) {
+            return evaluate(params);
+        }
+        return new CResult(input, Maffs.round(resultNumber, params.getMathContext()), params);
+    }
+
+    /**
+     * <p>Calculates the result of the compiled expression until {@code sigfig} significant figures are known to be
+     * correct. The operations are calculated with a low precision first, and only the operations whose error is too
+     * large are calculated again with more precision, eg. {@code (1 + 10^-70) - 1} or {@code sin(10^30)}, which are
+     * wrong with the default precision.</p>
+     * <p>The answer is rounded to the significant figures that are known, which are stored in
+     * {@link CResult#getGuaranteedDigits()}. It may be less than {@code sigfig} if the precision needed is more than
+     * {@link PreciseEvaluator#MAX_PRECISION}, eg. if the result is exactly 0 but the operations are not.</p>
+     *
+     * @param params Parameters for calculation. The precision is not used.
+     * @param sigfig Significant figures of the result that must be correct.
+     * @return Result of calculation, with the number of correct significant figures.
+     * @throws NullPointerException {@code params} is {@code null}.
+     * @throws IllegalArgumentException {@code sigfig} is not positive.
+     * @throws VariableException Expression contains {@link CUnit#isVariable()} and {@code params} does not contain a value for it.
+     * @throws UndefinedException result is undefined
+     * @throws OutOfRangeException result is out of range
+     */
+    @NonNull
+    public CResult evaluateGuaranteed(@NonNull CParams params, int sigfig)
+            throws NullPointerException, IllegalArgumentException, VariableException, UndefinedException, OutOfRangeException {
+        if (sigfig <= 0) {
+            throw new IllegalArgumentException("sigfig must be positive");
+        }
+        for (CUnit u: variables) {
+            if (params.getValue(u) == null) {
+                throw new VariableException();
+            }
+        }
+        final PreciseEvaluator.Approx result =
+                new PreciseEvaluator(params, CParams.precisionForSigfig(sigfig)).evaluate(tree, sigfig);
+        final int digits = result.getCorrectDigits();
+        if (digits == CResult.EXACT_DIGITS) {
+            return new CResult(input, Calculate.requireInRange(result.value), params, digits);
+        }
+        if (digits == 0) {
+            return new CResult(input, Calculate.requireInRange(Maffs.round(result.value, params.getMathContext())), params, 0);
+        }
+        // round each part to the digits that are known, a part smaller than the error is 0
+        final BigComplex rounded = BigComplex.valueOf(roundToError(result.value.re, result.error),
+                roundToError(result.value.im, result.error));
+        return new CResult(input, Calculate.requireInRange(rounded), params, digits);
+    }
+
+    /**
+     * @param error Base 10 logarithm of the absolute error.
+     * @return {@code n} rounded to the digits larger than the error.
+     */
+    @NonNull
+    private static BigDecimal roundToError(@NonNull BigDecimal n, double error) {
+        final int scale = -(int) Math.ceil(error);
+        if (n.signum() == 0 || n.precision() - n.scale() <= -scale) {
+            return BigDecimal.ZERO;
+        }
+        return n.setScale(scale, RoundingMode.HALF_EVEN).stripTrailingZeros();
+    }
+
+    /**
+     * @return The input units of the compiled expression.
+     */
+    @NonNull
+    public CUnit[] getInput() {
+        return Arrays.copyOf(input, input.length);
+    }
+
+    /**
+     * @return Unmodifiable set of the {@link CUnit#isVariable()} in the expression.
+     */
+    @NonNull
+    public Set<CUnit> getVariables() {
+        return variables;
+    }
+
+    @NonNull
+    CNode getRoot() {
+        return root;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CompiledExpression" + Arrays.toString(input);
+    }
+}
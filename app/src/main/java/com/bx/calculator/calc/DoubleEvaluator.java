@@ -0,0 +1,524 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.math.AngleUnit;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * <p>Evaluates a {@link CNode} tree with primitive {@code double}s and keeps a bound of the absolute error of every
+ * value. Used by {@link CompiledExpression#evaluateFast(CParams, int)}, which falls back to the {@link BigComplex}
+ * evaluation when the result can not be guaranteed to the displayed significant figures.</p>
+ * <p>Only real values are evaluated. A value is {@link Double#NaN} if it is complex, undefined, overflows, or the
+ * error bound is too big to know the result (eg. the sign of a divisor), so the result is not used.</p>
+ * <p>Error bounds assume the basic operations are correctly rounded (half an ulp) and the {@link Math} functions are
+ * within one ulp, or the documented number of ulps.</p>
+ */
+final class DoubleEvaluator {
+
+    /**
+     * Extra significant figures which must be correct, so the digits of the result are not uncertain because of the
+     * rounding of the last displayed digit.
+     */
+    static final int GUARD_DIGITS = 2;
+    /**
+     * Significant figures of the returned result are at most this, a {@code double} has 15 to 17 significant figures.
+     */
+    private static final int MAX_DIGITS = 17;
+    /**
+     * Integers with a smaller magnitude are exact as a {@code double}.
+     */
+    private static final double EXACT_INTEGER_LIMIT = 0x1p53;
+    private static final int MAX_FACTORIAL = 170;
+    private static final double DEG_TO_RAD = Math.PI / 180;
+    private static final double RAD_TO_DEG = 180 / Math.PI;
+    private static final double LN2 = Math.log(2);
+
+    private final CParams params;
+    private final boolean degrees;
+    /**
+     * Variable whose value is {@link #variableValue} instead of its value in the {@link CParams}, eg. X of a graph.
+     */
+    private CUnit variable;
+    private double variableValue;
+    /**
+     * Bound of the absolute error of the last value returned by a method.
+     */
+    double error;
+
+    DoubleEvaluator(@NonNull CParams params) {
+        this.params = params;
+        this.degrees = params.getAngleUnit() == AngleUnit.DEG;
+    }
+
+    /**
+     * Evaluates a tree with {@code double}s and returns the result if all significant figures to display, and
+     * {@link #GUARD_DIGITS} more, are known.
+     *
+     * @param root Root of the tree.
+     * @param sigfig Significant figures of the result that must be correct.
+     * @return Result rounded to the correct significant figures, or {@code null} if they are not known.
+     */
+    @Nullable
+    BigComplex evaluate(@NonNull CNode root, int sigfig) {
+        final double value = root.evaluateDouble(this);
+        if (!isFinite(value) || !isFinite(error)) {
+            return null;
+        }
+        if (error == 0) {
+            return BigComplex.valueOf(new BigDecimal(value));
+        }
+        if (value == 0) {       // cancellation, sign is unknown
+            return null;
+        }
+        final int digits = (int) Math.floor(Math.log10(Math.abs(value) / error));
+        if (digits < sigfig + GUARD_DIGITS) {
+            return null;
+        }
+        // both ends of the error bound must round to the same displayed value
+        final MathContext displayed = new MathContext(sigfig, RoundingMode.HALF_EVEN);
+        final BigDecimal lower = new BigDecimal(value - error).round(displayed);
+        final BigDecimal upper = new BigDecimal(value + error).round(displayed);
+        if (lower.compareTo(upper) != 0) {
+            return null;
+        }
+        return BigComplex.valueOf(new BigDecimal(value).round(new MathContext(Math.min(digits, MAX_DIGITS), RoundingMode.HALF_EVEN)));
+    }
+
+    @NonNull
+    AngleUnit getAngleUnit() {
+        return params.getAngleUnit();
+    }
+
+    // -------- VALUES -------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return A value with an error, which is stored in {@link #error}.
+     */
+    double value(double value, double error) {
+        this.error = error;
+        return value;
+    }
+
+    /**
+     * Sets the value of a variable, which is used instead of its value in the {@link CParams}, so a tree can be
+     * evaluated at many points without creating {@link CParams}.
+     *
+     * @param variable A {@link CUnit#isVariable()}.
+     * @param value Exact value of the variable.
+     */
+    void setVariable(@NonNull CUnit variable, double value) {
+        this.variable = variable;
+        this.variableValue = value;
+    }
+
+    /**
+     * @return Value of a variable from {@link #setVariable(CUnit, double)} or the {@link CParams}, or
+     * {@link Double#NaN} if it does not have one.
+     */
+    double variable(@NonNull CUnit variable) {
+        if (variable.equals(this.variable)) {
+            return value(variableValue, 0);
+        }
+        final BigComplex value = params.getValue(variable);
+        if (value == null) {
+            return undefined();
+        }
+        final double converted = toDouble(value);
+        return value(converted, conversionError(value, converted));
+    }
+
+    /**
+     * @return The value as a {@code double}, or {@link Double#NaN} if it is complex or too big.
+     */
+    static double toDouble(@NonNull BigComplex n) {
+        if (!n.isReal()) {
+            return Double.NaN;
+        }
+        final double value = n.re.doubleValue();
+        return isFinite(value) ? value : Double.NaN;
+    }
+
+    /**
+     * @param n Value.
+     * @param value {@link #toDouble(BigComplex)} of the value.
+     * @return Error of the conversion, 0 if the value is exact.
+     */
+    static double conversionError(@NonNull BigComplex n, double value) {
+        if (!isFinite(value)) {
+            return Double.NaN;
+        }
+        return new BigDecimal(value).compareTo(n.re) == 0 ? 0 : Math.ulp(value);
+    }
+
+    // -------- OPERATIONS ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Applies a function to a value with error {@link #error}, and replaces {@link #error} with the error of the
+     * result.
+     *
+     * @param func Function code from {@link Opcodes}.
+     * @param x Argument.
+     * @return Result, or {@link Double#NaN}.
+     */
+    double function(int func, double x) {
+        final double ex = error;
+        if (Double.isNaN(x)) {
+            return x;
+        }
+        final double ax = Math.abs(x);
+        final double r;
+        switch (func) {
+            case Opcodes.PLUS:
+            case Opcodes.CONJ:
+                return x;
+            case Opcodes.MINUS:
+                return -x;
+            case Opcodes.ABS:
+                return ax;
+            case Opcodes.ARG:
+                if (ax <= ex) {
+                    return undefined();
+                } else if (x > 0) {
+                    error = 0;
+                    return 0;
+                } else if (degrees) {
+                    error = 0;
+                    return 180;
+                } else {
+                    error = Math.ulp(Math.PI);
+                    return Math.PI;
+                }
+            case Opcodes.SQRT:
+                if (x == 0 && ex == 0) {
+                    return 0;
+                } else if (x - ex <= 0) {
+                    return undefined();
+                }
+                r = Math.sqrt(x);
+                error = ex / (2 * Math.sqrt(x - ex)) + half(r);
+                return r;
+            case Opcodes.LOG:
+            case Opcodes.LOG10:
+            case Opcodes.LOG2:
+                if (x - ex <= 0) {
+                    return undefined();
+                }
+                if (func == Opcodes.LOG) {
+                    r = Math.log(x);
+                    error = ex / (x - ex) + Math.ulp(r);
+                } else if (func == Opcodes.LOG10) {
+                    r = Math.log10(x);
+                    error = ex / ((x - ex) * Math.log(10)) + 2 * Math.ulp(r);
+                } else {
+                    r = Math.log(x) / LN2;
+                    error = ex / ((x - ex) * LN2) + 3 * Math.ulp(r);
+                }
+                return r;
+            case Opcodes.SIN:
+            case Opcodes.COS:
+            case Opcodes.TAN:
+            case Opcodes.CSC:
+            case Opcodes.SEC:
+            case Opcodes.COT:
+                return trig(func, x, ex);
+            case Opcodes.ASIN:
+            case Opcodes.ACOS:
+                if (ax + ex >= 1) {
+                    return undefined();
+                }
+                r = func == Opcodes.ASIN ? Math.asin(x) : Math.acos(x);
+                error = ex / Math.sqrt(1 - (ax + ex) * (ax + ex)) + Math.ulp(r);
+                return toAngle(r);
+            case Opcodes.ATAN:
+                r = Math.atan(x);
+                error = ex / (1 + squared(Math.max(0, ax - ex))) + Math.ulp(r);
+                return toAngle(r);
+            case Opcodes.SINH:
+                r = Math.sinh(x);
+                error = ex * Math.cosh(ax + ex) + 3 * Math.ulp(r);
+                return r;
+            case Opcodes.COSH:
+                r = Math.cosh(x);
+                error = ex * Math.sinh(ax + ex) + 3 * Math.ulp(r);
+                return r;
+            case Opcodes.TANH:
+                r = Math.tanh(x);
+                error = ex / squared(Math.cosh(Math.max(0, ax - ex))) + 3 * Math.ulp(r);
+                return r;
+            case Opcodes.ASINH:
+                r = Math.copySign(Math.log1p(ax + ax * ax / (1 + Math.sqrt(1 + ax * ax))), x);
+                error = ex / Math.sqrt(1 + squared(Math.max(0, ax - ex))) + 8 * Math.ulp(r);
+                return r;
+            case Opcodes.ACOSH:
+                if (x - ex <= 1) {
+                    return undefined();
+                }
+                r = Math.log1p((x - 1) + Math.sqrt((x - 1) * (x + 1)));
+                error = ex / Math.sqrt((x - ex - 1) * (x - ex + 1)) + 8 * Math.ulp(r);
+                return r;
+            case Opcodes.ATANH:
+                if (ax + ex >= 1) {
+                    return undefined();
+                }
+                r = Math.copySign(0.5 * Math.log1p(2 * ax / (1 - ax)), x);
+                error = ex / (1 - (ax + ex) * (ax + ex)) + 8 * Math.ulp(r);
+                return r;
+            case Opcodes.FACTORIAL:
+                if (ex != 0 || x < 0 || x > MAX_FACTORIAL || x != Math.rint(x)) {
+                    return undefined();
+                }
+                double product = 1;
+                for (int i = 2; i <= x; i++) {
+                    product *= i;
+                }
+                // each multiplication rounds by at most half an ulp
+                error = product < EXACT_INTEGER_LIMIT ? 0 : product * x * Math.ulp(1.0);
+                return product;
+            case Opcodes.SQUARED:
+                return operator(Opcodes.TIMES, x, ex, x, ex);
+            case Opcodes.CUBED:
+                final double squared = operator(Opcodes.TIMES, x, ex, x);
+                return operator(Opcodes.TIMES, squared, error, x, ex);
+            case Opcodes.INVERSE:
+                return operator(Opcodes.DIVIDE, 1, 0, x, ex);
+            case Opcodes.PERCENT:
+                return operator(Opcodes.DIVIDE, x, ex, 100, 0);
+            default:
+                return undefined();
+        }
+    }
+
+    /**
+     * Applies an operator to two values, and stores the error of the result in {@link #error}.
+     *
+     * @param op Operator code from {@link Opcodes}.
+     * @param a Left operand.
+     * @param ea Error of the left operand.
+     * @param b Right operand, with error {@link #error}.
+     * @return Result, or {@link Double#NaN}.
+     */
+    double operator(int op, double a, double ea, double b) {
+        return operator(op, a, ea, b, error);
+    }
+
+    private double operator(int op, double a, double ea, double b, double eb) {
+        if (Double.isNaN(a) || Double.isNaN(b)) {
+            return undefined();
+        }
+        final double r;
+        switch (op) {
+            case Opcodes.PLUS:
+            case Opcodes.MINUS:
+                r = op == Opcodes.PLUS ? a + b : a - b;
+                error = ea + eb + (isExactSum(a, b, r, op == Opcodes.PLUS) ? 0 : half(r));
+                return r;
+            case Opcodes.TIMES:
+                r = a * b;
+                error = Math.abs(a) * eb + Math.abs(b) * ea + ea * eb + (isExactInteger(a, b, r) ? 0 : half(r));
+                return r;
+            case Opcodes.DIVIDE:
+                if (Math.abs(b) <= eb) {
+                    return undefined();
+                }
+                r = a / b;
+                final boolean exact = isExactInteger(a, b, r) && r * b == a;
+                error = (ea + Math.abs(r) * eb) / (Math.abs(b) - eb) + (exact ? 0 : half(r));
+                return r;
+            case Opcodes.POWER:
+                return power(a, ea, b, eb);
+            case Opcodes.ROOT:
+                // a ROOT b = b ^ (1 / a)
+                final double inverse = operator(Opcodes.DIVIDE, 1, 0, a, ea);
+                return power(b, eb, inverse, error);
+            case Opcodes.NPR:
+            case Opcodes.NCR:
+                return permutation(op == Opcodes.NCR, a, ea, b, eb);
+            default:
+                return undefined();
+        }
+    }
+
+    /**
+     * Raises a value with error {@link #error} to a small integer power by multiplication, like
+     * {@link com.bx.calculator.calc.math.Maffs#pow(BigComplex, int, MathContext)}, and replaces {@link #error} with
+     * the error of the result.
+     *
+     * @param x Base.
+     * @param n Exponent.
+     * @return Result, or {@link Double#NaN}.
+     */
+    double power(double x, int n) {
+        final double ex = error;
+        if (Double.isNaN(x)) {
+            return undefined();
+        }
+        if (x == 0 && ex == 0) {
+            return n > 0 ? value(0, 0) : undefined();
+        }
+        double result = x;
+        for (int i = 1; i < Math.abs(n) && !Double.isNaN(result); i++) {
+            result = operator(Opcodes.TIMES, result, error, x, ex);
+        }
+        return n > 0 ? result : operator(Opcodes.DIVIDE, 1, 0, result, error);
+    }
+
+    // -------- HELPER FUNCTIONS ---------------------------------------------------------------------------------------------
+
+    private double trig(int func, double x, double ex) {
+        if (degrees) {
+            final double rad = x * DEG_TO_RAD;
+            ex = ex * DEG_TO_RAD + Math.abs(x) * half(DEG_TO_RAD) + half(rad);
+            x = rad;
+        }
+        final double sin = Math.sin(x);
+        final double cos = Math.cos(x);
+        // |d/dx sin| <= |cos x| + ex in the error interval
+        final double sinError = ex * Math.min(1, Math.abs(cos) + ex) + Math.ulp(sin);
+        final double cosError = ex * Math.min(1, Math.abs(sin) + ex) + Math.ulp(cos);
+        switch (func) {
+            case Opcodes.SIN:
+                error = sinError;
+                return sin;
+            case Opcodes.COS:
+                error = cosError;
+                return cos;
+            case Opcodes.TAN:
+                if (Math.abs(cos) <= cosError) {
+                    return undefined();
+                }
+                final double tan = Math.tan(x);
+                error = ex / squared(Math.abs(cos) - cosError) + Math.ulp(tan);
+                return tan;
+            case Opcodes.CSC:
+                return operator(Opcodes.DIVIDE, 1, 0, sin, sinError);
+            case Opcodes.SEC:
+                return operator(Opcodes.DIVIDE, 1, 0, cos, cosError);
+            default:    // COT
+                return operator(Opcodes.DIVIDE, cos, cosError, sin, sinError);
+        }
+    }
+
+    /**
+     * Converts a result of an inverse trigonometric function in radians to the angle unit.
+     */
+    private double toAngle(double rad) {
+        if (!degrees) {
+            return rad;
+        }
+        final double deg = rad * RAD_TO_DEG;
+        error = error * RAD_TO_DEG + Math.abs(rad) * half(RAD_TO_DEG) + half(deg);
+        return deg;
+    }
+
+    /**
+     * Same cases as {@link com.bx.calculator.calc.math.Maffs#pow(BigComplex, BigComplex)} for real values, other cases
+     * are complex or undefined.
+     */
+    private double power(double a, double ea, double b, double eb) {
+        if (Double.isNaN(a) || Double.isNaN(b)) {
+            return undefined();
+        }
+        if (a == 0 && ea == 0) {
+            if (b - eb > 0) {           // 0^n = 0
+                error = 0;
+                return 0;
+            }
+            return undefined();
+        }
+        if (b == 0 && eb == 0) {        // n^0 = 1
+            error = 0;
+            return 1;
+        }
+        final double aa = Math.abs(a);
+        final boolean integerExponent = eb == 0 && b == Math.rint(b);
+        if (aa <= ea || (a < 0 && !integerExponent)) {
+            // sign of the base is unknown or the result is complex
+            return undefined();
+        }
+        final double r = Math.pow(a, b);
+        if (!isFinite(r) || r == 0) {
+            return undefined();
+        }
+        if (ea == 0 && integerExponent && b > 0 && a == Math.rint(a) && Math.abs(r) < EXACT_INTEGER_LIMIT) {
+            // exact, see Math.pow
+            error = 0;
+            return r;
+        }
+        // r = e ^ (b ln|a|)
+        final double log = Math.log(aa);
+        final double logError = ea / (aa - ea) + Math.ulp(log);
+        final double exponentError = Math.abs(b) * logError + Math.abs(log) * eb + logError * eb;
+        error = Math.abs(r) * Math.expm1(exponentError) + Math.ulp(r);
+        return r;
+    }
+
+    /**
+     * Permutations or combinations of exact integers, with the same conditions as
+     * {@link com.bx.calculator.calc.math.Maffs#permutation(BigDecimal, BigDecimal)}.
+     */
+    private double permutation(boolean combination, double n, double en, double r, double er) {
+        if (en != 0 || er != 0 || n != Math.rint(n) || r != Math.rint(r) || r < 0 || n < r || n >= EXACT_INTEGER_LIMIT) {
+            return undefined();
+        }
+        final double k = combination ? Math.min(r, n - r) : r;
+        double result = 1;
+        double relativeError = 0;
+        for (int i = 1; i <= k; i++) {
+            result = combination ? result * (n - k + i) / i : result * (n - k + i);
+            relativeError += combination ? 2 * Math.ulp(1.0) : Math.ulp(1.0);
+            if (!isFinite(result)) {
+                return undefined();
+            }
+        }
+        error = result < EXACT_INTEGER_LIMIT && !combination ? 0 : result * relativeError;
+        return result;
+    }
+
+    private double undefined() {
+        error = Double.NaN;
+        return Double.NaN;
+    }
+
+    /**
+     * @return Rounding error bound of a basic operation.
+     */
+    private static double half(double r) {
+        return Math.ulp(r) / 2;
+    }
+
+    private static double squared(double x) {
+        return x * x;
+    }
+
+    static boolean isFinite(double x) {
+        return !Double.isNaN(x) && !Double.isInfinite(x);
+    }
+
+    /**
+     * @return True if the operands and result are integers which are exact as {@code double}s, so the operation did
+     * not round.
+     */
+    private static boolean isExactInteger(double a, double b, double r) {
+        return Math.abs(r) < EXACT_INTEGER_LIMIT && r == Math.rint(r) && a == Math.rint(a) && b == Math.rint(b);
+    }
+
+    /**
+     * @return True if a sum or difference did not round, checked with the error free transformation of Knuth's
+     * two-sum.
+     */
+    private static boolean isExactSum(double a, double b, double r, boolean plus) {
+        if (!plus) {
+            b = -b;
+        }
+        final double bVirtual = r - a;
+        final double aVirtual = r - bVirtual;
+        return isFinite(r) && (a - aVirtual) + (b - bVirtual) == 0;
+    }
+}
@@ -0,0 +1,357 @@
+package com.bx.calculator.calc;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import androidx.annotation.NonNull;
+
+/**
+ * <p>Samples a {@link CompiledExpression} as a function of one variable, eg. {@code y = f(X)}, into {@code double}
+ * arrays for drawing a graph. The expression is evaluated with primitive {@code double}s (see
+ * {@link CompiledExpression#evaluateFast(CParams, int)}), which is fast enough to draw thousands of points every
+ * frame.</p>
+ * <p>A point is {@link Double#NaN} instead of an exception if it is undefined, complex, out of range of a
+ * {@code double} or its error is too big to know it (eg. close to a pole), so the graph is broken there.</p>
+ * <p>Instances are immutable and thread safe.</p>
+ */
+public final class GraphSampler {
+
+    /**
+     * Number of points sampled by one task, smaller ranges are not split.
+     */
+    private static final int CHUNK_SIZE = 256;
+    /**
+     * Pixels between the first points of {@link #plot(double, double, double, double, int, int)}, which are divided
+     * where the curve is not straight.
+     */
+    private static final int INITIAL_SPACING = 8;
+    /**
+     * Intervals narrower than this many pixels are not divided.
+     */
+    private static final double MIN_SPACING = 0.5;
+    /**
+     * Maximum distance in pixels between the curve and the drawn lines.
+     */
+    private static final double TOLERANCE = 0.5;
+    /**
+     * Number of halvings of an interval narrower than {@link #MIN_SPACING} to decide if it has a jump.
+     */
+    private static final int JUMP_BISECTIONS = 48;
+
+    private final CompiledExpression expression;
+    private final CParams params;
+    private final CUnit variable;
+
+    /**
+     * @param expression Expression to sample.
+     * @param params Parameters of the calculation, with the values of the other variables.
+     * @param variable Variable of the horizontal axis, eg. {@link CUnit#X}.
+     * @throws NullPointerException An argument is {@code null}.
+     * @throws IllegalArgumentException {@code variable} is not a {@link CUnit#isVariable()}.
+     */
+    public GraphSampler(@NonNull CompiledExpression expression, @NonNull CParams params, @NonNull CUnit variable)
+            throws NullPointerException, IllegalArgumentException {
+        if (!variable.isVariable()) {
+            throw new IllegalArgumentException("Not a variable: " + variable);
+        }
+        this.expression = Objects.requireNonNull(expression);
+        this.params = Objects.requireNonNull(params);
+        this.variable = variable;
+    }
+
+    /**
+     * @param x Value of the variable.
+     * @return Value of the expression, or {@link Double#NaN} if it is not a known real number.
+     */
+    public double evaluate(double x) {
+        return evaluate(new DoubleEvaluator(params), x);
+    }
+
+    /**
+     * Samples the expression at {@code xs.length} evenly spaced points from {@code xMin} to {@code xMax} inclusive.
+     * The points are calculated in parallel chunks with the {@link ForkJoinPool#commonPool()}. The arrays can be
+     * reused for every frame, so no memory is allocated for the points.
+     *
+     * @param xMin Value of the variable of the first point.
+     * @param xMax Value of the variable of the last point.
+     * @param xs Array to store the values of the variable.
+     * @param ys Array to store the values of the expression, {@link Double#NaN} if not known.
+     * @throws IllegalArgumentException The arrays have different lengths, or the range is not finite.
+     */
+    public void sample(double xMin, double xMax, @NonNull double[] xs, @NonNull double[] ys)
+            throws IllegalArgumentException {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("xs and ys must have the same length");
+        }
+        if (!DoubleEvaluator.isFinite(xMin) || !DoubleEvaluator.isFinite(xMax)) {
+            throw new IllegalArgumentException("Range must be finite");
+        }
+        if (xs.length == 0) {
+            return;
+        }
+        final double step = xs.length == 1 ? 0 : (xMax - xMin) / (xs.length - 1);
+        final SampleTask task = new SampleTask(xMin, xMax, step, xs, ys, 0, xs.length);
+        if (xs.length <= CHUNK_SIZE) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+    }
+
+    /**
+     * <p>Samples the expression for drawing it in a rectangle of pixels, with few points where the curve is straight
+     * and more where it bends. The rectangle is first sampled every few pixels, then every interval is divided until
+     * its middle point is within half a pixel of the line between its ends.</p>
+     * <p>The curve is broken (a point with {@link Double#NaN}) at undefined points and at jumps and poles, eg.
+     * {@code tan X} at 90°, so the lines between points never cross a discontinuity. A jump is found by halving an
+     * interval that is still steep at the pixel size, until it is not steep (a continuous curve) or the halves are
+     * too small.</p>
+     *
+     * @param xMin Value of the variable at the left edge.
+     * @param xMax Value of the variable at the right edge.
+     * @param yMin Value at the bottom edge.
+     * @param yMax Value at the top edge.
+     * @param width Width of the rectangle in pixels.
+     * @param height Height of the rectangle in pixels.
+     * @return Points of the curve in increasing order of the variable.
+     * @throws IllegalArgumentException A range is empty or not finite, or a size is not positive.
+     */
+    @NonNull
+    public Curve plot(double xMin, double xMax, double yMin, double yMax, int width, int height)
+            throws IllegalArgumentException {
+        if (!(xMin < xMax) || !(yMin < yMax) || !DoubleEvaluator.isFinite(xMax - xMin) || !DoubleEvaluator.isFinite(yMax - yMin)) {
+            throw new IllegalArgumentException("Range must be finite and not empty");
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+        final int intervals = Math.max(1, (width + INITIAL_SPACING - 1) / INITIAL_SPACING);
+        final double[] xs = new double[intervals + 1];
+        final double[] ys = new double[intervals + 1];
+        sample(xMin, xMax, xs, ys);
+        final PlotTask task = new PlotTask(xs, ys, width / (xMax - xMin), height / (yMax - yMin), 0, intervals);
+        if (intervals <= CHUNK_SIZE / INITIAL_SPACING) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        task.curve.add(xs[intervals], ys[intervals]);
+        return task.curve;
+    }
+
+    private double evaluate(@NonNull DoubleEvaluator evaluator, double x) {
+        evaluator.setVariable(variable, x);
+        final double y = expression.getRoot().evaluateDouble(evaluator);
+        return DoubleEvaluator.isFinite(y) ? y : Double.NaN;
+    }
+
+    /**
+     * Samples a range of the points, split in halves until it is at most {@link #CHUNK_SIZE}.
+     */
+    private final class SampleTask extends RecursiveAction {
+
+        private final double xMin;
+        private final double xMax;
+        private final double step;
+        private final double[] xs;
+        private final double[] ys;
+        private final int from;
+        private final int to;
+
+        SampleTask(double xMin, double xMax, double step, @NonNull double[] xs, @NonNull double[] ys, int from,
+                   int to) {
+            this.xMin = xMin;
+            this.xMax = xMax;
+            this.step = step;
+            this.xs = xs;
+            this.ys = ys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                final DoubleEvaluator evaluator = new DoubleEvaluator(params);
+                final int last = xs.length - 1;
+                for (int i = from; i < to; i++) {
+                    final double x = i == last && last > 0 ? xMax : xMin + step * i;
+                    xs[i] = x;
+                    ys[i] = evaluate(evaluator, x);
+                }
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new SampleTask(xMin, xMax, step, xs, ys, from, middle),
+                        new SampleTask(xMin, xMax, step, xs, ys, middle, to));
+            }
+        }
+    }
+
+    /**
+     * Divides a range of the first intervals of {@link #plot(double, double, double, double, int, int)}, split in
+     * halves like {@link SampleTask}. The points of each half are appended in order, without the end of the range.
+     */
+    private final class PlotTask extends RecursiveAction {
+
+        private final double[] xs;
+        private final double[] ys;
+        /**
+         * Pixels per unit of each axis.
+         */
+        private final double xScale;
+        private final double yScale;
+        private final int from;
+        private final int to;
+        private final Curve curve = new Curve();
+        private DoubleEvaluator evaluator;
+
+        PlotTask(@NonNull double[] xs, @NonNull double[] ys, double xScale, double yScale, int from, int to) {
+            this.xs = xs;
+            this.ys = ys;
+            this.xScale = xScale;
+            this.yScale = yScale;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE / INITIAL_SPACING) {
+                evaluator = new DoubleEvaluator(params);
+                for (int i = from; i < to; i++) {
+                    curve.add(xs[i], ys[i]);
+                    divide(xs[i], ys[i], xs[i + 1], ys[i + 1]);
+                }
+            } else {
+                final int middle = (from + to) >>> 1;
+                final PlotTask left = new PlotTask(xs, ys, xScale, yScale, from, middle);
+                final PlotTask right = new PlotTask(xs, ys, xScale, yScale, middle, to);
+                invokeAll(left, right);
+                curve.addAll(left.curve);
+                curve.addAll(right.curve);
+            }
+        }
+
+        /**
+         * Appends the points between {@code a} and {@code b}, without the ends.
+         */
+        private void divide(double a, double ya, double b, double yb) {
+            if ((b - a) * xScale <= MIN_SPACING) {
+                if (!Double.isNaN(ya) && !Double.isNaN(yb) && Math.abs(yb - ya) * yScale > TOLERANCE && isJump(a, ya, b, yb)) {
+                    curve.add((a + b) / 2, Double.NaN);
+                }
+                return;
+            }
+            final double m = (a + b) / 2;
+            final double ym = evaluate(evaluator, m);
+            if (Double.isNaN(ya) && Double.isNaN(ym) && Double.isNaN(yb)) {
+                // undefined interval
+                curve.add(m, ym);
+                return;
+            }
+            if (!Double.isNaN(ya) && !Double.isNaN(ym) && !Double.isNaN(yb)
+                    && Math.abs(ym - (ya + yb) / 2) * yScale <= TOLERANCE) {
+                curve.add(m, ym);
+                return;
+            }
+            divide(a, ya, m, ym);
+            curve.add(m, ym);
+            divide(m, ym, b, yb);
+        }
+
+        /**
+         * @return true if the curve between two close points is discontinuous or undefined, false if the steepness
+         * is continuous.
+         */
+        private boolean isJump(double a, double ya, double b, double yb) {
+            for (int i = 0; i < JUMP_BISECTIONS; i++) {
+                final double m = (a + b) / 2;
+                if (m <= a || m >= b) {
+                    break;
+                }
+                final double ym = evaluate(evaluator, m);
+                if (Double.isNaN(ym)) {
+                    return true;
+                }
+                // follow the half with the bigger change
+                if (Math.abs(ym - ya) > Math.abs(yb - ym)) {
+                    b = m;
+                    yb = ym;
+                } else {
+                    a = m;
+                    ya = ym;
+                }
+                if (Math.abs(yb - ya) * yScale <= TOLERANCE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Points of a curve from {@link #plot(double, double, double, double, int, int)}. A point with {@link Double#NaN}
+     * breaks the curve, the points before and after it are not joined.
+     */
+    public static final class Curve {
+
+        private double[] xs = new double[64];
+        private double[] ys = new double[64];
+        private int size;
+
+        private Curve() {}
+
+        /**
+         * @return Number of points.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param index Index of a point.
+         * @return Value of the variable.
+         */
+        public double getX(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException();
+            }
+            return xs[index];
+        }
+
+        /**
+         * @param index Index of a point.
+         * @return Value of the expression, or {@link Double#NaN} if the curve is broken.
+         */
+        public double getY(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException();
+            }
+            return ys[index];
+        }
+
+        /**
+         * Appends a point, except a break after another break.
+         */
+        private void add(double x, double y) {
+            if (Double.isNaN(y) && size > 0 && Double.isNaN(ys[size - 1])) {
+                return;
+            }
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, 2 * size);
+                ys = Arrays.copyOf(ys, 2 * size);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+        }
+
+        private void addAll(@NonNull Curve curve) {
+            for (int i = 0; i < curve.size; i++) {
+                add(curve.xs[i], curve.ys[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.bx.calculator.calc;
+
+/**
+ * Class containing the operation codes of {@link CUnit}s and of the tokens made by {@link CTokens}. Codes of the
+ * same kind are in one range, so a code can be classified with a comparison and dispatched with a {@code switch}.
+ */
+final class Opcodes {
+
+    static final int ZERO = 0;
+    static final int ONE = 1;
+    static final int TWO = 2;
+    static final int THREE = 3;
+    static final int FOUR = 4;
+    static final int FIVE = 5;
+    static final int SIX = 6;
+    static final int SEVEN = 7;
+    static final int EIGHT = 8;
+    static final int NINE = 9;
+    static final int POINT = 10;
+    static final int LEFT_BRACKET = 11;
+    static final int RIGHT_BRACKET = 12;
+    /**
+     * A number, {@link CNum} units. As a token, the upper bits hold the index of the literal.
+     */
+    static final int NUMBER = 13;
+    /**
+     * {@link CUnit#isVariable()} units. As a token, the upper bits hold the index of the variable.
+     */
+    static final int VARIABLE = 14;
+
+    // operators
+    static final int PLUS = 20;
+    static final int MINUS = 21;
+    static final int TIMES = 22;
+    static final int DIVIDE = 23;
+    static final int POWER = 24;
+    static final int EXP = 25;
+    static final int ROOT = 26;
+    static final int NPR = 27;
+    static final int NCR = 28;
+
+    // pre functions
+    static final int ABS = 30;
+    static final int ARG = 31;
+    static final int CONJ = 32;
+    static final int SQRT = 33;
+    static final int LOG = 34;
+    static final int LOG10 = 35;
+    static final int LOG2 = 36;
+    static final int SIN = 37;
+    static final int COS = 38;
+    static final int TAN = 39;
+    static final int ASIN = 40;
+    static final int ACOS = 41;
+    static final int ATAN = 42;
+    static final int SINH = 43;
+    static final int COSH = 44;
+    static final int TANH = 45;
+    static final int ASINH = 46;
+    static final int ACOSH = 47;
+    static final int ATANH = 48;
+    static final int CSC = 49;
+    static final int SEC = 50;
+    static final int COT = 51;
+
+    // post functions
+    static final int FACTORIAL = 60;
+    static final int PERCENT = 61;
+    static final int SQUARED = 62;
+    static final int CUBED = 63;
+    static final int INVERSE = 64;
+
+    /**
+     * Number of bits of a token used for the code, the rest is the index of a literal or variable.
+     */
+    static final int CODE_BITS = 8;
+    static final int CODE_MASK = (1 << CODE_BITS) - 1;
+
+    static boolean isDigit(int code) {
+        return code >= ZERO && code <= NINE;
+    }
+
+    static boolean isDigitOrPoint(int code) {
+        return code >= ZERO && code <= POINT;
+    }
+
+    static boolean isPlusOrMinus(int code) {
+        return code == PLUS || code == MINUS;
+    }
+
+    static boolean isTimesOrDivide(int code) {
+        return code == TIMES || code == DIVIDE;
+    }
+
+    static boolean isPermutationOrCombination(int code) {
+        return code == NPR || code == NCR;
+    }
+
+    static boolean isOperator(int code) {
+        return code >= PLUS && code <= NCR;
+    }
+
+    static boolean isPreFunction(int code) {
+        return code >= ABS && code <= COT;
+    }
+
+    static boolean isPostFunction(int code) {
+        return code >= FACTORIAL && code <= INVERSE;
+    }
+
+    /**
+     * @return Token with a code and the index of a literal or variable.
+     */
+    static int token(int code, int index) {
+        return code | (index << CODE_BITS);
+    }
+
+    static int code(int token) {
+        return token & CODE_MASK;
+    }
+
+    static int index(int token) {
+        return token >>> CODE_BITS;
+    }
+
+    private Opcodes() {}
+}
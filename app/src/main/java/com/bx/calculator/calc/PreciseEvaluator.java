@@ -0,0 +1,800 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.exception.OutOfRangeException;
+import com.bx.calculator.calc.exception.UndefinedException;
+import com.bx.calculator.calc.exception.VariableException;
+import com.bx.calculator.calc.math.AngleUnit;
+import com.bx.calculator.calc.math.Maffs;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * <p>Evaluates a {@link CNode} tree with increasing precision until the significant figures of the result are
+ * known (Ziv's strategy). Used by {@link CompiledExpression#evaluateGuaranteed(CParams, int)}.</p>
+ * <p>Every value has a bound of its absolute error, stored as a base 10 logarithm so it can not overflow. The error
+ * of an operation is the sum of the errors of its arguments, each multiplied by a bound of the derivative (the
+ * sensitivity), and the rounding error of the operation itself. The rounding of a function includes the rounding
+ * of its argument, eg. sin 10<sup>30</sup> loses about 30 digits. Functions calculated with a formula that may
+ * cancel, eg. asinh of a large negative number, are also calculated with more precision and the difference is added
+ * to the rounding error.</p>
+ * <p>If the result is not known well enough, only the arguments with too much error are evaluated again, with a
+ * smaller target error, and the operation itself is calculated again with a higher precision. Arguments that are
+ * already good enough, eg. numbers, are reused.</p>
+ */
+final class PreciseEvaluator {
+
+    /**
+     * Highest precision used, so the evaluation always ends, eg. for a result that is exactly 0.
+     */
+    static final int MAX_PRECISION = 1000;
+    /**
+     * Extra significant figures which must be correct, so the digits of the result are not uncertain because of the
+     * rounding of the last displayed digit.
+     */
+    static final int GUARD_DIGITS = 2;
+    /**
+     * Extra precision of the second result of a composite operation, which estimates the rounding error.
+     */
+    private static final int CHECK_DIGITS = 8;
+    private static final double LOG10_2 = Math.log10(2);
+    private static final double LOG10_E = Math.log10(Math.E);
+    private static final double LOG10_DEG = Math.log10(180 / Math.PI);
+
+    private final CParams params;
+    private final int initialPrecision;
+    /**
+     * Sensitivity and limit of the arguments, and rounding error, of the operation being calculated.
+     */
+    private final double[] sensitivity = new double[2];
+    private final double[] limit = new double[2];
+    private double rounding;
+
+    /**
+     * @param params Parameters of the calculation, the precision is not used.
+     * @param initialPrecision Precision of the first evaluation of every operation.
+     */
+    PreciseEvaluator(@NonNull CParams params, int initialPrecision) {
+        this.params = params;
+        this.initialPrecision = initialPrecision;
+    }
+
+    /**
+     * Evaluates a tree until {@code sigfig} significant figures, and {@link #GUARD_DIGITS} more, of the result are
+     * known, or until {@link #MAX_PRECISION}.
+     *
+     * @param root Root of the tree.
+     * @param sigfig Significant figures of the result that must be correct.
+     * @return Result and its error.
+     * @throws VariableException A variable does not have a value in the parameters.
+     * @throws UndefinedException result is undefined
+     * @throws OutOfRangeException result is out of range
+     */
+    @NonNull
+    Approx evaluate(@NonNull CNode root, int sigfig) throws VariableException, UndefinedException, OutOfRangeException {
+        final Node node = build(root);
+        Approx result = refine(node, Double.POSITIVE_INFINITY);
+        while (!result.isExact()) {
+            final double target;
+            if (result.value.re.signum() == 0 && result.value.im.signum() == 0) {
+                // cancellation, 0 or a value smaller than the error, double the precision
+                target = result.error - Math.max(sigfig + GUARD_DIGITS, result.precision);
+            } else if (result.error <= result.magnitude - sigfig - GUARD_DIGITS) {
+                if (isRoundingKnown(result, sigfig)) {
+                    return result;
+                }
+                // the error is on a rounding boundary of the significant figures
+                target = result.error - sigfig - GUARD_DIGITS;
+            } else {
+                target = Math.max(result.error, result.magnitude) - sigfig - GUARD_DIGITS;
+            }
+            final Approx refined = refine(node, target);
+            if (!(refined.error < result.error)) {      // no progress
+                return refined;
+            }
+            result = refined;
+        }
+        return result;
+    }
+
+    // -------- REFINEMENT ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Evaluates a node, if it is not evaluated yet or its error is more than {@code target}. Arguments are evaluated
+     * again with smaller target errors and the operation with more precision, until the target or
+     * {@link #MAX_PRECISION} is reached.
+     *
+     * @param target Base 10 logarithm of the largest absolute error.
+     * @return The best result of the node.
+     */
+    @NonNull
+    private Approx refine(@NonNull Node node, double target) {
+        if (node.approx == null) {
+            for (Node argument: node.arguments) {
+                refine(argument, Double.POSITIVE_INFINITY);
+            }
+            requireSignificant(node);
+            compute(node, initialPrecision);
+        }
+        final double share = target - Math.log10(node.arguments.length + 1);
+        while (node.approx.error > target) {
+            // tighten the arguments which have too much error, and the precision if the rounding is too large
+            boolean progress = false;
+            for (int i = 0; i < node.arguments.length; i++) {
+                final Node argument = node.arguments[i];
+                final double argumentTarget = Math.min(share - node.sensitivity[i], node.limit[i]);
+                // an argument with an infinite target can not be improved enough
+                if (argument.approx.error > argumentTarget && argumentTarget > Double.NEGATIVE_INFINITY) {
+                    final double before = argument.approx.error;
+                    refine(argument, argumentTarget);
+                    progress |= argument.approx.error < before;
+                }
+            }
+            int precision = node.approx.precision;
+            if (node.rounding > share && precision < MAX_PRECISION) {
+                precision = (int) Math.min(MAX_PRECISION, precision + Math.ceil(node.rounding - share) + 1);
+                progress = true;
+            }
+            if (!progress) {
+                break;
+            }
+            requireSignificant(node);
+            compute(node, precision);
+        }
+        return node.approx;
+    }
+
+    /**
+     * Arguments which may be 0 are evaluated with more precision if the operation is undefined at 0, eg. the divisor.
+     */
+    private void requireSignificant(@NonNull Node node) {
+        final int index;
+        switch (node.code) {
+            case Opcodes.DIVIDE:
+                index = 1;
+                break;
+            case Opcodes.INVERSE:
+            case Opcodes.LOG:
+            case Opcodes.LOG10:
+            case Opcodes.LOG2:
+            case Opcodes.ARG:
+            case Opcodes.POWER:
+            case Opcodes.ROOT:
+                index = 0;
+                break;
+            default:
+                return;
+        }
+        final Node argument = node.arguments[index];
+        while (!argument.approx.isExact() && argument.approx.magnitude <= argument.approx.error + LOG10_2
+                && argument.approx.precision < MAX_PRECISION) {
+            final double before = argument.approx.error;
+            refine(argument, before - argument.approx.precision);
+            if (!(argument.approx.error < before)) {
+                return;
+            }
+        }
+    }
+
+    // -------- OPERATIONS ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Calculates an operation with a precision, from the current values of its arguments. Sets the result, and the
+     * sensitivity and limit of each argument and the rounding error, of the node.
+     */
+    private void compute(@NonNull Node node, int precision) throws UndefinedException, OutOfRangeException {
+        limit[0] = limit[1] = Double.POSITIVE_INFINITY;
+        BigComplex value;
+        while (true) {
+            try {
+                value = calculate(node, precision);
+                break;
+            } catch (OutOfRangeException e) {
+                throw e;
+            } catch (ArithmeticException e) {
+                // a formula may cancel to an undefined value, eg. log 0 in asinh
+                if (!isComposite(node) || precision >= MAX_PRECISION) {
+                    throw e;
+                }
+                precision = Math.min(MAX_PRECISION, 2 * precision);
+            }
+        }
+        if (node.arguments.length == 1) {
+            function(node.code, node.arguments[0].approx, value, precision);
+        } else {
+            operator(node.code, node.arguments[0].approx, node.arguments[1].approx, value, precision);
+        }
+        if (rounding > Double.NEGATIVE_INFINITY && isComposite(node)) {
+            // the formula may cancel, so compare with a result with more precision
+            try {
+                final BigComplex check = calculate(node, precision + CHECK_DIGITS);
+                rounding = logSum(rounding, magnitude(check.subtract(value)));
+                value = check;
+            } catch (OutOfRangeException e) {
+                throw e;
+            } catch (ArithmeticException e) {
+                rounding = logSum(rounding, magnitude(value) + 1);
+            }
+        }
+        double error = rounding;
+        boolean real = value.im.signum() == 0 && !isComplexPower(node);
+        for (int i = 0; i < node.arguments.length; i++) {
+            final Approx argument = node.arguments[i].approx;
+            real &= argument.real;
+            if (argument.error > limit[i]) {
+                error = Double.POSITIVE_INFINITY;
+            } else if (argument.error > Double.NEGATIVE_INFINITY) {
+                error = logSum(error, sensitivity[i] + argument.error);
+            }
+        }
+        // the limits keep the arguments away from branch cuts, so a real result of real arguments is real
+        node.approx = new Approx(value, error, precision, real && error < Double.POSITIVE_INFINITY);
+        node.sensitivity = Arrays.copyOf(sensitivity, node.arguments.length);
+        node.limit = Arrays.copyOf(limit, node.arguments.length);
+        node.rounding = rounding;
+    }
+
+    @NonNull
+    private BigComplex calculate(@NonNull Node node, int precision) throws UndefinedException, OutOfRangeException {
+        CancellationToken.checkCurrent();
+        final MathContext mc = new MathContext(precision, RoundingMode.HALF_EVEN);
+        if (node.arguments.length == 1) {
+            return Calculate.calculateFunction(node.code, node.arguments[0].approx.value, params.getAngleUnit(), mc);
+        } else {
+            return Calculate.calculateOperator(node.code, node.arguments[0].approx.value, node.arguments[1].approx.value, mc);
+        }
+    }
+
+    /**
+     * @return True if the operation is calculated with a formula of other operations, eg. asinh, so its rounding
+     * error may be much more than the precision.
+     */
+    private static boolean isComposite(@NonNull Node node) {
+        if (node.arguments.length == 2) {
+            return node.code == Opcodes.POWER || node.code == Opcodes.ROOT;
+        }
+        switch (node.code) {
+            case Opcodes.PLUS:
+            case Opcodes.MINUS:
+            case Opcodes.CONJ:
+            case Opcodes.PERCENT:
+            case Opcodes.ABS:
+            case Opcodes.SQUARED:
+            case Opcodes.CUBED:
+            case Opcodes.INVERSE:
+            case Opcodes.SQRT:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private void function(int func, @NonNull Approx z, @NonNull BigComplex r, int precision) {
+        final double lz = z.magnitude;
+        final double lr = magnitude(r);
+        final boolean degrees = params.getAngleUnit() == AngleUnit.DEG;
+        double k;
+        boolean periodic = false;
+        switch (func) {
+            case Opcodes.PLUS:
+            case Opcodes.MINUS:
+            case Opcodes.CONJ:
+                sensitivity[0] = 0;
+                rounding = isEqual(r, exactFunction(func, z.value)) ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+                return;
+            case Opcodes.PERCENT:
+                sensitivity[0] = -2;
+                rounding = isEqual(r, exactFunction(func, z.value)) ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+                return;
+            case Opcodes.ABS:
+                sensitivity[0] = 0;
+                rounding = z.value.isReal() ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+                return;
+            case Opcodes.ARG:
+                // the argument of a real number is 0 or pi, if its sign is known
+                sensitivity[0] = z.real ? Double.NEGATIVE_INFINITY : LOG10_2 - lz + (degrees ? LOG10_DEG : 0);
+                limit[0] = lz - LOG10_2;
+                rounding = isZero(r) ? Double.NEGATIVE_INFINITY : lr + 2 - precision;
+                return;
+            case Opcodes.SQRT:
+                sensitivity[0] = -LOG10_2 - (lz - LOG10_2) / 2;
+                limit[0] = lz - LOG10_2;
+                rounding = isEqual(z.value, r.multiply(r)) ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+                return;
+            case Opcodes.LOG:
+            case Opcodes.LOG10:
+            case Opcodes.LOG2:
+                k = LOG10_2 - lz;
+                if (func == Opcodes.LOG10) {
+                    k -= Math.log10(Math.log(10));
+                } else if (func == Opcodes.LOG2) {
+                    k -= Math.log10(Math.log(2));
+                }
+                sensitivity[0] = k;
+                limit[0] = lz - LOG10_2;
+                rounding = isZero(r) ? Double.NEGATIVE_INFINITY : lr + 2 - precision;
+                return;
+            case Opcodes.SIN:
+            case Opcodes.COS:
+                k = LOG10_2 + Math.abs(toDouble(z.value.im)) * LOG10_E;
+                limit[0] = 0;
+                periodic = true;
+                break;
+            case Opcodes.TAN:
+            case Opcodes.CSC:
+            case Opcodes.SEC:
+            case Opcodes.COT:
+                k = LOG10_2 + 2 * Math.log10(1 + Math.pow(10, Math.min(lr, 300)));
+                limit[0] = -1 - k;
+                periodic = true;
+                break;
+            case Opcodes.ASIN:
+            case Opcodes.ACOS:
+            case Opcodes.ASINH:
+            case Opcodes.ACOSH:
+                k = LOG10_2 - distance(func, z.value) / 2;
+                limit[0] = distance(func, z.value) - Math.log10(4) - logSum(lz, 0);
+                if (degrees && func != Opcodes.ASINH && func != Opcodes.ACOSH) {
+                    k += LOG10_DEG;
+                }
+                break;
+            case Opcodes.ATAN:
+            case Opcodes.ATANH:
+                k = LOG10_2 - distance(func, z.value);
+                limit[0] = distance(func, z.value) - Math.log10(4) - logSum(lz, 0);
+                if (degrees && func == Opcodes.ATAN) {
+                    k += LOG10_DEG;
+                }
+                break;
+            case Opcodes.SINH:
+            case Opcodes.COSH:
+                k = LOG10_2 + Math.abs(toDouble(z.value.re)) * LOG10_E;
+                limit[0] = -1;
+                break;
+            case Opcodes.TANH:
+                k = LOG10_2 + Math.log10(1 + Math.pow(10, 2 * Math.min(lr, 150)));
+                limit[0] = -1 - k;
+                break;
+            case Opcodes.FACTORIAL:
+                factorial(z, r, lr, precision);
+                return;
+            case Opcodes.SQUARED:
+                sensitivity[0] = Math.log10(4) + lz;
+                limit[0] = lz;
+                rounding = isEqual(r, exactFunction(func, z.value)) ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+                return;
+            case Opcodes.CUBED:
+                sensitivity[0] = Math.log10(12) + 2 * lz;
+                limit[0] = lz;
+                rounding = isEqual(r, exactFunction(func, z.value)) ? Double.NEGATIVE_INFINITY : lr + 2 - precision;
+                return;
+            case Opcodes.INVERSE:
+                sensitivity[0] = Math.log10(4) - 2 * lz;
+                limit[0] = lz - LOG10_2;
+                rounding = isEqual(BigComplex.ONE, r.multiply(z.value)) ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+                return;
+            default:
+                throw new IllegalArgumentException("Unrecognized function: " + func);
+        }
+        // trigonometric and hyperbolic functions, the argument is rounded by the function, and reduced by a multiple
+        // of pi if the function is periodic
+        sensitivity[0] = k;
+        if (z.isExact() && isZero(z.value)) {
+            rounding = Double.NEGATIVE_INFINITY;
+        } else if (!periodic && z.isExact() && digits(z.value) <= precision) {
+            rounding = lr + 2 - precision;
+        } else {
+            rounding = logSum(lr + 2 - precision, k + lz + 1 - precision);
+        }
+    }
+
+    private void factorial(@NonNull Approx z, @NonNull BigComplex r, double lr, int precision) {
+        final double x = toDouble(z.value.re);
+        final double y = toDouble(z.value.im);
+        final double nearestInteger = Math.rint(x);
+        if (z.isExact() && y == 0 && x == nearestInteger && x >= 0) {
+            // exact integer, the rounding is the only error
+            sensitivity[0] = 0;
+            rounding = lr + 1 <= precision ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+            return;
+        }
+        // d/dz z! = z! digamma(z + 1), digamma is about log |z|, or 1 / distance near the poles at negative integers
+        double digamma = Math.log(Math.hypot(x, y) + 2) + 2;
+        double distance = Double.POSITIVE_INFINITY;
+        if (x < 0) {
+            distance = Math.hypot(x - nearestInteger, y);
+            digamma += 1 / distance;
+        }
+        sensitivity[0] = LOG10_2 + lr + Math.log10(digamma);
+        limit[0] = Math.log10(distance / 2);
+        rounding = logSum(lr + 2 - precision, sensitivity[0] + z.magnitude + 1 - precision);
+    }
+
+    private void operator(int op, @NonNull Approx a, @NonNull Approx b, @NonNull BigComplex r, int precision) {
+        final double la = a.magnitude;
+        final double lb = b.magnitude;
+        final double lr = magnitude(r);
+        switch (op) {
+            case Opcodes.PLUS:
+            case Opcodes.MINUS:
+                sensitivity[0] = sensitivity[1] = 0;
+                rounding = isEqual(r, op == Opcodes.PLUS ? a.value.add(b.value) : a.value.subtract(b.value))
+                        ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+                return;
+            case Opcodes.TIMES:
+                // |a b - a' b'| <= |b| ea + |a| eb + ea eb
+                sensitivity[0] = logSum(lb, b.error);
+                sensitivity[1] = la;
+                rounding = isEqual(r, a.value.multiply(b.value)) ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+                return;
+            case Opcodes.DIVIDE:
+                // |a / b - a' / b'| <= (ea + |r| eb) / (|b| - eb)
+                sensitivity[0] = LOG10_2 - lb;
+                sensitivity[1] = LOG10_2 + lr - lb;
+                limit[1] = lb - LOG10_2;
+                rounding = isEqual(a.value, r.multiply(b.value)) ? Double.NEGATIVE_INFINITY : lr + 1 - precision;
+                return;
+            case Opcodes.POWER:
+                power(a, b.value, b.error, r, precision);
+                return;
+            case Opcodes.ROOT:
+                // a ROOT b = b ^ (1 / a)
+                final double inverseError = a.isExact() ? Double.NEGATIVE_INFINITY : Math.log10(4) + a.error - 2 * la;
+                final BigComplex inverse = Maffs.inverse(a.value, new MathContext(precision + 2, RoundingMode.HALF_EVEN));
+                power(b, inverse, inverseError, r, precision);
+                // chain rule through 1 / a
+                sensitivity[1] = sensitivity[0];
+                limit[1] = limit[0];
+                sensitivity[0] = rootSensitivity(b, la, r);
+                limit[0] = la - 1 - LOG10_2;
+                if (a.isExact() && isInteger(a.value) && isEqual(b.value, exactPower(r, a.value.re, precision))) {
+                    rounding = Double.NEGATIVE_INFINITY;
+                }
+                return;
+            case Opcodes.NPR:
+            case Opcodes.NCR:
+                // only defined for integers, so the arguments must be exact
+                sensitivity[0] = sensitivity[1] = 0;
+                limit[0] = limit[1] = Double.NEGATIVE_INFINITY;
+                rounding = logFactorial(toDouble(a.value.re)) + 1 <= precision ? Double.NEGATIVE_INFINITY : lr + 3 - precision;
+                return;
+            default:
+                throw new IllegalArgumentException("Unrecognized operator: " + op);
+        }
+    }
+
+    /**
+     * Error of {@code a ^ b}, where {@code b} has error {@code eb}. Sets the sensitivity of {@code a} as the first
+     * argument and of {@code b} as the second.
+     */
+    private void power(@NonNull Approx a, @NonNull BigComplex b, double eb, @NonNull BigComplex r, int precision) {
+        final double la = a.magnitude;
+        final double lr = magnitude(r);
+        if (isZero(r)) {        // 0 ^ b
+            sensitivity[0] = sensitivity[1] = 0;
+            limit[0] = Double.NEGATIVE_INFINITY;
+            rounding = Double.NEGATIVE_INFINITY;
+            return;
+        }
+        final double lb = magnitude(b);
+        // d/da = b a^(b - 1) = b r / a, d/db = r ln a
+        final double logLog = Math.log10(Math.abs(la * Math.log(10)) + Math.PI);
+        sensitivity[0] = LOG10_2 + lb + lr - la;
+        limit[0] = la - 1 - Math.max(0, lb);
+        sensitivity[1] = LOG10_2 + lr + logLog;
+        limit[1] = -1 - logLog;
+        if (eb == Double.NEGATIVE_INFINITY) {
+            limit[1] = Double.POSITIVE_INFINITY;
+        }
+        if (isEqual(r, BigComplex.ONE) && (a.isExact() && isEqual(a.value, BigComplex.ONE)
+                || eb == Double.NEGATIVE_INFINITY && isZero(b))) {     // 1 ^ b, a ^ 0
+            rounding = Double.NEGATIVE_INFINITY;
+            if (eb == Double.NEGATIVE_INFINITY) {
+                limit[0] = Double.POSITIVE_INFINITY;
+            }
+        } else if (a.isExact() && eb == Double.NEGATIVE_INFINITY && isInteger(b)
+                && isEqual(r, exactPower(a.value, b.re, precision))) {
+            rounding = Double.NEGATIVE_INFINITY;
+        } else {
+            // calculated as e ^ (b ln a), which is rounded
+            rounding = logSum(lr + 2 - precision, lr + lb + logLog + 1 - precision);
+        }
+    }
+
+    /**
+     * Sensitivity of {@code a ROOT b} to {@code a}: d/da b ^ (1 / a) = -r ln b / a<sup>2</sup>.
+     */
+    private static double rootSensitivity(@NonNull Approx base, double la, @NonNull BigComplex r) {
+        final double logLog = Math.log10(Math.abs(base.magnitude * Math.log(10)) + Math.PI);
+        return Math.log10(4) + magnitude(r) + logLog - 2 * la;
+    }
+
+    /**
+     * @return True if the node is a power of a negative number with an exponent that is not exact, which may be
+     * complex even if the result is real.
+     */
+    private static boolean isComplexPower(@NonNull Node node) {
+        if (node.code == Opcodes.POWER && node.arguments.length == 2) {
+            return node.arguments[0].approx.value.re.signum() < 0 && !node.arguments[1].approx.isExact();
+        } else if (node.code == Opcodes.ROOT && node.arguments.length == 2) {
+            return node.arguments[1].approx.value.re.signum() < 0 && !node.arguments[0].approx.isExact();
+        }
+        return false;
+    }
+
+    // -------- HELPER FUNCTIONS ---------------------------------------------------------------------------------------------
+
+    /**
+     * @return Base 10 logarithm of the distance of {@code z} from the singularities of an inverse function, eg.
+     * {@code |1 - z^2|} for asin.
+     */
+    private static double distance(int func, @NonNull BigComplex z) {
+        final double re = toDouble(z.re);
+        final double im = toDouble(z.im);
+        if (Double.isInfinite(re) || Double.isInfinite(im) || Math.abs(re) > 1e150 || Math.abs(im) > 1e150) {
+            return 2 * magnitude(z);
+        }
+        // z^2
+        final double re2 = re * re - im * im;
+        final double im2 = 2 * re * im;
+        switch (func) {
+            case Opcodes.ATAN:
+            case Opcodes.ASINH:
+                return Math.log10(Math.hypot(1 + re2, im2));
+            default:        // ASIN, ACOS, ACOSH, ATANH
+                return Math.log10(Math.hypot(1 - re2, im2));
+        }
+    }
+
+    /**
+     * @return Result of a function that can be calculated exactly, without rounding.
+     */
+    @NonNull
+    private static BigComplex exactFunction(int func, @NonNull BigComplex z) {
+        switch (func) {
+            case Opcodes.MINUS:
+                return z.negate();
+            case Opcodes.CONJ:
+                return z.conjugate();
+            case Opcodes.PERCENT:
+                return Maffs.scaleByPowerOfTen(z, -2);
+            case Opcodes.SQUARED:
+                return z.multiply(z);
+            case Opcodes.CUBED:
+                return z.multiply(z).multiply(z);
+            default:        // PLUS
+                return z;
+        }
+    }
+
+    /**
+     * @return {@code n ^ exponent} calculated exactly, or {@code null} if the exponent is negative or the result
+     * has many more digits than the precision.
+     */
+    private static BigComplex exactPower(@NonNull BigComplex n, @NonNull BigDecimal exponent, int precision) {
+        if (exponent.signum() < 0 || exponent.compareTo(BigDecimal.valueOf(MAX_PRECISION)) > 0) {
+            return null;
+        }
+        final int e = exponent.intValue();
+        if ((long) digits(n) * e > 2L * precision) {
+            return null;
+        }
+        BigComplex result = BigComplex.ONE;
+        for (int i = 0; i < e; i++) {
+            result = result.multiply(n);
+        }
+        return result;
+    }
+
+    /**
+     * @return Approximate base 10 logarithm of {@code n!}, with Stirling's formula.
+     */
+    private static double logFactorial(double n) {
+        if (n < 2) {
+            return 0;
+        }
+        return (n * Math.log(n) - n + 0.5 * Math.log(2 * Math.PI * n) + 1 / (12 * n)) / Math.log(10);
+    }
+
+    /**
+     * @return True if the values are equal, {@code false} if either is {@code null}.
+     */
+    private static boolean isEqual(BigComplex n1, BigComplex n2) {
+        return n1 != null && n2 != null && n1.re.compareTo(n2.re) == 0 && n1.im.compareTo(n2.im) == 0;
+    }
+
+    /**
+     * @return Significant figures of the larger part.
+     */
+    private static int digits(@NonNull BigComplex n) {
+        return Math.max(n.re.precision(), n.im.precision());
+    }
+
+    private static boolean isZero(@NonNull BigComplex n) {
+        return Maffs.isZero(n);
+    }
+
+    private static boolean isInteger(@NonNull BigComplex n) {
+        return n.isReal() && Maffs.isInteger(n.re);
+    }
+
+    private static double toDouble(@NonNull BigDecimal n) {
+        return n.doubleValue();
+    }
+
+    /**
+     * @return True if both ends of the error bound round to the same significant figures, for each part of the
+     * value that is larger than the error.
+     */
+    private static boolean isRoundingKnown(@NonNull Approx result, int sigfig) {
+        final BigDecimal error = BigDecimal.ONE.scaleByPowerOfTen((int) Math.ceil(result.error));
+        final MathContext displayed = new MathContext(sigfig, RoundingMode.HALF_EVEN);
+        for (BigDecimal part: new BigDecimal[] {result.value.re, result.value.im}) {
+            if (part.signum() != 0 && magnitude(part) > result.error) {
+                final BigDecimal lower = part.subtract(error).round(displayed);
+                final BigDecimal upper = part.add(error).round(displayed);
+                if (lower.compareTo(upper) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Base 10 logarithm of the absolute value, {@link Double#NEGATIVE_INFINITY} for 0.
+     */
+    static double magnitude(@NonNull BigComplex n) {
+        final double re = magnitude(n.re);
+        final double im = magnitude(n.im);
+        final double max = Math.max(re, im);
+        if (max == Double.NEGATIVE_INFINITY) {
+            return max;
+        }
+        return max + 0.5 * Math.log10(1 + Math.pow(10, 2 * (Math.min(re, im) - max)));
+    }
+
+    private static double magnitude(@NonNull BigDecimal n) {
+        if (n.signum() == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        final int exponent = n.precision() - n.scale() - 1;
+        final double mantissa = new BigDecimal(n.unscaledValue(), n.precision() - 1).abs().doubleValue();
+        return exponent + Math.log10(mantissa);
+    }
+
+    /**
+     * @return Base 10 logarithm of the sum of two values given as base 10 logarithms.
+     */
+    private static double logSum(double a, double b) {
+        final double max = Math.max(a, b);
+        if (max == Double.NEGATIVE_INFINITY || max == Double.POSITIVE_INFINITY) {
+            return max;
+        }
+        return max + Math.log10(1 + Math.pow(10, Math.min(a, b) - max));
+    }
+
+    // -------- TREE ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Makes a tree of binary operations and functions from a {@link CNode} tree. The results of the nodes are
+     * kept in the new tree.
+     */
+    @NonNull
+    private Node build(@NonNull CNode node) throws VariableException {
+        if (node instanceof CNode.Value) {
+            final BigComplex value = ((CNode.Value) node).value;
+            // numbers with fewer digits than the default precision are exact, constants are rounded
+            final int digits = digits(value);
+            final double error = digits < Maffs.MC.getPrecision() ? Double.NEGATIVE_INFINITY : magnitude(value) + 1 - digits;
+            return new Node(value, error);
+        } else if (node instanceof CNode.Variable) {
+            final BigComplex value = params.getValue(((CNode.Variable) node).variable);
+            if (value == null) {
+                throw new VariableException();
+            }
+            return new Node(value, Double.NEGATIVE_INFINITY);
+        } else if (node instanceof CNode.Function) {
+            final CNode.Function function = (CNode.Function) node;
+            return new Node(function.function, build(function.argument));
+        } else {
+            final CNode.Operator operator = (CNode.Operator) node;
+            Node result = build(operator.operands[0]);
+            for (int i = 0; i < operator.operators.length; i++) {
+                result = new Node(operator.operators[i], result, build(operator.operands[i + 1]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A number, function or binary operation, with its best result so far.
+     */
+    private static final class Node {
+
+        /**
+         * Code from {@link Opcodes}, or -1 for a number.
+         */
+        final int code;
+        final Node[] arguments;
+        Approx approx;
+        /**
+         * Base 10 logarithms of the bounds of the derivative with respect to each argument.
+         */
+        double[] sensitivity;
+        /**
+         * Base 10 logarithms of the largest error of each argument for which the sensitivity is valid.
+         */
+        double[] limit;
+        /**
+         * Base 10 logarithm of the rounding error of the operation.
+         */
+        double rounding;
+
+        Node(@NonNull BigComplex value, double error) {
+            this.code = -1;
+            this.arguments = new Node[0];
+            this.approx = new Approx(value, error, Integer.MAX_VALUE, value.im.signum() == 0);
+        }
+
+        Node(int code, @NonNull Node... arguments) {
+            this.code = code;
+            this.arguments = arguments;
+        }
+    }
+
+    /**
+     * A value with a bound of its absolute error.
+     */
+    static final class Approx {
+
+        final BigComplex value;
+        /**
+         * Base 10 logarithm of the absolute value.
+         */
+        final double magnitude;
+        /**
+         * Base 10 logarithm of the bound of the absolute error, {@link Double#NEGATIVE_INFINITY} if exact.
+         */
+        final double error;
+        /**
+         * Precision the value was calculated with.
+         */
+        final int precision;
+        /**
+         * True if the exact value is known to be real, so the error is only in the real part.
+         */
+        final boolean real;
+
+        Approx(@NonNull BigComplex value, double error, int precision, boolean real) {
+            this.value = value;
+            this.magnitude = magnitude(value);
+            this.error = error;
+            this.precision = precision;
+            this.real = real;
+        }
+
+        boolean isExact() {
+            return error == Double.NEGATIVE_INFINITY;
+        }
+
+        /**
+         * @return Number of significant figures that are correct, {@link Integer#MAX_VALUE} if exact.
+         */
+        int getCorrectDigits() {
+            if (isExact()) {
+                return Integer.MAX_VALUE;
+            }
+            if (magnitude == Double.NEGATIVE_INFINITY || Double.isNaN(error)) {
+                return 0;
+            }
+            return (int) Math.max(0, Math.min(Integer.MAX_VALUE - 1, Math.floor(magnitude - error)));
+        }
+    }
+}
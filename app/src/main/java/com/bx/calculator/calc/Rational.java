@@ -0,0 +1,200 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.exception.UndefinedException;
+import com.bx.calculator.calc.math.Maffs;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * <p>An exact fraction of {@link BigInteger}s, used by {@link CNode#evaluateRational(CParams)} while every operand is
+ * rational, so {@code 1 ÷ 3 × 3} is exactly 1 and integers are not rounded at every step.</p>
+ * <p>The fraction is not reduced after every operation: the greatest common divisor is only divided out when the
+ * denominator has more than {@link #REDUCE_BITS} bits, so sums of integers or of decimals with the same number of
+ * decimal places never calculate it.</p>
+ * <p>The numerator and the denominator have at most {@link #MAX_BITS} bits. A value that needs more returns
+ * {@code null}, and is calculated with {@link BigDecimal}s instead. Every rational value is in range.</p>
+ */
+final class Rational {
+
+    /**
+     * Largest number of bits of the numerator or the denominator, about 2466 digits. Values are less than
+     * {@code 2^MAX_BITS} and more than {@code 2^-MAX_BITS}, so they are in range of {@link Calculate#MAX_EXPONENT}.
+     */
+    static final int MAX_BITS = 8192;
+    /**
+     * Denominators with more bits are reduced.
+     */
+    private static final int REDUCE_BITS = 256;
+
+    static final Rational ZERO = new Rational(BigInteger.ZERO, BigInteger.ONE);
+
+    /**
+     * Numerator, with the sign of the value.
+     */
+    @NonNull
+    final BigInteger numerator;
+    /**
+     * Positive denominator.
+     */
+    @NonNull
+    final BigInteger denominator;
+
+    private Rational(@NonNull BigInteger numerator, @NonNull BigInteger denominator) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+    }
+
+    /**
+     * @return The exact value of a decimal, or {@code null} if it is too big or too small.
+     */
+    @Nullable
+    static Rational valueOf(@NonNull BigDecimal n) {
+        final int scale = n.scale();
+        if (scale <= 0) {
+            return of(n.unscaledValue().multiply(BigInteger.TEN.pow(-scale)), BigInteger.ONE);
+        }
+        return of(n.unscaledValue(), BigInteger.TEN.pow(scale));
+    }
+
+    /**
+     * @param denominator Positive.
+     * @return The fraction, reduced if the denominator is big, or {@code null} if it is too big.
+     */
+    @Nullable
+    private static Rational of(@NonNull BigInteger numerator, @NonNull BigInteger denominator) {
+        if (numerator.signum() == 0) {
+            return ZERO;
+        }
+        if (denominator.bitLength() > REDUCE_BITS) {
+            final BigInteger gcd = numerator.gcd(denominator);
+            if (!gcd.equals(BigInteger.ONE)) {
+                numerator = numerator.divide(gcd);
+                denominator = denominator.divide(gcd);
+            }
+        }
+        if (numerator.bitLength() > MAX_BITS || denominator.bitLength() > MAX_BITS) {
+            return null;
+        }
+        return new Rational(numerator, denominator);
+    }
+
+    boolean isInteger() {
+        return denominator.equals(BigInteger.ONE) || numerator.mod(denominator).signum() == 0;
+    }
+
+    /**
+     * @return The value if it is an integer from {@link Integer#MIN_VALUE} to {@link Integer#MAX_VALUE}, otherwise
+     * {@code null}.
+     */
+    @Nullable
+    Integer intValue() {
+        if (!isInteger()) {
+            return null;
+        }
+        final BigInteger n = numerator.divide(denominator);
+        return n.bitLength() < Integer.SIZE ? n.intValue() : null;
+    }
+
+    @NonNull
+    Rational negate() {
+        return new Rational(numerator.negate(), denominator);
+    }
+
+    @NonNull
+    Rational abs() {
+        return numerator.signum() < 0 ? negate() : this;
+    }
+
+    @Nullable
+    Rational add(@NonNull Rational n) {
+        if (denominator.equals(n.denominator)) {
+            return of(numerator.add(n.numerator), denominator);
+        }
+        return of(numerator.multiply(n.denominator).add(n.numerator.multiply(denominator)),
+                denominator.multiply(n.denominator));
+    }
+
+    @Nullable
+    Rational subtract(@NonNull Rational n) {
+        return add(n.negate());
+    }
+
+    @Nullable
+    Rational multiply(@NonNull Rational n) {
+        return of(numerator.multiply(n.numerator), denominator.multiply(n.denominator));
+    }
+
+    /**
+     * @throws UndefinedException {@code n} is 0.
+     */
+    @Nullable
+    Rational divide(@NonNull Rational n) throws UndefinedException {
+        return multiply(n.inverse());
+    }
+
+    /**
+     * @throws UndefinedException This is 0.
+     */
+    @NonNull
+    Rational inverse() throws UndefinedException {
+        if (numerator.signum() == 0) {
+            throw new UndefinedException();
+        }
+        return numerator.signum() < 0 ? new Rational(denominator.negate(), numerator.negate())
+                : new Rational(denominator, numerator);
+    }
+
+    /**
+     * @return This to the power of {@code n}, or {@code null} if it is too big.
+     * @throws UndefinedException This is 0 and {@code n} is not positive.
+     */
+    @Nullable
+    Rational pow(int n) throws UndefinedException {
+        if (numerator.signum() == 0) {
+            if (n > 0) {
+                return ZERO;
+            }
+            throw new UndefinedException();
+        }
+        final long bits = (long) Math.max(numerator.bitLength(), denominator.bitLength() - 1) * Math.abs((long) n);
+        if (bits > MAX_BITS) {
+            return null;
+        }
+        final Rational power = of(numerator.pow(Math.abs(n)), denominator.pow(Math.abs(n)));
+        return n >= 0 || power == null ? power : power.inverse();
+    }
+
+    /**
+     * @return This times {@code 10^n}, or {@code null} if it is too big or too small.
+     */
+    @Nullable
+    Rational scaleByPowerOfTen(int n) {
+        if (numerator.signum() == 0) {
+            return ZERO;
+        } else if (Math.abs(n) > MAX_BITS) {
+            return null;
+        }
+        final BigInteger power = BigInteger.TEN.pow(Math.abs(n));
+        return n >= 0 ? of(numerator.multiply(power), denominator) : of(numerator, denominator.multiply(power));
+    }
+
+    /**
+     * @return The value rounded once with {@link Maffs#round(BigDecimal, MathContext)}.
+     */
+    @NonNull
+    BigDecimal toBigDecimal(@NonNull MathContext mc) {
+        final BigDecimal n = new BigDecimal(numerator);
+        return Maffs.round(denominator.equals(BigInteger.ONE) ? n : n.divide(new BigDecimal(denominator), mc), mc);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return numerator + "/" + denominator;
+    }
+}
@@ -0,0 +1,137 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.math.AngleUnit;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * <p>A thread safe, bounded cache of the results of functions and bracketed groups, so an expression that is
+ * calculated again after an edit (eg. appending "×2" or changing the last digit) only calculates the subexpressions
+ * that changed and the operations that contain them. Use it with
+ * {@link Calculate#calculate(CExpression, CParams, SubresultCache)}.</p>
+ * <p>Subexpressions are stored by their content, so they are found in a different expression. A result is reused only
+ * if the angle unit, the precision and the values of the variables in the subexpression are the same. The least
+ * recently used results are removed when there are more than the maximum.</p>
+ */
+public final class SubresultCache {
+
+    /**
+     * Default maximum number of results.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final LinkedHashMap<CNode, Entry> entries;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Constructor for a cache with the {@link #DEFAULT_MAX_SIZE}.
+     */
+    public SubresultCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize Maximum number of results.
+     * @throws IllegalArgumentException {@code maxSize} is not positive.
+     */
+    public SubresultCache(final int maxSize) throws IllegalArgumentException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        entries = new LinkedHashMap<CNode, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CNode, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return The result of a node with the parameters, or {@code null} if it is not stored.
+     */
+    @Nullable
+    synchronized BigComplex get(@NonNull CNode node, @NonNull CParams params) {
+        final Entry entry = entries.get(node);
+        if (entry != null && entry.matches(node, params)) {
+            hitCount++;
+            return entry.result;
+        }
+        missCount++;
+        return null;
+    }
+
+    synchronized void put(@NonNull CNode node, @NonNull CParams params, @NonNull BigComplex result) {
+        entries.put(node, new Entry(node, params, result));
+    }
+
+    /**
+     * Removes all results. The hit and miss counts are not changed.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return Number of stored results.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Number of subexpressions that were not calculated again.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Number of subexpressions that were calculated.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * A result, and the parameters it depends on.
+     */
+    private static final class Entry {
+
+        final AngleUnit angleUnit;
+        final int precision;
+        /**
+         * Values of {@link CNode#variables}.
+         */
+        final BigComplex[] values;
+        final BigComplex result;
+
+        Entry(@NonNull CNode node, @NonNull CParams params, @NonNull BigComplex result) {
+            this.angleUnit = params.getAngleUnit();
+            this.precision = params.getPrecision();
+            this.values = values(node, params);
+            this.result = result;
+        }
+
+        boolean matches(@NonNull CNode node, @NonNull CParams params) {
+            return angleUnit == params.getAngleUnit() && precision == params.getPrecision()
+                    && Arrays.equals(values, values(node, params));
+        }
+
+        @NonNull
+        static BigComplex[] values(@NonNull CNode node, @NonNull CParams params) {
+            final BigComplex[] values = new BigComplex[node.variables.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = params.getValue(node.variables[i]);
+            }
+            return values;
+        }
+    }
+}
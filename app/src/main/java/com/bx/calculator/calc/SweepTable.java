@@ -0,0 +1,310 @@
+package com.bx.calculator.calc;
+
+import com.bx.calculator.calc.exception.CancelledException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * <p>A table of a {@link CompiledExpression} as a function of one variable, with the rows {@code start},
+ * {@code start + step}, {@code start + 2 step}, ... The values of the variable are exact, so the thousandth row of
+ * {@code 0.1} steps is exactly {@code 100}.</p>
+ * <p>Rows are not stored, they are calculated when they are requested, eg. one page of a list at a time, so a table
+ * with many rows uses little memory. A row is calculated like {@link CompiledExpression#evaluate(CParams)}, and has
+ * the exception instead of a result if it is undefined.</p>
+ * <p>Instances are immutable and thread safe.</p>
+ */
+public final class SweepTable {
+
+    /**
+     * Maximum number of rows of a table.
+     */
+    public static final int MAX_ROWS = 100000;
+    /**
+     * Number of rows calculated by one task, smaller ranges are not split.
+     */
+    private static final int CHUNK_SIZE = 8;
+    /**
+     * Number of rows calculated at a time by {@link #export(Appendable, int, CancellationToken)}.
+     */
+    private static final int EXPORT_PAGE_SIZE = 256;
+
+    private final CompiledExpression expression;
+    private final CParams params;
+    private final CUnit variable;
+    private final BigDecimal start;
+    private final BigDecimal step;
+    private final int rowCount;
+
+    /**
+     * @param expression Expression of the table.
+     * @param params Parameters of the calculation, with the values of the other variables.
+     * @param variable Variable of the rows, eg. {@link CUnit#X}.
+     * @param start Value of the variable of the first row.
+     * @param step Difference between the values of the variable of consecutive rows.
+     * @param rowCount Number of rows.
+     * @throws NullPointerException An argument is {@code null}.
+     * @throws IllegalArgumentException {@code variable} is not a {@link CUnit#isVariable()}, or {@code rowCount} is
+     * negative or more than {@link #MAX_ROWS}.
+     */
+    public SweepTable(@NonNull CompiledExpression expression, @NonNull CParams params, @NonNull CUnit variable,
+                      @NonNull BigDecimal start, @NonNull BigDecimal step, int rowCount)
+            throws NullPointerException, IllegalArgumentException {
+        if (!variable.isVariable()) {
+            throw new IllegalArgumentException("Not a variable: " + variable);
+        }
+        if (rowCount < 0 || rowCount > MAX_ROWS) {
+            throw new IllegalArgumentException("rowCount must be from 0 to " + MAX_ROWS);
+        }
+        this.expression = Objects.requireNonNull(expression);
+        this.params = Objects.requireNonNull(params);
+        this.variable = variable;
+        this.start = Objects.requireNonNull(start);
+        this.step = Objects.requireNonNull(step);
+        this.rowCount = rowCount;
+    }
+
+    @NonNull
+    public CUnit getVariable() {
+        return variable;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param index Index of a row.
+     * @return Exact value of the variable of the row.
+     * @throws IndexOutOfBoundsException {@code index} is not a row.
+     */
+    @NonNull
+    public BigDecimal getValue(int index) throws IndexOutOfBoundsException {
+        checkRange(index, index + 1);
+        return start.add(step.multiply(BigDecimal.valueOf(index)));
+    }
+
+    /**
+     * Calculates one row.
+     *
+     * @param index Index of the row.
+     * @return The row, with a result or the exception thrown while calculating it.
+     * @throws IndexOutOfBoundsException {@code index} is not a row.
+     */
+    @NonNull
+    public Row getRow(int index) throws IndexOutOfBoundsException {
+        return calculateRow(index, getValue(index), null);
+    }
+
+    /**
+     * Calculates the rows from {@code from} inclusive to {@code to} exclusive in parallel with the
+     * {@link ForkJoinPool#commonPool()}, eg. a page of a list.
+     *
+     * @param from Index of the first row.
+     * @param to Index after the last row.
+     * @return The rows in order.
+     * @throws IndexOutOfBoundsException The range is not in the table.
+     */
+    @NonNull
+    public List<Row> getRows(int from, int to) throws IndexOutOfBoundsException {
+        return getRows(from, to, null);
+    }
+
+    /**
+     * Calculates a range of rows like {@link #getRows(int, int)}. The rows that have not finished when
+     * {@code token} is cancelled have a {@link CancelledException}.
+     *
+     * @param from Index of the first row.
+     * @param to Index after the last row.
+     * @param token Token that stops the calculation, or {@code null}.
+     * @return The rows in order.
+     * @throws IndexOutOfBoundsException The range is not in the table.
+     */
+    @NonNull
+    public List<Row> getRows(int from, int to, @Nullable CancellationToken token) throws IndexOutOfBoundsException {
+        checkRange(from, to);
+        final Row[] rows = new Row[to - from];
+        final RowTask task = new RowTask(rows, from, from, to, token);
+        if (rows.length <= CHUNK_SIZE) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        return Collections.unmodifiableList(Arrays.asList(rows));
+    }
+
+    /**
+     * <p>Writes every row as comma separated values, with the header {@code variable,Re,Im,Error}. The results are
+     * rounded to {@code sigfig} significant figures, and the error is the name of the exception of an undefined row,
+     * eg. {@code Undefined}.</p>
+     * <p>The rows are calculated a page at a time, so the whole table is never in memory.</p>
+     *
+     * @param out Destination of the table.
+     * @param sigfig Significant figures of the results.
+     * @param token Token that stops the export, or {@code null}.
+     * @throws IOException {@code out} throws an exception.
+     * @throws IllegalArgumentException {@code sigfig} is not positive.
+     * @throws CancelledException {@code token} is cancelled or timed out, or the thread is interrupted.
+     */
+    public void export(@NonNull Appendable out, int sigfig, @Nullable CancellationToken token)
+            throws IOException, IllegalArgumentException, CancelledException {
+        if (sigfig <= 0) {
+            throw new IllegalArgumentException("sigfig must be positive");
+        }
+        final MathContext mc = new MathContext(sigfig, params.getMathContext().getRoundingMode());
+        out.append(variable.toString()).append(",Re,Im,Error\n");
+        for (int from = 0; from < rowCount; from += EXPORT_PAGE_SIZE) {
+            if (token != null) {
+                token.check();
+            }
+            for (Row row: getRows(from, Math.min(from + EXPORT_PAGE_SIZE, rowCount), token)) {
+                out.append(row.value.toPlainString()).append(',');
+                if (row.result != null) {
+                    final BigComplex answer = row.result.getAnswer();
+                    out.append(format(answer.re, mc)).append(',').append(format(answer.im, mc)).append(',');
+                } else {
+                    if (row.exception instanceof CancelledException) {
+                        throw (CancelledException) row.exception;
+                    }
+                    out.append(",,").append(errorName(row.exception));
+                }
+                out.append('\n');
+            }
+        }
+    }
+
+    @NonNull
+    private Row calculateRow(int index, @NonNull BigDecimal value, @Nullable CancellationToken token) {
+        try {
+            final CResult result = expression.evaluate(params.withValue(variable, BigComplex.valueOf(value)), null, token);
+            return new Row(index, value, result, null);
+        } catch (RuntimeException e) {
+            return new Row(index, value, null, e);
+        }
+    }
+
+    private void checkRange(int from, int to) throws IndexOutOfBoundsException {
+        if (from < 0 || to > rowCount || from > to) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d) of %d rows", from, to, rowCount));
+        }
+    }
+
+    /**
+     * @return {@code value} rounded to {@code mc} without trailing zeros, in scientific notation only if it is
+     * very small or too big to show every digit.
+     */
+    @NonNull
+    private static String format(@NonNull BigDecimal value, @NonNull MathContext mc) {
+        final BigDecimal rounded = value.round(mc).stripTrailingZeros();
+        if (rounded.signum() == 0) {
+            return "0";
+        }
+        final int exponent = rounded.precision() - rounded.scale() - 1;
+        return exponent >= -6 && exponent < mc.getPrecision() ? rounded.toPlainString() : rounded.toString();
+    }
+
+    @NonNull
+    private static String errorName(@NonNull RuntimeException exception) {
+        final String name = exception.getClass().getSimpleName();
+        return name.endsWith("Exception") ? name.substring(0, name.length() - "Exception".length()) : name;
+    }
+
+    /**
+     * One row of a table: the value of the variable and either the result or the exception thrown while calculating
+     * it.
+     */
+    public static final class Row {
+
+        private final int index;
+        private final BigDecimal value;
+        private final CResult result;
+        private final RuntimeException exception;
+
+        Row(int index, @NonNull BigDecimal value, @Nullable CResult result, @Nullable RuntimeException exception) {
+            this.index = index;
+            this.value = value;
+            this.result = result;
+            this.exception = exception;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Row[index=%d, value=%s, result=%s, exception=%s]", index, value, result, exception);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return Exact value of the variable.
+         */
+        @NonNull
+        public BigDecimal getValue() {
+            return value;
+        }
+
+        /**
+         * @return Result of the row, or {@code null} if an exception was thrown.
+         */
+        @Nullable
+        public CResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return Exception thrown while calculating the row, or {@code null} if it was calculated.
+         */
+        @Nullable
+        public RuntimeException getException() {
+            return exception;
+        }
+    }
+
+    /**
+     * Calculates a range of rows, split in halves until it is small.
+     */
+    private final class RowTask extends RecursiveAction {
+
+        private final Row[] rows;
+        /**
+         * Index of the row of {@code rows[0]}.
+         */
+        private final int offset;
+        private final int from;
+        private final int to;
+        private final CancellationToken token;
+
+        RowTask(@NonNull Row[] rows, int offset, int from, int to, @Nullable CancellationToken token) {
+            this.rows = rows;
+            this.offset = offset;
+            this.from = from;
+            this.to = to;
+            this.token = token;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    rows[i - offset] = calculateRow(i, start.add(step.multiply(BigDecimal.valueOf(i))), token);
+                }
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(rows, offset, from, middle, token), new RowTask(rows, offset, middle, to, token));
+            }
+        }
+    }
+}
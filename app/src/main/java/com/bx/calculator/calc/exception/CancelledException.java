@@ -0,0 +1,32 @@
+package com.bx.calculator.calc.exception;
+
+import com.bx.calculator.calc.CancellationToken;
+
+/**
+ * Thrown when a calculation is stopped because its {@link CancellationToken} was cancelled, its deadline passed or
+ * its thread was interrupted. It is not an {@link ArithmeticException}, so it is never caught as an error of the
+ * result.
+ */
+public class CancelledException extends IllegalStateException {
+
+    private final boolean timedOut;
+
+    public CancelledException() {
+        this(false);
+    }
+
+    /**
+     * @param timedOut The deadline passed, see {@link #isTimedOut()}.
+     */
+    public CancelledException(boolean timedOut) {
+        super(timedOut ? "Calculation timed out" : "Calculation cancelled");
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * @return true if the calculation was stopped because its deadline passed, false if it was cancelled.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+}
@@ -0,0 +1,90 @@
+package com.bx.calculator.calc.math;
+
+import com.bx.calculator.calc.exception.UndefinedException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import androidx.annotation.NonNull;
+
+import ch.obermuhlner.math.big.BigComplex;
+import ch.obermuhlner.math.big.BigDecimalMath;
+
+/**
+ * <p>{@code e^n} and its reciprocal {@code e^-n}, calculated with one exponential and one division, so the hyperbolic
+ * functions are derived from one evaluation, eg. {@code sinh n = (e^n - e^-n) / 2}.</p>
+ * <p>The imaginary part uses the real {@link SinCos}: {@code e^(x + iy) = e^x (cos y + i sin y)}. Small arguments
+ * are calculated with more digits, because {@code e^n - e^-n} loses the leading digits to cancellation.</p>
+ * <p>The values have {@link SinCos#GUARD_DIGITS} more than the requested precision, and should be rounded by the
+ * caller.</p>
+ */
+final class ExpPair {
+
+    @NonNull
+    final BigComplex exp;
+    @NonNull
+    final BigComplex reciprocal;
+
+    private ExpPair(@NonNull BigComplex exp, @NonNull BigComplex reciprocal) {
+        this.exp = exp;
+        this.reciprocal = reciprocal;
+    }
+
+    /**
+     * @param mc Precision of the results, without the guard digits.
+     */
+    @NonNull
+    static ExpPair of(@NonNull BigComplex n, @NonNull MathContext mc) {
+        final MathContext guardMc = guard(n.re.abs().max(n.im.abs()), mc);
+        final BigDecimal[] real = ofReal(n.re, guardMc);
+        if (n.im.signum() == 0) {
+            return new ExpPair(BigComplex.valueOf(real[0]), BigComplex.valueOf(real[1]));
+        }
+        final BigDecimal[] sinCos = SinCos.ofReal(n.im, guardMc);
+        return new ExpPair(
+                BigComplex.valueOf(real[0].multiply(sinCos[1], guardMc), real[0].multiply(sinCos[0], guardMc)),
+                BigComplex.valueOf(real[1].multiply(sinCos[1], guardMc),
+                        real[1].multiply(sinCos[0], guardMc).negate()));
+    }
+
+    /**
+     * @param mc Precision of the results, from {@link #guard(BigDecimal, MathContext)} for the hyperbolic functions.
+     * @return {@code e^x} and {@code e^-x}.
+     */
+    @NonNull
+    static BigDecimal[] ofReal(@NonNull BigDecimal x, @NonNull MathContext mc) {
+        if (x.signum() == 0) {
+            return new BigDecimal[] {BigDecimal.ONE, BigDecimal.ONE};
+        }
+        final BigDecimal exp = BigDecimalMath.exp(x, mc);
+        return new BigDecimal[] {exp, BigDecimal.ONE.divide(exp, mc)};
+    }
+
+    /**
+     * @param magnitude Magnitude of the argument.
+     * @return Precision with the guard digits and the digits lost to cancellation in {@code e^n - e^-n}.
+     */
+    @NonNull
+    static MathContext guard(@NonNull BigDecimal magnitude, @NonNull MathContext mc) {
+        final int cancelledDigits = magnitude.signum() == 0 ? 0 : Math.max(-BigDecimalMath.exponent(magnitude), 0);
+        return new MathContext(mc.getPrecision() + SinCos.GUARD_DIGITS + cancelledDigits, mc.getRoundingMode());
+    }
+
+    @NonNull
+    BigComplex sinh() {
+        return exp.subtract(reciprocal).multiply(Maffs.HALF);
+    }
+
+    @NonNull
+    BigComplex cosh() {
+        return exp.add(reciprocal).multiply(Maffs.HALF);
+    }
+
+    /**
+     * @throws UndefinedException The hyperbolic cosine is 0.
+     */
+    @NonNull
+    BigComplex tanh(@NonNull MathContext mc) throws UndefinedException {
+        return Maffs.divide(exp.subtract(reciprocal), exp.add(reciprocal), mc);
+    }
+}
@@ -0,0 +1,182 @@
+package com.bx.calculator.calc.math;
+
+import com.bx.calculator.calc.CancellationToken;
+import com.bx.calculator.calc.exception.UndefinedException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+
+import ch.obermuhlner.math.big.BigComplex;
+import ch.obermuhlner.math.big.BigDecimalMath;
+
+/**
+ * <p>Factorial and log factorial of real and complex numbers with Spouge's approximation:</p>
+ * <p>{@code z! = (z + a)^(z + 1/2) e^-(z + a) (c_0 + Σ c_k / (z + k))} for {@code k} from 1 to {@code a - 1}, with
+ * {@code c_0 = sqrt(2π)} and {@code c_k = (-1)^(k - 1) (a - k)^(k - 1/2) e^(a - k) / (k - 1)!}.</p>
+ * <p>The relative error is less than {@code (2π)^-(a + 1/2)}, so {@code a} grows with the precision and the cost is
+ * about the same for every argument. The coefficients only depend on {@code a}, and are calculated once for each
+ * {@code a}. Arguments with a real part less than -1/2 use the reflection formula
+ * {@code z! = -π / (sin(πz) (-z - 1)!)}.</p>
+ * <p>This class is thread safe.</p>
+ */
+final class Gamma {
+
+    /**
+     * Digits calculated beyond the requested precision.
+     */
+    private static final int GUARD_DIGITS = 4;
+    /**
+     * {@code a} is a multiple of this, so similar precisions, eg. with and without guard digits, share coefficients.
+     */
+    private static final int A_STEP = 8;
+    private static final double LOG10_TWO_PI = Math.log10(2 * Math.PI);
+    private static final BigDecimal MINUS_HALF = new BigDecimal("-0.5");
+    private static final BigDecimal TWO = new BigDecimal(2);
+
+    /**
+     * Coefficients of each {@code a}.
+     */
+    private static final ConcurrentHashMap<Integer, Coefficients> coefficients = new ConcurrentHashMap<>();
+
+    /**
+     * @return {@code z!}, the gamma function of {@code z + 1}.
+     * @throws UndefinedException {@code z} is a negative integer.
+     */
+    @NonNull
+    static BigComplex factorial(@NonNull BigComplex z, @NonNull MathContext mc) throws UndefinedException {
+        if (z.isReal() && z.re.signum() < 0 && Maffs.isInteger(z.re)) {
+            throw new UndefinedException();
+        }
+        if (z.re.compareTo(MINUS_HALF) >= 0) {
+            return spouge(z, mc).round(mc);
+        }
+        final MathContext guardMc = guard(mc);
+        final BigComplex reflected = spouge(z.negate().subtract(BigComplex.ONE), guardMc);
+        return Maffs.divide(BigComplex.valueOf(MathConstants.pi(guardMc).negate()),
+                Maffs.multiply(sinPi(z, guardMc), reflected, guardMc), mc);
+    }
+
+    /**
+     * @return A logarithm of {@code z!}, real if {@code z!} is positive. It is continuous for real parts from -1/2,
+     * and the principal logarithm for smaller real parts.
+     * @throws UndefinedException {@code z} is a negative integer.
+     */
+    @NonNull
+    static BigComplex logFactorial(@NonNull BigComplex z, @NonNull MathContext mc) throws UndefinedException {
+        if (z.re.compareTo(MINUS_HALF) < 0) {
+            final MathContext guardMc = guard(mc);
+            return Maffs.log(factorial(z, guardMc), guardMc).round(mc);
+        }
+        final Coefficients c = coefficients(mc);
+        final MathContext powerMc = powerMathContext(z, mc);
+        final BigComplex za = z.add(c.a);
+        return Maffs.log(za, powerMc).multiply(z.add(Maffs.HALF), powerMc).subtract(za)
+                .add(Maffs.log(c.sum(z), c.mc)).round(mc);
+    }
+
+    /**
+     * Spouge's approximation of {@code z!} with a real part from -1/2, not rounded.
+     */
+    @NonNull
+    private static BigComplex spouge(@NonNull BigComplex z, @NonNull MathContext mc) {
+        final Coefficients c = coefficients(mc);
+        final MathContext powerMc = powerMathContext(z, mc);
+        final BigComplex za = z.add(c.a);
+        // (z + a)^(z + 1/2) e^-(z + a)
+        final BigComplex power = Maffs.exp(Maffs.log(za, powerMc).multiply(z.add(Maffs.HALF), powerMc).subtract(za),
+                powerMc);
+        return Maffs.multiply(power, c.sum(z), c.mc);
+    }
+
+    /**
+     * @return {@code sin(πz)}, with the real part reduced by a multiple of 2 first.
+     */
+    @NonNull
+    private static BigComplex sinPi(@NonNull BigComplex z, @NonNull MathContext mc) {
+        final BigDecimal evenInteger = z.re.divide(TWO, 0, RoundingMode.HALF_EVEN).multiply(TWO);
+        final BigComplex reduced = BigComplex.valueOf(z.re.subtract(evenInteger), z.im);
+        return Maffs.sin(reduced.multiply(MathConstants.pi(mc), mc), mc);
+    }
+
+    /**
+     * The exponent of {@code e} in the power is about {@code z log z}, so its absolute error, the relative error of the
+     * power, needs digits for the magnitude of {@code z log z}.
+     */
+    @NonNull
+    private static MathContext powerMathContext(@NonNull BigComplex z, @NonNull MathContext mc) {
+        final int magnitude = Math.max(BigDecimalMath.exponent(z.re.abs().add(z.im.abs()).add(BigDecimal.ONE)), 0);
+        return new MathContext(mc.getPrecision() + GUARD_DIGITS + 2 * (magnitude + 1), mc.getRoundingMode());
+    }
+
+    @NonNull
+    private static MathContext guard(@NonNull MathContext mc) {
+        return new MathContext(mc.getPrecision() + GUARD_DIGITS, mc.getRoundingMode());
+    }
+
+    /**
+     * @return The coefficients for the precision of {@code mc}, calculated if they are not cached.
+     */
+    @NonNull
+    private static Coefficients coefficients(@NonNull MathContext mc) {
+        final int digits = mc.getPrecision() + GUARD_DIGITS;
+        final int a = ((int) Math.ceil(digits / LOG10_TWO_PI) + A_STEP - 1) / A_STEP * A_STEP;
+        return coefficients.computeIfAbsent(a, Coefficients::new);
+    }
+
+    /**
+     * The coefficients {@code c_k} of one {@code a}. The coefficients alternate in sign and are much bigger than their
+     * sum, so they and the sum are calculated with about {@code a} extra digits.
+     */
+    private static final class Coefficients {
+
+        final BigDecimal a;
+        final MathContext mc;
+        final BigDecimal[] c;
+
+        Coefficients(int a) {
+            this.a = BigDecimal.valueOf(a);
+            mc = new MathContext((int) Math.ceil(a * LOG10_TWO_PI) + a, Maffs.MC.getRoundingMode());
+            c = new BigDecimal[a];
+            c[0] = BigDecimalMath.sqrt(MathConstants.pi(mc).multiply(TWO), mc);
+            final BigDecimal e = MathConstants.e(mc);
+            // e^(a - k) and (k - 1)!, from k = a - 1 down and from k = 1 up
+            final BigDecimal[] exp = new BigDecimal[a];
+            exp[a - 1] = e;
+            for (int k = a - 2; k >= 1; k--) {
+                exp[k] = exp[k + 1].multiply(e, mc);
+            }
+            BigDecimal factorial = BigDecimal.ONE;
+            for (int k = 1; k < a; k++) {
+                CancellationToken.checkCurrent();
+                final BigDecimal base = BigDecimal.valueOf(a - k);
+                final BigDecimal power = base.pow(k - 1, mc).multiply(BigDecimalMath.sqrt(base, mc), mc);
+                final BigDecimal ck = power.multiply(exp[k], mc).divide(factorial, mc);
+                c[k] = k % 2 == 1 ? ck : ck.negate();
+                factorial = factorial.multiply(BigDecimal.valueOf(k));
+            }
+        }
+
+        /**
+         * @return {@code c_0 + Σ c_k / (z + k)}.
+         */
+        @NonNull
+        BigComplex sum(@NonNull BigComplex z) {
+            BigComplex sum = BigComplex.valueOf(c[0]);
+            for (int k = 1; k < c.length; k++) {
+                final BigComplex denominator = z.add(BigDecimal.valueOf(k));
+                if (denominator.isReal()) {
+                    sum = sum.add(c[k].divide(denominator.re, mc));
+                } else {
+                    sum = sum.add(denominator.reciprocal(mc).multiply(c[k], mc));
+                }
+            }
+            return sum.round(mc);
+        }
+    }
+
+    private Gamma() {}
+}
@@ -1,11 +1,14 @@
 package com.bx.calculator.calc.math;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.bx.calculator.calc.CancellationToken;
 import com.bx.calculator.calc.exception.UndefinedException;
 
 import ch.obermuhlner.math.big.BigComplex;
@@ -22,11 +25,33 @@ public final class Maffs {
      */
     public static final MathContext MC = new MathContext(64, RoundingMode.HALF_EVEN);
     public static final BigComplex TWO = BigComplex.valueOf(2);
-    public static final BigDecimal PI = BigDecimalMath.pi(MC);
+    public static final BigDecimal PI = MathConstants.pi(MC);
     public static final BigDecimal TAU = multiply(PI, new BigDecimal(2));
-    public static final BigDecimal E = BigDecimalMath.e(MC);
+    public static final BigDecimal E = MathConstants.e(MC);
     public static final BigDecimal HALF = new BigDecimal("0.5");
 
+    /**
+     * Number of factors multiplied with {@code long}s before the cancellation is checked.
+     */
+    private static final int PRODUCT_CHUNK = 64;
+    /**
+     * Digits added to the precision of the reduction of trigonometric arguments.
+     */
+    private static final int TRIG_GUARD_DIGITS = 4;
+    private static final BigDecimal FULL_TURN_DEGREES = new BigDecimal(360);
+    private static final BigDecimal QUARTER_TURN_DEGREES = new BigDecimal(90);
+    /**
+     * Factorials of 0 to 20, the factorials that fit in a {@code long}.
+     */
+    private static final long[] SMALL_FACTORIALS = new long[21];
+
+    static {
+        SMALL_FACTORIALS[0] = 1;
+        for (int i = 1; i < SMALL_FACTORIALS.length; i++) {
+            SMALL_FACTORIALS[i] = SMALL_FACTORIALS[i - 1] * i;
+        }
+    }
+
     @NonNull
     public static BigComplex add(@NonNull BigComplex n1, @NonNull BigComplex n2) {
         return n1.add(n2);
@@ -39,32 +64,58 @@ public final class Maffs {
 
     @NonNull
     public static BigComplex multiply(@NonNull BigComplex n1, @NonNull BigComplex n2) {
-        return n1.multiply(n2, MC);
+        return multiply(n1, n2, MC);
+    }
+
+    @NonNull
+    public static BigComplex multiply(@NonNull BigComplex n1, @NonNull BigComplex n2, @NonNull MathContext mc) {
+        return n1.multiply(n2, mc);
     }
 
     @NonNull
     public static BigDecimal multiply(@NonNull BigDecimal n1, @NonNull BigDecimal n2) {
-        return n1.multiply(n2, MC);
+        return multiply(n1, n2, MC);
+    }
+
+    @NonNull
+    public static BigDecimal multiply(@NonNull BigDecimal n1, @NonNull BigDecimal n2, @NonNull MathContext mc) {
+        return n1.multiply(n2, mc);
     }
 
     @NonNull
     public static BigComplex divide(@NonNull BigComplex n1, @NonNull BigComplex n2) throws UndefinedException {
+        return divide(n1, n2, MC);
+    }
+
+    @NonNull
+    public static BigComplex divide(@NonNull BigComplex n1, @NonNull BigComplex n2, @NonNull MathContext mc) throws UndefinedException {
         if (isZero(n2)) {
             throw new UndefinedException();
         }
-        return n1.divide(n2, MC);
+        return n1.divide(n2, mc);
     }
 
     @NonNull
     public static BigDecimal divide(@NonNull BigDecimal n1, @NonNull BigDecimal n2) throws UndefinedException {
+        return divide(n1, n2, MC);
+    }
+
+    @NonNull
+    public static BigDecimal divide(@NonNull BigDecimal n1, @NonNull BigDecimal n2, @NonNull MathContext mc) throws UndefinedException {
         if (n2.signum() == 0) {
             throw new UndefinedException();
         }
-        return n1.divide(n2, MC);
+        return n1.divide(n2, mc);
     }
 
     @NonNull
     public static BigComplex pow(@NonNull BigComplex n1, @NonNull BigComplex n2) throws UndefinedException {
+        return pow(n1, n2, MC);
+    }
+
+    @NonNull
+    public static BigComplex pow(@NonNull BigComplex n1, @NonNull BigComplex n2, @NonNull MathContext mc) throws UndefinedException {
+        CancellationToken.checkCurrent();
         if (isZero(n1)) {
             if (n2.re.signum() > 0) {           // 0^n = 0
                 return BigComplex.ZERO;
@@ -74,16 +125,22 @@ public final class Maffs {
         } else if (isZero(n2)) {                // n^0 = 1
             return BigComplex.ONE;
         } else if (n1.isReal() && n1.re.compareTo(E) == 0) {
-            return exp(n2);
+            return exp(n2, mc);
         } else if (n2.isReal()) {
-            return pow(n1, n2.re);
+            return pow(n1, n2.re, mc);
         } else {
-            return BigComplexMath.pow(n1, n2, MC);
+            return BigComplexMath.pow(n1, n2, mc);
         }
     }
 
     @NonNull
     public static BigComplex pow(@NonNull BigComplex n1, @NonNull BigDecimal n2) throws UndefinedException {
+        return pow(n1, n2, MC);
+    }
+
+    @NonNull
+    public static BigComplex pow(@NonNull BigComplex n1, @NonNull BigDecimal n2, @NonNull MathContext mc) throws UndefinedException {
+        CancellationToken.checkCurrent();
         if (isZero(n1)) {
             if (n2.signum() > 0) {
                 return BigComplex.ZERO;
@@ -91,57 +148,142 @@ public final class Maffs {
                 throw new UndefinedException();
             }
         } else if (n1.isReal() && n1.re.compareTo(E) == 0) {
-            return exp(BigComplex.valueOf(n2));
+            return exp(BigComplex.valueOf(n2), mc);
+        } else if (BigDecimalMath.isIntValue(n2)) {
+            return pow(n1, n2.intValueExact(), mc);
         } else if (n2.compareTo(HALF) == 0) {
-            return sqrt(n1);
+            return sqrt(n1, mc);
         } else if (n2.compareTo(HALF.negate()) == 0) {
-            return inverse(sqrt(n1));
+            return inverse(sqrt(n1, mc), mc);
         } else if (n1.isReal()) {
             try {
-                return BigComplex.valueOf(BigDecimalMath.pow(n1.re, n2, MC));
+                return BigComplex.valueOf(BigDecimalMath.pow(n1.re, n2, mc));
             } catch (ArithmeticException e) {
                 // if re ^ re fails, try complex ^ re
             }
         }
-        return BigComplexMath.pow(n1, n2, MC);
+        return BigComplexMath.pow(n1, n2, mc);
+    }
+
+    /**
+     * <p>Integer power by repeated squaring, eg. {@code x^13 = x^8 × x^4 × x}, with one reciprocal if {@code n} is
+     * negative. It is faster and at least as accurate as the logarithms of
+     * {@link #pow(BigComplex, BigComplex, MathContext)}.</p>
+     * <p>The products are exact and rounded once while the exact power has at most twice the digits of the
+     * precision, eg. {@code (1 + i)^20} is exactly -1024. Otherwise each product is rounded with the digits of
+     * {@code n} more than the precision, because the error of the first square is multiplied by up to {@code n}.</p>
+     *
+     * @throws UndefinedException {@code x} is 0 and {@code n} is not positive.
+     */
+    @NonNull
+    public static BigComplex pow(@NonNull BigComplex x, int n, @NonNull MathContext mc) throws UndefinedException {
+        if (isZero(x)) {
+            if (n > 0) {
+                return BigComplex.ZERO;
+            }
+            throw new UndefinedException();
+        } else if (n == 0) {
+            return BigComplex.ONE;
+        } else if (x.isReal()) {
+            return BigComplex.valueOf(pow(x.re, n, mc));
+        }
+        // a product of parts with d digits has 2d digits, and the sum of two products one more
+        final MathContext powerMc = powerMathContext(Math.max(x.re.precision(), x.im.precision()) + 1, n, mc);
+        BigComplex power = null;
+        BigComplex square = x;
+        for (long m = Math.abs((long) n); ; ) {
+            if ((m & 1) == 1) {
+                power = power == null ? square : power.multiply(square, powerMc);
+            }
+            m >>= 1;
+            if (m == 0) {
+                break;
+            }
+            CancellationToken.checkCurrent();
+            square = square.multiply(square, powerMc);
+        }
+        return n > 0 ? round(power, mc) : inverse(power, mc);
+    }
+
+    /**
+     * @param digits Digits of the base.
+     * @return Unlimited if the power has at most twice the digits of the precision, otherwise the precision with
+     * the digits of {@code n} and 2 more.
+     */
+    @NonNull
+    private static MathContext powerMathContext(int digits, int n, @NonNull MathContext mc) {
+        final long exponent = Math.abs((long) n);
+        if (mc.getPrecision() == 0 || digits * exponent <= 2L * mc.getPrecision()) {
+            return MathContext.UNLIMITED;
+        }
+        return new MathContext(mc.getPrecision() + Long.toString(exponent).length() + 2, mc.getRoundingMode());
     }
 
     @NonNull
     public static BigComplex root(@NonNull BigComplex x, @NonNull BigComplex n) throws UndefinedException {
-        return pow(x, divide(BigComplex.ONE, n));
+        return root(x, n, MC);
+    }
+
+    @NonNull
+    public static BigComplex root(@NonNull BigComplex x, @NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
+        return pow(x, divide(BigComplex.ONE, n, mc), mc);
     }
 
     @NonNull
     public static BigComplex inverse(@NonNull BigComplex n) throws UndefinedException {
+        return inverse(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex inverse(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
         if (isZero(n)) {
             throw new UndefinedException();
         }
-        return n.reciprocal(MC);
+        return n.reciprocal(mc);
     }
 
     @NonNull
     public static BigComplex exp(@NonNull BigComplex n) {
-        return BigComplexMath.exp(n, MC);
+        return exp(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex exp(@NonNull BigComplex n, @NonNull MathContext mc) {
+        return BigComplexMath.exp(n, mc);
     }
 
     @NonNull
     public static BigDecimal abs(@NonNull BigComplex n) {
-        return n.abs(MC);
+        return abs(n, MC);
+    }
+
+    @NonNull
+    public static BigDecimal abs(@NonNull BigComplex n, @NonNull MathContext mc) {
+        return n.abs(mc);
     }
 
     @NonNull
     public static BigDecimal arg(@NonNull BigComplex n) throws UndefinedException {
+        return arg(n, MC);
+    }
+
+    @NonNull
+    public static BigDecimal arg(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
         if (isZero(n)) {
             throw new UndefinedException();
         }
-        return n.angle(MC);
+        return n.angle(mc);
     }
 
     public static BigDecimal arg(@NonNull BigComplex n, AngleUnit angleUnit) {
+        return arg(n, angleUnit, MC);
+    }
+
+    public static BigDecimal arg(@NonNull BigComplex n, AngleUnit angleUnit, @NonNull MathContext mc) {
         if (angleUnit == AngleUnit.DEG) {
-            return toDeg(arg(n));
+            return toDeg(arg(n, mc), mc);
         } else {
-            return arg(n);
+            return arg(n, mc);
         }
     }
 
@@ -152,158 +294,331 @@ public final class Maffs {
 
     @NonNull
     public static BigComplex log(@NonNull BigComplex n) throws UndefinedException {
+        return log(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex log(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
         if (isZero(n)) {
             throw new UndefinedException();
         }
         if (n.isReal() && n.re.signum() > 0) {
-            return BigComplex.valueOf(BigDecimalMath.log(n.re, MC));
+            return BigComplex.valueOf(BigDecimalMath.log(n.re, mc));
         } else {
-            return BigComplexMath.log(n, MC);
+            return BigComplexMath.log(n, mc);
         }
     }
 
     @NonNull
     public static BigComplex log2(@NonNull BigComplex n) throws UndefinedException {
+        return log2(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex log2(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
         if (isZero(n)) {
             throw new UndefinedException();
         }
-        final MathContext mc = new MathContext(MC.getPrecision() + 2, MC.getRoundingMode());
+        final MathContext guardMc = new MathContext(mc.getPrecision() + 2, mc.getRoundingMode());
         if (n.isReal() && n.re.signum() > 0) {
-            return BigComplex.valueOf(BigDecimalMath.log2(n.re, MC));
+            return BigComplex.valueOf(BigDecimalMath.log2(n.re, mc));
         } else {
-            return BigComplexMath.log(n, mc).divide(BigDecimalMath.log(new BigDecimal(2), mc), mc).round(MC);
+            return BigComplexMath.log(n, guardMc).divide(MathConstants.ln2(guardMc), guardMc).round(mc);
         }
     }
 
     @NonNull
     public static BigComplex log10(@NonNull BigComplex n) throws UndefinedException {
+        return log10(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex log10(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
         if (isZero(n)) {
             throw new UndefinedException();
         }
-        final MathContext mc = new MathContext(MC.getPrecision() + 2, MC.getRoundingMode());
+        final MathContext guardMc = new MathContext(mc.getPrecision() + 2, mc.getRoundingMode());
         if (n.isReal() && n.re.signum() > 0) {
-            return BigComplex.valueOf(BigDecimalMath.log10(n.re, MC));
+            return BigComplex.valueOf(BigDecimalMath.log10(n.re, mc));
         } else {
-            return BigComplexMath.log(n, mc).divide(BigDecimalMath.log(BigDecimal.TEN, mc), mc).round(MC);
+            return BigComplexMath.log(n, guardMc).divide(MathConstants.ln10(guardMc), guardMc).round(mc);
         }
     }
 
     @NonNull
     public static BigComplex sqrt(@NonNull BigComplex n) {
+        return sqrt(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex sqrt(@NonNull BigComplex n, @NonNull MathContext mc) {
         if (n.isReal()) {
             if (n.re.signum() >= 0) {
-                return BigComplex.valueOf(BigDecimalMath.sqrt(n.re, MC));
+                return BigComplex.valueOf(BigDecimalMath.sqrt(n.re, mc));
             } else {
                 // problem with sqrt of negative values
-                return BigComplex.valueOf(BigDecimal.ZERO, BigDecimalMath.sqrt(n.re.negate(), MC));
+                return BigComplex.valueOf(BigDecimal.ZERO, BigDecimalMath.sqrt(n.re.negate(), mc));
             }
         } else {
-            return BigComplexMath.sqrt(n, MC);
+            return BigComplexMath.sqrt(n, mc);
         }
     }
 
     @NonNull
     public static BigComplex squared(@NonNull BigComplex n) {
-        return multiply(n, n);
+        return squared(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex squared(@NonNull BigComplex n, @NonNull MathContext mc) {
+        return multiply(n, n, mc);
     }
 
     @NonNull
     public static BigComplex sin(@NonNull BigComplex n) {
-        // TODO get exact trig functions (0, undefined), round = 0 or undefined when pass threshold
-        if (BigDecimalMath.exponent(n.im.abs()) < 3) {
-            return BigComplexMath.sin(n, MC);
-        } else {
-            // more efficient
-            return divide(subtract(exp(multiply(n, BigComplex.I)), exp(multiply(n, BigComplex.I).negate())), multiply(TWO, BigComplex.I));
-        }
+        return sin(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex sin(@NonNull BigComplex n, @NonNull MathContext mc) {
+        return SinCos.of(n, mc).sin.round(mc);
     }
 
     @NonNull
     public static BigComplex sin(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) {
-        if (angleUnit == AngleUnit.DEG) {
-            return sin(BigComplex.valueOf(toRad(n.re), n.im));
-        } else {
-            return sin(n);
-        }
+        return sin(n, angleUnit, MC);
+    }
+
+    @NonNull
+    public static BigComplex sin(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        return sinCos(n, angleUnit, mc).sin.round(mc);
     }
 
     @NonNull
     public static BigComplex cos(@NonNull BigComplex n) {
-        if (BigDecimalMath.exponent(n.im.abs()) < 3) {
-            return BigComplexMath.cos(n, MC);
-        } else {
-            // more efficient
-            return divide(add(exp(multiply(n, BigComplex.I)), exp(multiply(n, BigComplex.I).negate())), TWO);
-        }
+        return cos(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex cos(@NonNull BigComplex n, @NonNull MathContext mc) {
+        return SinCos.of(n, mc).cos.round(mc);
     }
 
     @NonNull
     public static BigComplex cos(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) {
-        if (angleUnit == AngleUnit.DEG) {
-            return cos(BigComplex.valueOf(toRad(n.re), n.im));
-        } else {
-            return cos(n);
-        }
+        return cos(n, angleUnit, MC);
     }
 
     @NonNull
-    public static BigComplex tan(@NonNull BigComplex n) {
-        if (BigDecimalMath.exponent(n.im.abs()) < 3) {
-            return BigComplexMath.tan(n, MC);
-        } else {
-            return divide(sin(n), cos(n));
-        }
+    public static BigComplex cos(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        return sinCos(n, angleUnit, mc).cos.round(mc);
+    }
+
+    @NonNull
+    public static BigComplex tan(@NonNull BigComplex n) throws UndefinedException {
+        return tan(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex tan(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
+        return SinCos.of(n, mc).tan(mc);
     }
 
     @NonNull
     public static BigComplex tan(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) throws UndefinedException {
-        if (angleUnit == AngleUnit.DEG) {
-            return tan(BigComplex.valueOf(toRad(n.re), n.im));
-        } else {
-            return tan(n);
-        }
+        return tan(n, angleUnit, MC);
+    }
+
+    @NonNull
+    public static BigComplex tan(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) throws UndefinedException {
+        return sinCos(n, angleUnit, mc).tan(mc);
     }
 
     @NonNull
     public static BigComplex csc(@NonNull BigComplex n) throws UndefinedException {
-        return inverse(sin(n));
+        return csc(n, AngleUnit.RAD);
     }
 
     @NonNull
     public static BigComplex csc(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) throws UndefinedException {
-        return inverse(sin(n, angleUnit));
+        return csc(n, angleUnit, MC);
+    }
+
+    @NonNull
+    public static BigComplex csc(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) throws UndefinedException {
+        return inverse(sinCos(n, angleUnit, mc).sin, mc);
     }
 
     @NonNull
     public static BigComplex sec(@NonNull BigComplex n) throws UndefinedException {
-        return inverse(cos(n));
+        return sec(n, AngleUnit.RAD);
     }
 
     @NonNull
     public static BigComplex sec(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) throws UndefinedException {
-        return inverse(cos(n, angleUnit));
+        return sec(n, angleUnit, MC);
+    }
+
+    @NonNull
+    public static BigComplex sec(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) throws UndefinedException {
+        return inverse(sinCos(n, angleUnit, mc).cos, mc);
     }
 
     @NonNull
     public static BigComplex cot(@NonNull BigComplex n) throws UndefinedException {
-        return inverse(tan(n));
+        return cot(n, AngleUnit.RAD);
     }
 
     @NonNull
     public static BigComplex cot(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) throws UndefinedException {
-        return inverse(tan(n, angleUnit));
+        return cot(n, angleUnit, MC);
+    }
+
+    /**
+     * cos / sin, so cot 90° is 0, not the inverse of an undefined tan 90°.
+     */
+    @NonNull
+    public static BigComplex cot(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) throws UndefinedException {
+        return sinCos(n, angleUnit, mc).cot(mc);
+    }
+
+    // -------- ANGLE REDUCTION ----------------------------------------------------------------------------------------------
+
+    /**
+     * The sine and cosine of an angle, calculated together for the trigonometric functions. Angles in degrees are
+     * reduced exactly, and multiples of 15° and 18° are exact. The values have guard digits and should be rounded.
+     */
+    @NonNull
+    private static SinCos sinCos(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        if (angleUnit == AngleUnit.DEG) {
+            final BigDecimal degrees = reduceDegrees(n.re);
+            if (n.im.signum() == 0) {
+                final MathContext guardMc = new MathContext(mc.getPrecision() + TRIG_GUARD_DIGITS, mc.getRoundingMode());
+                final BigDecimal sin = sinDegrees(degrees, guardMc);
+                if (sin != null) {
+                    return new SinCos(BigComplex.valueOf(sin), BigComplex.valueOf(cosDegrees(degrees, guardMc)));
+                }
+            }
+            n = BigComplex.valueOf(toRad(degrees, mc), n.im);
+        }
+        return SinCos.of(n, mc);
+    }
+
+    /**
+     * @return The angle in degrees reduced exactly to [0, 360).
+     */
+    @NonNull
+    private static BigDecimal reduceDegrees(@NonNull BigDecimal degrees) {
+        final BigDecimal reduced = degrees.remainder(FULL_TURN_DEGREES);
+        return reduced.signum() < 0 ? reduced.add(FULL_TURN_DEGREES) : reduced;
+    }
+
+    /**
+     * @param degrees Angle in [0, 360).
+     * @return Exact sine of a multiple of 15° or 18°, rounded to {@code mc}, or {@code null} if the angle is not one.
+     */
+    @Nullable
+    private static BigDecimal sinDegrees(@NonNull BigDecimal degrees, @NonNull MathContext mc) {
+        if (!isInteger(degrees)) {
+            return null;
+        }
+        int d = degrees.intValue();
+        if (d % 15 != 0 && d % 18 != 0) {
+            return null;
+        }
+        final boolean negative = d >= 180;
+        if (negative) {
+            d -= 180;
+        }
+        if (d > 90) {
+            d = 180 - d;
+        }
+        final MathContext guardMc = new MathContext(mc.getPrecision() + TRIG_GUARD_DIGITS, mc.getRoundingMode());
+        final BigDecimal sqrt5 = d % 18 == 0 && d % 90 != 0 ? BigDecimalMath.sqrt(new BigDecimal(5), guardMc) : null;
+        final BigDecimal quarter = new BigDecimal("0.25");
+        final BigDecimal sin;
+        switch (d) {
+            case 0:
+                sin = BigDecimal.ZERO;
+                break;
+            case 15:
+            case 75:
+                // (sqrt 6 -+ sqrt 2) / 4
+                final BigDecimal sqrt6 = BigDecimalMath.sqrt(new BigDecimal(6), guardMc);
+                final BigDecimal sqrt2 = BigDecimalMath.sqrt(new BigDecimal(2), guardMc);
+                sin = (d == 15 ? sqrt6.subtract(sqrt2) : sqrt6.add(sqrt2)).multiply(quarter);
+                break;
+            case 18:
+                sin = sqrt5.subtract(BigDecimal.ONE).multiply(quarter);
+                break;
+            case 30:
+                sin = HALF;
+                break;
+            case 36:
+            case 72:
+                // sqrt(10 -+ 2 sqrt 5) / 4
+                final BigDecimal twoSqrt5 = sqrt5.multiply(new BigDecimal(2));
+                sin = BigDecimalMath.sqrt(BigDecimal.TEN.add(d == 36 ? twoSqrt5.negate() : twoSqrt5), guardMc)
+                        .multiply(quarter);
+                break;
+            case 45:
+                sin = BigDecimalMath.sqrt(HALF, guardMc);
+                break;
+            case 54:
+                sin = sqrt5.add(BigDecimal.ONE).multiply(quarter);
+                break;
+            case 60:
+                sin = BigDecimalMath.sqrt(new BigDecimal(3), guardMc).multiply(HALF);
+                break;
+            case 90:
+                sin = BigDecimal.ONE;
+                break;
+            default:
+                return null;
+        }
+        return (negative ? sin.negate() : sin).round(mc);
+    }
+
+    /**
+     * @param degrees Angle in [0, 360).
+     * @return Exact cosine of a multiple of 15° or 18°, see {@link #sinDegrees(BigDecimal, MathContext)}.
+     */
+    @Nullable
+    private static BigDecimal cosDegrees(@NonNull BigDecimal degrees, @NonNull MathContext mc) {
+        return sinDegrees(reduceDegrees(degrees.add(QUARTER_TURN_DEGREES)), mc);
     }
 
     @NonNull
     public static BigComplex asin(@NonNull BigComplex n) {
-        return BigComplexMath.asin(n, MC);
+        return asin(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex asin(@NonNull BigComplex n, @NonNull MathContext mc) {
+        if (n.isReal()) {
+            // BigComplexMath fails for real arguments
+            if (n.re.abs().compareTo(BigDecimal.ONE) <= 0) {
+                return BigComplex.valueOf(BigDecimalMath.asin(n.re, mc));
+            }
+            // asin x = ±π/2 + i ln(|x| + sqrt(x² - 1)), the limit from above the branch cut
+            final BigDecimal x = n.re.abs();
+            final BigDecimal halfPi = pi(mc).multiply(HALF);
+            return BigComplex.valueOf(n.re.signum() > 0 ? halfPi : halfPi.negate(),
+                    BigDecimalMath.log(x.add(BigDecimalMath.sqrt(x.multiply(x).subtract(BigDecimal.ONE), mc)), mc));
+        }
+        return BigComplexMath.asin(n, mc);
     }
 
     @NonNull
     public static BigComplex asin(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) {
-        final BigComplex radAnswer = asin(n);
+        return asin(n, angleUnit, MC);
+    }
+
+    @NonNull
+    public static BigComplex asin(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        final BigComplex radAnswer = asin(n, mc);
         if (angleUnit == AngleUnit.DEG) {
-             return BigComplex.valueOf(toDeg(radAnswer.re), radAnswer.im);
+             return BigComplex.valueOf(toDeg(radAnswer.re, mc), radAnswer.im);
         } else {
             return radAnswer;
         }
@@ -311,14 +626,35 @@ public final class Maffs {
 
     @NonNull
     public static BigComplex acos(@NonNull BigComplex n) {
-        return BigComplexMath.acos(n, MC);
+        return acos(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex acos(@NonNull BigComplex n, @NonNull MathContext mc) {
+        if (n.isReal()) {
+            // BigComplexMath fails for real arguments
+            if (n.re.abs().compareTo(BigDecimal.ONE) <= 0) {
+                return BigComplex.valueOf(BigDecimalMath.acos(n.re, mc));
+            }
+            // acos x = π/2 - asin x
+            return BigComplex.valueOf(pi(mc).multiply(HALF)).subtract(asin(n, mc)).round(mc);
+        } else if (n.re.signum() == 0) {
+            // BigComplexMath also fails for imaginary arguments, acos iy = π/2 - i asinh y
+            return BigComplex.valueOf(pi(mc).multiply(HALF), BigDecimalMath.asinh(n.im, mc).negate()).round(mc);
+        }
+        return BigComplexMath.acos(n, mc);
     }
 
     @NonNull
     public static BigComplex acos(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) {
-        final BigComplex radAnswer = acos(n);
+        return acos(n, angleUnit, MC);
+    }
+
+    @NonNull
+    public static BigComplex acos(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        final BigComplex radAnswer = acos(n, mc);
         if (angleUnit == AngleUnit.DEG) {
-            return BigComplex.valueOf(toDeg(radAnswer.re), radAnswer.im);
+            return BigComplex.valueOf(toDeg(radAnswer.re, mc), radAnswer.im);
         } else {
             return radAnswer;
         }
@@ -326,14 +662,29 @@ public final class Maffs {
 
     @NonNull
     public static BigComplex atan(@NonNull BigComplex n) {
-        return BigComplexMath.atan(n, MC);
+        return atan(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex atan(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
+        if (n.re.signum() == 0 && n.im.abs().compareTo(BigDecimal.ONE) == 0) {
+            // atan ±i is a pole
+            throw new UndefinedException();
+        }
+        return BigComplexMath.atan(n, mc);
     }
 
     @NonNull
-    public static BigComplex atan(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) {
-        final BigComplex radAnswer = atan(n);
+    public static BigComplex atan(@NonNull BigComplex n, @NonNull AngleUnit angleUnit) throws UndefinedException {
+        return atan(n, angleUnit, MC);
+    }
+
+    @NonNull
+    public static BigComplex atan(@NonNull BigComplex n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc)
+            throws UndefinedException {
+        final BigComplex radAnswer = atan(n, mc);
         if (angleUnit == AngleUnit.DEG) {
-            return BigComplex.valueOf(toDeg(radAnswer.re), radAnswer.im);
+            return BigComplex.valueOf(toDeg(radAnswer.re, mc), radAnswer.im);
         } else {
             return radAnswer;
         }
@@ -341,60 +692,205 @@ public final class Maffs {
 
     @NonNull
     public static BigComplex sinh(@NonNull BigComplex n) {
-        return divide(subtract(exp(n), exp(n.negate())), TWO);
-//        return multiply(sin(multiply(n, BigComplex.I)), BigComplex.I).negate();
+        return sinh(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex sinh(@NonNull BigComplex n, @NonNull MathContext mc) {
+        return ExpPair.of(n, mc).sinh().round(mc);
     }
 
     @NonNull
     public static BigComplex cosh(@NonNull BigComplex n) {
-        return divide(add(exp(n), exp(n.negate())), TWO);
-//        return cos(multiply(n, BigComplex.I));
+        return cosh(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex cosh(@NonNull BigComplex n, @NonNull MathContext mc) {
+        return ExpPair.of(n, mc).cosh().round(mc);
     }
 
     @NonNull
     public static BigComplex tanh(@NonNull BigComplex n) throws UndefinedException {
-        return divide(subtract(exp(multiply(n, TWO)), BigComplex.ONE), add(exp(multiply(n, TWO)), BigComplex.ONE));
-//        return divide(sinh(n), cosh(n));
+        return tanh(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex tanh(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
+        return ExpPair.of(n, mc).tanh(mc);
     }
 
     @NonNull
     public static BigComplex asinh(@NonNull BigComplex n) {
-        return log(add(n, sqrt(add(squared(n), BigComplex.ONE))));
+        return asinh(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex asinh(@NonNull BigComplex n, @NonNull MathContext mc) {
+        return log(add(n, sqrt(add(squared(n, mc), BigComplex.ONE), mc)), mc);
     }
 
     @NonNull
     public static BigComplex acosh(@NonNull BigComplex n) {
-        return log(add(n, sqrt(subtract(squared(n), BigComplex.ONE))));
+        return acosh(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex acosh(@NonNull BigComplex n, @NonNull MathContext mc) {
+        return log(add(n, sqrt(subtract(squared(n, mc), BigComplex.ONE), mc)), mc);
     }
 
     @NonNull
     public static BigComplex atanh(@NonNull BigComplex n) throws UndefinedException {
-        return divide(log(divide(add(BigComplex.ONE, n), subtract(BigComplex.ONE, n))), TWO);
+        return atanh(n, MC);
+    }
+
+    @NonNull
+    public static BigComplex atanh(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
+        return divide(log(divide(add(BigComplex.ONE, n), subtract(BigComplex.ONE, n), mc), mc), TWO, mc);
     }
 
     @NonNull
     public static BigComplex factorial(@NonNull BigComplex n) throws UndefinedException {
-        // TODO wait for bigmath complex factorial
+        return factorial(n, MC);
+    }
+
+    /**
+     * Factorial of a real or complex number, see {@link #factorial(BigDecimal, MathContext)} and {@link Gamma}.
+     */
+    @NonNull
+    public static BigComplex factorial(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
         if (n.isReal()) {
-            return BigComplex.valueOf(factorial(n.re));
+            return BigComplex.valueOf(factorial(n.re, mc));
         } else {
-            throw new UndefinedException();
+            return Gamma.factorial(n, mc);
         }
     }
 
+    /**
+     * @return The gamma function, {@code (n - 1)!}.
+     * @throws UndefinedException {@code n} is 0 or a negative integer.
+     */
+    @NonNull
+    public static BigComplex gamma(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
+        return factorial(n.subtract(BigComplex.ONE), mc);
+    }
+
+    /**
+     * @return A logarithm of the gamma function, real if the gamma function is positive. Unlike the logarithm of
+     * {@link #gamma(BigComplex, MathContext)}, it does not overflow for large {@code n}.
+     * @throws UndefinedException {@code n} is 0 or a negative integer.
+     */
+    @NonNull
+    public static BigComplex logGamma(@NonNull BigComplex n, @NonNull MathContext mc) throws UndefinedException {
+        return Gamma.logFactorial(n.subtract(BigComplex.ONE), mc);
+    }
+
     @NonNull
     public static BigDecimal factorial(@NonNull BigDecimal n) throws UndefinedException {
-        try {
-            return BigDecimalMath.factorial(n, MC);
-        } catch (ArithmeticException e) {
-            throw new UndefinedException(e.getMessage());
+        return factorial(n, MC);
+    }
+
+    /**
+     * Factorial of a real number. The factorial of an integer is an exact product, which is checked for cancellation
+     * while it is multiplied, see {@link CancellationToken#checkCurrent()}. Other numbers use {@link Gamma}.
+     */
+    @NonNull
+    public static BigDecimal factorial(@NonNull BigDecimal n, @NonNull MathContext mc) throws UndefinedException {
+        CancellationToken.checkCurrent();
+        if (isInteger(n)) {
+            if (n.signum() < 0 || n.compareTo(BigDecimal.valueOf(Integer.MAX_VALUE)) > 0) {
+                throw new UndefinedException();
+            }
+            return new BigDecimal(factorial(n.intValue())).round(mc);
         }
+        return Gamma.factorial(BigComplex.valueOf(n), mc).re;
+    }
+
+    /**
+     * @return Exact factorial of {@code n}, from a table if it is small.
+     */
+    @NonNull
+    private static BigInteger factorial(int n) {
+        final int last = SMALL_FACTORIALS.length - 1;
+        if (n <= last) {
+            return BigInteger.valueOf(SMALL_FACTORIALS[n]);
+        }
+        return product(last + 1, n).multiply(BigInteger.valueOf(SMALL_FACTORIALS[last]));
+    }
+
+    /**
+     * @return Exact falling factorial {@code n (n - 1) ... (n - k + 1)}, 1 if {@code k} is 0.
+     */
+    @NonNull
+    private static BigInteger fallingFactorial(@NonNull BigInteger n, int k) {
+        if (k == 0) {
+            return BigInteger.ONE;
+        }
+        if (n.bitLength() < Long.SIZE - 1) {
+            final long to = n.longValue();
+            return product(to - k + 1, to);
+        }
+        return product(n.subtract(BigInteger.valueOf(k - 1)), k);
+    }
+
+    /**
+     * @return Product of the integers from {@code from} to {@code to} inclusive, split in halves so the numbers
+     * multiplied have similar sizes.
+     */
+    @NonNull
+    private static BigInteger product(long from, long to) {
+        if (to - from < PRODUCT_CHUNK) {
+            CancellationToken.checkCurrent();
+            BigInteger result = BigInteger.ONE;
+            long factors = 1;
+            for (long i = from; i <= to; i++) {
+                if (factors > Long.MAX_VALUE / i) {
+                    result = result.multiply(BigInteger.valueOf(factors));
+                    factors = i;
+                } else {
+                    factors *= i;
+                }
+            }
+            return result.multiply(BigInteger.valueOf(factors));
+        }
+        final long middle = (from + to) >>> 1;
+        return product(from, middle).multiply(product(middle + 1, to));
+    }
+
+    /**
+     * @return Product of the {@code count} integers from {@code from}, which are too big for {@link #product(long, long)}.
+     */
+    @NonNull
+    private static BigInteger product(@NonNull BigInteger from, int count) {
+        if (count <= PRODUCT_CHUNK) {
+            CancellationToken.checkCurrent();
+            BigInteger result = from;
+            for (int i = 1; i < count; i++) {
+                result = result.multiply(from.add(BigInteger.valueOf(i)));
+            }
+            return result;
+        }
+        final int half = count >>> 1;
+        return product(from, half).multiply(product(from.add(BigInteger.valueOf(half)), count - half));
     }
 
     @NonNull
     public static BigDecimal permutation(@NonNull BigDecimal n, @NonNull BigDecimal r) throws UndefinedException {
+        return permutation(n, r, MC);
+    }
+
+    /**
+     * Permutations {@code n! / (n - r)!} of non-negative integers, calculated exactly as the product of the
+     * {@code r} integers from {@code n - r + 1} to {@code n}, and then rounded.
+     */
+    @NonNull
+    public static BigDecimal permutation(@NonNull BigDecimal n, @NonNull BigDecimal r, @NonNull MathContext mc) throws UndefinedException {
         if (n.signum() >= 0 && r.signum() >= 0 && isInteger(n) && isInteger(r) && n.compareTo(r) >= 0) {
-            return divide(factorial(n), factorial(n.subtract(r)));
+            if (!BigDecimalMath.isIntValue(r)) {
+                throw new UndefinedException();
+            }
+            return new BigDecimal(fallingFactorial(n.toBigIntegerExact(), r.intValueExact())).round(mc);
         } else {
             throw new UndefinedException();
         }
@@ -402,13 +898,226 @@ public final class Maffs {
 
     @NonNull
     public static BigDecimal combination(@NonNull BigDecimal n, @NonNull BigDecimal r) throws UndefinedException {
+        return combination(n, r, MC);
+    }
+
+    /**
+     * Combinations {@code n! / (r! (n - r)!)} of non-negative integers, calculated exactly with the smaller of
+     * {@code r} and {@code n - r} as {@code k}: the product of the {@code k} integers up to {@code n} divided by
+     * {@code k!}, and then rounded.
+     */
+    @NonNull
+    public static BigDecimal combination(@NonNull BigDecimal n, @NonNull BigDecimal r, @NonNull MathContext mc) throws UndefinedException {
         if (n.signum() >= 0 && r.signum() >= 0 && isInteger(n) && isInteger(r) && n.compareTo(r) >= 0) {
-            return divide(factorial(n), multiply(factorial(r), factorial(n.subtract(r))));
+            final BigDecimal k = r.min(n.subtract(r));
+            if (!BigDecimalMath.isIntValue(k)) {
+                throw new UndefinedException();
+            }
+            final int intK = k.intValueExact();
+            return new BigDecimal(fallingFactorial(n.toBigIntegerExact(), intK).divide(factorial(intK))).round(mc);
         } else {
             throw new UndefinedException();
         }
     }
 
+    // -------- REAL NUMBERS ---------------------------------------------------------------------------------------------------
+
+    /*
+     * Functions of real numbers with real results, calculated with BigDecimals only. They do not check that the
+     * result is real, eg. asin(2) or the log of a negative number, the caller checks the domain and uses the
+     * BigComplex functions otherwise.
+     */
+
+    @NonNull
+    public static BigDecimal sin(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        return sinCos(n, angleUnit, mc)[0].round(mc);
+    }
+
+    @NonNull
+    public static BigDecimal cos(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        return sinCos(n, angleUnit, mc)[1].round(mc);
+    }
+
+    @NonNull
+    public static BigDecimal tan(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) throws UndefinedException {
+        final BigDecimal[] sinCos = sinCos(n, angleUnit, mc);
+        return divide(sinCos[0], sinCos[1], mc);
+    }
+
+    @NonNull
+    public static BigDecimal csc(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) throws UndefinedException {
+        return divide(BigDecimal.ONE, sinCos(n, angleUnit, mc)[0], mc);
+    }
+
+    @NonNull
+    public static BigDecimal sec(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) throws UndefinedException {
+        return divide(BigDecimal.ONE, sinCos(n, angleUnit, mc)[1], mc);
+    }
+
+    @NonNull
+    public static BigDecimal cot(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) throws UndefinedException {
+        final BigDecimal[] sinCos = sinCos(n, angleUnit, mc);
+        return divide(sinCos[1], sinCos[0], mc);
+    }
+
+    /**
+     * @return The sine and cosine of a real angle with guard digits, see
+     * {@link #sinCos(BigComplex, AngleUnit, MathContext)}.
+     */
+    @NonNull
+    private static BigDecimal[] sinCos(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        if (angleUnit == AngleUnit.DEG) {
+            final BigDecimal degrees = reduceDegrees(n);
+            final MathContext guardMc = new MathContext(mc.getPrecision() + TRIG_GUARD_DIGITS, mc.getRoundingMode());
+            final BigDecimal sin = sinDegrees(degrees, guardMc);
+            if (sin != null) {
+                return new BigDecimal[] {sin, cosDegrees(degrees, guardMc)};
+            }
+            n = toRad(degrees, mc);
+        }
+        return SinCos.ofReal(n, SinCos.guard(mc));
+    }
+
+    /**
+     * @param n From -1 to 1.
+     */
+    @NonNull
+    public static BigDecimal asin(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        if (angleUnit == AngleUnit.DEG) {
+            final BigDecimal degrees = asinDegrees(n);
+            return degrees != null ? degrees : toDeg(BigDecimalMath.asin(n, mc), mc);
+        }
+        return BigDecimalMath.asin(n, mc);
+    }
+
+    /**
+     * @param n From -1 to 1.
+     */
+    @NonNull
+    public static BigDecimal acos(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        if (angleUnit == AngleUnit.DEG) {
+            final BigDecimal degrees = asinDegrees(n);
+            return degrees != null ? QUARTER_TURN_DEGREES.subtract(degrees) : toDeg(BigDecimalMath.acos(n, mc), mc);
+        }
+        return BigDecimalMath.acos(n, mc);
+    }
+
+    /**
+     * {@link BigDecimalMath#atan(BigDecimal, MathContext)} slows down as the argument grows, so arguments bigger than
+     * 1 use {@code atan x = ±π/2 - atan(1/x)}.
+     */
+    @NonNull
+    public static BigDecimal atan(@NonNull BigDecimal n, @NonNull AngleUnit angleUnit, @NonNull MathContext mc) {
+        final boolean degrees = angleUnit == AngleUnit.DEG;
+        final int compareOne = n.abs().compareTo(BigDecimal.ONE);
+        if (degrees && (n.signum() == 0 || compareOne == 0)) {
+            // atan 0 = 0°, atan ±1 = ±45°
+            return BigDecimal.valueOf(45L * n.signum());
+        } else if (compareOne <= 0) {
+            final BigDecimal rad = BigDecimalMath.atan(n, mc);
+            return degrees ? toDeg(rad, mc) : rad;
+        }
+        final MathContext guardMc = new MathContext(mc.getPrecision() + TRIG_GUARD_DIGITS, mc.getRoundingMode());
+        final BigDecimal reciprocal = BigDecimalMath.atan(BigDecimal.ONE.divide(n, guardMc), guardMc);
+        final BigDecimal quarterTurn = degrees ? QUARTER_TURN_DEGREES : MathConstants.pi(guardMc).multiply(HALF);
+        final BigDecimal signedQuarterTurn = n.signum() > 0 ? quarterTurn : quarterTurn.negate();
+        return signedQuarterTurn.subtract(degrees ? toDeg(reciprocal, guardMc) : reciprocal).round(mc);
+    }
+
+    /**
+     * @return The exact inverse sine in degrees of 0, ±1/2 or ±1, the arguments of {@link #sinDegrees} with rational
+     * values, or {@code null} for other arguments.
+     */
+    @Nullable
+    private static BigDecimal asinDegrees(@NonNull BigDecimal n) {
+        final BigDecimal abs = n.abs();
+        final BigDecimal degrees;
+        if (abs.signum() == 0) {
+            return BigDecimal.ZERO;
+        } else if (abs.compareTo(HALF) == 0) {
+            degrees = new BigDecimal(30);
+        } else if (abs.compareTo(BigDecimal.ONE) == 0) {
+            degrees = QUARTER_TURN_DEGREES;
+        } else {
+            return null;
+        }
+        return n.signum() > 0 ? degrees : degrees.negate();
+    }
+
+    @NonNull
+    public static BigDecimal sinh(@NonNull BigDecimal n, @NonNull MathContext mc) {
+        final BigDecimal[] exp = ExpPair.ofReal(n, ExpPair.guard(n.abs(), mc));
+        return exp[0].subtract(exp[1]).multiply(HALF).round(mc);
+    }
+
+    @NonNull
+    public static BigDecimal cosh(@NonNull BigDecimal n, @NonNull MathContext mc) {
+        final BigDecimal[] exp = ExpPair.ofReal(n, ExpPair.guard(n.abs(), mc));
+        return exp[0].add(exp[1]).multiply(HALF).round(mc);
+    }
+
+    @NonNull
+    public static BigDecimal tanh(@NonNull BigDecimal n, @NonNull MathContext mc) {
+        final BigDecimal[] exp = ExpPair.ofReal(n, ExpPair.guard(n.abs(), mc));
+        return exp[0].subtract(exp[1]).divide(exp[0].add(exp[1]), mc);
+    }
+
+    /**
+     * Integer power of a real number by repeated squaring, see {@link #pow(BigComplex, int, MathContext)}.
+     *
+     * @throws UndefinedException {@code x} is 0 and {@code n} is not positive.
+     */
+    @NonNull
+    public static BigDecimal pow(@NonNull BigDecimal x, int n, @NonNull MathContext mc) throws UndefinedException {
+        if (x.signum() == 0) {
+            if (n > 0) {
+                return BigDecimal.ZERO;
+            }
+            throw new UndefinedException();
+        } else if (n == 0) {
+            return BigDecimal.ONE;
+        }
+        final MathContext powerMc = powerMathContext(x.precision(), n, mc);
+        BigDecimal power = null;
+        BigDecimal square = x;
+        for (long m = Math.abs((long) n); ; ) {
+            if ((m & 1) == 1) {
+                power = power == null ? square : power.multiply(square, powerMc);
+            }
+            m >>= 1;
+            if (m == 0) {
+                break;
+            }
+            CancellationToken.checkCurrent();
+            square = square.multiply(square, powerMc);
+        }
+        return n > 0 ? power.round(mc) : BigDecimal.ONE.divide(power, mc);
+    }
+
+    /**
+     * @param n1 Positive, or 0, or negative with an integer {@code n2}.
+     * @throws UndefinedException {@code n1} is 0 and {@code n2} is not positive.
+     */
+    @NonNull
+    public static BigDecimal pow(@NonNull BigDecimal n1, @NonNull BigDecimal n2, @NonNull MathContext mc) throws UndefinedException {
+        CancellationToken.checkCurrent();
+        if (n1.signum() == 0) {
+            if (n2.signum() > 0) {
+                return BigDecimal.ZERO;
+            }
+            throw new UndefinedException();
+        } else if (n2.signum() == 0) {
+            return BigDecimal.ONE;
+        } else if (n1.compareTo(E) == 0) {
+            return BigDecimalMath.exp(n2, mc);
+        } else if (BigDecimalMath.isIntValue(n2)) {
+            return pow(n1, n2.intValueExact(), mc);
+        } else if (n2.compareTo(HALF) == 0) {
+            return BigDecimalMath.sqrt(n1, mc);
+        }
+        return BigDecimalMath.pow(n1, n2, mc);
+    }
+
     @NonNull
     public static BigComplex scaleByPowerOfTen(@NonNull BigComplex n, int exp) {
         if (isZero(n)) {
@@ -436,21 +1145,63 @@ public final class Maffs {
         }
     }
 
+    /**
+     * @return π with the precision of {@code mc}, from {@link MathConstants}.
+     */
+    @NonNull
+    public static BigDecimal pi(@NonNull MathContext mc) {
+        return MathConstants.pi(mc);
+    }
+
+    /**
+     * @return e with the precision of {@code mc}, from {@link MathConstants}.
+     */
+    @NonNull
+    public static BigDecimal e(@NonNull MathContext mc) {
+        return MathConstants.e(mc);
+    }
+
     @NonNull
     public static BigDecimal toRad(@NonNull BigDecimal deg) {
-        MathContext mc = new MathContext(MC.getPrecision() + 4, MC.getRoundingMode());
-        return deg.multiply(PI, mc).divide(new BigDecimal(180), mc);
+        return toRad(deg, MC);
+    }
+
+    @NonNull
+    public static BigDecimal toRad(@NonNull BigDecimal deg, @NonNull MathContext mc) {
+        final MathContext guardMc = new MathContext(mc.getPrecision() + 4, mc.getRoundingMode());
+        return deg.multiply(MathConstants.degToRad(guardMc), guardMc);
     }
 
     @NonNull
     public static BigDecimal toDeg(@NonNull BigDecimal rad) {
-        MathContext mc = new MathContext(MC.getPrecision() + 4, MC.getRoundingMode());
-        return rad.multiply(new BigDecimal(180), mc).divide(PI, mc);
+        return toDeg(rad, MC);
+    }
+
+    @NonNull
+    public static BigDecimal toDeg(@NonNull BigDecimal rad, @NonNull MathContext mc) {
+        final MathContext guardMc = new MathContext(mc.getPrecision() + 4, mc.getRoundingMode());
+        return rad.multiply(MathConstants.radToDeg(guardMc), guardMc);
     }
 
     @NonNull
     public static BigComplex round(@NonNull BigComplex n) {
-        final BigComplex rounded = n.round(MC);
+        return round(n, MC);
+    }
+
+    /**
+     * Rounds a real value and strips trailing zeros.
+     */
+    @NonNull
+    public static BigDecimal round(@NonNull BigDecimal n, @NonNull MathContext mc) {
+        return n.signum() == 0 ? BigDecimal.ZERO : n.round(mc).stripTrailingZeros();
+    }
+
+    /**
+     * Rounds both parts of a value and strips trailing zeros.
+     */
+    @NonNull
+    public static BigComplex round(@NonNull BigComplex n, @NonNull MathContext mc) {
+        final BigComplex rounded = n.round(mc);
         // strip trailing zeros of 0 bug
         final BigDecimal re = rounded.re.signum() == 0 ? BigDecimal.ZERO : rounded.re.stripTrailingZeros();
         final BigDecimal im = rounded.im.signum() == 0 ? BigDecimal.ZERO : rounded.im.stripTrailingZeros();
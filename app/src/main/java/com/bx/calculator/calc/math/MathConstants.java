@@ -0,0 +1,250 @@
+package com.bx.calculator.calc.math;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.ForkJoinPool;
+
+import androidx.annotation.NonNull;
+
+import ch.obermuhlner.math.big.BigDecimalMath;
+
+/**
+ * <p>Mathematical constants with any precision, eg. π, e and ln 2.</p>
+ * <p>Each constant is calculated once with the highest precision requested so far and some guard digits, and values
+ * with a lower precision are rounded from it. A higher precision calculates the constant again, and replaces the stored
+ * value. The first value has {@link #MIN_PRECISION}, enough for calculations with the precision of {@link Maffs#MC}.
+ * Call {@link #warmUp()} to calculate the constants in the background before they are needed.</p>
+ * <p>This class is thread safe.</p>
+ */
+public final class MathConstants {
+
+    /**
+     * Digits calculated beyond the requested precision, so a later request with a slightly higher precision does not
+     * calculate the constant again.
+     */
+    private static final int GUARD_DIGITS = 16;
+    /**
+     * Smallest precision a constant is calculated with.
+     */
+    private static final int MIN_PRECISION = 80;
+
+    private static final BigDecimal ONE_HUNDRED_EIGHTY = new BigDecimal(180);
+
+    private static final Constant PI = new Constant() {
+        @Override
+        BigDecimal calculate(@NonNull MathContext mc) {
+            return BigDecimalMath.pi(mc);
+        }
+    };
+    private static final Constant E = new Constant() {
+        @Override
+        BigDecimal calculate(@NonNull MathContext mc) {
+            return BigDecimalMath.e(mc);
+        }
+    };
+    private static final Constant LN2 = new Constant() {
+        @Override
+        BigDecimal calculate(@NonNull MathContext mc) {
+            return BigDecimalMath.log(new BigDecimal(2), mc);
+        }
+    };
+    private static final Constant LN10 = new Constant() {
+        @Override
+        BigDecimal calculate(@NonNull MathContext mc) {
+            return BigDecimalMath.log(BigDecimal.TEN, mc);
+        }
+    };
+    private static final Constant DEG_TO_RAD = new Constant() {
+        @Override
+        BigDecimal calculate(@NonNull MathContext mc) {
+            return PI.get(mc).divide(ONE_HUNDRED_EIGHTY, mc);
+        }
+    };
+    private static final Constant RAD_TO_DEG = new Constant() {
+        @Override
+        BigDecimal calculate(@NonNull MathContext mc) {
+            return ONE_HUNDRED_EIGHTY.divide(PI.get(mc), mc);
+        }
+    };
+    private static final Constant EULER_GAMMA = new Constant() {
+        @Override
+        BigDecimal calculate(@NonNull MathContext mc) {
+            return calculateEulerGamma(mc);
+        }
+    };
+
+    private static final Constant[] CONSTANTS = {PI, E, LN2, LN10, DEG_TO_RAD, RAD_TO_DEG, EULER_GAMMA};
+
+    /**
+     * @return π with the precision of {@code mc}.
+     */
+    @NonNull
+    public static BigDecimal pi(@NonNull MathContext mc) {
+        return PI.get(mc);
+    }
+
+    /**
+     * @return Euler's number e with the precision of {@code mc}.
+     */
+    @NonNull
+    public static BigDecimal e(@NonNull MathContext mc) {
+        return E.get(mc);
+    }
+
+    /**
+     * @return ln 2 with the precision of {@code mc}.
+     */
+    @NonNull
+    public static BigDecimal ln2(@NonNull MathContext mc) {
+        return LN2.get(mc);
+    }
+
+    /**
+     * @return ln 10 with the precision of {@code mc}.
+     */
+    @NonNull
+    public static BigDecimal ln10(@NonNull MathContext mc) {
+        return LN10.get(mc);
+    }
+
+    /**
+     * @return π/180, radians in a degree, with the precision of {@code mc}.
+     */
+    @NonNull
+    public static BigDecimal degToRad(@NonNull MathContext mc) {
+        return DEG_TO_RAD.get(mc);
+    }
+
+    /**
+     * @return 180/π, degrees in a radian, with the precision of {@code mc}.
+     */
+    @NonNull
+    public static BigDecimal radToDeg(@NonNull MathContext mc) {
+        return RAD_TO_DEG.get(mc);
+    }
+
+    /**
+     * @return The Euler–Mascheroni constant γ with the precision of {@code mc}.
+     */
+    @NonNull
+    public static BigDecimal eulerGamma(@NonNull MathContext mc) {
+        return EULER_GAMMA.get(mc);
+    }
+
+    /**
+     * Calculates every constant with {@link #MIN_PRECISION} in the background.
+     */
+    public static void warmUp() {
+        warmUp(MIN_PRECISION);
+    }
+
+    /**
+     * Calculates every constant with at least {@code precision} in parallel in the background, with the
+     * {@link ForkJoinPool#commonPool()}. Returns immediately.
+     *
+     * @param precision Precision of the calculations that will use the constants.
+     * @throws IllegalArgumentException {@code precision} is not positive.
+     */
+    public static void warmUp(int precision) throws IllegalArgumentException {
+        if (precision <= 0) {
+            throw new IllegalArgumentException("precision must be positive");
+        }
+        final MathContext mc = new MathContext(precision, RoundingMode.HALF_EVEN);
+        for (Constant constant: CONSTANTS) {
+            ForkJoinPool.commonPool().execute(() -> constant.get(mc));
+        }
+    }
+
+    /**
+     * <p>Calculates γ with the Brent–McMillan algorithm: with {@code A_0 = -ln n}, {@code B_0 = 1},
+     * {@code B_k = B_(k-1) n²/k²} and {@code A_k = (A_(k-1) n²/k + B_k)/k}, γ is {@code ΣA_k / ΣB_k} with an error
+     * of about {@code e^(-4n)}.</p>
+     * <p>The sums grow to about {@code e^(4n)} and their terms have both signs, so they are calculated with guard
+     * digits.</p>
+     */
+    @NonNull
+    private static BigDecimal calculateEulerGamma(@NonNull MathContext mc) {
+        final int n = (int) Math.ceil(mc.getPrecision() * Math.log(10) / 4) + 1;
+        final MathContext workMc = new MathContext(mc.getPrecision() + 10, mc.getRoundingMode());
+        final BigDecimal nSquared = BigDecimal.valueOf((long) n * n);
+        BigDecimal a = BigDecimalMath.log(BigDecimal.valueOf(n), workMc).negate();
+        BigDecimal b = BigDecimal.ONE;
+        BigDecimal u = a;
+        BigDecimal v = b;
+        for (int k = 1; ; k++) {
+            final BigDecimal bigK = BigDecimal.valueOf(k);
+            b = b.multiply(nSquared).divide(BigDecimal.valueOf((long) k * k), workMc);
+            a = a.multiply(nSquared).divide(bigK, workMc).add(b).divide(bigK, workMc);
+            u = u.add(a, workMc);
+            v = v.add(b, workMc);
+            // the terms decrease after k = n
+            if (k > n) {
+                final BigDecimal epsilon = v.movePointLeft(workMc.getPrecision());
+                if (b.compareTo(epsilon) < 0 && a.abs().compareTo(epsilon) < 0) {
+                    break;
+                }
+            }
+        }
+        return u.divide(v, mc);
+    }
+
+    /**
+     * A constant with the value of the highest precision calculated so far.
+     */
+    private static abstract class Constant {
+
+        /**
+         * Immutable, so the value and its precision are read together.
+         */
+        private volatile Value value;
+
+        /**
+         * @param mc Precision of the result, with {@link RoundingMode#HALF_EVEN}.
+         * @return The constant.
+         */
+        abstract BigDecimal calculate(@NonNull MathContext mc);
+
+        /**
+         * @return The constant rounded to {@code mc}, calculated only if it has not been calculated with that
+         * precision.
+         * @throws UnsupportedOperationException {@code mc} has unlimited precision.
+         */
+        @NonNull
+        final BigDecimal get(@NonNull MathContext mc) throws UnsupportedOperationException {
+            if (mc.getPrecision() == 0) {
+                throw new UnsupportedOperationException("Unlimited MathContext not supported");
+            }
+            Value value = this.value;
+            if (value == null || value.precision < mc.getPrecision()) {
+                value = calculateValue(mc.getPrecision());
+            }
+            return value.value.round(mc);
+        }
+
+        private synchronized Value calculateValue(int precision) {
+            Value value = this.value;
+            // another thread may have calculated it while this thread was waiting
+            if (value == null || value.precision < precision) {
+                final int calculatedPrecision = Math.max(precision + GUARD_DIGITS, MIN_PRECISION);
+                value = new Value(calculatedPrecision,
+                        calculate(new MathContext(calculatedPrecision, RoundingMode.HALF_EVEN)));
+                this.value = value;
+            }
+            return value;
+        }
+    }
+
+    private static final class Value {
+
+        final int precision;
+        final BigDecimal value;
+
+        Value(int precision, @NonNull BigDecimal value) {
+            this.precision = precision;
+            this.value = value;
+        }
+    }
+
+    private MathConstants() {}
+}
@@ -0,0 +1,162 @@
+package com.bx.calculator.calc.math;
+
+import com.bx.calculator.calc.exception.UndefinedException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import androidx.annotation.NonNull;
+
+import ch.obermuhlner.math.big.BigComplex;
+import ch.obermuhlner.math.big.BigDecimalMath;
+
+/**
+ * <p>The sine and cosine of an angle in radians, calculated together so every trigonometric function is derived from
+ * one evaluation, eg. {@code tan = sin / cos} and {@code csc = 1 / sin}.</p>
+ * <p>The real part is reduced by a multiple of π/2 with enough digits of π for the reduced angle to have the full
+ * precision, even if the angle is huge or close to a multiple of π/2. The sine and cosine of the reduced angle are
+ * calculated with one Taylor series of a fraction {@code 2^-k} of the angle, and then doubled {@code k} times. The
+ * imaginary part uses one {@link ExpPair}: {@code sin(x + iy) = sin x cosh y + i cos x sinh y} and
+ * {@code cos(x + iy) = cos x cosh y - i sin x sinh y}.</p>
+ * <p>The values have {@link #GUARD_DIGITS} more than the requested precision, and should be rounded by the caller.</p>
+ */
+final class SinCos {
+
+    /**
+     * Digits calculated beyond the requested precision.
+     */
+    static final int GUARD_DIGITS = 6;
+    private static final BigInteger FOUR = BigInteger.valueOf(4);
+
+    @NonNull
+    final BigComplex sin;
+    @NonNull
+    final BigComplex cos;
+
+    SinCos(@NonNull BigComplex sin, @NonNull BigComplex cos) {
+        this.sin = sin;
+        this.cos = cos;
+    }
+
+    /**
+     * @param n Angle in radians.
+     * @param mc Precision of the results, without the guard digits.
+     */
+    @NonNull
+    static SinCos of(@NonNull BigComplex n, @NonNull MathContext mc) {
+        final MathContext guardMc = guard(mc);
+        final BigDecimal[] real = ofReal(n.re, guardMc);
+        if (n.im.signum() == 0) {
+            return new SinCos(BigComplex.valueOf(real[0]), BigComplex.valueOf(real[1]));
+        }
+        final ExpPair exp = ExpPair.of(BigComplex.valueOf(n.im), mc);
+        final BigDecimal cosh = exp.cosh().re;
+        final BigDecimal sinh = exp.sinh().re;
+        return new SinCos(
+                BigComplex.valueOf(real[0].multiply(cosh, guardMc), real[1].multiply(sinh, guardMc)),
+                BigComplex.valueOf(real[1].multiply(cosh, guardMc), real[0].multiply(sinh, guardMc).negate()));
+    }
+
+    /**
+     * @throws UndefinedException The cosine is 0.
+     */
+    @NonNull
+    BigComplex tan(@NonNull MathContext mc) throws UndefinedException {
+        return Maffs.divide(sin, cos, mc);
+    }
+
+    /**
+     * @throws UndefinedException The sine is 0.
+     */
+    @NonNull
+    BigComplex cot(@NonNull MathContext mc) throws UndefinedException {
+        return Maffs.divide(cos, sin, mc);
+    }
+
+    /**
+     * @param x Angle in radians.
+     * @param mc Precision of the results.
+     * @return The sine and cosine of a real angle.
+     */
+    @NonNull
+    static BigDecimal[] ofReal(@NonNull BigDecimal x, @NonNull MathContext mc) {
+        if (x.signum() == 0) {
+            return new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ONE};
+        }
+        // x = q π/2 + r with |r| <= π/4, π needs digits for the integer digits of x and the digits of r lost to
+        // cancellation, which are only known after the first reduction
+        final int integerDigits = Math.max(BigDecimalMath.exponent(x) + 1, 0);
+        BigInteger quarterTurns = null;
+        BigDecimal reduced = null;
+        int lostDigits = 0;
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final MathContext reductionMc = new MathContext(mc.getPrecision() + integerDigits + lostDigits + 2,
+                    mc.getRoundingMode());
+            final BigDecimal halfPi = MathConstants.pi(reductionMc).multiply(Maffs.HALF);
+            quarterTurns = x.divide(halfPi, reductionMc).setScale(0, RoundingMode.HALF_EVEN).toBigInteger();
+            reduced = x.subtract(halfPi.multiply(new BigDecimal(quarterTurns)));
+            if (reduced.signum() == 0 || BigDecimalMath.exponent(reduced) >= 0) {
+                break;
+            }
+            lostDigits = -BigDecimalMath.exponent(reduced);
+        }
+        final BigDecimal[] sinCos = series(reduced.round(mc), mc);
+        final BigDecimal sin = sinCos[0];
+        final BigDecimal cos = sinCos[1];
+        switch (quarterTurns.mod(FOUR).intValue()) {
+            case 1:
+                return new BigDecimal[] {cos, sin.negate()};
+            case 2:
+                return new BigDecimal[] {sin.negate(), cos.negate()};
+            case 3:
+                return new BigDecimal[] {cos.negate(), sin};
+            default:
+                return sinCos;
+        }
+    }
+
+    /**
+     * Sine and cosine of a reduced angle, {@code |r| <= π/4}.
+     */
+    @NonNull
+    private static BigDecimal[] series(@NonNull BigDecimal r, @NonNull MathContext mc) {
+        if (r.signum() == 0) {
+            return new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ONE};
+        }
+        // halve until the angle is less than 2^-halvedBits, balancing the terms of the series with the doublings
+        final int halvedBits = (int) Math.sqrt(mc.getPrecision() * 3.3) / 2;
+        int halvings = 0;
+        for (double magnitude = Math.abs(r.doubleValue()); magnitude > Math.scalb(1.0, -halvedBits); magnitude /= 2) {
+            halvings++;
+        }
+        // each doubling can double the error
+        final MathContext workMc = new MathContext(mc.getPrecision() + halvings / 3 + 2, mc.getRoundingMode());
+        final BigDecimal h = r.multiply(BigDecimal.valueOf(5).pow(halvings)).movePointLeft(halvings).round(workMc);
+        final BigDecimal h2 = h.multiply(h, workMc);
+        final BigDecimal epsilon = BigDecimal.ONE.movePointLeft(workMc.getPrecision() + 1);
+        BigDecimal sin = h;
+        BigDecimal cos = BigDecimal.ONE;
+        BigDecimal sinTerm = h;
+        BigDecimal cosTerm = BigDecimal.ONE;
+        for (long i = 1; cosTerm.abs().compareTo(epsilon) >= 0; i++) {
+            cosTerm = cosTerm.multiply(h2).divide(BigDecimal.valueOf((2 * i - 1) * (2 * i)), workMc).negate();
+            sinTerm = sinTerm.multiply(h2).divide(BigDecimal.valueOf((2 * i) * (2 * i + 1)), workMc).negate();
+            cos = cos.add(cosTerm, workMc);
+            sin = sin.add(sinTerm, workMc);
+        }
+        final BigDecimal two = BigDecimal.valueOf(2);
+        for (int i = 0; i < halvings; i++) {
+            final BigDecimal doubledSin = two.multiply(sin).multiply(cos, workMc);
+            cos = BigDecimal.ONE.subtract(two.multiply(sin.multiply(sin, workMc)), workMc);
+            sin = doubledSin;
+        }
+        return new BigDecimal[] {sin.round(mc), cos.round(mc)};
+    }
+
+    @NonNull
+    static MathContext guard(@NonNull MathContext mc) {
+        return new MathContext(mc.getPrecision() + GUARD_DIGITS, mc.getRoundingMode());
+    }
+}
@@ -77,6 +77,7 @@ public class Converters {
                 }
             }
             object.put("variableMap", varMapObject);
+            object.put("precision", value.getPrecision());
             return object.toString();
         } catch (JSONException e) {
             return "";
@@ -103,7 +104,8 @@ public class Converters {
                 }
             }
             // TODO Decide on using string or int for saving AngleUnits
-            return new CParams(AngleUnit.values()[angleUnit], variables);
+            final int precision = object.optInt("precision", CParams.DEFAULT_PRECISION);
+            return new CParams(AngleUnit.values()[angleUnit], variables, precision);
         } catch (JSONException e) {
             return new CParams();
         }
@@ -0,0 +1,177 @@
+package com.bx.calculator.ui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.View;
+
+import com.bx.calculator.R;
+import com.bx.calculator.calc.GraphSampler;
+
+import java.util.concurrent.CompletableFuture;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * A {@link View} that draws the graph of a {@link GraphSampler} with
+ * {@link GraphSampler#plot(double, double, double, double, int, int)}. The vertical axis has the same scale as the
+ * horizontal axis and is centred on 0. The curve is broken at points that are not known, eg. poles and undefined
+ * values.
+ * <p>The curve is plotted in the background when the sampler, the range or the size changes, and drawn from the last
+ * plotted curve, so drawing a frame never evaluates the function.</p>
+ */
+public class GraphView extends View {
+
+    private static final String TAG = "GraphView";
+
+    private static final double DEFAULT_X_MIN = -10;
+    private static final double DEFAULT_X_MAX = 10;
+
+    private final Paint curvePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint axisPaint = new Paint();
+    private final Path path = new Path();
+
+    @Nullable
+    private GraphSampler sampler;
+    private double xMin = DEFAULT_X_MIN;
+    private double xMax = DEFAULT_X_MAX;
+    /**
+     * The last plotted curve, or {@code null} if there is none. Its points are values, so it is drawn in the current
+     * range until the new curve is plotted.
+     */
+    @Nullable
+    private GraphSampler.Curve curve;
+    /**
+     * Incremented when the curve must be plotted again, a plot of an older generation is discarded.
+     */
+    private int generation;
+    /**
+     * true while a curve is plotted in the background, newer plots wait for it instead of piling up.
+     */
+    private boolean plotting;
+
+    public GraphView(Context context) {
+        this(context, null);
+    }
+
+    public GraphView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        curvePaint.setColor(ContextCompat.getColor(context, R.color.secondaryColorLight));
+        curvePaint.setStyle(Paint.Style.STROKE);
+        curvePaint.setStrokeWidth(3 * getResources().getDisplayMetrics().density);
+        axisPaint.setColor(Color.GRAY);
+        axisPaint.setStrokeWidth(getResources().getDisplayMetrics().density);
+    }
+
+    /**
+     * @param sampler Function to draw, or {@code null} to only draw the axes.
+     */
+    public void setSampler(@Nullable GraphSampler sampler) {
+        this.sampler = sampler;
+        if (sampler == null) {
+            curve = null;
+        }
+        replot();
+    }
+
+    /**
+     * @param xMin Value at the left edge.
+     * @param xMax Value at the right edge.
+     * @throws IllegalArgumentException {@code xMin} is not less than {@code xMax}.
+     */
+    public void setRange(double xMin, double xMax) throws IllegalArgumentException {
+        if (!(xMin < xMax)) {
+            throw new IllegalArgumentException("xMin must be less than xMax");
+        }
+        this.xMin = xMin;
+        this.xMax = xMax;
+        replot();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        replot();
+    }
+
+    /**
+     * Plots the curve of the current sampler, range and size in the background, then redraws. Called on the main
+     * thread.
+     */
+    private void replot() {
+        generation++;
+        invalidate();
+        if (plotting) {
+            // plotted again when the current plot completes
+            return;
+        }
+        final GraphSampler sampler = this.sampler;
+        final int width = getWidth();
+        final int height = getHeight();
+        if (sampler == null || width == 0 || height == 0) {
+            return;
+        }
+        final int plotGeneration = generation;
+        final double xMin = this.xMin;
+        final double xMax = this.xMax;
+        final double yMax = height / 2d * (xMax - xMin) / width;
+        plotting = true;
+        CompletableFuture.supplyAsync(() -> sampler.plot(xMin, xMax, -yMax, yMax, width, height))
+                .whenComplete((curve, exception) -> post(() -> {
+                    plotting = false;
+                    if (exception != null) {
+                        Log.e(TAG, "Plot exception", exception);
+                    }
+                    if (plotGeneration != generation) {
+                        replot();
+                        return;
+                    }
+                    this.curve = curve;
+                    invalidate();
+                }));
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        final int width = getWidth();
+        final int height = getHeight();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        // pixels per unit, the same on both axes
+        final double scale = width / (xMax - xMin);
+        final float originX = (float) (-xMin * scale);
+        final float originY = height / 2f;
+        canvas.drawLine(0, originY, width, originY, axisPaint);
+        canvas.drawLine(originX, 0, originX, height, axisPaint);
+        final GraphSampler.Curve curve = this.curve;
+        if (sampler == null || curve == null) {
+            return;
+        }
+        path.rewind();
+        boolean drawing = false;
+        for (int i = 0; i < curve.size(); i++) {
+            if (Double.isNaN(curve.getY(i))) {
+                drawing = false;
+                continue;
+            }
+            final float x = (float) ((curve.getX(i) - xMin) * scale);
+            // limit far away points, so they are drawn as steep lines without overflowing a float
+            final float y = (float) Math.max(-height, Math.min(2 * height, originY - curve.getY(i) * scale));
+            if (drawing) {
+                path.lineTo(x, y);
+            } else {
+                path.moveTo(x, y);
+                drawing = true;
+            }
+        }
+        canvas.drawPath(path, curvePaint);
+    }
+}
@@ -0,0 +1,78 @@
+package com.bx.calculator.ui;
+
+import com.bx.calculator.R;
+import com.bx.calculator.calc.CFormat;
+import com.bx.calculator.calc.SweepTable;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import ch.obermuhlner.math.big.BigComplex;
+
+/**
+ * Shows the rows of a {@link SweepTable} loaded by {@link TableDataSource}: the value of the variable and the result,
+ * or an error if the row is undefined.
+ */
+public class TableAdapter extends PagedListAdapter<SweepTable.Row, TableAdapter.RowViewHolder> {
+
+    private static final DiffUtil.ItemCallback<SweepTable.Row> DIFF_CALLBACK = new DiffUtil.ItemCallback<SweepTable.Row>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SweepTable.Row oldItem, @NonNull SweepTable.Row newItem) {
+            return oldItem.getIndex() == newItem.getIndex();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SweepTable.Row oldItem, @NonNull SweepTable.Row newItem) {
+            // a new table is a new list, rows of the same table never change
+            return oldItem == newItem;
+        }
+    };
+
+    public TableAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
+    @NonNull
+    @Override
+    public RowViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        final View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_table_row, parent, false);
+        return new RowViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RowViewHolder holder, int position) {
+        final SweepTable.Row row = getItem(position);
+        if (row == null) {
+            // placeholder
+            holder.valueTextView.setText(null);
+            holder.answerTextView.setText(null);
+        } else {
+            holder.valueTextView.setText(row.getValue().toPlainString());
+            if (row.getResult() != null) {
+                final BigComplex answer = row.getResult().getAnswer();
+                holder.answerTextView.setText(CFormat.toConditionalString(answer, holder.itemView.getContext()));
+            } else {
+                holder.answerTextView.setText(R.string.table_error);
+            }
+        }
+    }
+
+    static class RowViewHolder extends RecyclerView.ViewHolder {
+
+        private final TextView valueTextView;
+        private final TextView answerTextView;
+
+        RowViewHolder(@NonNull View itemView) {
+            super(itemView);
+            valueTextView = itemView.findViewById(R.id.table_item_value);
+            answerTextView = itemView.findViewById(R.id.table_item_answer);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.bx.calculator.ui;
+
+import com.bx.calculator.calc.SweepTable;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.PagedList;
+import androidx.paging.PositionalDataSource;
+
+/**
+ * Loads the rows of a {@link SweepTable} a page at a time as a list is scrolled. The rows of a page are calculated in
+ * parallel on the fetch thread of the {@link PagedList}, and pages far from the visible rows are dropped by
+ * {@link #CONFIG}, so a table with many rows uses little memory.
+ */
+public class TableDataSource extends PositionalDataSource<SweepTable.Row> {
+
+    private static final int PAGE_SIZE = 50;
+    /**
+     * Pages with placeholders, so the list can be scrolled to any row, and at most four pages in memory.
+     */
+    public static final PagedList.Config CONFIG = new PagedList.Config.Builder()
+            .setPageSize(PAGE_SIZE)
+            .setInitialLoadSizeHint(2 * PAGE_SIZE)
+            .setPrefetchDistance(PAGE_SIZE)
+            .setMaxSize(4 * PAGE_SIZE)
+            .setEnablePlaceholders(true)
+            .build();
+
+    @NonNull
+    private final SweepTable table;
+
+    public TableDataSource(@NonNull SweepTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams params, @NonNull LoadInitialCallback<SweepTable.Row> callback) {
+        final int rowCount = table.getRowCount();
+        final int position = computeInitialLoadPosition(params, rowCount);
+        final int size = computeInitialLoadSize(params, position, rowCount);
+        callback.onResult(table.getRows(position, position + size), position, rowCount);
+    }
+
+    @Override
+    public void loadRange(@NonNull LoadRangeParams params, @NonNull LoadRangeCallback<SweepTable.Row> callback) {
+        final int to = Math.min(params.startPosition + params.loadSize, table.getRowCount());
+        callback.onResult(table.getRows(params.startPosition, to));
+    }
+
+    public static class Factory extends DataSource.Factory<Integer, SweepTable.Row> {
+
+        @NonNull
+        private final SweepTable table;
+
+        public Factory(@NonNull SweepTable table) {
+            this.table = table;
+        }
+
+        @NonNull
+        @Override
+        public DataSource<Integer, SweepTable.Row> create() {
+            return new TableDataSource(table);
+        }
+    }
+}
@@ -1,20 +1,42 @@
 package com.bx.calculator;
 
+import com.bx.calculator.calc.CBatchResult;
 import com.bx.calculator.calc.CExpression;
+import com.bx.calculator.calc.CNum;
 import com.bx.calculator.calc.CParams;
+import com.bx.calculator.calc.CResult;
+import com.bx.calculator.calc.CResultCache;
 import com.bx.calculator.calc.Calculate;
+import com.bx.calculator.calc.CancellationToken;
+import com.bx.calculator.calc.CompiledExpression;
 import com.bx.calculator.calc.CUnit;
+import com.bx.calculator.calc.GraphSampler;
+import com.bx.calculator.calc.SubresultCache;
+import com.bx.calculator.calc.SweepTable;
+import com.bx.calculator.calc.exception.CancelledException;
+import com.bx.calculator.calc.exception.OutOfRangeException;
 import com.bx.calculator.calc.exception.VariableException;
 import com.bx.calculator.calc.exception.SyntaxException;
 import com.bx.calculator.calc.math.AngleUnit;
 import com.bx.calculator.calc.math.Maffs;
+import com.bx.calculator.calc.math.MathConstants;
 import com.bx.calculator.calc.exception.UndefinedException;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
 import ch.obermuhlner.math.big.BigComplex;
+import ch.obermuhlner.math.big.BigComplexMath;
+import ch.obermuhlner.math.big.BigDecimalMath;
 
 import static org.junit.Assert.*;
 
@@ -196,6 +218,24 @@ public class ExampleUnitTest {
                 Calculate.calculate(new CExpression(CUnit.THREE, CUnit.EXP, CUnit.MINUS, CUnit.TWO), new CParams()).getAnswer());
     }
 
+    @Test
+    public void calcUnrecognizedUnit() {
+        try {
+            Calculate.calculateOperator(CUnit.SIN, BigComplex.ONE, BigComplex.ONE);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert true;
+        }
+        try {
+            Calculate.calculateFunction(CUnit.TIMES, BigComplex.ONE, AngleUnit.RAD);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert true;
+        }
+        assertEquals(BigComplex.valueOf(6), Calculate.calculateOperator(CUnit.TIMES, BigComplex.valueOf(2), BigComplex.valueOf(3)));
+        assertEquals(BigComplex.valueOf(6), Calculate.calculateFunction(CUnit.FACTORIAL, BigComplex.valueOf(3), AngleUnit.RAD));
+    }
+
     @Test
     public void calcTrigConversion() {
         assertEquals(BigComplex.valueOf(1),
@@ -205,6 +245,596 @@ public class ExampleUnitTest {
     }
 
 
+    // √2, sin 1, 16 and 100 digits
+    @Test
+    public void calcPrecision() {
+        final CExpression sqrt = new CExpression(CUnit.SQRT, CUnit.TWO);
+        final BigComplex low = Calculate.calculate(sqrt, new CParams(AngleUnit.RAD, null, 16)).getAnswer();
+        final BigComplex high = Calculate.calculate(sqrt, new CParams(AngleUnit.RAD, null, 100)).getAnswer();
+        assertEquals(16, low.re.precision());
+        assertEquals(100, high.re.precision());
+        assertEquals(BigDecimalMath.sqrt(new BigDecimal(2), new MathContext(100)), high.re);
+        final CExpression sin = new CExpression(CUnit.SIN, CUnit.ONE);
+        final MathContext mc = new MathContext(CParams.precisionForSigfig(10) - CParams.GUARD_DIGITS);
+        assertEquals(Calculate.calculate(sin, new CParams()).getAnswer().re.round(mc),
+                Calculate.calculate(sin, new CParams(AngleUnit.RAD, null, CParams.precisionForSigfig(10))).getAnswer().re.round(mc));
+    }
+
+
+    // ---------------- COMPILE ----------------------------------------------------------------------------------------------------------------------
+
+    // 2X+1
+    @Test
+    public void compileEvaluateMany() {
+        final CompiledExpression compiled = Calculate.compile(new CExpression(CUnit.TWO, CUnit.X, CUnit.PLUS, CUnit.ONE));
+        for (int x = -5; x <= 5; x++) {
+            final CParams params = new CParams(AngleUnit.RAD, Collections.singletonMap(CUnit.X, BigComplex.valueOf(x)));
+            assertEquals(BigComplex.valueOf(2 * x + 1), compiled.evaluate(params).getAnswer());
+        }
+        try {
+            compiled.evaluate(new CParams());
+            assert false;
+        } catch (VariableException e) {
+            assert true;
+        }
+    }
+
+    // 1+(
+    @Test
+    public void compileSyntax() {
+        try {
+            Calculate.compile(new CExpression(CUnit.ONE, CUnit.PLUS, CUnit.LEFT_BRACKET));
+            assert false;
+        } catch (SyntaxException e) {
+            assert true;
+        }
+    }
+
+    // 1+2×3−4÷2+...+1, 10000 and 80000 units
+    @Test
+    public void compileLongExpression() {
+        // every 10 units add 1 + 6 - 2
+        assertEquals(BigComplex.valueOf(5001), Calculate.calculate(repeatedExpression(10000), new CParams()).getAnswer());
+        assertEquals(BigComplex.valueOf(40001), Calculate.calculate(repeatedExpression(80000), new CParams()).getAnswer());
+    }
+
+    // 2+3×4, 0.1+0.2, sin π, √X, 10 significant figures
+    @Test
+    public void compileEvaluateFast() {
+        final CParams params = new CParams();
+        assertEquals(BigComplex.valueOf(14), Calculate.compile(new CExpression(CUnit.TWO, CUnit.PLUS, CUnit.THREE, CUnit.TIMES, CUnit.FOUR))
+                .evaluateFast(params, 10).getAnswer());
+        assertEquals(BigComplex.valueOf(new BigDecimal("0.3")), Calculate.compile(new CExpression(CUnit.ZERO, CUnit.POINT, CUnit.ONE, CUnit.PLUS,
+                CUnit.ZERO, CUnit.POINT, CUnit.TWO)).evaluateFast(params, 10).getAnswer());
+        // cancellation, falls back
+        final CompiledExpression sinPi = Calculate.compile(new CExpression(CUnit.SIN, CNum.PI));
+        assertEquals(sinPi.evaluate(params).getAnswer(), sinPi.evaluateFast(params, 10).getAnswer());
+        final CompiledExpression sqrtX = Calculate.compile(new CExpression(CUnit.SQRT, CUnit.X));
+        final MathContext mc = new MathContext(10);
+        for (int x = -20; x <= 20; x++) {
+            final CParams xParams = new CParams(AngleUnit.RAD, Collections.singletonMap(CUnit.X, BigComplex.valueOf(x)));
+            final BigComplex expected = sqrtX.evaluate(xParams).getAnswer();
+            final BigComplex actual = sqrtX.evaluateFast(xParams, 10).getAnswer();
+            assertEquals(0, expected.re.round(mc).compareTo(actual.re.round(mc)));
+            assertEquals(0, expected.im.round(mc).compareTo(actual.im.round(mc)));
+        }
+    }
+
+    @Test
+    public void compileEvaluateGuaranteed() {
+        final CParams params = new CParams();
+        final CResult exact = Calculate.compile(new CExpression(CUnit.TWO, CUnit.PLUS, CUnit.THREE)).evaluateGuaranteed(params, 10);
+        assertEquals(BigComplex.valueOf(5), exact.getAnswer());
+        assertEquals(CResult.EXACT_DIGITS, exact.getGuaranteedDigits());
+        // (1 + 1ᴇ-70) - 1 is rational, so it is exact with the default precision
+        final CompiledExpression cancellation = Calculate.compile(new CExpression(CUnit.LEFT_BRACKET, CUnit.ONE, CUnit.PLUS, CUnit.ONE,
+                CUnit.EXP, CUnit.MINUS, CUnit.SEVEN, CUnit.ZERO, CUnit.RIGHT_BRACKET, CUnit.MINUS, CUnit.ONE));
+        assertEquals(0, new BigDecimal("1E-70").compareTo(cancellation.evaluate(params).getAnswer().re));
+        assertEquals(0, new BigDecimal("1E-70").compareTo(cancellation.evaluateGuaranteed(params, 10).getAnswer().re));
+        // sin(1ᴇ30) loses 30 digits
+        final CResult sin = Calculate.compile(new CExpression(CUnit.SIN, CUnit.LEFT_BRACKET, CUnit.ONE, CUnit.EXP, CUnit.THREE,
+                CUnit.ZERO, CUnit.RIGHT_BRACKET)).evaluateGuaranteed(params, 10);
+        assertTrue(sin.getGuaranteedDigits() >= 10);
+        assertEquals(0, new BigDecimal("-0.09011690191").compareTo(sin.getAnswer().re.round(new MathContext(10))));
+        final CResult sqrt = Calculate.compile(new CExpression(CUnit.SQRT, CUnit.TWO)).evaluateGuaranteed(params, 30);
+        assertTrue(sqrt.getGuaranteedDigits() >= 30);
+        assertEquals(0, BigDecimalMath.sqrt(BigDecimal.valueOf(2), new MathContext(30))
+                .compareTo(sqrt.getAnswer().re.round(new MathContext(30))));
+    }
+
+    @Test
+    public void compileResultCache() {
+        final CResultCache cache = new CResultCache();
+        final CExpression expression = new CExpression(CUnit.SQRT, CUnit.X, CUnit.PLUS, CUnit.ONE);
+        final Map<CUnit, BigComplex> variables = new HashMap<>();
+        variables.put(CUnit.X, BigComplex.valueOf(2));
+        final CResult first = cache.calculate(expression, new CParams(AngleUnit.RAD, variables));
+        assertEquals(1, cache.getMissCount());
+        // unused variables are not part of the key
+        variables.put(CUnit.ANS, BigComplex.valueOf(5));
+        final CParams params = new CParams(AngleUnit.RAD, variables);
+        final CResult second = cache.calculate(new CExpression(expression), params);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(first.getAnswer(), second.getAnswer());
+        assertEquals(params, second.getParams());
+        assertEquals(params.hashCode(), new CParams(AngleUnit.RAD, variables).hashCode());
+        variables.put(CUnit.X, BigComplex.valueOf(3));
+        cache.calculate(expression, new CParams(AngleUnit.RAD, variables));
+        cache.calculate(expression, new CParams(AngleUnit.RAD, variables, 16));
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.size());
+        // least recently used results are removed
+        final CResultCache small = new CResultCache(100);
+        for (int i = 0; i < 10; i++) {
+            small.calculate(new CExpression(CUnit.SQRT, CUnit.TWO, CUnit.PLUS, CUnit.ONE), new CParams(AngleUnit.RAD, null, 20 + i));
+        }
+        assertTrue(small.getWeight() <= 100);
+        assertTrue(small.size() < 10);
+        small.calculate(new CExpression(CUnit.SQRT, CUnit.TWO, CUnit.PLUS, CUnit.ONE), new CParams(AngleUnit.RAD, null, 29));
+        assertEquals(1, small.getHitCount());
+    }
+
+    @Test
+    public void compileSubresultCache() {
+        // (sin 1 + √1) + (sin 2 + √2) + ... + (sin 9 + √9)
+        final List<CUnit> units = new ArrayList<>();
+        final CUnit[] digits = {CUnit.ONE, CUnit.TWO, CUnit.THREE, CUnit.FOUR, CUnit.FIVE, CUnit.SIX, CUnit.SEVEN, CUnit.EIGHT, CUnit.NINE};
+        for (CUnit digit: digits) {
+            if (!units.isEmpty()) {
+                units.add(CUnit.PLUS);
+            }
+            units.addAll(Arrays.asList(CUnit.LEFT_BRACKET, CUnit.SIN, digit, CUnit.PLUS, CUnit.SQRT, digit, CUnit.RIGHT_BRACKET));
+        }
+        final SubresultCache cache = new SubresultCache();
+        final CParams params = new CParams();
+        Calculate.calculate(new CExpression(units), params, cache);
+        final long misses = cache.getMissCount();
+        // append ×2, only the new operations are calculated
+        units.addAll(Arrays.asList(CUnit.TIMES, CUnit.TWO));
+        final CExpression edited = new CExpression(units);
+        assertEquals(Calculate.calculate(edited, params).getAnswer(), Calculate.calculate(edited, params, cache).getAnswer());
+        assertTrue(cache.getMissCount() - misses <= 3);
+        assertTrue(cache.getHitCount() >= digits.length);
+        // a different angle unit or variable value is not reused
+        final CExpression sinX = new CExpression(CUnit.SIN, CUnit.X);
+        final CParams x1 = new CParams(AngleUnit.RAD, Collections.singletonMap(CUnit.X, BigComplex.ONE));
+        final CParams x2 = new CParams(AngleUnit.RAD, Collections.singletonMap(CUnit.X, BigComplex.valueOf(2)));
+        final CParams x1Deg = new CParams(AngleUnit.DEG, Collections.singletonMap(CUnit.X, BigComplex.ONE));
+        assertEquals(Calculate.calculate(sinX, x1).getAnswer(), Calculate.calculate(sinX, x1, cache).getAnswer());
+        assertEquals(Calculate.calculate(sinX, x2).getAnswer(), Calculate.calculate(sinX, x2, cache).getAnswer());
+        assertEquals(Calculate.calculate(sinX, x1Deg).getAnswer(), Calculate.calculate(sinX, x1Deg, cache).getAnswer());
+    }
+
+    @Test
+    public void compileCancellation() {
+        final CompiledExpression compiled = Calculate.compile(new CExpression(CUnit.ONE, CUnit.PLUS, CUnit.TWO));
+        final CParams params = new CParams();
+        assertEquals(BigComplex.valueOf(3), compiled.evaluate(params, null, new CancellationToken()).getAnswer());
+        final CancellationToken cancelled = new CancellationToken();
+        cancelled.cancel();
+        try {
+            compiled.evaluate(params, null, cancelled);
+            fail();
+        } catch (CancelledException e) {
+            assertFalse(e.isTimedOut());
+        }
+        // the deadline has passed before the calculation starts, so it times out however fast it is
+        final CExpression factorial = new CExpression(CUnit.THREE, CUnit.TWO, CUnit.FOUR, CUnit.EIGHT, CUnit.FACTORIAL);
+        try {
+            Calculate.calculate(factorial, params, null, CancellationToken.withTimeout(0, TimeUnit.MILLISECONDS));
+            fail();
+        } catch (CancelledException e) {
+            assertTrue(e.isTimedOut());
+        }
+    }
+
+    @Test
+    public void compileCalculateAll() {
+        final List<CExpression> expressions = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            expressions.add(repeatedExpression(i * 3));
+        }
+        expressions.set(5, new CExpression(CUnit.ONE, CUnit.DIVIDE, CUnit.ZERO));
+        expressions.set(17, new CExpression(CUnit.ONE, CUnit.PLUS));
+        final CParams params = new CParams();
+        final List<CBatchResult> results = Calculate.calculateAll(expressions, params);
+        assertEquals(expressions.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            final CBatchResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            if (i == 5) {
+                assertTrue(result.getException() instanceof UndefinedException);
+            } else if (i == 17) {
+                assertTrue(result.getException() instanceof SyntaxException);
+            } else {
+                assertTrue(result.isSuccessful());
+                assertEquals(Calculate.calculate(expressions.get(i), params).getAnswer(), result.getResult().getAnswer());
+            }
+        }
+        final List<CBatchResult> streamed = new ArrayList<>();
+        Calculate.calculateStream(expressions, params).forEachOrdered(streamed::add);
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, streamed.get(i).getIndex());
+            assertEquals(results.get(i).isSuccessful(), streamed.get(i).isSuccessful());
+        }
+    }
+
+    @Test
+    public void compileGraphSampler() {
+        final CParams params = new CParams();
+        final GraphSampler sin = new GraphSampler(Calculate.compile(new CExpression(CUnit.SIN, CUnit.X)), params, CUnit.X);
+        final double[] xs = new double[2001];
+        final double[] ys = new double[xs.length];
+        sin.sample(-10, 10, xs, ys);
+        assertEquals(-10, xs[0], 0);
+        assertEquals(10, xs[xs.length - 1], 0);
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals(Math.sin(xs[i]), ys[i], 1e-12);
+        }
+        // undefined points are NaN
+        final GraphSampler inverse = new GraphSampler(Calculate.compile(new CExpression(CUnit.ONE, CUnit.DIVIDE, CUnit.X)), params, CUnit.X);
+        assertTrue(Double.isNaN(inverse.evaluate(0)));
+        assertEquals(0.5, inverse.evaluate(2), 0);
+        final GraphSampler sqrt = new GraphSampler(Calculate.compile(new CExpression(CUnit.SQRT, CUnit.X)), params, CUnit.X);
+        sqrt.sample(-1, 1, xs, ys);
+        assertTrue(Double.isNaN(ys[0]));
+        assertEquals(1, ys[xs.length - 1], 0);
+    }
+
+    @Test
+    public void compileGraphPlot() {
+        final CParams params = new CParams();
+        final GraphSampler line = new GraphSampler(Calculate.compile(new CExpression(CUnit.X)), params, CUnit.X);
+        assertTrue(line.plot(-10, 10, -5, 5, 1000, 500).size() <= 1000 / 4 + 1);
+        // no line crosses the poles of tan X and 1/X or the jump of arg X
+        final CExpression[] expressions = {new CExpression(CUnit.TAN, CUnit.X),
+                new CExpression(CUnit.ONE, CUnit.DIVIDE, CUnit.X), new CExpression(CUnit.ARG, CUnit.X)};
+        final double[][] discontinuities = {{-Math.PI / 2, Math.PI / 2}, {0}, {0}};
+        for (int e = 0; e < expressions.length; e++) {
+            final GraphSampler sampler = new GraphSampler(Calculate.compile(expressions[e]), params, CUnit.X);
+            final GraphSampler.Curve curve = sampler.plot(-3.05, 3, -5, 5, 1000, 500);
+            for (int i = 1; i < curve.size(); i++) {
+                assertTrue(curve.getX(i - 1) < curve.getX(i));
+                if (Double.isNaN(curve.getY(i - 1)) || Double.isNaN(curve.getY(i))) {
+                    continue;
+                }
+                for (double d: discontinuities[e]) {
+                    assertFalse(curve.getX(i - 1) < d && d < curve.getX(i));
+                }
+            }
+        }
+        // the lines are within half a pixel of sin X
+        final GraphSampler sin = new GraphSampler(Calculate.compile(new CExpression(CUnit.SIN, CUnit.X)), params, CUnit.X);
+        final GraphSampler.Curve curve = sin.plot(-10, 10, -2, 2, 1000, 200);
+        assertTrue(curve.size() < 1000);
+        for (int i = 1; i < curve.size(); i++) {
+            final double x = (curve.getX(i - 1) + curve.getX(i)) / 2;
+            final double y = (curve.getY(i - 1) + curve.getY(i)) / 2;
+            assertEquals(Math.sin(x), y, 1.0 / 50);
+        }
+    }
+
+    @Test
+    public void compileSweepTable() throws Exception {
+        final CParams params = new CParams();
+        // 1/(X-1) from -1 in steps of 0.1, undefined at X = 1
+        final CompiledExpression expression = Calculate.compile(new CExpression(CUnit.ONE, CUnit.DIVIDE,
+                CUnit.LEFT_BRACKET, CUnit.X, CUnit.MINUS, CUnit.ONE, CUnit.RIGHT_BRACKET));
+        final SweepTable table = new SweepTable(expression, params, CUnit.X, new BigDecimal("-1"),
+                new BigDecimal("0.1"), 1000);
+        assertEquals(0, new BigDecimal("98.9").compareTo(table.getValue(999)));
+        final List<SweepTable.Row> rows = table.getRows(10, 40);
+        assertEquals(30, rows.size());
+        for (SweepTable.Row row: rows) {
+            if (row.getIndex() == 20) {
+                assertTrue(row.getException() instanceof UndefinedException);
+                continue;
+            }
+            final BigComplex expected = expression.evaluate(params.withValue(CUnit.X,
+                    BigComplex.valueOf(table.getValue(row.getIndex())))).getAnswer();
+            assertEquals(expected, row.getResult().getAnswer());
+        }
+        final StringBuilder csv = new StringBuilder();
+        table.export(csv, 10, null);
+        final String[] lines = csv.toString().split("\n");
+        assertEquals(1001, lines.length);
+        assertEquals("0.9,-10,0,", lines[20]);
+        assertEquals("1.0,,,Undefined", lines[21]);
+    }
+
+    @Test
+    public void compileOptimizer() {
+        final Map<CUnit, BigComplex> variables = new HashMap<>();
+        variables.put(CUnit.X, BigComplex.valueOf(new BigDecimal("6")));
+        final CParams params = new CParams(AngleUnit.RAD, variables);
+        // dividing by a constant multiplies by its reciprocal, the result is still exact
+        assertEquals(BigComplex.valueOf(2), Calculate.calculate(new CExpression(CUnit.LEFT_BRACKET, CUnit.X,
+                CUnit.DIVIDE, CUnit.THREE, CUnit.RIGHT_BRACKET, CUnit.FACTORIAL), params).getAnswer());
+        // polynomial: 3X^2 - 2X + 1 and X^2/3 - X^2/3
+        assertEquals(BigComplex.valueOf(97), Calculate.calculate(new CExpression(CUnit.THREE, CUnit.X, CUnit.POWER,
+                CUnit.TWO, CUnit.MINUS, CUnit.TWO, CUnit.X, CUnit.PLUS, CUnit.ONE), params).getAnswer());
+        assertEquals(BigComplex.ZERO, Calculate.calculate(new CExpression(CUnit.X, CUnit.SQUARED, CUnit.DIVIDE,
+                CUnit.THREE, CUnit.MINUS, CUnit.X, CUnit.SQUARED, CUnit.DIVIDE, CUnit.THREE), params).getAnswer());
+        // the terms of a polynomial cancel, but X^2 is still out of range
+        try {
+            Calculate.calculate(new CExpression(CUnit.X, CUnit.SQUARED, CUnit.MINUS, CUnit.X, CUnit.SQUARED),
+                    new CParams(AngleUnit.RAD, Collections.singletonMap(CUnit.X, BigComplex.valueOf(new BigDecimal("1e6000")))));
+            fail();
+        } catch (OutOfRangeException e) {
+            // expected
+        }
+        // small integer powers
+        assertEquals(BigComplex.valueOf(216), Calculate.calculate(new CExpression(CUnit.X, CUnit.CUBED), params)
+                .getAnswer());
+        final CExpression inverseSquare = new CExpression(CUnit.X, CUnit.POWER, CUnit.MINUS, CUnit.TWO);
+        assertEquals(0, BigDecimal.ONE.divide(new BigDecimal(36), Maffs.MC)
+                .compareTo(Calculate.calculate(inverseSquare, params).getAnswer().re));
+        try {
+            Calculate.calculate(inverseSquare, new CParams(AngleUnit.RAD,
+                    Collections.singletonMap(CUnit.X, BigComplex.ZERO)));
+            fail();
+        } catch (UndefinedException e) {
+            // expected
+        }
+        // a folded constant is calculated again with a different precision
+        final CompiledExpression compiled = Calculate.compile(new CExpression(CUnit.TWO, CNum.PI, CUnit.X));
+        final BigComplex low = compiled.evaluate(params.withPrecision(20)).getAnswer();
+        final BigComplex high = compiled.evaluate(params).getAnswer();
+        assertEquals(20, low.re.precision());
+        final MathContext mc = new MathContext(60);
+        assertEquals(0, BigDecimalMath.pi(Maffs.MC).multiply(new BigDecimal(12)).round(mc).compareTo(high.re.round(mc)));
+        assertEquals(compiled.evaluateFast(params, 10).getAnswer(), compiled.evaluateGuaranteed(params, 10).getAnswer());
+    }
+
+    @Test
+    public void maffsConstants() {
+        final MathContext low = new MathContext(20);
+        final MathContext high = new MathContext(200);
+        assertEquals(BigDecimalMath.pi(low), MathConstants.pi(low));
+        assertEquals(BigDecimalMath.pi(high), MathConstants.pi(high));
+        // rounded from the value with a higher precision
+        assertEquals(BigDecimalMath.pi(low), MathConstants.pi(low));
+        assertEquals(BigDecimalMath.pi(Maffs.MC), Maffs.PI);
+        assertEquals(BigDecimalMath.e(Maffs.MC), Maffs.E);
+        assertEquals(BigDecimalMath.log(BigDecimal.TEN, high), MathConstants.ln10(high));
+        assertEquals(new BigDecimal("0.57721566490153286060651209008240243104215933593992359880576723488486772677766467"
+                + "09369470632917467495"), MathConstants.eulerGamma(new MathContext(100)));
+        assertEquals(Maffs.PI, Maffs.toRad(new BigDecimal(180)).round(Maffs.MC));
+        assertEquals(0, new BigDecimal(180).compareTo(Maffs.toDeg(Maffs.PI).round(Maffs.MC)));
+        // log2(-4) = 2 + iπ/ln 2
+        final BigComplex log2 = Maffs.log2(BigComplex.valueOf(-4), low);
+        assertEquals(0, new BigDecimal(2).compareTo(log2.re));
+        assertEquals(BigDecimalMath.pi(high).divide(BigDecimalMath.log(new BigDecimal(2), high), low), log2.im);
+    }
+
+    @Test
+    public void maffsPermutation() {
+        assertEquals(new BigDecimal("166666166667000000"),
+                Maffs.combination(new BigDecimal(1000000), new BigDecimal(3)));
+        assertEquals(new BigDecimal("166666166667000000"),
+                Maffs.combination(new BigDecimal(1000000), new BigDecimal(999997)));
+        assertEquals(new BigDecimal("137846528820"), Maffs.combination(new BigDecimal(40), new BigDecimal(20)));
+        assertEquals(new BigDecimal("999999999999999999999999999999000000000000000000000000000000"),
+                Maffs.permutation(new BigDecimal("1e30"), new BigDecimal(2), MathContext.UNLIMITED));
+        assertEquals(BigDecimal.ONE, Maffs.permutation(new BigDecimal(7), BigDecimal.ZERO));
+        assertEquals(0, new BigDecimal(2432902008176640000L).compareTo(Maffs.factorial(new BigDecimal(20))));
+        assertEquals(0, new BigDecimal(51090942171709440000.0).compareTo(Maffs.factorial(new BigDecimal(21))));
+        // out of range results are rejected before they are calculated
+        for (CExpression expression: Arrays.asList(
+                new CExpression(CUnit.THREE, CUnit.TWO, CUnit.FOUR, CUnit.NINE, CUnit.FACTORIAL),
+                new CExpression(CUnit.ONE, CUnit.EXP, CUnit.NINE, CUnit.FACTORIAL),
+                new CExpression(CUnit.ONE, CUnit.EXP, CUnit.NINE, CUnit.NPR, CUnit.FIVE, CUnit.ZERO, CUnit.ZERO,
+                        CUnit.ZERO),
+                new CExpression(CUnit.ONE, CUnit.EXP, CUnit.NINE, CUnit.NCR, CUnit.FIVE, CUnit.ZERO, CUnit.ZERO,
+                        CUnit.ZERO, CUnit.ZERO, CUnit.ZERO, CUnit.ZERO, CUnit.ZERO))) {
+            final long start = System.nanoTime();
+            try {
+                Calculate.calculate(expression, new CParams());
+                fail();
+            } catch (OutOfRangeException e) {
+                assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+        assertEquals(0, new BigDecimal("4.0238726007709377354370243392300398571937486421071463254379991e2567")
+                .compareTo(Calculate.calculate(new CExpression(CUnit.ONE, CUnit.ZERO, CUnit.ZERO, CUnit.ZERO,
+                        CUnit.FACTORIAL), new CParams()).getAnswer().re.round(new MathContext(62))));
+    }
+
+    @Test
+    public void maffsGamma() {
+        final MathContext mc = new MathContext(50);
+        final MathContext compareMc = new MathContext(48);
+        final BigDecimal sqrtPi = BigDecimalMath.sqrt(BigDecimalMath.pi(mc), mc);
+        // 0.5! = sqrt(π) / 2, (-0.5)! = sqrt(π), (-1.5)! = -2 sqrt(π)
+        assertEquals(sqrtPi.divide(new BigDecimal(2), compareMc),
+                Maffs.factorial(new BigDecimal("0.5"), mc).round(compareMc));
+        assertEquals(sqrtPi.round(compareMc), Maffs.factorial(new BigDecimal("-0.5"), mc).round(compareMc));
+        assertEquals(sqrtPi.multiply(new BigDecimal(-2), compareMc),
+                Maffs.factorial(new BigDecimal("-1.5"), mc).round(compareMc));
+        // i! (-i)! = π / sinh(π)
+        final BigComplex product = Maffs.factorial(BigComplex.I, mc).multiply(Maffs.factorial(BigComplex.I.negate(), mc));
+        final BigDecimal expected = BigDecimalMath.pi(mc).divide(BigDecimalMath.sinh(BigDecimalMath.pi(mc), mc), mc);
+        assertEquals(expected.round(compareMc), product.re.round(compareMc));
+        assertTrue(product.im.abs().compareTo(new BigDecimal("1e-48")) < 0);
+        // ln Γ(101) = ln 100!
+        assertEquals(BigDecimalMath.log(BigDecimalMath.factorial(100), mc).round(compareMc),
+                Maffs.logGamma(BigComplex.valueOf(101), mc).re.round(compareMc));
+        try {
+            Maffs.gamma(BigComplex.valueOf(-3), mc);
+            fail();
+        } catch (UndefinedException e) {
+            // expected
+        }
+        assertEquals(BigComplex.valueOf(24), Maffs.gamma(BigComplex.valueOf(5), mc));
+    }
+
+    @Test
+    public void maffsTrigExact() {
+        assertEquals(BigComplex.valueOf(new BigDecimal("0.5")), Maffs.sin(BigComplex.valueOf(30), AngleUnit.DEG));
+        assertEquals(BigComplex.valueOf(new BigDecimal("-0.5")), Maffs.cos(BigComplex.valueOf(-240), AngleUnit.DEG));
+        assertEquals(BigComplex.ZERO, Maffs.sin(BigComplex.valueOf(720), AngleUnit.DEG));
+        assertEquals(BigComplex.ONE.negate(), Maffs.tan(BigComplex.valueOf(135), AngleUnit.DEG));
+        assertEquals(0, BigDecimal.ZERO.compareTo(Maffs.cot(BigComplex.valueOf(90), AngleUnit.DEG).re));
+        try {
+            Maffs.tan(BigComplex.valueOf(270), AngleUnit.DEG);
+            fail();
+        } catch (UndefinedException e) {
+            // expected
+        }
+        // sin 18° = (sqrt 5 - 1) / 4
+        final BigDecimal sqrt5 = BigDecimalMath.sqrt(new BigDecimal(5), new MathContext(70));
+        assertEquals(sqrt5.subtract(BigDecimal.ONE).divide(new BigDecimal(4), Maffs.MC),
+                Maffs.sin(BigComplex.valueOf(18), AngleUnit.DEG).re);
+        // 10^40 = 280 (mod 360)
+        assertEquals(Maffs.sin(BigComplex.valueOf(280), AngleUnit.DEG),
+                Maffs.sin(BigComplex.valueOf(new BigDecimal("1e40")), AngleUnit.DEG));
+        // huge angles in radians are reduced with enough digits of π
+        assertEquals(new BigDecimal("-0.8522008497671888017727058937530293682618"),
+                Maffs.sin(BigComplex.valueOf(new BigDecimal("1e22"))).re.round(new MathContext(40)));
+    }
+
+    @Test
+    public void maffsFusedKernels() {
+        final MathContext mc = new MathContext(48);
+        final MathContext high = new MathContext(100);
+        final BigComplex z = BigComplex.valueOf(new BigDecimal("1.25"), new BigDecimal("-0.75"));
+        assertEquals(BigComplexMath.sin(z, high).round(mc), Maffs.sin(z).round(mc));
+        assertEquals(BigComplexMath.cos(z, high).divide(BigComplexMath.sin(z, high), high).round(mc),
+                Maffs.cot(z, AngleUnit.RAD).round(mc));
+        final BigComplex e = BigComplexMath.exp(z, high);
+        final BigComplex reciprocal = e.reciprocal(high);
+        assertEquals(e.subtract(reciprocal).divide(e.add(reciprocal), high).round(mc), Maffs.tanh(z).round(mc));
+        // tan(x + iy) approaches i for large y
+        final BigComplex tan = Maffs.tan(BigComplex.valueOf(new BigDecimal("0.5"), new BigDecimal(300)));
+        assertEquals(0, BigDecimal.ONE.compareTo(tan.im));
+        assertTrue(tan.re.abs().compareTo(new BigDecimal("1e-200")) < 0);
+        // small arguments do not lose digits to cancellation
+        assertEquals(new BigDecimal("1.000000000000000000000000000000000000000000000000000000000000167E-30"),
+                Maffs.sinh(BigComplex.valueOf(new BigDecimal("1e-30"))).re);
+        // sin(52π) with 64 digits of π is tiny, and still has all its digits
+        final BigDecimal x = new BigDecimal(52).multiply(Maffs.PI);
+        assertEquals(BigDecimal.ONE.divide(BigDecimalMath.sin(x, new MathContext(300)), mc),
+                Maffs.csc(BigComplex.valueOf(x)).re.round(mc));
+    }
+
+    @Test
+    public void calcRealPath() {
+        // real arguments stay real, without a rounding error in the imaginary part
+        final BigComplex atan = Calculate.calculateFunction(CUnit.ATAN, BigComplex.valueOf(5), AngleUnit.RAD);
+        assertEquals(0, atan.im.signum());
+        assertEquals(BigDecimalMath.atan(new BigDecimal(5), Maffs.MC).stripTrailingZeros(), atan.re);
+        assertEquals(BigComplex.valueOf(new BigDecimal("0.5")),
+                Calculate.calculateFunction(CUnit.COS, BigComplex.valueOf(60), AngleUnit.DEG));
+        assertEquals(BigDecimalMath.acos(new BigDecimal("0.3"), Maffs.MC).stripTrailingZeros(),
+                Calculate.calculateFunction(CUnit.ACOS, BigComplex.valueOf(new BigDecimal("0.3")), AngleUnit.RAD).re);
+        assertEquals(BigComplex.valueOf(-8),
+                Calculate.calculateOperator(CUnit.POWER, BigComplex.valueOf(-2), BigComplex.valueOf(3)));
+        // complex results
+        assertEquals(BigComplex.valueOf(0, 2), Calculate.calculateFunction(CUnit.SQRT, BigComplex.valueOf(-4), AngleUnit.RAD));
+        assertNotEquals(0, Calculate.calculateFunction(CUnit.ASIN, BigComplex.valueOf(2), AngleUnit.RAD).im.signum());
+        assertNotEquals(0, Calculate.calculateFunction(CUnit.LOG, BigComplex.valueOf(-1), AngleUnit.RAD).im.signum());
+        assertNotEquals(0, Calculate.calculateOperator(CUnit.POWER, BigComplex.valueOf(-8),
+                BigComplex.valueOf(new BigDecimal("0.5"))).im.signum());
+    }
+
+    @Test
+    public void calcRealInverseTrig() {
+        // big arguments use atan x = π/2 - atan(1/x)
+        final long start = System.nanoTime();
+        final BigComplex huge = Calculate.calculateFunction(CUnit.ATAN, BigComplex.valueOf(new BigDecimal("1e3000")), AngleUnit.RAD);
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+        assertEquals(Maffs.PI.multiply(Maffs.HALF).stripTrailingZeros(), huge.re);
+        assertEquals(BigDecimalMath.atan(new BigDecimal("-7.5"), Maffs.MC).stripTrailingZeros(),
+                Calculate.calculateFunction(CUnit.ATAN, BigComplex.valueOf(new BigDecimal("-7.5")), AngleUnit.RAD).re);
+        assertEquals(BigComplex.valueOf(-90),
+                Calculate.calculateFunction(CUnit.ATAN, BigComplex.valueOf(new BigDecimal("-1e3000")), AngleUnit.DEG));
+        // exact special angles in degrees, so round trips use the exact tables
+        assertEquals(BigComplex.valueOf(120), Calculate.calculateFunction(CUnit.ACOS, BigComplex.valueOf(new BigDecimal("-0.5")), AngleUnit.DEG));
+        assertEquals(BigComplex.valueOf(45), Calculate.calculateFunction(CUnit.ATAN, BigComplex.ONE, AngleUnit.DEG));
+        final BigComplex acos0 = Calculate.calculateFunction(CUnit.ACOS, BigComplex.ZERO, AngleUnit.DEG);
+        assertTrue(Maffs.isZero(Calculate.calculateFunction(CUnit.COS, acos0, AngleUnit.DEG)));
+        try {
+            Calculate.calculateFunction(CUnit.TAN, Calculate.calculateFunction(CUnit.ASIN, BigComplex.ONE, AngleUnit.DEG), AngleUnit.DEG);
+            assert false;
+        } catch (UndefinedException e) {
+            assert true;
+        }
+    }
+
+    @Test
+    public void compileRational() {
+        final CParams params = new CParams();
+        // 1÷3×3 and 0.1×3-0.3 are exact, not rounded at each step
+        assertEquals(BigComplex.ONE, Calculate.compile(new CExpression(CUnit.ONE, CUnit.DIVIDE, CUnit.THREE, CUnit.TIMES, CUnit.THREE))
+                .evaluate(params).getAnswer());
+        assertTrue(Maffs.isZero(Calculate.compile(new CExpression(CUnit.ZERO, CUnit.POINT, CUnit.ONE, CUnit.TIMES, CUnit.THREE,
+                CUnit.MINUS, CUnit.ZERO, CUnit.POINT, CUnit.THREE)).evaluate(params).getAnswer()));
+        // (X÷7)^-2×X² with a rational and a complex X
+        final CompiledExpression powers = Calculate.compile(new CExpression(CUnit.LEFT_BRACKET, CUnit.X, CUnit.DIVIDE, CUnit.SEVEN,
+                CUnit.RIGHT_BRACKET, CUnit.POWER, CUnit.MINUS, CUnit.TWO, CUnit.TIMES, CUnit.X, CUnit.SQUARED));
+        assertEquals(BigComplex.valueOf(49), powers.evaluate(
+                new CParams(AngleUnit.RAD, Collections.singletonMap(CUnit.X, BigComplex.valueOf(new BigDecimal("0.3"))))).getAnswer());
+        assertEquals(0, BigDecimal.valueOf(49).compareTo(powers.evaluate(
+                new CParams(AngleUnit.RAD, Collections.singletonMap(CUnit.X, BigComplex.I))).getAnswer().re.round(new MathContext(30))));
+        // still undefined
+        try {
+            Calculate.compile(new CExpression(CUnit.ONE, CUnit.DIVIDE, CUnit.LEFT_BRACKET, CUnit.THREE, CUnit.MINUS, CUnit.THREE,
+                    CUnit.RIGHT_BRACKET)).evaluate(params);
+            assert false;
+        } catch (UndefinedException e) {
+            assert true;
+        }
+    }
+
+    @Test
+    public void maffsIntegerPowers() {
+        // exact while the power has few digits
+        assertEquals(BigComplex.valueOf(-1024), Maffs.pow(BigComplex.valueOf(1, 1), BigComplex.valueOf(20)));
+        assertEquals(BigComplex.valueOf(BigDecimal.ZERO, new BigDecimal("-0.5")),
+                Maffs.pow(BigComplex.valueOf(1, 1), BigComplex.valueOf(-2)));
+        assertEquals(new BigDecimal("0.125"), Maffs.pow(new BigDecimal(2), -3, Maffs.MC));
+        // rounded squares have enough digits
+        final MathContext mc = new MathContext(60);
+        final BigComplex x = BigComplex.valueOf(new BigDecimal("1.1"), new BigDecimal("0.3"));
+        final BigComplex expected = BigComplexMath.pow(x, BigDecimal.valueOf(777), new MathContext(120)).round(mc);
+        final BigComplex actual = Maffs.pow(x, BigComplex.valueOf(777)).round(mc);
+        assertEquals(0, expected.re.compareTo(actual.re));
+        assertEquals(0, expected.im.compareTo(actual.im));
+        // huge exponents are out of range before they are calculated
+        try {
+            Calculate.calculateOperator(CUnit.POWER, BigComplex.valueOf(1, 1), BigComplex.valueOf(1000000000));
+            assert false;
+        } catch (OutOfRangeException e) {
+            assert true;
+        }
+        try {
+            Calculate.calculateOperator(CUnit.POWER, BigComplex.valueOf(new BigDecimal("0.5")), BigComplex.valueOf(100000));
+            assert false;
+        } catch (OutOfRangeException e) {
+            assert true;
+        }
+    }
+
+    @Test
+    public void unitPlainDisplayLength() {
+        // units without markup are measured without parsing HTML
+        assertEquals(3, CUnit.SIN.length());
+        assertEquals(1, CUnit.MINUS.length());
+        assertEquals(1, CNum.PI.length());
+        assertEquals("sin<sup><small>-1</small></sup>", CUnit.ASIN.toString());
+    }
+
+    private static CExpression repeatedExpression(int size) {
+        final CUnit[] pattern = new CUnit[] {CUnit.ONE, CUnit.PLUS, CUnit.TWO, CUnit.TIMES, CUnit.THREE, CUnit.MINUS,
+                CUnit.FOUR, CUnit.DIVIDE, CUnit.TWO, CUnit.PLUS};
+        final CUnit[] units = new CUnit[size + 1];
+        for (int i = 0; i < size; i++) {
+            units[i] = pattern[i % pattern.length];
+        }
+        units[size] = CUnit.ONE;
+        return new CExpression(units);
+    }
+
 //    @Test
 //    public void testCalculatorLogic() {
 //        // 5. tan 0.5 pi